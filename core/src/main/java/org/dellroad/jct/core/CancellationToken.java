@@ -0,0 +1,149 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Signals a request to cancel an executing command.
+ *
+ * <p>
+ * Thread interrupts don't stop code that is computing in a loop or blocked on non-interruptible I/O. Such code
+ * can instead obtain a token from {@link ConsoleSession#getCancellationToken} and either poll {@link #isCancelled}
+ * (which is cheap) or register a callback via {@link #onCancel onCancel()} that unblocks it, e.g., by closing
+ * a socket or stream.
+ *
+ * <p>
+ * Instances are thread safe.
+ */
+public class CancellationToken {
+
+    /**
+     * A token that is never cancelled.
+     */
+    public static final CancellationToken NEVER = new CancellationToken(false);
+
+    private static final Logger LOG = LoggerFactory.getLogger(CancellationToken.class);
+
+    private final boolean cancellable;
+    private final LinkedHashSet<Runnable> callbacks = new LinkedHashSet<>();      // guarded by this
+
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor.
+     */
+    public CancellationToken() {
+        this(true);
+    }
+
+    private CancellationToken(boolean cancellable) {
+        this.cancellable = cancellable;
+    }
+
+    /**
+     * Determine whether this token has been cancelled.
+     *
+     * @return true if cancelled
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Throw {@link InterruptedException} if this token has been cancelled.
+     *
+     * @throws InterruptedException if this token has been cancelled
+     */
+    public void throwIfCancelled() throws InterruptedException {
+        if (this.cancelled)
+            throw new InterruptedException("cancelled");
+    }
+
+    /**
+     * Register a callback to be invoked when this token is cancelled.
+     *
+     * <p>
+     * The callback is invoked at most once, in the thread that cancels this token; if this token is already
+     * cancelled, it's invoked immediately in the current thread. Callbacks should not block. Exceptions thrown
+     * by callbacks are logged and otherwise ignored.
+     *
+     * <p>
+     * Callers should {@linkplain Registration#close close} the returned registration once the callback
+     * is no longer needed, e.g., using try-with-resources.
+     *
+     * @param callback cancel callback
+     * @return registration that can be used to unregister the callback
+     * @throws IllegalArgumentException if {@code callback} is null
+     */
+    public Registration onCancel(Runnable callback) {
+        if (callback == null)
+            throw new IllegalArgumentException("null callback");
+        final Runnable action = callback::run;                         // ensure distinct identity
+        synchronized (this) {
+            if (!this.cancelled) {
+                if (this.cancellable)
+                    this.callbacks.add(action);
+                return () -> {
+                    synchronized (this) {
+                        this.callbacks.remove(action);
+                    }
+                };
+            }
+        }
+        this.invoke(action);
+        return () -> { };
+    }
+
+    /**
+     * Cancel this token.
+     *
+     * <p>
+     * This sets the cancelled flag and invokes all registered callbacks in the current thread.
+     * Invoking this method more than once has no effect. Invoking this method on {@link #NEVER} has no effect.
+     *
+     * @return true if this token was cancelled, false if it was already cancelled or is {@link #NEVER}
+     */
+    public boolean cancel() {
+        final ArrayList<Runnable> actions;
+        synchronized (this) {
+            if (this.cancelled || !this.cancellable)
+                return false;
+            this.cancelled = true;
+            actions = new ArrayList<>(this.callbacks);
+            this.callbacks.clear();
+        }
+        actions.forEach(this::invoke);
+        return true;
+    }
+
+    private void invoke(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            LOG.warn("exception from cancel callback (ignoring)", e);
+        }
+    }
+
+// Registration
+
+    /**
+     * A callback registration returned by {@link CancellationToken#onCancel CancellationToken.onCancel()}.
+     */
+    @FunctionalInterface
+    public interface Registration extends AutoCloseable {
+
+        /**
+         * Unregister the associated callback, if it has not already been invoked.
+         */
+        @Override
+        void close();
+    }
+}
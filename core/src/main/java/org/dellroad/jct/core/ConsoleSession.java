@@ -7,14 +7,17 @@ package org.dellroad.jct.core;
 
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * A session associated with a console component.
  *
  * <p>
  * {@link ConsoleSession}s are created by console components from {@link ConsoleRequest}s and then {@linkplain #execute executed}
- * synchronously. During execution, {@link #interrupt} may be invoked (by another thread) to signal that the execution
- * should be interrupted.
+ * synchronously, or {@linkplain #executeAsync asynchronously}. During execution, {@link #interrupt} may be invoked (by another
+ * thread) to signal that the execution should be interrupted.
  *
  * <p>
  * {@link ConsoleSession}s are not reusable.
@@ -59,6 +62,22 @@ public interface ConsoleSession<O, R extends ConsoleRequest<R>> {
      */
     PrintStream getErrorStream();
 
+    /**
+     * Get the token that signals cancellation of whatever this session is currently executing.
+     *
+     * <p>
+     * Long-running commands should poll the returned token, or register a cancel callback with it, so they
+     * can be stopped even when they don't respond to {@link Thread#interrupt}.
+     *
+     * <p>
+     * The implementation in {@link ConsoleSession} returns {@link CancellationToken#NEVER}.
+     *
+     * @return cancellation token, never null
+     */
+    default CancellationToken getCancellationToken() {
+        return CancellationToken.NEVER;
+    }
+
     /**
      * Execute this session synchronously in the current thread.
      *
@@ -72,6 +91,34 @@ public interface ConsoleSession<O, R extends ConsoleRequest<R>> {
      */
     int execute() throws InterruptedException;
 
+    /**
+     * Execute this session asynchronously using the given executor.
+     *
+     * <p>
+     * The returned future completes with the exit value returned by {@link #execute}, or exceptionally with whatever
+     * exception it throws. Cancelling the future {@linkplain #interrupt interrupts} the execution (if it has started),
+     * or prevents it from starting (if it hasn't); note that the future reports cancellation immediately, even though
+     * the session may take some time to actually stop.
+     *
+     * <p>
+     * If {@code executor} rejects the task, the returned future completes exceptionally.
+     *
+     * @param executor executes this session
+     * @return future exit value
+     * @throws IllegalArgumentException if {@code executor} is null
+     */
+    default CompletableFuture<Integer> executeAsync(Executor executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("null executor");
+        final SessionFuture future = new SessionFuture(this);
+        try {
+            executor.execute(future::run);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     /**
      * Interrupt the execution of this session.
      *
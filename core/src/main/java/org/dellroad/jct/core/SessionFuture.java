@@ -0,0 +1,61 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The future returned by {@link ConsoleSession#executeAsync ConsoleSession.executeAsync()}.
+ *
+ * <p>
+ * Cancellation is mapped onto {@link ConsoleSession#interrupt}. If the session can't be interrupted that way
+ * (for example, because {@link ConsoleSession#execute} has not quite started yet), the executing thread is
+ * interrupted directly instead.
+ */
+final class SessionFuture extends CompletableFuture<Integer> {
+
+    private final ConsoleSession<?, ?> session;
+
+    private Thread thread;                              // guarded by this
+
+    SessionFuture(ConsoleSession<?, ?> session) {
+        this.session = session;
+    }
+
+    void run() {
+
+        // Note our thread, unless we've already been cancelled
+        synchronized (this) {
+            if (this.isDone())
+                return;
+            this.thread = Thread.currentThread();
+        }
+
+        // Execute session
+        try {
+            this.complete(this.session.execute());
+        } catch (Throwable t) {
+            this.completeExceptionally(t);
+        } finally {
+            synchronized (this) {
+                this.thread = null;
+            }
+            Thread.interrupted();                       // don't leave a stray interrupt behind in the executor's thread
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        final boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            synchronized (this) {
+                if (this.thread != null && !this.session.interrupt())
+                    this.thread.interrupt();
+            }
+        }
+        return cancelled;
+    }
+}
@@ -0,0 +1,285 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.event;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * An immutable session or command lifecycle event.
+ *
+ * <p>
+ * Events refer to the {@link ConsoleSession} that generated them, but because they are delivered asynchronously,
+ * listeners should not assume anything about the current state of that session.
+ */
+public abstract class ConsoleEvent {
+
+    private final Instant timestamp;
+    private final ConsoleSession<?, ?> session;
+
+    /**
+     * Constructor.
+     *
+     * @param session associated session
+     * @throws IllegalArgumentException if {@code session} is null
+     */
+    protected ConsoleEvent(ConsoleSession<?, ?> session) {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        this.timestamp = Instant.now();
+        this.session = session;
+    }
+
+    /**
+     * Get the time at which this event occurred.
+     *
+     * @return event timestamp
+     */
+    public Instant getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Get the session associated with this event.
+     *
+     * @return associated session
+     */
+    public ConsoleSession<?, ?> getSession() {
+        return this.session;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "[session=" + this.session + this.describe() + "]";
+    }
+
+    /**
+     * Describe additional properties for {@link #toString}.
+     *
+     * @return description, starting with {@code ","} if not empty
+     */
+    protected String describe() {
+        return "";
+    }
+
+// CompletionEvent
+
+    /**
+     * Superclass for events that mark the end of something, i.e., a session or command.
+     */
+    public abstract static class CompletionEvent extends ConsoleEvent {
+
+        private final Duration duration;
+        private final Integer exitValue;
+        private final Throwable error;
+
+        /**
+         * Constructor.
+         *
+         * @param session associated session
+         * @param duration elapsed time
+         * @param exitValue exit value, or null if {@code error} is not null
+         * @param error exception thrown, or null if {@code exitValue} is not null
+         * @throws IllegalArgumentException if {@code session} or {@code duration} is null
+         * @throws IllegalArgumentException if not exactly one of {@code exitValue} and {@code error} is null
+         */
+        protected CompletionEvent(ConsoleSession<?, ?> session, Duration duration, Integer exitValue, Throwable error) {
+            super(session);
+            if (duration == null)
+                throw new IllegalArgumentException("null duration");
+            if ((exitValue == null) == (error == null))
+                throw new IllegalArgumentException("exactly one of exitValue and error must be null");
+            this.duration = duration;
+            this.exitValue = exitValue;
+            this.error = error;
+        }
+
+        /**
+         * Get the elapsed time.
+         *
+         * @return elapsed time
+         */
+        public Duration getDuration() {
+            return this.duration;
+        }
+
+        /**
+         * Get the exit value.
+         *
+         * @return exit value, or null if an exception was thrown
+         */
+        public Integer getExitValue() {
+            return this.exitValue;
+        }
+
+        /**
+         * Get the exception thrown, if any.
+         *
+         * @return exception thrown, or null if an exit value was returned
+         */
+        public Throwable getError() {
+            return this.error;
+        }
+
+        @Override
+        protected String describe() {
+            return ",duration=" + this.duration
+              + (this.error != null ? ",error=" + this.error : ",exitValue=" + this.exitValue);
+        }
+    }
+
+// SessionOpened
+
+    /**
+     * Indicates that a session has started executing.
+     */
+    public static class SessionOpened extends ConsoleEvent {
+
+        /**
+         * Constructor.
+         *
+         * @param session associated session
+         * @throws IllegalArgumentException if {@code session} is null
+         */
+        public SessionOpened(ConsoleSession<?, ?> session) {
+            super(session);
+        }
+    }
+
+// SessionClosed
+
+    /**
+     * Indicates that a session has finished executing.
+     */
+    public static class SessionClosed extends CompletionEvent {
+
+        /**
+         * Constructor.
+         *
+         * @param session associated session
+         * @param duration session duration
+         * @param exitValue session exit value, or null if {@code error} is not null
+         * @param error exception thrown by the session, or null if {@code exitValue} is not null
+         * @throws IllegalArgumentException if {@code session} or {@code duration} is null
+         * @throws IllegalArgumentException if not exactly one of {@code exitValue} and {@code error} is null
+         */
+        public SessionClosed(ConsoleSession<?, ?> session, Duration duration, Integer exitValue, Throwable error) {
+            super(session, duration, exitValue, error);
+        }
+    }
+
+// CommandStarted
+
+    /**
+     * Indicates that a command has started executing.
+     */
+    public static class CommandStarted extends ConsoleEvent {
+
+        private final String name;
+        private final List<String> parameters;
+
+        /**
+         * Constructor.
+         *
+         * @param session associated session
+         * @param name command name
+         * @param parameters command parameters
+         * @throws IllegalArgumentException if any parameter is null
+         */
+        public CommandStarted(ConsoleSession<?, ?> session, String name, List<String> parameters) {
+            super(session);
+            if (name == null)
+                throw new IllegalArgumentException("null name");
+            if (parameters == null)
+                throw new IllegalArgumentException("null parameters");
+            this.name = name;
+            this.parameters = List.copyOf(parameters);
+        }
+
+        /**
+         * Get the command name.
+         *
+         * @return command name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Get the command parameters.
+         *
+         * @return unmodifiable list of command parameters
+         */
+        public List<String> getParameters() {
+            return this.parameters;
+        }
+
+        @Override
+        protected String describe() {
+            return ",name=\"" + this.name + "\",parameters=" + this.parameters;
+        }
+    }
+
+// CommandFinished
+
+    /**
+     * Indicates that a command has finished executing.
+     */
+    public static class CommandFinished extends CompletionEvent {
+
+        private final String name;
+        private final List<String> parameters;
+
+        /**
+         * Constructor.
+         *
+         * @param session associated session
+         * @param name command name
+         * @param parameters command parameters
+         * @param duration command duration
+         * @param exitValue command exit value, or null if {@code error} is not null
+         * @param error exception thrown by the command, or null if {@code exitValue} is not null
+         * @throws IllegalArgumentException if {@code session}, {@code name}, {@code parameters}, or {@code duration} is null
+         * @throws IllegalArgumentException if not exactly one of {@code exitValue} and {@code error} is null
+         */
+        public CommandFinished(ConsoleSession<?, ?> session, String name, List<String> parameters,
+          Duration duration, Integer exitValue, Throwable error) {
+            super(session, duration, exitValue, error);
+            if (name == null)
+                throw new IllegalArgumentException("null name");
+            if (parameters == null)
+                throw new IllegalArgumentException("null parameters");
+            this.name = name;
+            this.parameters = List.copyOf(parameters);
+        }
+
+        /**
+         * Get the command name.
+         *
+         * @return command name
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Get the command parameters.
+         *
+         * @return unmodifiable list of command parameters
+         */
+        public List<String> getParameters() {
+            return this.parameters;
+        }
+
+        @Override
+        protected String describe() {
+            return ",name=\"" + this.name + "\",parameters=" + this.parameters + super.describe();
+        }
+    }
+}
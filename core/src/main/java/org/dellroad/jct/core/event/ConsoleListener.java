@@ -0,0 +1,27 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.event;
+
+/**
+ * Receives {@link ConsoleEvent}s from an {@link EventDispatcher}.
+ *
+ * <p>
+ * Listeners are notified asynchronously in a dispatcher thread, one event at a time and in the order the events occurred.
+ * A slow listener delays the delivery of subsequent events, but never the sessions or commands that generate them.
+ */
+@FunctionalInterface
+public interface ConsoleListener {
+
+    /**
+     * Receive notification of an event.
+     *
+     * <p>
+     * Runtime exceptions thrown by this method are logged and otherwise ignored.
+     *
+     * @param event the event, never null
+     */
+    void onEvent(ConsoleEvent event);
+}
@@ -0,0 +1,361 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.event;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers {@link ConsoleEvent}s to {@link ConsoleListener}s asynchronously.
+ *
+ * <p>
+ * Events are {@linkplain #fire fired} by adding them to a lock-free queue, which is drained by a task running on
+ * this instance's executor; at most one such task runs at a time, so listeners see events one at a time and in order.
+ * Firing an event never blocks: if the queue is full because listeners can't keep up, the event is dropped and
+ * {@linkplain #getNumDropped counted}. When there are no listeners, events are not even created. Listeners that
+ * can't afford to lose events should keep their own bounded buffer, so they are never the reason the queue fills up.
+ *
+ * <p>
+ * Use {@link #flush flush()} to wait for queued events to be delivered, e.g., before closing listeners at shutdown.
+ *
+ * <p>
+ * Instances are thread safe.
+ */
+public class EventDispatcher {
+
+    /**
+     * Default {@linkplain #getMaxQueueSize maximum queue size}.
+     */
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 10000;
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Executor executor;
+    private final int maxQueueSize;
+    private final CopyOnWriteArrayList<ConsoleListener> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<ConsoleEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicLong numDropped = new AtomicLong();
+    private final AtomicInteger numWaiters = new AtomicInteger();
+    private final Object monitor = new Object();
+
+    /**
+     * Default constructor.
+     *
+     * <p>
+     * Uses a shared default executor and {@link #DEFAULT_MAX_QUEUE_SIZE}.
+     */
+    public EventDispatcher() {
+        this(DefaultExecutor.INSTANCE, DEFAULT_MAX_QUEUE_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param executor executor used to notify listeners
+     * @param maxQueueSize maximum number of undelivered events
+     * @throws IllegalArgumentException if {@code executor} is null
+     * @throws IllegalArgumentException if {@code maxQueueSize} is not positive
+     */
+    public EventDispatcher(Executor executor, int maxQueueSize) {
+        if (executor == null)
+            throw new IllegalArgumentException("null executor");
+        if (maxQueueSize <= 0)
+            throw new IllegalArgumentException("invalid maxQueueSize");
+        this.executor = executor;
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * Get the maximum number of undelivered events, beyond which new events are dropped.
+     *
+     * @return maximum queue size
+     */
+    public int getMaxQueueSize() {
+        return this.maxQueueSize;
+    }
+
+    /**
+     * Get the number of events dropped so far because the queue was full.
+     *
+     * @return number of dropped events
+     */
+    public long getNumDropped() {
+        return this.numDropped.get();
+    }
+
+// Listeners
+
+    /**
+     * Register a listener.
+     *
+     * @param listener listener to add
+     * @throws IllegalArgumentException if {@code listener} is null
+     */
+    public void addListener(ConsoleListener listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("null listener");
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Unregister a listener.
+     *
+     * <p>
+     * The listener may still receive events that were already queued.
+     *
+     * @param listener listener to remove
+     * @return true if {@code listener} was found and removed
+     */
+    public boolean removeListener(ConsoleListener listener) {
+        return this.listeners.remove(listener);
+    }
+
+    /**
+     * Get the registered listeners.
+     *
+     * @return unmodifiable snapshot of registered listeners
+     */
+    public List<ConsoleListener> getListeners() {
+        return List.copyOf(this.listeners);
+    }
+
+    /**
+     * Determine whether any listeners are registered.
+     *
+     * <p>
+     * Callers can use this to avoid creating events that nobody will receive.
+     *
+     * @return true if there are listeners
+     */
+    public boolean hasListeners() {
+        return !this.listeners.isEmpty();
+    }
+
+// Firing
+
+    /**
+     * Queue an event for asynchronous delivery to all listeners.
+     *
+     * <p>
+     * This method does not block. If there are no listeners, or the queue is full, the event is discarded.
+     *
+     * @param event event to fire
+     * @throws IllegalArgumentException if {@code event} is null
+     */
+    public void fire(ConsoleEvent event) {
+        if (event == null)
+            throw new IllegalArgumentException("null event");
+        if (this.listeners.isEmpty())
+            return;
+        if (this.queueSize.incrementAndGet() > this.maxQueueSize) {
+            this.queueSize.decrementAndGet();
+            if (this.numDropped.getAndIncrement() == 0)
+                this.log.warn("event queue is full (listeners too slow?); dropping events");
+            return;
+        }
+        this.queue.add(event);
+        this.startDraining();
+    }
+
+    /**
+     * Wait for all events queued so far to be delivered.
+     *
+     * @param timeout maximum time to wait
+     * @return true if the queue was emptied, false if the timeout expired first
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws IllegalArgumentException if {@code timeout} is null
+     */
+    public boolean flush(Duration timeout) throws InterruptedException {
+        if (timeout == null)
+            throw new IllegalArgumentException("null timeout");
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        this.numWaiters.incrementAndGet();
+        try {
+            synchronized (this.monitor) {
+                while (this.queueSize.get() > 0 || this.draining.get()) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        return false;
+                    this.monitor.wait(Math.max(Math.min(remaining / 1000000L, 100), 1));
+                }
+                return true;
+            }
+        } finally {
+            this.numWaiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Execute a session, firing {@link ConsoleEvent.SessionOpened} and {@link ConsoleEvent.SessionClosed} events around it.
+     *
+     * @param session the session
+     * @param action performs the session's execution
+     * @return the session's exit value
+     * @throws InterruptedException if {@code action} throws {@link InterruptedException}
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public int executeSession(ConsoleSession<?, ?> session, Action action) throws InterruptedException {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        if (action == null)
+            throw new IllegalArgumentException("null action");
+        if (!this.hasListeners())
+            return action.execute();
+        final long startTime = System.nanoTime();
+        this.fire(new ConsoleEvent.SessionOpened(session));
+        Integer exitValue = null;
+        Throwable error = null;
+        try {
+            exitValue = action.execute();
+            return exitValue;
+        } catch (InterruptedException | RuntimeException | Error e) {
+            error = e;
+            throw e;
+        } finally {
+            this.fire(new ConsoleEvent.SessionClosed(session, Duration.ofNanos(System.nanoTime() - startTime), exitValue, error));
+        }
+    }
+
+    /**
+     * Execute a command, firing {@link ConsoleEvent.CommandStarted} and {@link ConsoleEvent.CommandFinished} events around it.
+     *
+     * @param session the session executing the command
+     * @param name command name
+     * @param parameters command parameters
+     * @param action performs the command's execution
+     * @return the command's exit value
+     * @throws InterruptedException if {@code action} throws {@link InterruptedException}
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public int executeCommand(ConsoleSession<?, ?> session, String name, List<String> parameters, Action action)
+      throws InterruptedException {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        if (name == null)
+            throw new IllegalArgumentException("null name");
+        if (parameters == null)
+            throw new IllegalArgumentException("null parameters");
+        if (action == null)
+            throw new IllegalArgumentException("null action");
+        if (!this.hasListeners())
+            return action.execute();
+        final long startTime = System.nanoTime();
+        this.fire(new ConsoleEvent.CommandStarted(session, name, parameters));
+        Integer exitValue = null;
+        Throwable error = null;
+        try {
+            exitValue = action.execute();
+            return exitValue;
+        } catch (InterruptedException | RuntimeException | Error e) {
+            error = e;
+            throw e;
+        } finally {
+            this.fire(new ConsoleEvent.CommandFinished(session, name, parameters,
+              Duration.ofNanos(System.nanoTime() - startTime), exitValue, error));
+        }
+    }
+
+// Internal methods
+
+    private void notifyWaiters() {
+        if (this.numWaiters.get() > 0) {
+            synchronized (this.monitor) {
+                this.monitor.notifyAll();
+            }
+        }
+    }
+
+    private void startDraining() {
+        if (!this.draining.compareAndSet(false, true))
+            return;
+        try {
+            this.executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            this.draining.set(false);
+            this.log.warn("can't deliver events: {}", e.toString());
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            for (ConsoleEvent event; (event = this.queue.poll()) != null; ) {
+                this.queueSize.decrementAndGet();
+                this.deliver(event);
+            }
+            this.draining.set(false);
+            this.notifyWaiters();
+
+            // Avoid race where an event was queued after our last poll() but before we cleared the flag
+            if (this.queue.isEmpty() || !this.draining.compareAndSet(false, true))
+                return;
+        }
+    }
+
+    private void deliver(ConsoleEvent event) {
+        for (ConsoleListener listener : this.listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                this.log.warn("exception from listener {} (ignoring)", listener, e);
+            }
+        }
+    }
+
+// Action
+
+    /**
+     * The execution of a session or command by {@link EventDispatcher}.
+     */
+    @FunctionalInterface
+    public interface Action {
+
+        /**
+         * Perform the execution in the current thread.
+         *
+         * @return exit value
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        int execute() throws InterruptedException;
+    }
+
+// DefaultExecutor
+
+    private static final class DefaultExecutor {
+
+        static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactoryImpl());
+
+        private DefaultExecutor() {
+        }
+
+        private static final class ThreadFactoryImpl implements ThreadFactory {
+
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable action) {
+                final Thread thread = new Thread(action, "JCT-Events-" + this.counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+/**
+ * Session and command lifecycle events for the Java Console Toolkit.
+ *
+ * <p>
+ * Events are immutable {@link org.dellroad.jct.core.event.ConsoleEvent}s, queued by an
+ * {@link org.dellroad.jct.core.event.EventDispatcher} and delivered asynchronously to registered
+ * {@link org.dellroad.jct.core.event.ConsoleListener}s.
+ */
+package org.dellroad.jct.core.event;
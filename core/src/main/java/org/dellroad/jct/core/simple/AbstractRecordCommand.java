@@ -0,0 +1,94 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.util.List;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * Support superclass for commands that produce structured output.
+ *
+ * <p>
+ * Subclasses implement {@link #execute(ConsoleSession, String, List, OutputFormat)} and typically write their output
+ * as records via a {@link RecordWriter} obtained from {@link OutputFormat#newWriter OutputFormat.newWriter()}.
+ * The output format is taken from a leading {@value #FORMAT_FLAG} flag on the command line, if any, otherwise the
+ * session's {@linkplain OutputFormat#of default output format}.
+ */
+public abstract class AbstractRecordCommand extends AbstractSimpleCommand {
+
+    /**
+     * The command line flag that selects the output format.
+     */
+    public static final String FORMAT_FLAG = "--format";
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * The {@value #FORMAT_FLAG} flag is automatically added to the given usage and help detail.
+     *
+     * @param usage usage string, or null if command takes no arguments
+     * @param summary help summary
+     * @param detail help detail
+     * @throws IllegalArgumentException if {@code summary} or {@code detail} is null
+     */
+    protected AbstractRecordCommand(String usage, String summary, String detail) {
+        super(AbstractRecordCommand.formatUsage(usage), summary, AbstractRecordCommand.formatDetail(detail));
+    }
+
+    private static String formatUsage(String usage) {
+        final String flag = String.format("[%s text|json|csv]", FORMAT_FLAG);
+        return usage != null && !usage.isEmpty() ? flag + " " + usage : flag;
+    }
+
+    private static String formatDetail(String detail) {
+        return detail != null ?
+          detail + "\n\nThe \"" + FORMAT_FLAG + "\" flag selects the output format; the default is taken from the \""
+            + OutputFormat.ENVIRONMENT_VARIABLE + "\" environment variable, or else \"text\"." :
+          null;
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Determine output format
+        final OutputFormat format;
+        try {
+            if (!args.isEmpty() && args.get(0).startsWith(FORMAT_FLAG + "=")) {
+                format = OutputFormat.parse(args.get(0).substring(FORMAT_FLAG.length() + 1));
+                args = args.subList(1, args.size());
+            } else if (!args.isEmpty() && args.get(0).equals(FORMAT_FLAG)) {
+                if (args.size() < 2) {
+                    this.printUsage(session, name);
+                    return 1;
+                }
+                format = OutputFormat.parse(args.get(1));
+                args = args.subList(2, args.size());
+            } else
+                format = OutputFormat.of(session);
+        } catch (IllegalArgumentException e) {
+            session.getErrorStream().println(String.format("Error: %s", e.getMessage()));
+            return 1;
+        }
+
+        // Execute command
+        return this.execute(session, name, args, format);
+    }
+
+    /**
+     * Execute this command in the current thread, producing output in the given format.
+     *
+     * @param session associated session
+     * @param name the name under which this command was invoked
+     * @param args zero or more command arguments (does not include command name or {@value #FORMAT_FLAG} flag)
+     * @param format output format
+     * @return zero if successful, non-zero error code if an error occurred
+     * @throws InterruptedException if execution is interrupted
+     */
+    protected abstract int execute(ConsoleSession<?, ?> session, String name, List<String> args, OutputFormat format)
+      throws InterruptedException;
+}
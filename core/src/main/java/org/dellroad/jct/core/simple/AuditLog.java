@@ -0,0 +1,648 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.dellroad.jct.core.event.ConsoleEvent;
+import org.dellroad.jct.core.event.ConsoleListener;
+import org.dellroad.jct.core.event.EventDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only audit log of executed commands.
+ *
+ * <p>
+ * Register an instance as a {@linkplain SimpleCommandSupport#addListener listener} and it will record every
+ * {@linkplain ConsoleEvent.CommandFinished finished command} as one line of JSON containing the time, user, source
+ * address, command name, arguments, exit value or error, and duration. The user and source address are taken
+ * from the session's {@value #ENV_USER} and {@value #ENV_SSH_CLIENT} environment variables, if any.
+ *
+ * <p>
+ * Records are appended to memory-mapped segment files in a directory, so writing a record is just a memory copy:
+ * it doesn't require a system call, and records survive the JVM crashing (though not the operating system). Because
+ * events are delivered asynchronously, none of this happens in the thread executing the command.
+ *
+ * <p>
+ * So that it never holds up the {@link EventDispatcher} (whose queue drops events for all listeners when full),
+ * this listener adds each event to its own bounded buffer, which is written by a background writer thread. If that
+ * buffer is full, the configured {@link OverflowPolicy} applies: records are either {@linkplain OverflowPolicy#DROP
+ * dropped} or {@linkplain OverflowPolicy#SPILL written directly} by the dispatcher thread. Either way, the threads
+ * executing commands never wait. Records that could not be written are {@linkplain #getNumLost counted}. A new segment is
+ * started when the current one is full or older than the rotation interval, and the oldest segments are deleted
+ * once there are more than the configured maximum. Completed segments are truncated to their actual length;
+ * segments from a crashed JVM may end with zero bytes, which readers should ignore.
+ *
+ * <p>
+ * Recent records can be searched using {@link #search search()} or the "audit" command.
+ *
+ * <p>
+ * Instances are thread safe. Instances should be {@link #close close()}'ed when no longer needed; to avoid losing records
+ * of recently finished commands, first {@linkplain EventDispatcher#flush flush} the dispatcher delivering the events.
+ */
+public class AuditLog implements ConsoleListener, Closeable {
+
+    /**
+     * Default maximum segment file size (16MB).
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Default segment rotation interval (one day).
+     */
+    public static final Duration DEFAULT_ROTATION_INTERVAL = Duration.ofDays(1);
+
+    /**
+     * Default maximum number of segment files to keep.
+     */
+    public static final int DEFAULT_MAX_SEGMENTS = 10;
+
+    /**
+     * Default {@linkplain #getMaxBufferSize maximum buffer size}.
+     */
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 10000;
+
+    /**
+     * Environment variable containing the user name.
+     */
+    public static final String ENV_USER = "USER";
+
+    /**
+     * Environment variable containing the source address, in the OpenSSH format {@code "address port localport"}.
+     */
+    public static final String ENV_SSH_CLIENT = "SSH_CLIENT";
+
+    private static final String SEGMENT_PREFIX = "audit-";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Duration rotationInterval;
+    private final int maxSegments;
+    private final int maxBufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final ExecutorService writer;
+    private final ConcurrentLinkedQueue<ConsoleEvent.CommandFinished> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final AtomicLong numLost = new AtomicLong();
+    private final StringBuilder buf = new StringBuilder();          // guarded by this
+
+    private FileChannel channel;                                    // guarded by this
+    private MappedByteBuffer buffer;                                // guarded by this
+    private long segmentStartTime;                                  // guarded by this
+    private long lastSegmentTime;                                   // guarded by this
+    private volatile boolean closed;                                // modified only while synchronized
+
+    /**
+     * Constructor using default settings.
+     *
+     * @param directory directory for segment files
+     * @throws IllegalArgumentException if {@code directory} is null
+     */
+    public AuditLog(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_ROTATION_INTERVAL, DEFAULT_MAX_SEGMENTS);
+    }
+
+    /**
+     * Constructor using {@link #DEFAULT_MAX_BUFFER_SIZE} and {@link OverflowPolicy#SPILL}.
+     *
+     * @param directory directory for segment files
+     * @param segmentSize maximum size of each segment file in bytes
+     * @param rotationInterval maximum age of the current segment file
+     * @param maxSegments maximum number of segment files to keep
+     * @throws IllegalArgumentException if {@code directory} or {@code rotationInterval} is null
+     * @throws IllegalArgumentException if {@code segmentSize}, {@code rotationInterval}, or {@code maxSegments} is not positive
+     */
+    public AuditLog(Path directory, int segmentSize, Duration rotationInterval, int maxSegments) {
+        this(directory, segmentSize, rotationInterval, maxSegments, DEFAULT_MAX_BUFFER_SIZE, OverflowPolicy.SPILL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory directory for segment files
+     * @param segmentSize maximum size of each segment file in bytes
+     * @param rotationInterval maximum age of the current segment file
+     * @param maxSegments maximum number of segment files to keep
+     * @param maxBufferSize maximum number of records waiting to be written by the writer thread
+     * @param overflowPolicy what to do with a record when the buffer is full
+     * @throws IllegalArgumentException if {@code directory}, {@code rotationInterval}, or {@code overflowPolicy} is null
+     * @throws IllegalArgumentException if {@code segmentSize}, {@code rotationInterval}, {@code maxSegments},
+     *  or {@code maxBufferSize} is not positive
+     */
+    public AuditLog(Path directory, int segmentSize, Duration rotationInterval, int maxSegments,
+      int maxBufferSize, OverflowPolicy overflowPolicy) {
+        if (directory == null)
+            throw new IllegalArgumentException("null directory");
+        if (segmentSize <= 0)
+            throw new IllegalArgumentException("invalid segmentSize");
+        if (rotationInterval == null)
+            throw new IllegalArgumentException("null rotationInterval");
+        if (rotationInterval.isNegative() || rotationInterval.isZero())
+            throw new IllegalArgumentException("invalid rotationInterval");
+        if (maxSegments <= 0)
+            throw new IllegalArgumentException("invalid maxSegments");
+        if (maxBufferSize <= 0)
+            throw new IllegalArgumentException("invalid maxBufferSize");
+        if (overflowPolicy == null)
+            throw new IllegalArgumentException("null overflowPolicy");
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.rotationInterval = rotationInterval;
+        this.maxSegments = maxSegments;
+        this.maxBufferSize = maxBufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.writer = Executors.newSingleThreadExecutor(action -> {
+            final Thread thread = new Thread(action, "JCT-Audit");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the directory containing the segment files.
+     *
+     * @return segment directory
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Get the maximum size of each segment file.
+     *
+     * @return maximum segment size in bytes
+     */
+    public int getSegmentSize() {
+        return this.segmentSize;
+    }
+
+    /**
+     * Get the maximum age of the current segment file.
+     *
+     * @return rotation interval
+     */
+    public Duration getRotationInterval() {
+        return this.rotationInterval;
+    }
+
+    /**
+     * Get the maximum number of segment files to keep.
+     *
+     * @return maximum number of segments
+     */
+    public int getMaxSegments() {
+        return this.maxSegments;
+    }
+
+    /**
+     * Get the maximum number of records waiting to be written, beyond which the {@linkplain #getOverflowPolicy
+     * overflow policy} applies.
+     *
+     * @return maximum buffer size
+     */
+    public int getMaxBufferSize() {
+        return this.maxBufferSize;
+    }
+
+    /**
+     * Get what happens to a record when the buffer is full.
+     *
+     * @return overflow policy
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return this.overflowPolicy;
+    }
+
+    /**
+     * Get the number of records lost so far, because the buffer was full and the {@linkplain #getOverflowPolicy
+     * overflow policy} is {@link OverflowPolicy#DROP}, or because of an error writing them.
+     *
+     * <p>
+     * This does not include events the {@link EventDispatcher} itself {@linkplain EventDispatcher#getNumDropped dropped}.
+     *
+     * @return number of lost records
+     */
+    public long getNumLost() {
+        return this.numLost.get();
+    }
+
+// ConsoleListener
+
+    /**
+     * Queue a record for each {@link ConsoleEvent.CommandFinished} event.
+     *
+     * <p>
+     * This method never waits for the writer thread. If the buffer is full, the record is dropped or written
+     * directly, depending on the {@linkplain #getOverflowPolicy overflow policy}. Does nothing if this instance is closed.
+     *
+     * @param event the event
+     */
+    @Override
+    public void onEvent(ConsoleEvent event) {
+        if (!(event instanceof ConsoleEvent.CommandFinished) || this.closed)
+            return;
+        final ConsoleEvent.CommandFinished finished = (ConsoleEvent.CommandFinished)event;
+        if (this.queueSize.incrementAndGet() > this.maxBufferSize) {
+            this.queueSize.decrementAndGet();
+            if (this.overflowPolicy == OverflowPolicy.DROP) {
+                if (this.numLost.getAndIncrement() == 0)
+                    this.log.warn("audit log buffer is full (writer too slow?); dropping records");
+                return;
+            }
+            synchronized (this) {
+                this.writeQueued();                                         // preserve ordering
+                this.write(finished);
+            }
+            return;
+        }
+        this.queue.add(finished);
+        if (!this.writing.compareAndSet(false, true))
+            return;
+        try {
+            this.writer.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            this.writing.set(false);                                        // we must be closed
+            this.writeQueued();                                             // count anything left as lost
+        }
+    }
+
+// Writing
+
+    /**
+     * Append a record for a finished command.
+     *
+     * @param event command event
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalStateException if this instance is closed
+     * @throws IllegalArgumentException if {@code event} is null
+     */
+    public synchronized void append(ConsoleEvent.CommandFinished event) throws IOException {
+        if (event == null)
+            throw new IllegalArgumentException("null event");
+        if (this.closed)
+            throw new IllegalStateException("closed");
+
+        // Build record
+        final Map<String, String> env = event.getSession().getRequest().getEnvironment();
+        this.buf.setLength(0);
+        this.buf.append("{\"time\":");
+        OutputFormat.appendJsonString(this.buf, event.getTimestamp().toString());
+        this.buf.append(",\"user\":");
+        this.appendNullable(env != null ? env.get(ENV_USER) : null);
+        this.buf.append(",\"source\":");
+        this.appendNullable(env != null ? this.getSource(env.get(ENV_SSH_CLIENT)) : null);
+        this.buf.append(",\"command\":");
+        OutputFormat.appendJsonString(this.buf, event.getName());
+        this.buf.append(",\"args\":[");
+        final List<String> params = event.getParameters();
+        for (int i = 0; i < params.size(); i++) {
+            if (i > 0)
+                this.buf.append(',');
+            OutputFormat.appendJsonString(this.buf, params.get(i));
+        }
+        this.buf.append("],\"exit\":").append(event.getExitValue());
+        this.buf.append(",\"error\":");
+        this.appendNullable(event.getError() != null ? event.getError().toString() : null);
+        this.buf.append(",\"millis\":").append(event.getDuration().toMillis());
+        this.buf.append("}\n");
+        final byte[] record = this.buf.toString().getBytes(StandardCharsets.UTF_8);
+        if (record.length > this.segmentSize) {
+            this.log.warn("audit log record is larger than the segment size (dropping): {}", this.buf);
+            return;
+        }
+
+        // Rotate if needed
+        final long now = System.currentTimeMillis();
+        if (this.buffer != null
+          && (this.buffer.remaining() < record.length || now - this.segmentStartTime >= this.rotationInterval.toMillis()))
+            this.finishSegment();
+        if (this.buffer == null)
+            this.startSegment(now);
+
+        // Append record
+        this.buffer.put(record);
+    }
+
+    /**
+     * Force any records written so far to be written to storage.
+     *
+     * <p>
+     * This protects against operating system crashes; records already survive the JVM crashing.
+     */
+    public synchronized void flush() {
+        if (this.buffer != null)
+            this.buffer.force();
+    }
+
+    /**
+     * Close this instance.
+     *
+     * <p>
+     * Any buffered records are written first, then the current segment is flushed and truncated to its actual length.
+     * Does nothing if already closed.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (this.closed)
+                return;
+            this.writeQueued();
+            this.closed = true;
+            this.finishSegment();
+        }
+        this.writer.shutdown();
+    }
+
+    /**
+     * Determine whether this instance has been {@link #close close()}'ed.
+     *
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    // Writer thread task
+    private void drain() {
+        while (true) {
+            this.writeQueued();
+            this.writing.set(false);
+
+            // Avoid race where a record was queued after our last poll() but before we cleared the flag
+            if (this.queue.isEmpty() || !this.writing.compareAndSet(false, true))
+                return;
+        }
+    }
+
+    // Write out all buffered records; polling and writing each record under the lock keeps records in order
+    private void writeQueued() {
+        while (true) {
+            synchronized (this) {
+                final ConsoleEvent.CommandFinished event = this.queue.poll();
+                if (event == null)
+                    return;
+                this.queueSize.decrementAndGet();
+                this.write(event);
+            }
+        }
+    }
+
+    private synchronized void write(ConsoleEvent.CommandFinished event) {
+        if (this.closed) {
+            this.numLost.incrementAndGet();
+            return;
+        }
+        try {
+            this.append(event);
+        } catch (IOException | RuntimeException e) {
+            this.numLost.incrementAndGet();
+            this.log.error("error writing audit log record for {}", event, e);
+        }
+    }
+
+    private void appendNullable(String value) {
+        if (value != null)
+            OutputFormat.appendJsonString(this.buf, value);
+        else
+            this.buf.append("null");
+    }
+
+    // Convert "address port localport" into "address:port"
+    private String getSource(String sshClient) {
+        if (sshClient == null)
+            return null;
+        final String[] fields = sshClient.trim().split("\\s+");
+        return fields.length >= 2 ? fields[0] + ":" + fields[1] : fields[0];
+    }
+
+    private void startSegment(long now) throws IOException {
+
+        // Create segment file, ensuring names sort chronologically
+        final long segmentTime = Math.max(now, this.lastSegmentTime + 1);
+        final Path path = this.directory.resolve(String.format("%s%013d%s", SEGMENT_PREFIX, segmentTime, SEGMENT_SUFFIX));
+        Files.createDirectories(this.directory);
+        this.channel = FileChannel.open(path,
+          StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean success = false;
+        try {
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+            success = true;
+        } finally {
+            if (!success) {
+                this.channel.close();
+                this.channel = null;
+            }
+        }
+        this.segmentStartTime = now;
+        this.lastSegmentTime = segmentTime;
+        this.log.debug("started audit log segment {}", path);
+
+        // Delete old segments
+        final List<Path> segments = this.listSegments();
+        for (int i = 0; i < segments.size() - this.maxSegments; i++) {
+            try {
+                Files.delete(segments.get(i));
+                this.log.debug("deleted audit log segment {}", segments.get(i));
+            } catch (IOException e) {
+                this.log.warn("error deleting audit log segment {}: {}", segments.get(i), e.toString());
+            }
+        }
+    }
+
+    private void finishSegment() throws IOException {
+        if (this.buffer == null)
+            return;
+        final int length = this.buffer.position();
+        this.buffer.force();
+        this.buffer = null;
+        try {
+            this.channel.truncate(length);
+        } catch (IOException e) {
+            this.log.debug("can't truncate audit log segment (ignoring): {}", e.toString());    // e.g., Windows
+        } finally {
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+// Reading
+
+    /**
+     * Search recent records, newest segments first.
+     *
+     * <p>
+     * Any buffered records are written first. Segments are read backwards from their last record, so only as much
+     * data is read as is needed to find {@code maxRecords} matching records.
+     *
+     * @param maxRecords maximum number of records to return
+     * @param filter record filter, or null for all records
+     * @return the most recent matching records, each a line of JSON, in chronological order
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if {@code maxRecords} is negative
+     */
+    public List<String> search(int maxRecords, Predicate<? super String> filter) throws IOException {
+        if (maxRecords < 0)
+            throw new IllegalArgumentException("invalid maxRecords");
+        this.writeQueued();
+        final ArrayDeque<String> records = new ArrayDeque<>(Math.min(maxRecords, 1000));
+        final List<Path> segments = this.listSegments();
+        Collections.reverse(segments);
+        for (Path segment : segments) {
+            if (records.size() >= maxRecords)
+                break;
+            try (FileChannel segmentChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                this.searchSegment(segmentChannel, maxRecords, filter, records);
+            } catch (NoSuchFileException e) {
+                continue;                                                   // deleted by rotation
+            }
+        }
+        return new ArrayList<>(records);
+    }
+
+    // Add matching records to the front of "records", newest first, until it's full
+    private void searchSegment(FileChannel segmentChannel, int maxRecords, Predicate<? super String> filter,
+      ArrayDeque<String> records) throws IOException {
+        byte[] tail = new byte[0];                                          // start of the next record read so far
+        boolean sawEnd = false;                                             // found the end of the last complete record
+        long position = this.findEnd(segmentChannel);
+        while (position > 0 && records.size() < maxRecords) {
+
+            // Read the previous chunk and prepend it to what we have
+            final int chunkSize = (int)Math.min(position, READ_CHUNK_SIZE);
+            position -= chunkSize;
+            final byte[] data = Arrays.copyOf(this.read(segmentChannel, position, chunkSize), chunkSize + tail.length);
+            System.arraycopy(tail, 0, data, chunkSize, tail.length);
+
+            // Ignore any incomplete trailing record
+            int end = data.length;
+            if (!sawEnd) {
+                while (end > 0 && data[end - 1] != '\n')
+                    end--;
+                if (end == 0) {
+                    tail = new byte[0];
+                    continue;
+                }
+                sawEnd = true;
+            }
+
+            // Extract complete records, newest first; data[0..end) ends with a newline
+            int recordEnd = end - 1;
+            for (int i = recordEnd - 1; i >= -1 && records.size() < maxRecords; i--) {
+                if (i >= 0 && data[i] != '\n')
+                    continue;
+                if (i == -1 && position > 0)                                // record may start in the previous chunk
+                    break;
+                final String record = new String(data, i + 1, recordEnd - (i + 1), StandardCharsets.UTF_8);
+                if (filter == null || filter.test(record))
+                    records.addFirst(record);
+                recordEnd = i;
+            }
+            tail = Arrays.copyOf(data, recordEnd + 1);
+        }
+    }
+
+    // Find the length of the data in a segment, which is followed by zero bytes if the segment was not truncated
+    private long findEnd(FileChannel segmentChannel) throws IOException {
+        final long size = segmentChannel.size();
+        if (size == 0 || this.read(segmentChannel, size - 1, 1)[0] != 0)
+            return size;
+        long lo = -1;                                                       // known non-zero, or start of file
+        long hi = size - 1;                                                 // known zero
+        while (hi - lo > 1) {
+            final long mid = (lo + hi) >>> 1;
+            if (this.read(segmentChannel, mid, 1)[0] == 0)
+                hi = mid;
+            else
+                lo = mid;
+        }
+        return hi;
+    }
+
+    private byte[] read(FileChannel segmentChannel, long position, int length) throws IOException {
+        final ByteBuffer data = ByteBuffer.allocate(length);
+        while (data.hasRemaining()) {
+            if (segmentChannel.read(data, position + data.position()) == -1)
+                throw new IOException("unexpected end of file");
+        }
+        return data.array();
+    }
+
+    // Returns segment files in chronological order
+    private List<Path> listSegments() throws IOException {
+        if (!Files.isDirectory(this.directory))
+            return new ArrayList<>();
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files
+              .filter(path -> {
+                final String name = path.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+              })
+              .sorted()
+              .collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "[directory=" + this.directory + "]";
+    }
+
+// OverflowPolicy
+
+    /**
+     * What an {@link AuditLog} does with a record when its buffer is full.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Drop the record and {@linkplain AuditLog#getNumLost count} it as lost.
+         */
+        DROP,
+
+        /**
+         * Write the record directly in the thread delivering the event, after any buffered records.
+         *
+         * <p>
+         * No record is lost, but the {@link EventDispatcher} thread is delayed, which may cause the dispatcher to
+         * drop events for all listeners if it falls far enough behind.
+         */
+        SPILL;
+    }
+}
@@ -5,6 +5,7 @@
 
 package org.dellroad.jct.core.simple;
 
+import java.time.Duration;
 import java.util.ServiceLoader;
 import java.util.SortedMap;
 import java.util.stream.Stream;
@@ -22,6 +23,19 @@ public interface CommandBundle extends SortedMap<String, SimpleCommand> {
      */
     String getDescription();
 
+    /**
+     * Get the default execution timeout for commands in this bundle.
+     *
+     * <p>
+     * The implementation in {@link CommandBundle} returns null.
+     *
+     * @return default timeout, or null for none
+     * @see SimpleCommandSupport#getTimeout
+     */
+    default Duration getDefaultTimeout() {
+        return null;
+    }
+
     /**
      * Scan the classpath for {@link CommandBundle} implementations, instantiate, and return them.
      *
@@ -0,0 +1,328 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.util.ConsoleUtil;
+import org.dellroad.jct.core.util.CrNlPrintStream;
+import org.dellroad.jct.core.util.RedirectedSession;
+
+/**
+ * A bounded LRU cache of command results, used to serve repeated invocations of idempotent commands.
+ *
+ * <p>
+ * A command opts in to caching by returning a positive {@linkplain SimpleCommand#getCacheTimeToLive time to live}.
+ * Invocations are identified by command name and parameters, plus the session state that affects how output is
+ * rendered: the session's {@linkplain OutputFormat#of output format}, and the character encoding of its output
+ * and error streams and whether they end lines with CR-NL. The first invocation executes the command with empty
+ * input, capturing its output, error output, and exit value; subsequent identical invocations within the time to live
+ * replay the captured result instead of executing the command again.
+ *
+ * <p>
+ * Concurrent identical invocations are coalesced: while the command is executing, other threads making the same
+ * invocation wait for it to finish and then replay its result. If the executing thread is interrupted or the command
+ * throws an exception, nothing is cached and any waiting threads retry on their own. Results from commands that
+ * {@linkplain CommandTimeout timed out} are passed to waiting threads but are not cached.
+ *
+ * <p>
+ * When the cache is full, the least recently used completed result is evicted. Invocations still in progress
+ * are never evicted, so the cache may briefly exceed its maximum size if that many are executing at once.
+ */
+public class CommandCache {
+
+    /**
+     * Default maximum number of cached results.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, Entry> entries;      // guarded by this
+
+    /**
+     * Default constructor.
+     *
+     * <p>
+     * Caches up to {@link #DEFAULT_MAX_ENTRIES} results.
+     */
+    public CommandCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries maximum number of cached results
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    @SuppressWarnings("serial")
+    public CommandCache(int maxEntries) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("invalid maxEntries");
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (this.size() <= CommandCache.this.maxEntries)
+                    return false;
+                for (Iterator<Entry> i = this.values().iterator(); i.hasNext(); ) {
+                    if (i.next().getFuture().isDone()) {
+                        i.remove();
+                        break;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the maximum number of cached results.
+     *
+     * @return maximum cache size
+     */
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * Get the number of results currently cached, including any still being computed.
+     *
+     * @return current cache size
+     */
+    public synchronized int getNumEntries() {
+        return this.entries.size();
+    }
+
+    /**
+     * Discard all cached results.
+     *
+     * <p>
+     * Invocations in progress are not affected, except that their results will not be cached.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Execute the given command, or replay a cached result from an identical previous invocation.
+     *
+     * @param session current session
+     * @param command the command to execute
+     * @param timeToLive how long a new result remains valid
+     * @param executor executes {@code command} (in the current thread) when there is no cached result
+     * @return the command's exit value
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public int execute(ConsoleSession<?, ?> session, SimpleCommandSupport.FoundCommand command,
+      Duration timeToLive, CommandExecutor executor) throws InterruptedException {
+
+        // Validation
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        if (command == null)
+            throw new IllegalArgumentException("null command");
+        if (timeToLive == null)
+            throw new IllegalArgumentException("null timeToLive");
+        if (executor == null)
+            throw new IllegalArgumentException("null executor");
+
+        // Find a cached or pending result, or else register ourselves as the one computing it
+        final Key key = new Key(session, command);
+        while (true) {
+            final Entry entry;
+            final boolean leader;
+            synchronized (this) {
+                final Entry existing = this.entries.get(key);
+                if (existing != null && !existing.isExpired()) {
+                    entry = existing;
+                    leader = false;
+                } else {
+                    entry = new Entry();
+                    this.entries.put(key, entry);
+                    leader = true;
+                }
+            }
+
+            // Execute the command ourselves, or wait for whoever is
+            final Result result;
+            if (leader)
+                result = this.compute(session, command, timeToLive, executor, key, entry);
+            else {
+                try {
+                    result = entry.getFuture().get();
+                } catch (ExecutionException e) {
+                    continue;                                   // leader failed, so try again
+                }
+            }
+
+            // Replay result
+            result.replay(session);
+            return result.getExitValue();
+        }
+    }
+
+    private Result compute(ConsoleSession<?, ?> session, SimpleCommandSupport.FoundCommand command,
+      Duration timeToLive, CommandExecutor executor, Key key, Entry entry) throws InterruptedException {
+
+        // Set up capture
+        final ByteArrayOutputStream outBuf = new ByteArrayOutputStream();
+        final ByteArrayOutputStream errBuf = new ByteArrayOutputStream();
+        final PrintStream out = ConsoleUtil.printStreamLike(outBuf, session.getOutputStream());
+        final PrintStream err = ConsoleUtil.printStreamLike(errBuf, session.getErrorStream());
+        final ConsoleSession<?, ?> captureSession = RedirectedSession.of(session, InputStream.nullInputStream(), out, err);
+
+        // Execute command
+        boolean success = false;
+        try {
+            final int exitValue = executor.execute(captureSession, command);
+            out.flush();
+            err.flush();
+            final Result result = new Result(outBuf.toByteArray(), errBuf.toByteArray(), exitValue);
+            entry.setExpiration(System.nanoTime() + timeToLive.toNanos());
+            if (exitValue == CommandTimeout.EXIT_TIMEOUT) {
+                synchronized (this) {
+                    this.entries.remove(key, entry);
+                }
+            }
+            entry.getFuture().complete(result);
+            success = true;
+            return result;
+        } finally {
+            if (!success) {
+                synchronized (this) {
+                    this.entries.remove(key, entry);
+                }
+                entry.getFuture().completeExceptionally(new RuntimeException("command execution failed"));
+            }
+        }
+    }
+
+// CommandExecutor
+
+    /**
+     * Callback interface used by {@link CommandCache} to actually execute a command.
+     */
+    @FunctionalInterface
+    public interface CommandExecutor {
+
+        /**
+         * Execute the given command in the current thread.
+         *
+         * @param session session with captured output
+         * @param command the command to execute
+         * @return the command's exit value
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        int execute(ConsoleSession<?, ?> session, SimpleCommandSupport.FoundCommand command) throws InterruptedException;
+    }
+
+// Key
+
+    private static final class Key {
+
+        private final String name;
+        private final List<String> parameters;
+        private final String format;
+        private final boolean crnlOut;
+        private final boolean crnlErr;
+        private final Charset outCharset;
+        private final Charset errCharset;
+
+        Key(ConsoleSession<?, ?> session, SimpleCommandSupport.FoundCommand command) {
+            final Map<String, String> env = session.getRequest().getEnvironment();
+            this.name = command.getName();
+            this.parameters = new ArrayList<>(command.getParameters());
+            this.format = env != null ? env.get(OutputFormat.ENVIRONMENT_VARIABLE) : null;
+            this.crnlOut = session.getOutputStream() instanceof CrNlPrintStream;
+            this.crnlErr = session.getErrorStream() instanceof CrNlPrintStream;
+            this.outCharset = ConsoleUtil.charsetOf(session.getOutputStream());
+            this.errCharset = ConsoleUtil.charsetOf(session.getErrorStream());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this)
+                return true;
+            if (obj == null || obj.getClass() != this.getClass())
+                return false;
+            final Key that = (Key)obj;
+            return this.name.equals(that.name)
+              && this.parameters.equals(that.parameters)
+              && Objects.equals(this.format, that.format)
+              && this.crnlOut == that.crnlOut
+              && this.crnlErr == that.crnlErr
+              && this.outCharset.equals(that.outCharset)
+              && this.errCharset.equals(that.errCharset);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.name, this.parameters, this.format,
+              this.crnlOut, this.crnlErr, this.outCharset, this.errCharset);
+        }
+    }
+
+// Entry
+
+    private static final class Entry {
+
+        private final CompletableFuture<Result> future = new CompletableFuture<>();
+        private volatile long expiration;
+
+        CompletableFuture<Result> getFuture() {
+            return this.future;
+        }
+
+        void setExpiration(long expiration) {
+            this.expiration = expiration;
+        }
+
+        boolean isExpired() {
+            return this.future.isDone() && !this.future.isCompletedExceptionally() && System.nanoTime() - this.expiration >= 0;
+        }
+    }
+
+// Result
+
+    private static final class Result {
+
+        private final byte[] output;
+        private final byte[] errorOutput;
+        private final int exitValue;
+
+        Result(byte[] output, byte[] errorOutput, int exitValue) {
+            this.output = output;
+            this.errorOutput = errorOutput;
+            this.exitValue = exitValue;
+        }
+
+        int getExitValue() {
+            return this.exitValue;
+        }
+
+        void replay(ConsoleSession<?, ?> session) {
+            session.getOutputStream().write(this.output, 0, this.output.length);
+            session.getOutputStream().flush();
+            session.getErrorStream().write(this.errorOutput, 0, this.errorOutput.length);
+            session.getErrorStream().flush();
+        }
+    }
+}
@@ -5,7 +5,10 @@
 
 package org.dellroad.jct.core.simple;
 
+import java.util.AbstractList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Parses a command line string into a command name and parameters.
@@ -34,6 +37,97 @@ public interface CommandLineParser {
      */
     List<String> parseCommandLine(String line) throws SyntaxException;
 
+    /**
+     * Determine whether the word at the given index in a parsed command line is the given operator, e.g.,
+     * {@link Pipeline#PIPE}.
+     *
+     * <p>
+     * If {@code commandLine} is a {@link Words} instance, a word that was {@linkplain Words#isQuoted quoted}
+     * is never an operator; for example, {@code "|"} is a normal parameter. Otherwise, all words are assumed unquoted.
+     *
+     * @param commandLine parsed command line
+     * @param index word index
+     * @param operator operator
+     * @return true if the word is the unquoted operator
+     * @throws IllegalArgumentException if {@code commandLine} or {@code operator} is null
+     * @throws IndexOutOfBoundsException if {@code index} is out of bounds
+     */
+    static boolean isOperator(List<String> commandLine, int index, String operator) {
+        if (commandLine == null)
+            throw new IllegalArgumentException("null commandLine");
+        if (operator == null)
+            throw new IllegalArgumentException("null operator");
+        if (!commandLine.get(index).equals(operator))
+            return false;
+        return !(commandLine instanceof Words) || !((Words)commandLine).isQuoted(index);
+    }
+
+// Words
+
+    /**
+     * A parsed command line that also records which words contained quotes or escapes.
+     *
+     * <p>
+     * Parsers should return instances of this class so that quoted words are not mistaken for operators.
+     *
+     * @see CommandLineParser#isOperator
+     */
+    class Words extends AbstractList<String> implements RandomAccess {
+
+        private final List<String> words;
+        private final BitSet quoted;
+
+        /**
+         * Constructor.
+         *
+         * @param words the words
+         * @param quoted the indexes of the words that contained quotes or escapes
+         * @throws IllegalArgumentException if either parameter is null
+         */
+        public Words(List<String> words, BitSet quoted) {
+            if (words == null)
+                throw new IllegalArgumentException("null words");
+            if (quoted == null)
+                throw new IllegalArgumentException("null quoted");
+            this.words = words;
+            this.quoted = quoted;
+        }
+
+        /**
+         * Determine whether the word at the given index contained any quotes or escapes.
+         *
+         * @param index word index
+         * @return true if the word was quoted
+         * @throws IndexOutOfBoundsException if {@code index} is out of bounds
+         */
+        public boolean isQuoted(int index) {
+            if (index < 0 || index >= this.words.size())
+                throw new IndexOutOfBoundsException("index " + index);
+            return this.quoted.get(index);
+        }
+
+        @Override
+        public String get(int index) {
+            return this.words.get(index);
+        }
+
+        @Override
+        public int size() {
+            return this.words.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>
+         * The returned list is also a {@link Words} instance.
+         */
+        @Override
+        public Words subList(int fromIndex, int toIndex) {
+            return new Words(this.words.subList(fromIndex, toIndex), this.quoted.get(fromIndex, toIndex));
+        }
+    }
+
 // SyntaxException
 
     /**
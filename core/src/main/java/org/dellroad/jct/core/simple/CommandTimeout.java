@@ -0,0 +1,227 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.dellroad.jct.core.CancellationToken;
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.util.ConsoleUtil;
+import org.dellroad.jct.core.util.RedirectedSession;
+import org.dellroad.jct.core.util.StreamGuard;
+
+/**
+ * Executes commands in the current thread, subject to a time limit.
+ *
+ * <p>
+ * When the time limit expires, the command's {@link CancellationToken} is cancelled and the thread executing the
+ * command is interrupted. If the command is still running after a further grace period, it is considered unresponsive
+ * and escalation begins: a warning is printed, the command's input starts returning end-of-file, its output starts
+ * throwing {@link InterruptedIOException}, and the thread is interrupted again. The interrupt is repeated after every
+ * subsequent grace period until the command returns.
+ *
+ * <p>
+ * Note that the executing thread is interrupted directly rather than via {@link ConsoleSession#interrupt}, because
+ * the command may be running in a thread other than the session's main thread (e.g., as part of a {@link Pipeline}).
+ *
+ * <p>
+ * Timers are scheduled on a shared {@link ScheduledExecutorService}, so no thread is dedicated to any one command.
+ * Timer tasks only update state and interrupt the command's thread; anything that might block, i.e., running
+ * {@link CancellationToken} callbacks and printing the warning, is handed off to a separate {@link Executor}.
+ * If a command times out, its exit value is {@link #EXIT_TIMEOUT} and an error message is printed.
+ */
+public class CommandTimeout {
+
+    /**
+     * The exit value of a command that timed out.
+     */
+    public static final int EXIT_TIMEOUT = 124;
+
+    private final Duration timeout;
+    private final Duration gracePeriod;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param timeout time limit
+     * @param gracePeriod how long to wait after an interrupt before escalating
+     * @param scheduler scheduler for timers
+     * @param executor executor for cancellation callbacks and warnings, which may block
+     * @throws IllegalArgumentException if any parameter is null
+     * @throws IllegalArgumentException if {@code timeout} or {@code gracePeriod} is not positive
+     */
+    public CommandTimeout(Duration timeout, Duration gracePeriod, ScheduledExecutorService scheduler, Executor executor) {
+        if (timeout == null)
+            throw new IllegalArgumentException("null timeout");
+        if (gracePeriod == null)
+            throw new IllegalArgumentException("null gracePeriod");
+        if (scheduler == null)
+            throw new IllegalArgumentException("null scheduler");
+        if (executor == null)
+            throw new IllegalArgumentException("null executor");
+        if (timeout.isNegative() || timeout.isZero())
+            throw new IllegalArgumentException("invalid timeout");
+        if (gracePeriod.isNegative() || gracePeriod.isZero())
+            throw new IllegalArgumentException("invalid gracePeriod");
+        this.timeout = timeout;
+        this.gracePeriod = gracePeriod;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    /**
+     * Get the time limit.
+     *
+     * @return time limit
+     */
+    public Duration getTimeout() {
+        return this.timeout;
+    }
+
+    /**
+     * Get the grace period.
+     *
+     * @return grace period
+     */
+    public Duration getGracePeriod() {
+        return this.gracePeriod;
+    }
+
+    /**
+     * Execute the given command in the current thread, subject to this instance's time limit.
+     *
+     * @param session current session
+     * @param command the command to execute
+     * @return the command's exit value, or {@link #EXIT_TIMEOUT} if the command timed out
+     * @throws InterruptedException if the current thread is interrupted (other than due to the time limit)
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public int execute(ConsoleSession<?, ?> session, SimpleCommandSupport.FoundCommand command) throws InterruptedException {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        if (command == null)
+            throw new IllegalArgumentException("null command");
+        return new Execution(session, command).execute();
+    }
+
+// Execution
+
+    private final class Execution {
+
+        private final Thread thread = Thread.currentThread();
+        private final ConsoleSession<?, ?> session;
+        private final SimpleCommandSupport.FoundCommand command;
+
+        private final StreamGuard guard = new StreamGuard("command timed out");
+        private final CancellationToken token = new CancellationToken();
+
+        private boolean abandoned;                      // guarded by this
+        private boolean finished;                       // guarded by this
+        private boolean timedOut;                       // guarded by this
+        private ScheduledFuture<?> timer;               // guarded by this
+
+        Execution(ConsoleSession<?, ?> session, SimpleCommandSupport.FoundCommand command) {
+            this.session = session;
+            this.command = command;
+        }
+
+        int execute() throws InterruptedException {
+
+            // Guard the session's I/O streams so we can disable them if necessary
+            final PrintStream out = this.session.getOutputStream();
+            final PrintStream err = this.session.getErrorStream();
+            final PrintStream guardedOut = ConsoleUtil.printStreamLike(this.guard.guard(out), out);
+            final PrintStream guardedErr = err == out ? guardedOut : ConsoleUtil.printStreamLike(this.guard.guard(err), err);
+            final ConsoleSession<?, ?> guardedSession = RedirectedSession.of(this.session,
+              this.guard.guard(this.session.getInputStream()), guardedOut, guardedErr, this.token);
+
+            // Execute command
+            this.schedule(CommandTimeout.this.timeout);
+            final boolean expired;
+            int exitValue = EXIT_TIMEOUT;
+            final CancellationToken.Registration registration = this.session.getCancellationToken().onCancel(this.token::cancel);
+            try {
+                exitValue = this.command.execute(guardedSession);
+            } catch (InterruptedException e) {
+                if (!this.isTimedOut())
+                    throw e;
+            } finally {
+                registration.close();
+                expired = this.finish();
+                guardedOut.flush();
+                guardedErr.flush();
+            }
+
+            // Handle timeout
+            if (expired) {
+                Thread.interrupted();                   // clear our own interrupt, if not already consumed
+                err.println(String.format("Error: command \"%s\" timed out after %s",
+                  this.command.getName(), ConsoleUtil.formatDuration(CommandTimeout.this.timeout)));
+                return EXIT_TIMEOUT;
+            }
+            return exitValue;
+        }
+
+        private synchronized void schedule(Duration delay) {
+            this.timer = CommandTimeout.this.scheduler.schedule(this::expire, delay.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        private synchronized boolean isTimedOut() {
+            return this.timedOut;
+        }
+
+        private synchronized boolean finish() {
+            this.finished = true;
+            if (this.timer != null)
+                this.timer.cancel(false);
+            return this.timedOut;
+        }
+
+        // This runs on the shared scheduler thread, so it must not block
+        private void expire() {
+            final boolean cancel;
+            final boolean warn;
+            synchronized (this) {
+                if (this.finished)
+                    return;
+                cancel = !this.timedOut;
+                warn = this.timedOut && !this.abandoned;
+                if (cancel)
+                    this.timedOut = true;
+                else if (warn) {
+                    this.abandoned = true;
+                    this.guard.disable();
+                }
+                this.thread.interrupt();
+                this.schedule(CommandTimeout.this.gracePeriod);
+            }
+            if (cancel)
+                this.handOff(this.token::cancel);
+            if (warn) {
+                this.handOff(() -> this.session.getErrorStream().println(String.format(
+                  "Warning: command \"%s\" did not respond to interrupt within %s; disabling its I/O",
+                  this.command.getName(), ConsoleUtil.formatDuration(CommandTimeout.this.gracePeriod))));
+            }
+        }
+
+        private void handOff(Runnable action) {
+            try {
+                CommandTimeout.this.executor.execute(action);
+            } catch (RejectedExecutionException e) {
+                // executor is shut down
+            }
+        }
+    }
+}
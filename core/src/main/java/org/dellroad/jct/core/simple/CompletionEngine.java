@@ -0,0 +1,236 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes {@linkplain SimpleCommand#complete command argument completions} without ever blocking the caller
+ * for longer than a fixed deadline.
+ *
+ * <p>
+ * Completers run in a separate thread. If a completer doesn't finish before the deadline, the caller gets no
+ * completions (or the previous, expired completions, if any), but the completer keeps running and its result
+ * is cached, so pressing TAB again a moment later shows it. Results are cached for a configurable time to live,
+ * and concurrent requests for the same completions share a single computation. Completers that throw exceptions
+ * produce no completions, and their failures are not cached.
+ *
+ * <p>
+ * Instances are thread safe.
+ */
+public class CompletionEngine {
+
+    /**
+     * Default deadline.
+     */
+    public static final Duration DEFAULT_DEADLINE = Duration.ofMillis(250);
+
+    /**
+     * Default time to live for cached completions.
+     */
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofSeconds(10);
+
+    /**
+     * Default maximum number of cached completion lists.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Executor executor;
+    private final Duration deadline;
+    private final Duration timeToLive;
+    private final int maxEntries;
+    private final LinkedHashMap<List<String>, Entry> entries;                   // guarded by this
+
+    /**
+     * Constructor using default settings.
+     *
+     * @param executor executor for completers; it should not queue tasks
+     * @throws IllegalArgumentException if {@code executor} is null
+     */
+    public CompletionEngine(Executor executor) {
+        this(executor, DEFAULT_DEADLINE, DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param executor executor for completers; it should not queue tasks
+     * @param deadline maximum time to wait for a completer
+     * @param timeToLive default time to live for cached completions; zero to disable caching
+     * @param maxEntries maximum number of cached completion lists
+     * @throws IllegalArgumentException if any parameter is null
+     * @throws IllegalArgumentException if {@code deadline} or {@code maxEntries} is not positive,
+     *  or {@code timeToLive} is negative
+     */
+    @SuppressWarnings("serial")
+    public CompletionEngine(Executor executor, Duration deadline, Duration timeToLive, int maxEntries) {
+        if (executor == null)
+            throw new IllegalArgumentException("null executor");
+        if (deadline == null)
+            throw new IllegalArgumentException("null deadline");
+        if (deadline.isNegative() || deadline.isZero())
+            throw new IllegalArgumentException("invalid deadline");
+        if (timeToLive == null)
+            throw new IllegalArgumentException("null timeToLive");
+        if (timeToLive.isNegative())
+            throw new IllegalArgumentException("invalid timeToLive");
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("invalid maxEntries");
+        this.executor = executor;
+        this.deadline = deadline;
+        this.timeToLive = timeToLive;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, Entry> eldest) {
+                return this.size() > CompletionEngine.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the maximum time to wait for a completer.
+     *
+     * @return deadline
+     */
+    public Duration getDeadline() {
+        return this.deadline;
+    }
+
+    /**
+     * Get the default time to live for cached completions.
+     *
+     * @return default time to live
+     * @see SimpleCommand#getCompletionTimeToLive
+     */
+    public Duration getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    /**
+     * Discard all cached completions.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * Get completions for the next argument of the given command.
+     *
+     * @param owner command owner
+     * @param command the command
+     * @param name the name under which the command is being invoked
+     * @param args the arguments preceding the one being completed
+     * @return candidate values for the next argument, possibly empty
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public List<String> complete(SimpleCommandSupport owner, SimpleCommand command, String name, List<String> args) {
+
+        // Validation
+        if (owner == null)
+            throw new IllegalArgumentException("null owner");
+        if (command == null)
+            throw new IllegalArgumentException("null command");
+        if (name == null)
+            throw new IllegalArgumentException("null name");
+        if (args == null)
+            throw new IllegalArgumentException("null args");
+
+        // Determine time to live
+        Duration ttl = command.getCompletionTimeToLive();
+        if (ttl == null)
+            ttl = this.timeToLive;
+        final boolean cacheable = !ttl.isNegative() && !ttl.isZero();
+
+        // Find a cached or pending result, or else start computing it
+        final ArrayList<String> key = new ArrayList<>(args.size() + 1);
+        key.add(name);
+        key.addAll(args);
+        final Entry entry;
+        synchronized (this) {
+            final Entry existing = cacheable ? this.entries.get(key) : null;
+            if (existing != null && !existing.isExpired())
+                entry = existing;
+            else {
+                entry = new Entry(existing != null ? existing.getValue() : null);
+                if (cacheable)
+                    this.entries.put(key, entry);
+                this.start(owner, command, name, List.copyOf(args), ttl, key, entry);
+            }
+        }
+
+        // Wait for it, but not too long
+        try {
+            return entry.future.get(this.deadline.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            this.log.debug("completer for \"{}\" exceeded {} deadline", name, this.deadline);
+        } catch (ExecutionException e) {
+            // already logged
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return entry.previous != null ? entry.previous : List.of();
+    }
+
+    private void start(SimpleCommandSupport owner, SimpleCommand command,
+      String name, List<String> args, Duration ttl, List<String> key, Entry entry) {
+        try {
+            this.executor.execute(() -> {
+                try {
+                    final List<String> result = command.complete(owner, name, args);
+                    entry.expiration = System.nanoTime() + ttl.toNanos();
+                    entry.future.complete(result != null ? List.copyOf(result) : List.of());
+                } catch (Throwable t) {
+                    this.log.debug("completer for \"{}\" failed", name, t);
+                    synchronized (this) {
+                        this.entries.remove(key, entry);
+                    }
+                    entry.future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.entries.remove(key, entry);
+            entry.future.completeExceptionally(e);
+        }
+    }
+
+// Entry
+
+    private static final class Entry {
+
+        final CompletableFuture<List<String>> future = new CompletableFuture<>();
+        final List<String> previous;
+        volatile long expiration;
+
+        Entry(List<String> previous) {
+            this.previous = previous;
+        }
+
+        boolean isExpired() {
+            return this.future.isDone() && System.nanoTime() - this.expiration >= 0;
+        }
+
+        // Returns the completed value, or else the previous value
+        List<String> getValue() {
+            return this.future.isDone() && !this.future.isCompletedExceptionally() ? this.future.join() : this.previous;
+        }
+    }
+}
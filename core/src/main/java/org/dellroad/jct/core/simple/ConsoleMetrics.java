@@ -0,0 +1,132 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.dellroad.jct.core.event.ConsoleEvent;
+import org.dellroad.jct.core.event.ConsoleListener;
+
+/**
+ * A {@link ConsoleListener} that counts sessions and commands and records command latencies, and reports them
+ * as a {@link MetricsSource}.
+ *
+ * <p>
+ * To use, {@linkplain SimpleCommandSupport#addListener register} an instance with a console; the {@code metrics}
+ * command will find it there. The following metrics are reported:
+ *
+ * <ul>
+ *  <li>{@code jct_sessions_opened_total} - Sessions opened
+ *  <li>{@code jct_sessions_closed_total} - Sessions closed
+ *  <li>{@code jct_sessions_active} - Sessions currently open
+ *  <li>{@code jct_commands_started_total{command}} - Commands started
+ *  <li>{@code jct_command_failures_total{command}} - Commands that returned non-zero or threw an exception
+ *  <li>{@code jct_command_duration_seconds{command}} - Histogram of command execution times
+ * </ul>
+ *
+ * <p>
+ * Because events are delivered asynchronously, reported values may lag slightly behind actual activity.
+ * All counters are lock-free.
+ */
+public class ConsoleMetrics implements ConsoleListener, MetricsSource {
+
+    // Upper bounds, in seconds, of the command duration histogram buckets
+    private static final double[] DURATION_BUCKETS = { 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 60 };
+
+    private final LongAdder sessionsOpened = new LongAdder();
+    private final LongAdder sessionsClosed = new LongAdder();
+    private final ConcurrentHashMap<String, CommandStats> commandStats = new ConcurrentHashMap<>();
+
+// ConsoleListener
+
+    @Override
+    public void onEvent(ConsoleEvent event) {
+        if (event instanceof ConsoleEvent.SessionOpened)
+            this.sessionsOpened.increment();
+        else if (event instanceof ConsoleEvent.SessionClosed)
+            this.sessionsClosed.increment();
+        else if (event instanceof ConsoleEvent.CommandStarted) {
+            final String name = ((ConsoleEvent.CommandStarted)event).getName();
+            this.commandStats.computeIfAbsent(name, n -> new CommandStats()).started.increment();
+        } else if (event instanceof ConsoleEvent.CommandFinished) {
+            final ConsoleEvent.CommandFinished finished = (ConsoleEvent.CommandFinished)event;
+            final CommandStats stats = this.commandStats.computeIfAbsent(finished.getName(), n -> new CommandStats());
+            final Integer exitValue = finished.getExitValue();
+            if (exitValue == null || exitValue != 0)
+                stats.failures.increment();
+            stats.record(finished.getDuration().toNanos() / 1e9);
+        }
+    }
+
+// MetricsSource
+
+    @Override
+    public void writeMetrics(PrometheusWriter writer) {
+        if (writer == null)
+            throw new IllegalArgumentException("null writer");
+
+        // Sessions
+        final long opened = this.sessionsOpened.sum();
+        final long closed = this.sessionsClosed.sum();
+        writer.family("jct_sessions_opened_total", PrometheusWriter.Type.COUNTER, "Console sessions opened.")
+          .sample("jct_sessions_opened_total").value(opened);
+        writer.family("jct_sessions_closed_total", PrometheusWriter.Type.COUNTER, "Console sessions closed.")
+          .sample("jct_sessions_closed_total").value(closed);
+        writer.family("jct_sessions_active", PrometheusWriter.Type.GAUGE, "Console sessions currently open.")
+          .sample("jct_sessions_active").value(Math.max(opened - closed, 0));
+
+        // Commands, sorted by name for stable output
+        final Map<String, CommandStats> commands = new TreeMap<>(this.commandStats);
+        writer.family("jct_commands_started_total", PrometheusWriter.Type.COUNTER, "Commands started.");
+        commands.forEach((name, stats) ->
+          writer.sample("jct_commands_started_total").label("command", name).value(stats.started.sum()));
+        writer.family("jct_command_failures_total", PrometheusWriter.Type.COUNTER,
+          "Commands that returned a non-zero exit value or threw an exception.");
+        commands.forEach((name, stats) ->
+          writer.sample("jct_command_failures_total").label("command", name).value(stats.failures.sum()));
+        writer.family("jct_command_duration_seconds", PrometheusWriter.Type.HISTOGRAM, "Command execution time.");
+        commands.forEach((name, stats) -> {
+            long count = 0;
+            for (int i = 0; i < DURATION_BUCKETS.length; i++) {
+                count += stats.buckets[i].sum();
+                writer.sample("jct_command_duration_seconds_bucket").label("command", name)
+                  .label("le", DURATION_BUCKETS[i]).value(count);
+            }
+            count += stats.buckets[DURATION_BUCKETS.length].sum();
+            writer.sample("jct_command_duration_seconds_bucket").label("command", name)
+              .label("le", Double.POSITIVE_INFINITY).value(count);
+            writer.sample("jct_command_duration_seconds_sum").label("command", name).value(stats.durationSum.sum());
+            writer.sample("jct_command_duration_seconds_count").label("command", name).value(count);
+        });
+    }
+
+// CommandStats
+
+    private static final class CommandStats {
+
+        final LongAdder started = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder[] buckets = new LongAdder[DURATION_BUCKETS.length + 1];
+        final DoubleAdder durationSum = new DoubleAdder();
+
+        CommandStats() {
+            for (int i = 0; i < this.buckets.length; i++)
+                this.buckets[i] = new LongAdder();
+        }
+
+        void record(double seconds) {
+            int i = 0;
+            while (i < DURATION_BUCKETS.length && seconds > DURATION_BUCKETS[i])
+                i++;
+            this.buckets[i].increment();
+            this.durationSum.add(seconds);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * An incrementally maintained trigram index of command lines supporting fast, ranked search.
+ *
+ * <p>
+ * Each distinct line is indexed under every three-character sequence it contains (ignoring case). A query consists of
+ * one or more whitespace-separated terms, and matches lines that contain every term, in any order. Candidate lines
+ * are found by intersecting the index entries for the terms' trigrams, so searching doesn't require scanning every
+ * line unless all of the terms are shorter than three characters.
+ *
+ * <p>
+ * Matches are ranked by a combination of recency and frequency: a line's score is {@code (1 + ln(count)) / (1 + age /}
+ * {@value #RECENCY_SCALE}{@code )}, where {@code count} is how many times the line has been added and {@code age}
+ * is how many lines have been added since it was last added.
+ *
+ * <p>
+ * An index may be limited to the {@linkplain #getMaxLines most recent additions}, e.g., to match the size of a command
+ * history. Older additions are then forgotten in the order they were added, and a line is removed from the index
+ * once none of its additions remain, so memory usage is bounded by the limit rather than by every line ever added.
+ *
+ * <p>
+ * Instances are thread safe.
+ */
+public class HistoryIndex {
+
+    /**
+     * The number of additions after which a line's recency weight is halved.
+     */
+    public static final int RECENCY_SCALE = 100;
+
+    private static final int TRIGRAM_LENGTH = 3;
+    private static final int MIN_COMPACT_SIZE = 64;
+
+    private final HashMap<String, Entry> entries = new HashMap<>();             // guarded by this
+    private final ArrayList<Entry> entryList = new ArrayList<>();               // guarded by this; null if removed
+    private final HashMap<Long, Postings> postings = new HashMap<>();           // guarded by this
+    private final ArrayDeque<Entry> additions = new ArrayDeque<>();             // guarded by this
+    private int maxLines;                                                       // guarded by this
+    private long sequence;                                                      // guarded by this
+
+    /**
+     * Constructor for an index of every line ever added.
+     */
+    public HistoryIndex() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxLines maximum number of most recent additions to keep
+     * @throws IllegalArgumentException if {@code maxLines} is negative
+     */
+    public HistoryIndex(int maxLines) {
+        this.setMaxLines(maxLines);
+    }
+
+    /**
+     * Get the maximum number of most recent additions kept in this index.
+     *
+     * @return maximum number of additions, or {@link Integer#MAX_VALUE} for no limit
+     */
+    public synchronized int getMaxLines() {
+        return this.maxLines;
+    }
+
+    /**
+     * Set the maximum number of most recent additions kept in this index.
+     *
+     * <p>
+     * If more additions are currently kept, the oldest are forgotten.
+     *
+     * @param maxLines maximum number of additions, or {@link Integer#MAX_VALUE} for no limit
+     * @throws IllegalArgumentException if {@code maxLines} is negative
+     */
+    public synchronized void setMaxLines(int maxLines) {
+        if (maxLines < 0)
+            throw new IllegalArgumentException("invalid maxLines");
+        this.maxLines = maxLines;
+        this.trim();
+    }
+
+    /**
+     * Add a line, or update its frequency and recency if it has already been added.
+     *
+     * @param line command line
+     * @throws IllegalArgumentException if {@code line} is null
+     */
+    public synchronized void add(String line) {
+        if (line == null)
+            throw new IllegalArgumentException("null line");
+        final long seq = ++this.sequence;
+        Entry entry = this.entries.get(line);
+        if (entry == null) {
+            entry = new Entry(line);
+            this.entries.put(line, entry);
+            this.addToIndex(entry);
+        }
+        entry.count++;
+        entry.lastUsed = seq;
+        this.additions.addLast(entry);
+        this.trim();
+    }
+
+    /**
+     * Remove all lines.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.entryList.clear();
+        this.postings.clear();
+        this.additions.clear();
+    }
+
+    /**
+     * Get the number of distinct lines in this index.
+     *
+     * @return number of distinct lines
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Search for lines containing all of the terms in the given query, ignoring case.
+     *
+     * @param query whitespace-separated search terms; if empty, all lines match
+     * @param limit maximum number of matches to return
+     * @return matches, highest score first
+     * @throws IllegalArgumentException if {@code query} is null or {@code limit} is negative
+     */
+    public synchronized List<Match> search(String query, int limit) {
+        if (query == null)
+            throw new IllegalArgumentException("null query");
+        if (limit < 0)
+            throw new IllegalArgumentException("invalid limit");
+        final String[] terms = Arrays.stream(query.trim().toLowerCase(Locale.ROOT).split("\\s+"))
+          .filter(term -> !term.isEmpty())
+          .toArray(String[]::new);
+
+        // Gather index entries for the trigrams in the terms, smallest first
+        final ArrayList<Postings> lists = new ArrayList<>();
+        for (String term : terms) {
+            for (int i = 0; i + TRIGRAM_LENGTH <= term.length(); i++) {
+                final Postings list = this.postings.get(HistoryIndex.trigram(term, i));
+                if (list == null)
+                    return new ArrayList<>();                                   // some trigram appears nowhere
+                lists.add(list);
+            }
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        // Find and rank candidates, keeping the best "limit" of them
+        final PriorityQueue<Match> best = new PriorityQueue<>(Comparator.comparingDouble(Match::getScore));
+        final int numCandidates = lists.isEmpty() ? this.entryList.size() : lists.get(0).size;
+    candidateLoop:
+        for (int i = 0; i < numCandidates && limit > 0; i++) {
+            final int id = lists.isEmpty() ? i : lists.get(0).ids[i];
+            for (int j = 1; j < lists.size(); j++) {
+                if (!lists.get(j).contains(id))
+                    continue candidateLoop;
+            }
+            final Entry entry = this.entryList.get(id);
+            if (entry == null)                                                  // removed
+                continue;
+            for (String term : terms) {
+                if (!entry.lowerCase.contains(term))
+                    continue candidateLoop;
+            }
+            final double score = (1 + Math.log(entry.count)) / (1 + (double)(this.sequence - entry.lastUsed) / RECENCY_SCALE);
+            if (best.size() < limit)
+                best.add(new Match(entry.line, entry.count, score));
+            else if (score > best.peek().getScore()) {
+                best.poll();
+                best.add(new Match(entry.line, entry.count, score));
+            }
+        }
+        return best.stream()
+          .sorted(Comparator.comparingDouble(Match::getScore).reversed())
+          .collect(Collectors.toList());
+    }
+
+    // Forget the oldest additions beyond the limit, removing lines that are no longer present
+    private void trim() {
+        while (this.additions.size() > this.maxLines) {
+            final Entry entry = this.additions.removeFirst();
+            if (--entry.count == 0)
+                this.remove(entry);
+        }
+    }
+
+    private void addToIndex(Entry entry) {
+        entry.id = this.entryList.size();
+        this.entryList.add(entry);
+        final String lower = entry.lowerCase;
+        for (int i = 0; i + TRIGRAM_LENGTH <= lower.length(); i++)
+            this.postings.computeIfAbsent(HistoryIndex.trigram(lower, i), t -> new Postings()).add(entry.id);
+    }
+
+    private void remove(Entry entry) {
+        this.entries.remove(entry.line);
+        this.entryList.set(entry.id, null);
+        final String lower = entry.lowerCase;
+        for (int i = 0; i + TRIGRAM_LENGTH <= lower.length(); i++) {
+            final Long trigram = HistoryIndex.trigram(lower, i);
+            final Postings list = this.postings.get(trigram);
+            if (list != null && list.remove(entry.id) && list.size == 0)
+                this.postings.remove(trigram);
+        }
+
+        // Renumber the remaining entries once most ID's are unused, so the entry list doesn't grow without bound
+        if (this.entryList.size() >= MIN_COMPACT_SIZE && this.entries.size() < this.entryList.size() / 2) {
+            final ArrayList<Entry> live = new ArrayList<>(this.entries.size());
+            for (Entry other : this.entryList) {
+                if (other != null)
+                    live.add(other);
+            }
+            this.entryList.clear();
+            this.postings.clear();
+            live.forEach(this::addToIndex);
+        }
+    }
+
+    private static long trigram(String s, int off) {
+        return ((long)s.charAt(off) << 32) | ((long)s.charAt(off + 1) << 16) | s.charAt(off + 2);
+    }
+
+// Match
+
+    /**
+     * A search result from a {@link HistoryIndex}.
+     */
+    public static class Match {
+
+        private final String line;
+        private final int count;
+        private final double score;
+
+        Match(String line, int count, double score) {
+            this.line = line;
+            this.count = count;
+            this.score = score;
+        }
+
+        /**
+         * Get the matching line.
+         *
+         * @return command line
+         */
+        public String getLine() {
+            return this.line;
+        }
+
+        /**
+         * Get the number of times the line was added.
+         *
+         * @return frequency
+         */
+        public int getCount() {
+            return this.count;
+        }
+
+        /**
+         * Get this match's ranking score.
+         *
+         * @return score; higher is better
+         */
+        public double getScore() {
+            return this.score;
+        }
+
+        @Override
+        public String toString() {
+            return this.getClass().getSimpleName()
+              + "[line=\"" + this.line + "\",count=" + this.count + ",score=" + this.score + "]";
+        }
+    }
+
+// Entry
+
+    private static final class Entry {
+
+        final String line;
+        final String lowerCase;
+        int id;
+        int count;
+        long lastUsed;
+
+        Entry(String line) {
+            this.line = line;
+            this.lowerCase = line.toLowerCase(Locale.ROOT);
+        }
+    }
+
+// Postings
+
+    // Sorted list of entry ID's containing a trigram
+    private static final class Postings {
+
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (this.size > 0 && this.ids[this.size - 1] == id)             // trigram appears more than once in line
+                return;
+            if (this.size == this.ids.length)
+                this.ids = Arrays.copyOf(this.ids, this.size * 2);
+            this.ids[this.size++] = id;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(this.ids, 0, this.size, id) >= 0;
+        }
+
+        boolean remove(int id) {
+            final int index = Arrays.binarySearch(this.ids, 0, this.size, id);
+            if (index < 0)
+                return false;
+            System.arraycopy(this.ids, index + 1, this.ids, index, --this.size - index);
+            return true;
+        }
+    }
+}
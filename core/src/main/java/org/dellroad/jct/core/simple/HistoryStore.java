@@ -0,0 +1,579 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jline.reader.History;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent command line history for many users, stored in a single append-only file.
+ *
+ * <p>
+ * Each line of the file is one history entry: the user name, a tab, and the command line (with backslash, tab,
+ * carriage return, and newline escaped). The file is scanned once, the first time any user's history is needed,
+ * to build an in-memory index of where each user's most recent entries are located. After that, loading a user's
+ * history only reads that user's entries.
+ *
+ * <p>
+ * New entries are queued and appended in batches by a single background writer thread, so sessions never wait
+ * for, or contend over, file I/O when adding history. When the file contains more than twice as many entries
+ * as are retained, the writer rewrites it to contain only the retained entries.
+ *
+ * <p>
+ * Use {@link #newHistory newHistory()} to obtain a JLine {@link History} for a particular user. That history
+ * is loaded lazily, on first access, rather than when the session starts.
+ *
+ * <p>
+ * Instances are thread safe. Instances should be {@link #close close()}'ed when no longer needed.
+ */
+public class HistoryStore implements Closeable {
+
+    /**
+     * Default maximum number of entries retained per user.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+
+    private static final int MIN_COMPACT_RECORDS = 1000;
+    private static final int LENGTH_BITS = 24;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Path file;
+    private final int maxEntries;
+    private final ExecutorService writer;
+    private final ConcurrentLinkedQueue<String[]> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    // Index of retained records: user -> packed (offset, length) pairs, oldest first
+    private final HashMap<String, ArrayDeque<Long>> index = new HashMap<>();        // guarded by this
+
+    private FileChannel channel;                                                    // guarded by this
+    private long fileLength;                                                        // guarded by this
+    private int numRecords;                                                         // guarded by this
+    private int numRetained;                                                        // guarded by this
+    private boolean closed;                                                         // guarded by this
+
+    /**
+     * Constructor using {@link #DEFAULT_MAX_ENTRIES}.
+     *
+     * @param file history file
+     * @throws IllegalArgumentException if {@code file} is null
+     */
+    public HistoryStore(Path file) {
+        this(file, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file history file
+     * @param maxEntries maximum number of entries retained per user
+     * @throws IllegalArgumentException if {@code file} is null
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    public HistoryStore(Path file, int maxEntries) {
+        if (file == null)
+            throw new IllegalArgumentException("null file");
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("invalid maxEntries");
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.writer = Executors.newSingleThreadExecutor(action -> {
+            final Thread thread = new Thread(action, "JCT-History");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the history file.
+     *
+     * @return history file
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Get the maximum number of entries retained per user.
+     *
+     * @return maximum entries per user
+     */
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    /**
+     * Create a JLine {@link History}, with an index for fast searching, backed by this instance for the given user.
+     *
+     * <p>
+     * The returned history loads the user's previous entries on first access, and
+     * {@linkplain #append appends} new entries to this instance as they are added.
+     *
+     * @param user user name
+     * @return new history
+     * @throws IllegalArgumentException if {@code user} is null
+     */
+    public IndexedHistory newHistory(String user) {
+        if (user == null)
+            throw new IllegalArgumentException("null user");
+        return new StoredHistory(user);
+    }
+
+    /**
+     * Load the given user's history.
+     *
+     * <p>
+     * The first invocation of this method scans the history file to build the index.
+     * Entries still queued for writing are not included.
+     *
+     * @param user user name
+     * @return the user's most recent history entries, oldest first
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if {@code user} is null
+     * @throws IllegalStateException if this instance is closed
+     */
+    public synchronized List<String> load(String user) throws IOException {
+        if (user == null)
+            throw new IllegalArgumentException("null user");
+        this.open();
+        final ArrayDeque<Long> records = this.index.get(user);
+        final ArrayList<String> lines = new ArrayList<>(records != null ? records.size() : 0);
+        if (records != null) {
+            for (long record : records) {
+                final ByteBuffer buf = ByteBuffer.allocate((int)(record & LENGTH_MASK));
+                final long offset = record >>> LENGTH_BITS;
+                while (buf.hasRemaining()) {
+                    if (this.channel.read(buf, offset + buf.position()) < 0)
+                        throw new IOException("unexpected end of file");
+                }
+                lines.add(this.decode(buf.array(), 0, buf.capacity())[1]);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Append an entry to the given user's history.
+     *
+     * <p>
+     * The entry is written asynchronously. Does nothing if this instance is closed.
+     *
+     * @param user user name
+     * @param line command line
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public void append(String user, String line) {
+        if (user == null)
+            throw new IllegalArgumentException("null user");
+        if (line == null)
+            throw new IllegalArgumentException("null line");
+        this.queue.add(new String[] { user, line });
+        if (!this.writing.compareAndSet(false, true))
+            return;
+        try {
+            this.writer.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            this.writing.set(false);                                        // we must be closed
+        }
+    }
+
+    /**
+     * Close this instance.
+     *
+     * <p>
+     * Any queued entries are written first. Does nothing if already closed.
+     */
+    @Override
+    public void close() {
+        this.writer.shutdown();
+        try {
+            if (!this.writer.awaitTermination(5, TimeUnit.SECONDS))
+                this.log.warn("timeout waiting for history writer to finish");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (this.closed)
+                return;
+            this.closed = true;
+            this.closeChannel();
+        }
+    }
+
+// Internal methods
+
+    private void drain() {
+        while (true) {
+            final ArrayList<String[]> entries = new ArrayList<>();
+            for (String[] entry; (entry = this.queue.poll()) != null; )
+                entries.add(entry);
+            if (!entries.isEmpty()) {
+                try {
+                    this.write(entries);
+                } catch (IOException | RuntimeException e) {
+                    this.log.error("error writing history to {}", this.file, e);
+                }
+            }
+            this.writing.set(false);
+
+            // Avoid race where an entry was queued after our last poll() but before we cleared the flag
+            if (this.queue.isEmpty() || !this.writing.compareAndSet(false, true))
+                return;
+        }
+    }
+
+    private synchronized void write(List<String[]> entries) throws IOException {
+        if (this.closed)
+            return;
+        this.open();
+
+        // Encode records
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final long[] lengths = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            final String[] entry = entries.get(i);
+            final byte[] record = this.encode(entry[0], entry[1]);
+            buf.write(record, 0, record.length);
+            lengths[i] = record.length;
+        }
+
+        // Append records
+        final ByteBuffer data = ByteBuffer.wrap(buf.toByteArray());
+        while (data.hasRemaining())
+            this.channel.write(data, this.fileLength + data.position());
+
+        // Update index
+        long offset = this.fileLength;
+        for (int i = 0; i < entries.size(); i++) {
+            this.addToIndex(entries.get(i)[0], offset, lengths[i]);
+            offset += lengths[i];
+        }
+        this.fileLength = offset;
+
+        // Compact if needed
+        if (this.numRecords >= MIN_COMPACT_RECORDS && this.numRecords > 2 * this.numRetained)
+            this.compact();
+    }
+
+    // Open file and build index, if not already done
+    private void open() throws IOException {
+        if (this.closed)
+            throw new IllegalStateException("closed");
+        if (this.channel != null)
+            return;
+        final Path dir = this.file.toAbsolutePath().getParent();
+        if (dir != null)
+            Files.createDirectories(dir);
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean success = false;
+        try {
+            this.buildIndex();
+            success = true;
+        } finally {
+            if (!success)
+                this.closeChannel();
+        }
+    }
+
+    private void buildIndex() throws IOException {
+        this.index.clear();
+        this.numRecords = 0;
+        this.numRetained = 0;
+        final ByteArrayOutputStream user = new ByteArrayOutputStream();
+        long offset = 0;
+        long recordStart = 0;
+        boolean inUser = true;
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(this.file))) {
+            for (int b; (b = input.read()) != -1; offset++) {
+                if (inUser) {
+                    if (b == '\t')
+                        inUser = false;
+                    else if (b == '\n') {            // no tab, so not a valid record; skip it
+                        user.reset();
+                        recordStart = offset + 1;
+                    } else
+                        user.write(b);
+                } else if (b == '\n') {
+                    final String name = this.unescape(user.toString(StandardCharsets.UTF_8));
+                    this.addToIndex(name, recordStart, offset + 1 - recordStart);
+                    user.reset();
+                    inUser = true;
+                    recordStart = offset + 1;
+                }
+            }
+        }
+
+        // Discard any partial record at the end, e.g., from a crash
+        if (recordStart < offset) {
+            this.log.warn("discarding incomplete record at the end of {}", this.file);
+            this.channel.truncate(recordStart);
+        }
+        this.fileLength = recordStart;
+    }
+
+    private void addToIndex(String user, long offset, long length) {
+        this.numRecords++;
+        if (length > LENGTH_MASK)                   // ridiculously long command line
+            return;
+        final ArrayDeque<Long> records = this.index.computeIfAbsent(user, u -> new ArrayDeque<>());
+        records.addLast((offset << LENGTH_BITS) | length);
+        this.numRetained++;
+        if (records.size() > this.maxEntries) {
+            records.removeFirst();
+            this.numRetained--;
+        }
+    }
+
+    // Rewrite the file so it only contains retained records
+    private void compact() throws IOException {
+        final Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        final HashMap<String, List<String>> histories = new HashMap<>();
+        for (String user : this.index.keySet())
+            histories.put(user, this.load(user));
+        boolean success = false;
+        try (FileChannel output = FileChannel.open(temp,
+          StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Map.Entry<String, List<String>> entry : histories.entrySet()) {
+                for (String line : entry.getValue()) {
+                    final ByteBuffer data = ByteBuffer.wrap(this.encode(entry.getKey(), line));
+                    while (data.hasRemaining())
+                        output.write(data);
+                }
+            }
+            output.force(false);
+            success = true;
+        } finally {
+            if (!success)
+                Files.deleteIfExists(temp);
+        }
+        final int before = this.numRecords;
+        this.closeChannel();
+        Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.open();
+        this.log.debug("compacted {} from {} to {} records", this.file, before, this.numRecords);
+    }
+
+    private void closeChannel() {
+        if (this.channel == null)
+            return;
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        this.channel = null;
+    }
+
+    private byte[] encode(String user, String line) {
+        final StringBuilder buf = new StringBuilder(user.length() + line.length() + 2);
+        this.escape(buf, user);
+        buf.append('\t');
+        this.escape(buf, line);
+        buf.append('\n');
+        return buf.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Split on the tab byte before decoding; UTF-8 byte offsets are not String offsets
+    private String[] decode(byte[] data, int off, int len) throws IOException {
+        int tab = off;
+        while (tab < off + len && data[tab] != '\t')
+            tab++;
+        if (tab >= off + len - 1 || data[off + len - 1] != '\n')
+            throw new IOException("malformed history record");
+        final String user = new String(data, off, tab - off, StandardCharsets.UTF_8);
+        final String line = new String(data, tab + 1, off + len - 1 - (tab + 1), StandardCharsets.UTF_8);
+        return new String[] { this.unescape(user), this.unescape(line) };
+    }
+
+    private void escape(StringBuilder buf, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            switch (ch) {
+            case '\\':
+                buf.append("\\\\");
+                break;
+            case '\t':
+                buf.append("\\t");
+                break;
+            case '\r':
+                buf.append("\\r");
+                break;
+            case '\n':
+                buf.append("\\n");
+                break;
+            default:
+                buf.append(ch);
+                break;
+            }
+        }
+    }
+
+    private String unescape(String s) {
+        if (s.indexOf('\\') == -1)
+            return s;
+        final StringBuilder buf = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '\\' && i + 1 < s.length()) {
+                switch ((ch = s.charAt(++i))) {
+                case 't':
+                    ch = '\t';
+                    break;
+                case 'r':
+                    ch = '\r';
+                    break;
+                case 'n':
+                    ch = '\n';
+                    break;
+                default:
+                    break;
+                }
+            }
+            buf.append(ch);
+        }
+        return buf.toString();
+    }
+
+// StoredHistory
+
+    /**
+     * An {@link IndexedHistory} that is loaded from, and appends to, a {@link HistoryStore}.
+     *
+     * <p>
+     * Entries are loaded on first access, e.g., when the user first recalls a previous line or enters a new one,
+     * rather than when the line reader is created.
+     */
+    private final class StoredHistory extends IndexedHistory {
+
+        private final String user;
+
+        private boolean loaded;
+
+        StoredHistory(String user) {
+            this.user = user;
+        }
+
+        @Override
+        public void load() {
+            // we load lazily instead
+        }
+
+        @Override
+        public void add(Instant time, String line) {
+            this.ensureLoaded();
+            final int previousLast = super.last();
+            super.add(time, line);
+            if (super.last() != previousLast)
+                HistoryStore.this.append(this.user, line);
+        }
+
+        @Override
+        public int size() {
+            this.ensureLoaded();
+            return super.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            this.ensureLoaded();
+            return super.isEmpty();
+        }
+
+        @Override
+        public int first() {
+            this.ensureLoaded();
+            return super.first();
+        }
+
+        @Override
+        public int last() {
+            this.ensureLoaded();
+            return super.last();
+        }
+
+        @Override
+        public String get(int index) {
+            this.ensureLoaded();
+            return super.get(index);
+        }
+
+        @Override
+        public ListIterator<History.Entry> iterator(int index) {
+            this.ensureLoaded();
+            return super.iterator(index);
+        }
+
+        @Override
+        public boolean previous() {
+            this.ensureLoaded();
+            return super.previous();
+        }
+
+        @Override
+        public boolean moveToFirst() {
+            this.ensureLoaded();
+            return super.moveToFirst();
+        }
+
+        @Override
+        public boolean moveToLast() {
+            this.ensureLoaded();
+            return super.moveToLast();
+        }
+
+        @Override
+        public boolean moveTo(int index) {
+            this.ensureLoaded();
+            return super.moveTo(index);
+        }
+
+        private void ensureLoaded() {
+            if (this.loaded)
+                return;
+            this.loaded = true;
+            final List<String> lines;
+            try {
+                lines = HistoryStore.this.load(this.user);
+            } catch (IOException | RuntimeException e) {
+                HistoryStore.this.log.warn("error loading history for user \"{}\" from {}: {}",
+                  this.user, HistoryStore.this.file, e.toString());
+                return;
+            }
+            final Instant now = Instant.now();
+            lines.forEach(line -> this.internalAdd(now, line));
+            this.moveToEnd();
+        }
+    }
+}
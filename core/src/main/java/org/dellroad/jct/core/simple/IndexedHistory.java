@@ -0,0 +1,199 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import org.jline.keymap.KeyMap;
+import org.jline.reader.Binding;
+import org.jline.reader.Buffer;
+import org.jline.reader.History;
+import org.jline.reader.LineReader;
+import org.jline.reader.Reference;
+import org.jline.reader.impl.ReaderUtils;
+import org.jline.reader.impl.history.DefaultHistory;
+
+/**
+ * A JLine history that maintains a {@link HistoryIndex} of its lines for fast, ranked searching.
+ *
+ * <p>
+ * The index is {@linkplain HistoryIndex#setMaxLines limited} to the reader's {@link LineReader#HISTORY_SIZE}, so lines
+ * trimmed from this history are also removed from the index.
+ *
+ * <p>
+ * Use {@link #bindSearchWidget bindSearchWidget()} to replace JLine's linear Control-R search with an indexed one.
+ */
+public class IndexedHistory extends DefaultHistory {
+
+    /**
+     * The name of the indexed search widget.
+     */
+    public static final String SEARCH_WIDGET = "jct-history-search";
+
+    /**
+     * Maximum number of matches the search widget cycles through.
+     */
+    public static final int MAX_WIDGET_MATCHES = 100;
+
+    private final HistoryIndex index = new HistoryIndex(DEFAULT_HISTORY_SIZE);
+
+    private LineReader reader;
+
+    /**
+     * Get the index of this history's lines.
+     *
+     * @return history index
+     */
+    public HistoryIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Search this history.
+     *
+     * @param query whitespace-separated search terms
+     * @param limit maximum number of matches
+     * @return matches, best first
+     * @see HistoryIndex#search
+     */
+    public List<HistoryIndex.Match> search(String query, int limit) {
+        return this.index.search(query, limit);
+    }
+
+    /**
+     * Bind Control-R in the given reader to an indexed search of this history.
+     *
+     * <p>
+     * Pressing Control-R searches for lines containing all of the words currently in the line buffer and replaces
+     * the buffer with the best match. Pressing Control-R again, without otherwise editing the line, cycles through
+     * the next best matches.
+     *
+     * @param reader line reader using this history
+     * @throws IllegalArgumentException if {@code reader} is null
+     */
+    public void bindSearchWidget(LineReader reader) {
+        if (reader == null)
+            throw new IllegalArgumentException("null reader");
+        reader.getWidgets().put(SEARCH_WIDGET, new SearchWidget(reader)::search);
+        for (String name : new String[] { LineReader.EMACS, LineReader.VIINS }) {
+            final KeyMap<Binding> keyMap = reader.getKeyMaps().get(name);
+            if (keyMap != null)
+                keyMap.bind(new Reference(SEARCH_WIDGET), KeyMap.ctrl('R'));
+        }
+    }
+
+// DefaultHistory
+
+    @Override
+    public void attach(LineReader reader) {
+        this.reader = reader;
+        super.attach(reader);
+    }
+
+    @Override
+    public void load() throws IOException {
+        try {
+            super.load();
+        } finally {
+            this.reindex();
+        }
+    }
+
+    @Override
+    public void read(Path file, boolean checkDuplicates) throws IOException {
+        try {
+            super.read(file, checkDuplicates);
+        } finally {
+            this.reindex();
+        }
+    }
+
+    @Override
+    public void purge() throws IOException {
+        try {
+            super.purge();
+        } finally {
+            this.reindex();
+        }
+    }
+
+    @Override
+    protected void trimHistory(Path path, int max) throws IOException {
+        try {
+            super.trimHistory(path, max);
+        } finally {
+            this.reindex();
+        }
+    }
+
+    @Override
+    protected void internalAdd(Instant time, String line, boolean checkDuplicates) {
+        final int previousLast = super.last();
+        super.internalAdd(time, line, checkDuplicates);
+        if (super.last() == previousLast)                                   // ignored as a duplicate
+            return;
+        this.index.setMaxLines(this.getHistorySize());
+        this.index.add(line);
+    }
+
+// Internal Methods
+
+    // Same limit as DefaultHistory uses when trimming
+    private int getHistorySize() {
+        return Math.max(ReaderUtils.getInt(this.reader, LineReader.HISTORY_SIZE, DEFAULT_HISTORY_SIZE), 0);
+    }
+
+    // Rebuild the index after DefaultHistory has replaced its lines wholesale
+    private void reindex() {
+        this.index.clear();
+        this.index.setMaxLines(this.getHistorySize());
+        for (History.Entry entry : this)
+            this.index.add(entry.line());
+    }
+
+// SearchWidget
+
+    private final class SearchWidget {
+
+        private final LineReader reader;
+
+        private List<HistoryIndex.Match> matches;
+        private int position;
+        private String shown;
+
+        SearchWidget(LineReader reader) {
+            this.reader = reader;
+        }
+
+        boolean search() {
+            final Buffer buffer = this.reader.getBuffer();
+            final String current = buffer.toString();
+
+            // Start a new search, or continue the previous one?
+            if (this.matches == null || !current.equals(this.shown)) {
+                this.matches = IndexedHistory.this.search(current, MAX_WIDGET_MATCHES);
+                this.position = 0;
+            } else if (++this.position >= this.matches.size()) {
+                this.position = 0;
+                this.reader.callWidget(LineReader.BEEP);                    // wrapped around
+            }
+            if (this.matches.isEmpty()) {
+                this.matches = null;
+                this.reader.callWidget(LineReader.BEEP);
+                return true;
+            }
+
+            // Show the match
+            this.shown = this.matches.get(this.position).getLine();
+            buffer.clear();
+            buffer.write(this.shown);
+            return true;
+        }
+    }
+}
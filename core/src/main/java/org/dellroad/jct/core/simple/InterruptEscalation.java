@@ -0,0 +1,218 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.dellroad.jct.core.CancellationToken;
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.util.ConsoleUtil;
+import org.dellroad.jct.core.util.RedirectedSession;
+import org.dellroad.jct.core.util.StreamGuard;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Executes work on behalf of a session such that repeated interrupts escalate.
+ *
+ * <p>
+ * The work runs in a separate thread while the current thread waits for it. Each time the waiting thread is interrupted
+ * (e.g., via {@link ConsoleSession#interrupt} when the user presses Control-C), the response escalates:
+ * <ol>
+ *  <li>The work's {@link CancellationToken} is cancelled and its thread is interrupted.</li>
+ *  <li>The work's streams are closed: its input starts returning end-of-file and its output starts throwing
+ *      {@link java.io.InterruptedIOException}. Its thread is interrupted again.</li>
+ *  <li>The work's thread is abandoned: this thread stops waiting and {@link #execute execute()} throws
+ *      {@link InterruptedException}, leaving the other thread to finish on its own (with its streams closed).</li>
+ * </ol>
+ *
+ * <p>
+ * Because the work runs in a different thread, this class copies the current thread's context class loader
+ * and SLF4J {@link MDC} context into the work's thread for the duration of the work, and the executor passed
+ * to the constructor is responsible for anything else; for example, the {@linkplain SimpleCommandSupport#getExecutor
+ * executor} from {@link SimpleCommandSupport} carries over the current trace span. Other {@link ThreadLocal}s,
+ * including {@link InheritableThreadLocal}s, are <i>not</i> carried over; work that depends on them should set
+ * them up itself.
+ *
+ * <p>
+ * The escalation steps, and how long the work took to stop after the first interrupt, are logged.
+ */
+public class InterruptEscalation {
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Executor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param executor executor for the work; it must not queue tasks
+     * @throws IllegalArgumentException if {@code executor} is null
+     */
+    public InterruptEscalation(Executor executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("null executor");
+        this.executor = executor;
+    }
+
+    /**
+     * Execute the given work and wait for it to complete, escalating if interrupted.
+     *
+     * <p>
+     * The work is given a session like {@code session}, but with guarded I/O streams and its own {@link CancellationToken}.
+     * That token is also cancelled if {@code session}'s token is cancelled.
+     *
+     * @param session current session
+     * @param work the work to execute
+     * @return the work's exit value
+     * @throws InterruptedException if the work throws {@link InterruptedException}, or is abandoned
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public int execute(ConsoleSession<?, ?> session, Work work) throws InterruptedException {
+
+        // Validation
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        if (work == null)
+            throw new IllegalArgumentException("null work");
+
+        // Set up guarded session
+        final StreamGuard guard = new StreamGuard("streams closed after repeated interrupts");
+        final CancellationToken token = new CancellationToken();
+        final PrintStream out = session.getOutputStream();
+        final PrintStream err = session.getErrorStream();
+        final PrintStream guardedOut = ConsoleUtil.printStreamLike(guard.guard(out), out);
+        final PrintStream guardedErr = err == out ? guardedOut : ConsoleUtil.printStreamLike(guard.guard(err), err);
+        final ConsoleSession<?, ?> guardedSession = RedirectedSession.of(session,
+          guard.guard(session.getInputStream()), guardedOut, guardedErr, token);
+
+        // Capture this thread's context
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        final Map<String, String> mdc = MDC.getCopyOfContextMap();
+
+        // Start work
+        final Thread[] workThread = new Thread[1];
+        final FutureTask<Integer> task = new FutureTask<>(() -> {
+            final Thread thread = Thread.currentThread();
+            final ClassLoader previousLoader = thread.getContextClassLoader();
+            final Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            synchronized (workThread) {
+                workThread[0] = thread;
+            }
+            thread.setContextClassLoader(loader);
+            InterruptEscalation.setMDC(mdc);
+            try {
+                return work.execute(guardedSession);
+            } finally {
+                synchronized (workThread) {
+                    workThread[0] = null;
+                }
+                Thread.interrupted();                   // don't leave a stray interrupt behind in the executor's thread
+                thread.setContextClassLoader(previousLoader);
+                InterruptEscalation.setMDC(previousMdc);
+                guardedOut.flush();
+                guardedErr.flush();
+            }
+        });
+
+        // Wait for work to complete, escalating on each interrupt
+        final CancellationToken.Registration registration = session.getCancellationToken().onCancel(token::cancel);
+        try {
+            this.executor.execute(task);
+            long firstInterruptTime = 0;
+            int interrupts = 0;
+            while (true) {
+                try {
+                    final int exitValue = task.get();
+                    this.logStopped(interrupts, firstInterruptTime);
+                    return exitValue;
+                } catch (ExecutionException e) {
+                    this.logStopped(interrupts, firstInterruptTime);
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof InterruptedException)
+                        throw (InterruptedException)cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    throw new RuntimeException(cause);
+                } catch (InterruptedException e) {
+                    final long now = System.nanoTime();
+                    if (interrupts++ == 0)
+                        firstInterruptTime = now;
+                    final Duration elapsed = Duration.ofNanos(now - firstInterruptTime);
+                    switch (interrupts) {
+                    case 1:
+                        this.log.debug("interrupt #1: cancelling and interrupting {}", this.describe(workThread));
+                        token.cancel();
+                        break;
+                    case 2:
+                        this.log.info("interrupt #2 after {}: closing streams of {}",
+                          ConsoleUtil.formatDuration(elapsed), this.describe(workThread));
+                        guard.disable();
+                        err.println("Warning: still running; closing its input and output (interrupt again to abandon it)");
+                        break;
+                    default:
+                        this.log.warn("interrupt #{} after {}: abandoning {}",
+                          interrupts, ConsoleUtil.formatDuration(elapsed), this.describe(workThread));
+                        err.println(String.format("Warning: abandoning %s", this.describe(workThread)));
+                        throw e;
+                    }
+                    synchronized (workThread) {
+                        if (workThread[0] != null)
+                            workThread[0].interrupt();
+                    }
+                }
+            }
+        } finally {
+            registration.close();
+        }
+    }
+
+    private static void setMDC(Map<String, String> context) {
+        if (context != null)
+            MDC.setContextMap(context);
+        else
+            MDC.clear();
+    }
+
+    private void logStopped(int interrupts, long firstInterruptTime) {
+        if (interrupts > 0 && this.log.isInfoEnabled()) {
+            this.log.info("stopped {} after first interrupt ({} interrupt(s))",
+              ConsoleUtil.formatDuration(Duration.ofNanos(System.nanoTime() - firstInterruptTime)), interrupts);
+        }
+    }
+
+    private String describe(Thread[] workThread) {
+        synchronized (workThread) {
+            return workThread[0] != null ? String.format("thread \"%s\"", workThread[0].getName()) : "thread (not running)";
+        }
+    }
+
+// Work
+
+    /**
+     * Some work to be executed by {@link InterruptEscalation}.
+     */
+    @FunctionalInterface
+    public interface Work {
+
+        /**
+         * Execute this work in the current thread.
+         *
+         * @param session session to use for I/O
+         * @return exit value
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        int execute(ConsoleSession<?, ?> session) throws InterruptedException;
+    }
+}
@@ -0,0 +1,468 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.Executor;
+
+import org.dellroad.jct.core.CancellationToken;
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.util.ConsoleUtil;
+import org.dellroad.jct.core.util.RedirectedSession;
+
+/**
+ * A {@link Pipeline} running asynchronously on behalf of a {@link SimpleShell.Session}.
+ *
+ * <p>
+ * A job's standard output and error output both go to a common destination, which is either an in-memory buffer
+ * (while the job is in the background) or the shell session's output (while the job is {@linkplain #attach attached}).
+ * The buffer is bounded; once it fills up, the job blocks on its next write until it is attached again.
+ *
+ * <p>
+ * A job can also be {@linkplain #stop stopped}, which causes it to block on its next write until it is
+ * {@linkplain #resume resumed}. Jobs that never write output can't be stopped this way, because there is no
+ * safe way to suspend an arbitrary Java thread; they can only be {@linkplain #kill killed}. A killed job
+ * only becomes {@link State#DONE} once its pipeline actually returns.
+ *
+ * <p>
+ * Background jobs always read end-of-file from their standard input.
+ */
+public class Job {
+
+    /**
+     * Default maximum number of output bytes buffered while a job is not attached.
+     */
+    public static final int DEFAULT_MAX_BUFFER = 1024 * 1024;
+
+    private final int id;
+    private final String description;
+    private final Pipeline pipeline;
+    private final int maxBuffer;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final CancellationToken cancellationToken = new CancellationToken();
+    private final Object outputLock = new Object();                     // orders writes to the attached stream
+
+    // Locking: writes to an attached stream happen while holding outputLock but never while holding the monitor
+    // of this instance, so that a client that stops reading can't block kill(), getStatus(), etc.
+
+    private PrintStream output;
+    private boolean started;
+    private Thread thread;
+    private boolean killed;
+    private State state = State.RUNNING;
+    private PrintStream attached;
+    private Integer exitValue;
+    private Throwable failure;
+
+    /**
+     * Constructor.
+     *
+     * @param id job ID
+     * @param description job description, typically the command line
+     * @param pipeline the command(s) to execute
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public Job(int id, String description, Pipeline pipeline) {
+        this(id, description, pipeline, DEFAULT_MAX_BUFFER);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param id job ID
+     * @param description job description, typically the command line
+     * @param pipeline the command(s) to execute
+     * @param maxBuffer maximum number of output bytes to buffer while not attached
+     * @throws IllegalArgumentException if {@code description} or {@code pipeline} is null
+     * @throws IllegalArgumentException if {@code maxBuffer} is not positive
+     */
+    public Job(int id, String description, Pipeline pipeline, int maxBuffer) {
+        if (description == null)
+            throw new IllegalArgumentException("null description");
+        if (pipeline == null)
+            throw new IllegalArgumentException("null pipeline");
+        if (maxBuffer <= 0)
+            throw new IllegalArgumentException("invalid maxBuffer");
+        this.id = id;
+        this.description = description;
+        this.pipeline = pipeline;
+        this.maxBuffer = maxBuffer;
+    }
+
+    /**
+     * Get this job's ID.
+     *
+     * @return job ID
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Get this job's description.
+     *
+     * @return job description
+     */
+    public String getDescription() {
+        return this.description;
+    }
+
+    /**
+     * Get the command(s) this job executes.
+     *
+     * @return job pipeline
+     */
+    public Pipeline getPipeline() {
+        return this.pipeline;
+    }
+
+    /**
+     * Get this job's current state.
+     *
+     * @return job state
+     */
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    /**
+     * Get this job's exit value.
+     *
+     * @return exit value, or null if this job is not {@link State#DONE} or did not complete normally
+     */
+    public synchronized Integer getExitValue() {
+        return this.exitValue;
+    }
+
+    /**
+     * Get the number of output bytes currently buffered.
+     *
+     * @return number of buffered bytes
+     */
+    public synchronized int getBufferedBytes() {
+        return this.buffer.size();
+    }
+
+    /**
+     * Get a short description of this job's status, e.g., "Running", "Stopped", "Done", "Exit 1", or "Killed".
+     *
+     * @return status description
+     */
+    public synchronized String getStatus() {
+        switch (this.state) {
+        case RUNNING:
+            return "Running";
+        case STOPPED:
+            return "Stopped";
+        default:
+            if (this.exitValue == null)
+                return this.failure != null ? "Failed" : "Killed";
+            return this.exitValue == 0 ? "Done" : "Exit " + this.exitValue;
+        }
+    }
+
+// Lifecycle
+
+    /**
+     * Start this job.
+     *
+     * @param session the session in which to execute
+     * @param executor executor for the job and its pipeline stages
+     * @throws IllegalStateException if this job has already been started
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public synchronized void start(ConsoleSession<?, ?> session, Executor executor) {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        if (executor == null)
+            throw new IllegalArgumentException("null executor");
+        if (this.started)
+            throw new IllegalStateException("already started");
+        this.output = ConsoleUtil.printStreamLike(new Output(), session.getOutputStream());
+        final ConsoleSession<?, ?> jobSession = RedirectedSession.of(session,
+          InputStream.nullInputStream(), this.output, this.output, this.cancellationToken);
+        this.started = true;
+        executor.execute(() -> this.run(jobSession, executor));
+    }
+
+    /**
+     * Stop this job.
+     *
+     * <p>
+     * The job will block on its next write until {@linkplain #resume resumed} or {@linkplain #kill killed}.
+     * Does nothing if this job is not {@link State#RUNNING}.
+     */
+    public synchronized void stop() {
+        if (this.state != State.RUNNING)
+            return;
+        this.state = State.STOPPED;
+        this.notifyAll();
+    }
+
+    /**
+     * Resume this job after it has been {@linkplain #stop stopped}.
+     *
+     * <p>
+     * Does nothing if this job is not {@link State#STOPPED}.
+     */
+    public synchronized void resume() {
+        if (this.state != State.STOPPED)
+            return;
+        this.state = State.RUNNING;
+        this.notifyAll();
+    }
+
+    /**
+     * Kill this job by cancelling its {@link CancellationToken} and interrupting its thread.
+     *
+     * <p>
+     * The job remains in its current state until its pipeline actually returns, which may take a while
+     * (or forever) if the pipeline ignores interrupts; use {@link #waitWhileRunning} to wait for that.
+     * Does nothing if this job is already {@link State#DONE} or not yet started.
+     */
+    public void kill() {
+        synchronized (this) {
+            if (!this.started || this.state == State.DONE)
+                return;
+            this.killed = true;
+            this.state = State.RUNNING;                         // a stopped job must run to notice it's been killed
+            if (this.thread != null)
+                this.thread.interrupt();
+            this.notifyAll();
+        }
+        this.cancellationToken.cancel();
+    }
+
+    /**
+     * Attach this job's output to the given stream.
+     *
+     * <p>
+     * Any buffered output is written to {@code target} first; subsequent output is written directly to
+     * {@code target} until {@link #detach} is invoked.
+     *
+     * @param target output destination
+     * @throws IllegalArgumentException if {@code target} is null
+     */
+    public void attach(PrintStream target) {
+        if (target == null)
+            throw new IllegalArgumentException("null target");
+        synchronized (this.outputLock) {
+            final byte[] data;
+            synchronized (this) {
+                data = this.takeBuffer();
+                this.attached = target;
+                this.notifyAll();
+            }
+            Job.writeTo(target, data);
+        }
+    }
+
+    /**
+     * Detach this job's output, so that subsequent output is buffered.
+     */
+    public void detach() {
+        final PrintStream target;
+        synchronized (this) {
+            target = this.attached;
+            this.attached = null;
+            this.notifyAll();
+        }
+        if (target != null) {
+            synchronized (this.outputLock) {
+                target.flush();
+            }
+        }
+    }
+
+    /**
+     * Write any buffered output to the given stream and discard it.
+     *
+     * @param target output destination
+     * @throws IllegalArgumentException if {@code target} is null
+     */
+    public void flushBuffer(PrintStream target) {
+        if (target == null)
+            throw new IllegalArgumentException("null target");
+        synchronized (this.outputLock) {
+            final byte[] data;
+            synchronized (this) {
+                data = this.takeBuffer();
+            }
+            Job.writeTo(target, data);
+        }
+    }
+
+    /**
+     * Wait until this job is no longer {@link State#RUNNING}.
+     *
+     * @return the job's new state, either {@link State#STOPPED} or {@link State#DONE}
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public synchronized State waitWhileRunning() throws InterruptedException {
+        while (this.state == State.RUNNING)
+            this.wait();
+        return this.state;
+    }
+
+    /**
+     * Print the stack trace of the exception that caused this job to fail, if any.
+     *
+     * @param target output destination
+     */
+    public void printFailure(PrintStream target) {
+        final Throwable error;
+        synchronized (this) {
+            error = this.failure;
+        }
+        if (error != null)
+            error.printStackTrace(target);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%d] %-8s %s", this.id, this.getStatus(), this.description);
+    }
+
+// Internal Methods
+
+    private void run(ConsoleSession<?, ?> jobSession, Executor executor) {
+        synchronized (this) {
+            if (this.killed) {
+                this.finished(null, null);
+                return;
+            }
+            this.thread = Thread.currentThread();
+        }
+        Integer result = null;
+        Throwable error = null;
+        try {
+            result = this.pipeline.execute(jobSession, executor);
+        } catch (InterruptedException e) {
+            // killed
+        } catch (Throwable t) {
+            error = t;
+        } finally {
+            synchronized (this) {
+                this.thread = null;
+                this.finished(result, error);
+            }
+            Thread.interrupted();                               // discard any interrupt from kill() before we returned
+        }
+    }
+
+    private synchronized void finished(Integer result, Throwable error) {
+        this.exitValue = this.killed ? null : result;
+        this.failure = error;
+        this.state = State.DONE;
+        this.notifyAll();
+    }
+
+    private void write(byte[] data, int off, int len) throws InterruptedIOException {
+        final PrintStream target;
+        synchronized (this) {
+            try {
+                while (true) {
+                    if (this.killed)
+                        throw new InterruptedIOException("killed");
+                    if (this.state == State.STOPPED)
+                        this.wait();
+                    else if (this.attached != null) {
+                        target = this.attached;
+                        break;
+                    } else if (this.buffer.size() > 0 && this.buffer.size() + len > this.maxBuffer)
+                        this.wait();
+                    else {
+                        this.buffer.write(data, off, len);
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("interrupted");
+            }
+        }
+        synchronized (this.outputLock) {
+            target.write(data, off, len);
+        }
+    }
+
+    private void flushAttached() {
+        final PrintStream target;
+        synchronized (this) {
+            target = this.attached;
+        }
+        if (target != null) {
+            synchronized (this.outputLock) {
+                target.flush();
+            }
+        }
+    }
+
+    // Remove and return the buffered output, if any
+    private synchronized byte[] takeBuffer() {
+        if (this.buffer.size() == 0)
+            return null;
+        final byte[] data = this.buffer.toByteArray();
+        this.buffer.reset();
+        this.notifyAll();
+        return data;
+    }
+
+    private static void writeTo(PrintStream target, byte[] data) {
+        if (data == null)
+            return;
+        target.write(data, 0, data.length);
+        target.flush();
+    }
+
+// Output
+
+    private class Output extends OutputStream {
+
+        @Override
+        public void write(int b) throws InterruptedIOException {
+            this.write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int off, int len) throws InterruptedIOException {
+            if (off < 0 || len < 0 || off + len > data.length)
+                throw new IndexOutOfBoundsException();
+            Job.this.write(data, off, len);
+        }
+
+        @Override
+        public void flush() {
+            Job.this.flushAttached();
+        }
+    }
+
+// State
+
+    /**
+     * Job states.
+     */
+    public enum State {
+
+        /**
+         * The job is running.
+         */
+        RUNNING,
+
+        /**
+         * The job has been {@linkplain Job#stop stopped} and will block on its next write.
+         */
+        STOPPED,
+
+        /**
+         * The job has completed, been killed, or failed.
+         */
+        DONE;
+    }
+}
@@ -0,0 +1,270 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link SpanExporter} that appends each span to a local file as one line of JSON.
+ *
+ * <p>
+ * Each record contains the trace, span, and parent span IDs, the span name, thread, start time, duration in
+ * microseconds, exit value, error, and attributes. Because a span's children end before it does, children appear
+ * in the file before their parents; group records by {@code trace} to reconstruct each trace.
+ *
+ * <p>
+ * Exporting a span never blocks on file I/O: spans are added to a lock-free queue and written in batches by a single
+ * background writer thread. If the queue is full because the writer can't keep up, the span is dropped and
+ * {@linkplain #getNumDropped counted}. Each batch is written with a single append to the file, so records are never
+ * interleaved, even with other processes appending to the same file. Write errors are logged and the batch is dropped.
+ *
+ * <p>
+ * Instances are thread safe. Instances should be {@link #close close()}'ed when no longer needed.
+ */
+public class JsonLinesSpanExporter implements SpanExporter, Closeable {
+
+    /**
+     * Default {@linkplain #getMaxQueueSize maximum queue size}.
+     */
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 10000;
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Path file;
+    private final int maxQueueSize;
+    private final FileChannel channel;
+    private final ExecutorService writer;
+    private final ConcurrentLinkedQueue<Span> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final AtomicLong numDropped = new AtomicLong();
+    private final StringBuilder buf = new StringBuilder();          // used only by the writer thread
+
+    private volatile boolean closed;
+
+    /**
+     * Constructor using {@link #DEFAULT_MAX_QUEUE_SIZE}.
+     *
+     * <p>
+     * The file is created if it does not exist; otherwise, records are appended to it.
+     *
+     * @param file output file
+     * @throws IOException if the file can't be opened
+     * @throws IllegalArgumentException if {@code file} is null
+     */
+    public JsonLinesSpanExporter(Path file) throws IOException {
+        this(file, DEFAULT_MAX_QUEUE_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * The file is created if it does not exist; otherwise, records are appended to it.
+     *
+     * @param file output file
+     * @param maxQueueSize maximum number of spans waiting to be written
+     * @throws IOException if the file can't be opened
+     * @throws IllegalArgumentException if {@code file} is null
+     * @throws IllegalArgumentException if {@code maxQueueSize} is not positive
+     */
+    public JsonLinesSpanExporter(Path file, int maxQueueSize) throws IOException {
+        if (file == null)
+            throw new IllegalArgumentException("null file");
+        if (maxQueueSize <= 0)
+            throw new IllegalArgumentException("invalid maxQueueSize");
+        this.file = file;
+        this.maxQueueSize = maxQueueSize;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.writer = Executors.newSingleThreadExecutor(action -> {
+            final Thread thread = new Thread(action, "JCT-Trace");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the output file.
+     *
+     * @return output file
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Get the maximum number of spans waiting to be written, beyond which new spans are dropped.
+     *
+     * @return maximum queue size
+     */
+    public int getMaxQueueSize() {
+        return this.maxQueueSize;
+    }
+
+    /**
+     * Get the number of spans dropped so far because the queue was full.
+     *
+     * @return number of dropped spans
+     */
+    public long getNumDropped() {
+        return this.numDropped.get();
+    }
+
+// SpanExporter
+
+    /**
+     * Queue the given span to be written.
+     *
+     * <p>
+     * Does nothing if this instance is closed.
+     *
+     * @param span finished span
+     * @throws IllegalArgumentException if {@code span} is null
+     */
+    @Override
+    public void export(Span span) {
+        if (span == null)
+            throw new IllegalArgumentException("null span");
+        if (this.closed)
+            return;
+        if (this.queueSize.incrementAndGet() > this.maxQueueSize) {
+            this.queueSize.decrementAndGet();
+            this.numDropped.incrementAndGet();
+            return;
+        }
+        this.queue.add(span);
+        if (!this.writing.compareAndSet(false, true))
+            return;
+        try {
+            this.writer.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            this.writing.set(false);                                        // we must be closed
+        }
+    }
+
+// Closeable
+
+    /**
+     * Close this instance.
+     *
+     * <p>
+     * Any queued spans are written first; spans exported after this method is invoked are discarded.
+     * Does nothing if already closed.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (this.closed)
+                return;
+            this.closed = true;
+        }
+        this.writer.shutdown();
+        try {
+            if (!this.writer.awaitTermination(5, TimeUnit.SECONDS))
+                this.log.warn("timeout waiting for trace writer to finish");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.channel.close();
+    }
+
+// Internal methods
+
+    private void drain() {
+        while (true) {
+            this.buf.setLength(0);
+            int count = 0;
+            int written = 0;
+            for (Span span; (span = this.queue.poll()) != null; count++) {
+                final int mark = this.buf.length();
+                try {
+                    this.append(span);
+                    written++;
+                } catch (RuntimeException e) {
+                    this.log.error("error formatting trace record for {}", span, e);
+                    this.buf.setLength(mark);
+                }
+            }
+            this.queueSize.addAndGet(-count);
+            if (written > 0) {
+                final ByteBuffer data = ByteBuffer.wrap(this.buf.toString().getBytes(StandardCharsets.UTF_8));
+                try {
+                    while (data.hasRemaining())
+                        this.channel.write(data);
+                } catch (IOException e) {
+                    this.log.error("error writing {} trace record(s) to {}", written, this.file, e);
+                }
+            }
+            this.writing.set(false);
+
+            // Avoid race where a span was queued after our last poll() but before we cleared the flag
+            if (this.queue.isEmpty() || !this.writing.compareAndSet(false, true))
+                return;
+        }
+    }
+
+    // Append the JSON record for the given span to our buffer
+    private void append(Span span) {
+        this.buf.append("{\"trace\":\"").append(span.getTraceId());
+        this.buf.append("\",\"span\":\"").append(span.getSpanId());
+        this.buf.append("\",\"parent\":");
+        final String parentId = span.getParentId();
+        if (parentId != null)
+            this.buf.append('"').append(parentId).append('"');
+        else
+            this.buf.append("null");
+        this.buf.append(",\"name\":");
+        OutputFormat.appendJsonString(this.buf, span.getName());
+        this.buf.append(",\"thread\":");
+        OutputFormat.appendJsonString(this.buf, span.getThreadName());
+        this.buf.append(",\"start\":");
+        OutputFormat.appendJsonString(this.buf, span.getStartTime().toString());
+        this.buf.append(",\"micros\":").append(span.getDuration().toNanos() / 1000);
+        this.buf.append(",\"exit\":").append(span.getExitValue());
+        this.buf.append(",\"error\":");
+        if (span.getError() != null)
+            OutputFormat.appendJsonString(this.buf, span.getError().toString());
+        else
+            this.buf.append("null");
+        this.buf.append(",\"attributes\":{");
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : span.getAttributes().entrySet()) {
+            if (!first)
+                this.buf.append(',');
+            OutputFormat.appendJsonString(this.buf, entry.getKey());
+            this.buf.append(':');
+            final Object value = entry.getValue();
+            if (value instanceof Boolean || value instanceof Integer || value instanceof Long)
+                this.buf.append(value);
+            else if (value instanceof Number && Double.isFinite(((Number)value).doubleValue()))
+                this.buf.append(value);
+            else
+                OutputFormat.appendJsonString(this.buf, String.valueOf(value));
+            first = false;
+        }
+        this.buf.append("}}\n");
+    }
+}
@@ -0,0 +1,27 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+/**
+ * Implemented by objects that can report metrics in Prometheus format.
+ *
+ * @see SimpleCommandSupport#getMetricsSources
+ * @see org.dellroad.jct.core.simple.command.MetricsCommand
+ */
+@FunctionalInterface
+public interface MetricsSource {
+
+    /**
+     * Write this instance's current metrics.
+     *
+     * <p>
+     * Each metric family should be introduced by {@link PrometheusWriter#family PrometheusWriter.family()} and written
+     * in its entirety in one place, and family names should not collide with those of other sources.
+     *
+     * @param writer metrics output
+     */
+    void writeMetrics(PrometheusWriter writer);
+}
@@ -0,0 +1,298 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * Output formats for the structured output of commands.
+ *
+ * <p>
+ * The {@link #TEXT} format buffers all records so it can align them in columns; the other formats
+ * are streaming and write each record as soon as it's received.
+ *
+ * @see RecordWriter
+ * @see AbstractRecordCommand
+ */
+public enum OutputFormat {
+
+    /**
+     * Human-readable text with a header line and columns aligned using spaces.
+     */
+    TEXT() {
+        @Override
+        RecordWriter createWriter(PrintStream out, List<String> columns) {
+            return new TextWriter(out, columns);
+        }
+    },
+
+    /**
+     * JSON lines, i.e., one JSON object per line, with the column names as keys.
+     */
+    JSON() {
+        @Override
+        RecordWriter createWriter(PrintStream out, List<String> columns) {
+            return new JsonWriter(out, columns);
+        }
+    },
+
+    /**
+     * Comma-separated values per RFC 4180, with a header line.
+     */
+    CSV() {
+        @Override
+        RecordWriter createWriter(PrintStream out, List<String> columns) {
+            return new CsvWriter(out, columns);
+        }
+    };
+
+    /**
+     * The name of the session environment variable that specifies the default output format.
+     */
+    public static final String ENVIRONMENT_VARIABLE = "JCT_FORMAT";
+
+    /**
+     * Create a {@link RecordWriter} that renders records in this format.
+     *
+     * @param out destination for output
+     * @param columns column names
+     * @return new writer
+     * @throws IllegalArgumentException if either parameter is null or {@code columns} is empty
+     */
+    public RecordWriter newWriter(PrintStream out, String... columns) {
+        if (out == null)
+            throw new IllegalArgumentException("null out");
+        if (columns == null)
+            throw new IllegalArgumentException("null columns");
+        if (columns.length == 0)
+            throw new IllegalArgumentException("empty columns");
+        return this.createWriter(out, Arrays.asList(columns.clone()));
+    }
+
+    abstract RecordWriter createWriter(PrintStream out, List<String> columns);
+
+    /**
+     * Parse an output format name (case insensitive).
+     *
+     * @param name format name
+     * @return corresponding format
+     * @throws IllegalArgumentException if {@code name} is null or not a valid format
+     */
+    public static OutputFormat parse(String name) {
+        if (name == null)
+            throw new IllegalArgumentException("null name");
+        try {
+            return OutputFormat.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("invalid output format \"%s\"", name));
+        }
+    }
+
+    /**
+     * Determine the default output format for the given session.
+     *
+     * <p>
+     * This is the format named by the {@link #ENVIRONMENT_VARIABLE} environment variable, if any, otherwise {@link #TEXT}.
+     *
+     * @param session console session
+     * @return session's default output format
+     * @throws IllegalArgumentException if the environment variable is set to an invalid format
+     * @throws IllegalArgumentException if {@code session} is null
+     */
+    public static OutputFormat of(ConsoleSession<?, ?> session) {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        final Map<String, String> env = session.getRequest().getEnvironment();
+        final String name = env != null ? env.get(ENVIRONMENT_VARIABLE) : null;
+        return name != null && !name.isEmpty() ? OutputFormat.parse(name) : TEXT;
+    }
+
+// Internal Methods
+
+    /**
+     * Append a JSON string literal.
+     *
+     * @param buf destination
+     * @param s string value
+     */
+    static void appendJsonString(StringBuilder buf, String s) {
+        buf.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char ch = s.charAt(i);
+            switch (ch) {
+            case '"':
+            case '\\':
+                buf.append('\\').append(ch);
+                break;
+            case '\n':
+                buf.append("\\n");
+                break;
+            case '\r':
+                buf.append("\\r");
+                break;
+            case '\t':
+                buf.append("\\t");
+                break;
+            default:
+                if (ch < 0x20)
+                    buf.append(String.format("\\u%04x", (int)ch));
+                else
+                    buf.append(ch);
+                break;
+            }
+        }
+        buf.append('"');
+    }
+
+// AbstractWriter
+
+    private abstract static class AbstractWriter implements RecordWriter {
+
+        protected final PrintStream out;
+        protected final List<String> columns;
+
+        private boolean closed;
+
+        AbstractWriter(PrintStream out, List<String> columns) {
+            this.out = out;
+            this.columns = columns;
+        }
+
+        @Override
+        public void write(Object... values) {
+            if (values == null)
+                throw new IllegalArgumentException("null values");
+            if (this.closed)
+                throw new IllegalStateException("closed");
+            this.writeRecord(Arrays.copyOf(values, this.columns.size()));
+        }
+
+        @Override
+        public void close() {
+            if (this.closed)
+                return;
+            this.closed = true;
+            this.finish();
+            this.out.flush();
+        }
+
+        protected abstract void writeRecord(Object[] values);
+
+        protected void finish() {
+        }
+    }
+
+// TextWriter
+
+    private static final class TextWriter extends AbstractWriter {
+
+        private final ArrayList<String[]> rows = new ArrayList<>();
+
+        TextWriter(PrintStream out, List<String> columns) {
+            super(out, columns);
+            this.rows.add(columns.toArray(new String[0]));
+        }
+
+        @Override
+        protected void writeRecord(Object[] values) {
+            final String[] row = new String[values.length];
+            for (int i = 0; i < values.length; i++)
+                row[i] = String.valueOf(values[i]);
+            this.rows.add(row);
+        }
+
+        @Override
+        protected void finish() {
+            final int[] widths = new int[this.columns.size()];
+            for (String[] row : this.rows) {
+                for (int i = 0; i < row.length; i++)
+                    widths[i] = Math.max(widths[i], row[i].length());
+            }
+            final StringBuilder buf = new StringBuilder();
+            for (String[] row : this.rows) {
+                buf.setLength(0);
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0)
+                        buf.append("  ");
+                    buf.append(row[i]);
+                    if (i < row.length - 1) {
+                        for (int j = row[i].length(); j < widths[i]; j++)
+                            buf.append(' ');
+                    }
+                }
+                this.out.println(buf);
+            }
+            this.rows.clear();
+        }
+    }
+
+// JsonWriter
+
+    private static final class JsonWriter extends AbstractWriter {
+
+        private final StringBuilder buf = new StringBuilder();
+
+        JsonWriter(PrintStream out, List<String> columns) {
+            super(out, columns);
+        }
+
+        @Override
+        protected void writeRecord(Object[] values) {
+            this.buf.setLength(0);
+            this.buf.append('{');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0)
+                    this.buf.append(',');
+                OutputFormat.appendJsonString(this.buf, this.columns.get(i));
+                this.buf.append(':');
+                final Object value = values[i];
+                if (value == null || value instanceof Boolean || value instanceof Integer || value instanceof Long
+                  || value instanceof Short || value instanceof Byte)
+                    this.buf.append(value);
+                else if (value instanceof Number && Double.isFinite(((Number)value).doubleValue()))
+                    this.buf.append(value);
+                else
+                    OutputFormat.appendJsonString(this.buf, String.valueOf(value));
+            }
+            this.buf.append('}');
+            this.out.println(this.buf);
+        }
+    }
+
+// CsvWriter
+
+    private static final class CsvWriter extends AbstractWriter {
+
+        private final StringBuilder buf = new StringBuilder();
+
+        CsvWriter(PrintStream out, List<String> columns) {
+            super(out, columns);
+            this.writeRecord(columns.toArray());
+        }
+
+        @Override
+        protected void writeRecord(Object[] values) {
+            this.buf.setLength(0);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0)
+                    this.buf.append(',');
+                final String value = values[i] != null ? String.valueOf(values[i]) : "";
+                if (value.chars().anyMatch(ch -> ch == ',' || ch == '"' || ch == '\r' || ch == '\n'))
+                    this.buf.append('"').append(value.replace("\"", "\"\"")).append('"');
+                else
+                    this.buf.append(value);
+            }
+            this.out.println(this.buf);
+        }
+    }
+}
@@ -0,0 +1,445 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.util.BytePipe;
+import org.dellroad.jct.core.util.ChannelOutputStream;
+import org.dellroad.jct.core.util.RedirectedSession;
+
+/**
+ * A sequence of one or more commands whose standard output and input are connected together.
+ *
+ * <p>
+ * When a pipeline with more than one stage is {@linkplain #execute executed}, every stage except the last
+ * runs in a separate thread, while the last stage runs in the current thread. Each stage's output is connected
+ * to the next stage's input by a bounded {@link BytePipe}, so stages run concurrently and memory usage is bounded
+ * regardless of how much data flows through the pipeline. Error output from all stages goes to the session's
+ * error output.
+ *
+ * <p>
+ * If a stage finishes before consuming all of its input (e.g., "head"), the previous stage is cancelled via
+ * {@link Thread#interrupt}, and so on up the pipeline, so that upstream commands don't continue to compute
+ * output that will never be read. Any write by such a stage after cancellation will also fail.
+ * Before {@link #execute execute()} returns, it waits up to {@link #STAGE_JOIN_TIMEOUT} for all upstream stages
+ * to actually finish, and then reports any exceptions they threw (including after being cancelled) on the
+ * session's error output.
+ *
+ * <p>
+ * A pipeline may optionally {@linkplain #getRedirect redirect} the output of its last stage to a file on the server.
+ * The file is opened without following symbolic links; see {@link SimpleCommandSupport#setRedirectDirectory} for how
+ * redirection targets are restricted.
+ * The file is written via a {@link FileChannel} through a large direct buffer, bypassing the session's output
+ * entirely, so there is no CR-NL translation. When the pipeline completes, the number of bytes written and the
+ * throughput are reported on the session's error output.
+ *
+ * <p>
+ * The exit value of a pipeline is the exit value of its last stage.
+ */
+public class Pipeline {
+
+    /**
+     * The command line word that separates pipeline stages.
+     */
+    public static final String PIPE = "|";
+
+    /**
+     * The command line word that redirects output to a file, replacing its contents.
+     */
+    public static final String REDIRECT = ">";
+
+    /**
+     * The command line word that redirects output to a file, appending to its contents.
+     */
+    public static final String REDIRECT_APPEND = ">>";
+
+    /**
+     * How long to wait for upstream stages to finish after the pipeline completes or is cancelled.
+     */
+    public static final Duration STAGE_JOIN_TIMEOUT = Duration.ofSeconds(5);
+
+    private final List<SimpleCommandSupport.FoundCommand> stages;
+    private final Redirect redirect;
+
+    /**
+     * Constructor for a pipeline without output redirection.
+     *
+     * @param stages pipeline stages
+     * @throws IllegalArgumentException if {@code stages} is null, empty, or contains a null element
+     */
+    public Pipeline(List<SimpleCommandSupport.FoundCommand> stages) {
+        this(stages, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param stages pipeline stages
+     * @param redirect output redirection for the last stage, or null for none
+     * @throws IllegalArgumentException if {@code stages} is null, empty, or contains a null element
+     */
+    public Pipeline(List<SimpleCommandSupport.FoundCommand> stages, Redirect redirect) {
+        if (stages == null)
+            throw new IllegalArgumentException("null stages");
+        if (stages.isEmpty())
+            throw new IllegalArgumentException("empty stages");
+        if (stages.stream().anyMatch(stage -> stage == null))
+            throw new IllegalArgumentException("null stage");
+        this.stages = Collections.unmodifiableList(new ArrayList<>(stages));
+        this.redirect = redirect;
+    }
+
+    /**
+     * Get the stages in this pipeline.
+     *
+     * @return unmodifiable, non-empty list of stages
+     */
+    public List<SimpleCommandSupport.FoundCommand> getStages() {
+        return this.stages;
+    }
+
+    /**
+     * Get the output redirection for this pipeline, if any.
+     *
+     * @return output redirection, or null for none
+     */
+    public Redirect getRedirect() {
+        return this.redirect;
+    }
+
+    /**
+     * Execute this pipeline.
+     *
+     * <p>
+     * If this pipeline has only one stage, it is executed directly in the current thread.
+     *
+     * @param session current session
+     * @param executor executor for the upstream stages
+     * @return exit value of the last stage
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public int execute(ConsoleSession<?, ?> session, Executor executor) throws InterruptedException {
+
+        // Sanity check
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        if (executor == null)
+            throw new IllegalArgumentException("null executor");
+
+        // Handle output redirection
+        if (this.redirect != null)
+            return this.executeRedirected(session, executor);
+        return this.executeStages(session, executor);
+    }
+
+    private int executeRedirected(ConsoleSession<?, ?> session, Executor executor) throws InterruptedException {
+
+        // Open file
+        final PrintStream err = session.getErrorStream();
+        final Path path = this.redirect.getPath();
+        final ChannelOutputStream fileOutput;
+        try {
+            fileOutput = new ChannelOutputStream(FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+              this.redirect.isAppend() ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING,
+              LinkOption.NOFOLLOW_LINKS));
+        } catch (IOException e) {
+            err.println(String.format("Error: can't open \"%s\": %s", path, e));
+            return 1;
+        }
+
+        // Execute with output going to the file
+        final long startTime = System.nanoTime();
+        final PrintStream output = new PrintStream(fileOutput, false, StandardCharsets.UTF_8);
+        final int exitValue;
+        boolean failed = false;
+        try {
+            exitValue = this.executeStages(RedirectedSession.of(session, null, output, null), executor);
+        } finally {
+            output.flush();
+            if (output.checkError()) {
+                err.println(String.format("Error: error writing to \"%s\"", path));
+                failed = true;
+            }
+            try {
+                fileOutput.close();
+            } catch (IOException e) {
+                err.println(String.format("Error: can't close \"%s\": %s", path, e));
+                failed = true;
+            }
+        }
+
+        // Report statistics, unless the output is incomplete
+        if (failed)
+            return exitValue != 0 ? exitValue : 1;
+        final long bytes = fileOutput.getBytesWritten();
+        final double seconds = Math.max(System.nanoTime() - startTime, 1L) / 1e9;
+        err.println(String.format("Wrote %d bytes to \"%s\" in %.3f seconds (%.2f MB/s)",
+          bytes, path, seconds, bytes / seconds / (1024.0 * 1024.0)));
+        return exitValue;
+    }
+
+    private int executeStages(ConsoleSession<?, ?> session, Executor executor) throws InterruptedException {
+
+        // Handle the trivial case
+        final int numStages = this.stages.size();
+        if (numStages == 1)
+            return this.executeStage(session, this.stages.get(0));
+
+        // Create pipes
+        final BytePipe[] pipes = new BytePipe[numStages - 1];
+        for (int i = 0; i < pipes.length; i++)
+            pipes[i] = this.createPipe();
+
+        // Create upstream stage tasks
+        final StageTask[] tasks = new StageTask[numStages - 1];
+        for (int i = 0; i < tasks.length; i++) {
+            final int index = i;
+            final InputStream input = i > 0 ? pipes[i - 1].getInputStream() : session.getInputStream();
+            final PrintStream output = new PrintStream(pipes[i].getOutputStream(), false, StandardCharsets.UTF_8);
+            final ConsoleSession<?, ?> stageSession = RedirectedSession.of(session, input, output, null);
+            tasks[i] = new StageTask(() -> {
+                try {
+                    return this.executeStage(stageSession, this.stages.get(index));
+                } finally {
+                    output.close();
+                    if (index > 0)
+                        this.cancelUpstream(tasks, pipes, index);
+                }
+            });
+        }
+
+        // Start upstream stages
+        try {
+            for (StageTask task : tasks)
+                executor.execute(task);
+
+            // Execute the final stage in this thread
+            final ConsoleSession<?, ?> lastSession = RedirectedSession.of(session,
+              pipes[numStages - 2].getInputStream(), null, null);
+            try {
+                return this.executeStage(lastSession, this.stages.get(numStages - 1));
+            } finally {
+                this.cancelUpstream(tasks, pipes, numStages - 1);
+            }
+        } finally {
+
+            // Cancel everything still running (e.g., if we were interrupted)
+            for (int i = tasks.length - 1; i >= 0; i--)
+                tasks[i].cancel();
+            for (BytePipe pipe : pipes)
+                this.closeInput(pipe);
+
+            // Wait for upstream stages to actually finish, then report any errors
+            this.awaitStages(tasks);
+            for (int i = 0; i < tasks.length; i++)
+                this.reportError(session, this.stages.get(i), tasks[i]);
+        }
+    }
+
+    /**
+     * Execute a single pipeline stage.
+     *
+     * <p>
+     * The implementation in {@link Pipeline} invokes {@link SimpleCommandSupport#execute SimpleCommandSupport.execute()}
+     * if the session's owner is a {@link SimpleCommandSupport}, otherwise {@link SimpleCommandSupport.FoundCommand#execute}.
+     *
+     * @param session session for the stage, with I/O streams connected to the adjacent stages
+     * @param stage the command to execute
+     * @return command exit value
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    protected int executeStage(ConsoleSession<?, ?> session, SimpleCommandSupport.FoundCommand stage)
+      throws InterruptedException {
+        final Object owner = session.getOwner();
+        if (owner instanceof SimpleCommandSupport)
+            return ((SimpleCommandSupport)owner).execute(session, stage);
+        return stage.execute(session);
+    }
+
+    /**
+     * Create a pipe connecting two stages.
+     *
+     * @return new pipe
+     */
+    protected BytePipe createPipe() {
+        return new BytePipe();
+    }
+
+    // Invoked when the stage at "index" finishes; cancels the previous stage, if still running
+    private void cancelUpstream(StageTask[] tasks, BytePipe[] pipes, int index) {
+        this.closeInput(pipes[index - 1]);
+        tasks[index - 1].cancel();
+    }
+
+// Redirect
+
+    /**
+     * Describes the redirection of a pipeline's output to a file.
+     */
+    public static class Redirect {
+
+        private final Path path;
+        private final boolean append;
+
+        /**
+         * Constructor.
+         *
+         * @param path output file
+         * @param append true to append to the file, false to replace its contents
+         * @throws IllegalArgumentException if {@code path} is null
+         */
+        public Redirect(Path path, boolean append) {
+            if (path == null)
+                throw new IllegalArgumentException("null path");
+            this.path = path;
+            this.append = append;
+        }
+
+        /**
+         * Get the output file.
+         *
+         * @return output file
+         */
+        public Path getPath() {
+            return this.path;
+        }
+
+        /**
+         * Determine whether to append to the output file.
+         *
+         * @return true to append, false to replace
+         */
+        public boolean isAppend() {
+            return this.append;
+        }
+    }
+
+// Internal Methods
+
+    private void closeInput(BytePipe pipe) {
+        try {
+            pipe.getInputStream().close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    // Wait (with a bound) for all stage tasks to finish; this is not interruptible but preserves interrupt status
+    private void awaitStages(StageTask[] tasks) {
+        final long deadline = System.nanoTime() + STAGE_JOIN_TIMEOUT.toNanos();
+        boolean interrupted = false;
+        for (StageTask task : tasks) {
+            boolean finished = false;
+            while (!finished) {
+                try {
+                    if (!task.await(deadline - System.nanoTime()))
+                        break;
+                    finished = true;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private void reportError(ConsoleSession<?, ?> session, SimpleCommandSupport.FoundCommand stage, StageTask task) {
+        final PrintStream err = session.getErrorStream();
+        if (!task.isFinished()) {
+            err.println(String.format("Error: pipeline stage \"%s\" did not terminate within %s",
+              stage.getName(), STAGE_JOIN_TIMEOUT));
+            return;
+        }
+        final Throwable failure = task.getFailure();
+        if (failure != null)
+            failure.printStackTrace(err);
+    }
+
+// StageTask
+
+    // Runs one upstream stage; unlike FutureTask, completion means the stage has actually stopped running
+    private static final class StageTask implements Runnable {
+
+        private final Callable<Integer> body;
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private Thread thread;              // the thread running the body, if any
+        private boolean started;
+        private boolean cancelled;
+        private volatile Throwable failure;
+
+        StageTask(Callable<Integer> body) {
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (this.cancelled || this.started) {
+                    this.finished.countDown();
+                    return;
+                }
+                this.started = true;
+                this.thread = Thread.currentThread();
+            }
+            try {
+                this.body.call();
+            } catch (InterruptedException e) {
+                synchronized (this) {
+                    if (!this.cancelled)
+                        this.failure = e;
+                }
+            } catch (Throwable t) {
+                this.failure = t;
+            } finally {
+                synchronized (this) {
+                    this.thread = null;
+                }
+                Thread.interrupted();       // don't leak our cancellation interrupt into the executor's thread
+                this.finished.countDown();
+            }
+        }
+
+        public synchronized void cancel() {
+            this.cancelled = true;
+            if (this.thread != null)
+                this.thread.interrupt();
+            else if (!this.started)
+                this.finished.countDown();
+        }
+
+        public boolean await(long nanos) throws InterruptedException {
+            return this.finished.await(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public boolean isFinished() {
+            return this.finished.getCount() == 0;
+        }
+
+        public Throwable getFailure() {
+            return this.failure;
+        }
+    }
+}
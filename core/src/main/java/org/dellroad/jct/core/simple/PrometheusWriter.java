@@ -0,0 +1,264 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.PrintStream;
+
+/**
+ * Writes metrics in the Prometheus text exposition format.
+ *
+ * <p>
+ * Output is streamed directly to the underlying {@link PrintStream} as it is generated. Samples are written using
+ * a fluent sequence of calls, for example:
+ *
+ * <pre><code class="language-java">
+ *  writer.family("jct_commands_started_total", PrometheusWriter.Type.COUNTER, "Commands started.");
+ *  writer.sample("jct_commands_started_total").label("command", "echo").value(123);
+ * </code></pre>
+ *
+ * <p>
+ * Lines are terminated with a single newline character, regardless of how the underlying stream implements
+ * {@link PrintStream#println()}. Metric and label names are not validated.
+ *
+ * <p>
+ * Instances are not thread safe.
+ */
+public class PrometheusWriter {
+
+    private final PrintStream out;
+
+    private boolean inSample;
+    private boolean hasLabels;
+
+    /**
+     * Constructor.
+     *
+     * @param out destination for output
+     * @throws IllegalArgumentException if {@code out} is null
+     */
+    public PrometheusWriter(PrintStream out) {
+        if (out == null)
+            throw new IllegalArgumentException("null out");
+        this.out = out;
+    }
+
+    /**
+     * Write the {@code HELP} and {@code TYPE} lines that introduce a metric family.
+     *
+     * @param name metric family name
+     * @param type metric type
+     * @param help description, or null for none
+     * @return this instance
+     * @throws IllegalArgumentException if {@code name} or {@code type} is null
+     * @throws IllegalStateException if a sample is in progress
+     */
+    public PrometheusWriter family(String name, Type type, String help) {
+        if (name == null)
+            throw new IllegalArgumentException("null name");
+        if (type == null)
+            throw new IllegalArgumentException("null type");
+        this.checkNotInSample();
+        if (help != null) {
+            this.out.print("# HELP ");
+            this.out.print(name);
+            this.out.write(' ');
+            this.escape(help, false);
+            this.out.write('\n');
+        }
+        this.out.print("# TYPE ");
+        this.out.print(name);
+        this.out.write(' ');
+        this.out.print(type.getName());
+        this.out.write('\n');
+        return this;
+    }
+
+    /**
+     * Start a sample.
+     *
+     * <p>
+     * The sample must be completed by invoking {@link #value(long) value()} after adding zero or more labels.
+     *
+     * @param name sample name, e.g., {@code my_metric} or {@code my_metric_bucket}
+     * @return this instance
+     * @throws IllegalArgumentException if {@code name} is null
+     * @throws IllegalStateException if a sample is already in progress
+     */
+    public PrometheusWriter sample(String name) {
+        if (name == null)
+            throw new IllegalArgumentException("null name");
+        this.checkNotInSample();
+        this.out.print(name);
+        this.inSample = true;
+        this.hasLabels = false;
+        return this;
+    }
+
+    /**
+     * Add a label to the sample in progress.
+     *
+     * @param name label name
+     * @param value label value
+     * @return this instance
+     * @throws IllegalArgumentException if either parameter is null
+     * @throws IllegalStateException if no sample is in progress
+     */
+    public PrometheusWriter label(String name, String value) {
+        if (name == null)
+            throw new IllegalArgumentException("null name");
+        if (value == null)
+            throw new IllegalArgumentException("null value");
+        this.startLabel(name);
+        this.escape(value, true);
+        this.out.write('"');
+        return this;
+    }
+
+    /**
+     * Add a label with a numeric value, e.g., a histogram bucket's {@code le} label, to the sample in progress.
+     *
+     * @param name label name
+     * @param value label value
+     * @return this instance
+     * @throws IllegalArgumentException if {@code name} is null
+     * @throws IllegalStateException if no sample is in progress
+     */
+    public PrometheusWriter label(String name, double value) {
+        if (name == null)
+            throw new IllegalArgumentException("null name");
+        this.startLabel(name);
+        this.printDouble(value);
+        this.out.write('"');
+        return this;
+    }
+
+    /**
+     * Complete the sample in progress with an integral value.
+     *
+     * @param value sample value
+     * @return this instance
+     * @throws IllegalStateException if no sample is in progress
+     */
+    public PrometheusWriter value(long value) {
+        this.finishSample();
+        this.out.print(value);
+        this.out.write('\n');
+        return this;
+    }
+
+    /**
+     * Complete the sample in progress with a floating point value.
+     *
+     * @param value sample value
+     * @return this instance
+     * @throws IllegalStateException if no sample is in progress
+     */
+    public PrometheusWriter value(double value) {
+        this.finishSample();
+        this.printDouble(value);
+        this.out.write('\n');
+        return this;
+    }
+
+    /**
+     * Flush the underlying stream.
+     */
+    public void flush() {
+        this.out.flush();
+    }
+
+// Internal Methods
+
+    private void checkNotInSample() {
+        if (this.inSample)
+            throw new IllegalStateException("sample in progress");
+    }
+
+    private void startLabel(String name) {
+        if (!this.inSample)
+            throw new IllegalStateException("no sample in progress");
+        this.out.write(this.hasLabels ? ',' : '{');
+        this.out.print(name);
+        this.out.print("=\"");
+        this.hasLabels = true;
+    }
+
+    private void finishSample() {
+        if (!this.inSample)
+            throw new IllegalStateException("no sample in progress");
+        if (this.hasLabels)
+            this.out.write('}');
+        this.out.write(' ');
+        this.inSample = false;
+    }
+
+    private void printDouble(double value) {
+        if (Double.isNaN(value))
+            this.out.print("NaN");
+        else if (Double.isInfinite(value))
+            this.out.print(value > 0 ? "+Inf" : "-Inf");
+        else if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            this.out.print((long)value);
+        else
+            this.out.print(value);
+    }
+
+    private void escape(String text, boolean quotes) {
+        final int length = text.length();
+        int i = 0;
+        while (i < length && text.charAt(i) != '\\' && text.charAt(i) != '\n' && (!quotes || text.charAt(i) != '"'))
+            i++;
+        if (i == length) {                                                  // the usual case: nothing to escape
+            this.out.print(text);
+            return;
+        }
+        for (i = 0; i < length; i++) {
+            final char ch = text.charAt(i);
+            switch (ch) {
+            case '\\':
+                this.out.print("\\\\");
+                break;
+            case '\n':
+                this.out.print("\\n");
+                break;
+            case '"':
+                this.out.print(quotes ? "\\\"" : "\"");
+                break;
+            default:
+                this.out.print(ch);                                         // might not be ASCII
+                break;
+            }
+        }
+    }
+
+// Type
+
+    /**
+     * Prometheus metric types.
+     */
+    public enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        HISTOGRAM("histogram"),
+        SUMMARY("summary"),
+        UNTYPED("untyped");
+
+        private final String name;
+
+        Type(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Get the name of this type as it appears in a {@code TYPE} line.
+         *
+         * @return type name
+         */
+        public String getName() {
+            return this.name;
+        }
+    }
+}
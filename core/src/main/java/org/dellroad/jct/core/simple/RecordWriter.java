@@ -0,0 +1,41 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+/**
+ * Receives the structured output of a command as a sequence of records having a fixed set of columns.
+ *
+ * <p>
+ * Instances are created by {@link OutputFormat#newWriter OutputFormat.newWriter()}, which determines how
+ * the records are rendered. Depending on the format, records may be written out immediately or buffered
+ * until {@link #close} is invoked, so {@link #close} must always be invoked when done.
+ *
+ * @see AbstractRecordCommand
+ */
+public interface RecordWriter extends AutoCloseable {
+
+    /**
+     * Write a record.
+     *
+     * <p>
+     * Values are rendered using {@link String#valueOf(Object)}, except that JSON output preserves
+     * numbers, booleans, and nulls as such. Extra values are ignored; missing values are treated as null.
+     *
+     * @param values column values, in column order
+     * @throws IllegalArgumentException if {@code values} is null
+     * @throws IllegalStateException if this instance is closed
+     */
+    void write(Object... values);
+
+    /**
+     * Finish writing records and flush the output.
+     *
+     * <p>
+     * This does not close the underlying output stream. Invoking this method more than once has no effect.
+     */
+    @Override
+    void close();
+}
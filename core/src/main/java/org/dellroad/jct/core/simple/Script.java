@@ -0,0 +1,162 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * A script of console commands that has been parsed and had all of its commands resolved.
+ *
+ * <p>
+ * Instances are created by {@link SimpleCommandSupport#compileScript SimpleCommandSupport.compileScript()},
+ * which caches them, so a script that is executed repeatedly is only parsed once (per modification).
+ * Instances are immutable and may be executed any number of times, concurrently.
+ */
+public class Script {
+
+    private final Path path;
+    private final FileTime lastModified;
+    private final long size;
+    private final List<Step> steps;
+
+    /**
+     * Constructor.
+     *
+     * @param path script file
+     * @param lastModified script file modification time when parsed
+     * @param size script file size when parsed
+     * @param steps script steps
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public Script(Path path, FileTime lastModified, long size, List<Step> steps) {
+        if (path == null)
+            throw new IllegalArgumentException("null path");
+        if (lastModified == null)
+            throw new IllegalArgumentException("null lastModified");
+        if (steps == null)
+            throw new IllegalArgumentException("null steps");
+        this.path = path;
+        this.lastModified = lastModified;
+        this.size = size;
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+    }
+
+    /**
+     * Get the script file.
+     *
+     * @return script file
+     */
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Get the modification time of the script file when it was parsed.
+     *
+     * @return file modification time
+     */
+    public FileTime getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Get the size of the script file when it was parsed.
+     *
+     * @return file size in bytes
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Get the steps in this script.
+     *
+     * @return unmodifiable list of steps
+     */
+    public List<Step> getSteps() {
+        return this.steps;
+    }
+
+    /**
+     * Execute this script.
+     *
+     * <p>
+     * Each step is executed in order via {@link Pipeline#execute Pipeline.execute()}.
+     *
+     * @param session current session
+     * @param executor executor for pipeline stages
+     * @param stopOnError true to stop at the first step that returns a non-zero exit value
+     * @return the exit value of the last step executed, or zero if there are no steps
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws IllegalArgumentException if {@code session} or {@code executor} is null
+     */
+    public int execute(ConsoleSession<?, ?> session, Executor executor, boolean stopOnError) throws InterruptedException {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        if (executor == null)
+            throw new IllegalArgumentException("null executor");
+        int exitValue = 0;
+        for (Step step : this.steps) {
+            exitValue = step.getPipeline().execute(session, executor);
+            if (exitValue != 0 && stopOnError) {
+                session.getErrorStream().println(String.format("Error: %s, line %d: command failed with exit value %d",
+                  this.path, step.getLineNumber(), exitValue));
+                break;
+            }
+        }
+        return exitValue;
+    }
+
+// Step
+
+    /**
+     * A single (possibly multi-line) command in a {@link Script}.
+     */
+    public static class Step {
+
+        private final int lineNumber;
+        private final Pipeline pipeline;
+
+        /**
+         * Constructor.
+         *
+         * @param lineNumber the line number (one-based) at which the command starts
+         * @param pipeline the command(s) to execute
+         * @throws IllegalArgumentException if {@code pipeline} is null
+         */
+        public Step(int lineNumber, Pipeline pipeline) {
+            if (pipeline == null)
+                throw new IllegalArgumentException("null pipeline");
+            this.lineNumber = lineNumber;
+            this.pipeline = pipeline;
+        }
+
+        /**
+         * Get the line number at which this step's command starts.
+         *
+         * @return one-based line number
+         */
+        public int getLineNumber() {
+            return this.lineNumber;
+        }
+
+        /**
+         * Get the command(s) to execute.
+         *
+         * @return step pipeline
+         */
+        public Pipeline getPipeline() {
+            return this.pipeline;
+        }
+    }
+}
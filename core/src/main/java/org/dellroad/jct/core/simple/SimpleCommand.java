@@ -5,6 +5,7 @@
 
 package org.dellroad.jct.core.simple;
 
+import java.time.Duration;
 import java.util.List;
 
 import org.dellroad.jct.core.ConsoleSession;
@@ -56,4 +57,71 @@ public interface SimpleCommand {
      * @throws InterruptedException if execution is interrupted
      */
     int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException;
+
+    /**
+     * Get how long the result of executing this command may be reused for identical invocations.
+     *
+     * <p>
+     * Commands that are expensive but idempotent can return a positive value here, in which case repeated
+     * invocations with the same name and parameters may be served from a {@link CommandCache} instead of
+     * executing the command again. Cached commands are always executed with empty input.
+     *
+     * <p>
+     * The implementation in {@link SimpleCommand} returns null.
+     *
+     * @return cached result time to live, or null (or non-positive) to disable caching
+     */
+    default Duration getCacheTimeToLive() {
+        return null;
+    }
+
+    /**
+     * Determine whether this command needs exclusive use of the session's terminal, e.g., because it
+     * reads keystrokes or takes over the screen.
+     *
+     * <p>
+     * Such commands can't be run as background jobs.
+     *
+     * <p>
+     * The implementation in {@link SimpleCommand} returns false.
+     *
+     * @return true if this command requires the terminal
+     */
+    default boolean requiresTerminal() {
+        return false;
+    }
+
+    /**
+     * Get completions for the next argument of this command.
+     *
+     * <p>
+     * This is invoked by a {@link CompletionEngine} when the user requests completion of an argument (i.e., not the
+     * command name itself). It runs in a separate thread, so it may take time to compute its result; however, if
+     * it doesn't finish within the engine's deadline, the user won't see the result until they try again. There is no
+     * associated session, because completion happens before a command line is executed.
+     *
+     * <p>
+     * The implementation in {@link SimpleCommand} returns an empty list.
+     *
+     * @param owner command owner
+     * @param name the name under which this command is being invoked
+     * @param args the arguments preceding the one being completed (does not include command name)
+     * @return candidate values for the next argument, possibly empty
+     * @throws InterruptedException if interrupted
+     */
+    default List<String> complete(SimpleCommandSupport owner, String name, List<String> args) throws InterruptedException {
+        return List.of();
+    }
+
+    /**
+     * Get how long the results of {@link #complete complete()} may be reused for identical arguments.
+     *
+     * <p>
+     * The implementation in {@link SimpleCommand} returns null.
+     *
+     * @return completion time to live, zero to disable caching, or null for the {@link CompletionEngine}'s default
+     */
+    default Duration getCompletionTimeToLive() {
+        return null;
+    }
 }
@@ -6,6 +6,7 @@
 package org.dellroad.jct.core.simple;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -17,6 +18,10 @@ import java.util.List;
  *  <li>Backslash escapes are supported for (in particular) double quote and backslash characters
  *  <li>Backslash escapes are supported for end of line continuations to the next line
  * </ul>
+ *
+ * <p>
+ * The returned list is a {@link CommandLineParser.Words}, so words containing quotes or escapes, such as {@code "|"},
+ * are not treated as operators.
  */
 public class SimpleCommandLineParser implements CommandLineParser {
 
@@ -25,6 +30,7 @@ public class SimpleCommandLineParser implements CommandLineParser {
         if (line == null)
             throw new IllegalArgumentException("null line");
         final ArrayList<String> argList = new ArrayList<>();
+        final BitSet quoted = new BitSet();
         final int length = line.length();
         boolean inquote = false;
         int posn = 0;
@@ -41,6 +47,7 @@ public class SimpleCommandLineParser implements CommandLineParser {
                 if (ch == '"') {
                     if (nextArg == null)
                         nextArg = new StringBuilder();
+                    quoted.set(argList.size());
                     inquote = true;
                     continue;
                 }
@@ -50,6 +57,8 @@ public class SimpleCommandLineParser implements CommandLineParser {
                     if (posn >= line.length())
                         return null;
                     ch = line.charAt(posn++);
+                    if (!Character.isWhitespace(ch))
+                        quoted.set(argList.size());
                 }
 
                 // Whitespace outside of quotes?
@@ -92,7 +101,7 @@ public class SimpleCommandLineParser implements CommandLineParser {
             argList.add(nextArg.toString());
 
         // Done
-        return argList;
+        return new Words(argList, quoted);
     }
 
     private int scanQuotedChar(String line, int posn, StringBuilder arg) throws SyntaxException {
@@ -5,23 +5,79 @@
 
 package org.dellroad.jct.core.simple;
 
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.dellroad.jct.core.ConsoleSession;
 import org.dellroad.jct.core.ExecRequest;
+import org.dellroad.jct.core.ShellSession;
+import org.dellroad.jct.core.event.ConsoleEvent;
+import org.dellroad.jct.core.event.ConsoleListener;
+import org.dellroad.jct.core.event.EventDispatcher;
+import org.dellroad.jct.core.util.ConsoleUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Support superclass for console components that utilize {@link SimpleCommand}s.
  */
 public class SimpleCommandSupport {
 
+    /**
+     * Default {@linkplain #getTimeoutGracePeriod timeout grace period}.
+     */
+    public static final Duration DEFAULT_TIMEOUT_GRACE_PERIOD = Duration.ofSeconds(5);
+
+    /**
+     * Maximum number of compiled scripts {@linkplain #compileScript cached}.
+     */
+    public static final int MAX_CACHED_SCRIPTS = 64;
+
     protected CommandLineParser commandLineParser = new SimpleCommandLineParser();
     protected List<CommandBundle> commandBundles = new ArrayList<>();
+    protected Executor executor;
+    protected ScheduledExecutorService scheduler;
+    protected Duration defaultTimeout;
+    protected Duration timeoutGracePeriod = DEFAULT_TIMEOUT_GRACE_PERIOD;
+    protected Map<String, Duration> commandTimeouts = new ConcurrentHashMap<>();
+    @SuppressWarnings("serial")
+    protected final Map<Path, Script> scriptCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Script> eldest) {
+            return this.size() > MAX_CACHED_SCRIPTS;
+        }
+    });
+    protected CommandCache commandCache = new CommandCache();
+    protected EventDispatcher eventDispatcher = new EventDispatcher();
+    protected final List<MetricsSource> metricsSources = new CopyOnWriteArrayList<>();
+    protected Tracer tracer = new Tracer();
+    protected Duration slowCommandThreshold;
+    protected Path redirectDirectory;
+    protected Path scriptDirectory;
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
     /**
      * Get the configured command line parser.
@@ -56,6 +112,493 @@ public class SimpleCommandSupport {
         return this.commandBundles;
     }
 
+    /**
+     * Get the executor used to run commands asynchronously, e.g., the upstream stages of a {@link Pipeline}.
+     *
+     * <p>
+     * If no executor has been explicitly configured, a shared default executor is used. The default
+     * executor uses an unbounded pool of daemon threads. Those threads don't inherit {@link InheritableThreadLocal}
+     * values, because whichever thread happens to grow the pool would otherwise leak its values into every task
+     * later run on the new thread.
+     *
+     * <p>
+     * The returned executor wraps the configured executor so that tasks inherit the submitting thread's
+     * {@linkplain Tracer#currentSpan current trace span}.
+     *
+     * @return command executor, never null
+     */
+    public Executor getExecutor() {
+        return Tracer.propagate(this.executor != null ? this.executor : DefaultExecutor.INSTANCE);
+    }
+
+    /**
+     * Configure the executor used to run commands asynchronously.
+     *
+     * <p>
+     * The executor must not queue tasks indefinitely; otherwise, pipelines could deadlock.
+     *
+     * @param executor command executor, or null for the shared default
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Get the scheduler used for timers, e.g., command {@linkplain #getTimeout timeouts}.
+     *
+     * <p>
+     * If no scheduler has been explicitly configured, a shared default scheduler is returned. The default
+     * scheduler uses a single daemon thread; scheduled tasks must therefore not block.
+     *
+     * @return timer scheduler, never null
+     */
+    public ScheduledExecutorService getScheduler() {
+        return this.scheduler != null ? this.scheduler : DefaultScheduler.INSTANCE;
+    }
+
+    /**
+     * Configure the scheduler used for timers.
+     *
+     * @param scheduler timer scheduler, or null for the shared default
+     */
+    public void setScheduler(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Get the default command execution timeout.
+     *
+     * @return default timeout, or null for none
+     * @see #getTimeout
+     */
+    public Duration getDefaultTimeout() {
+        return this.defaultTimeout;
+    }
+
+    /**
+     * Configure the default command execution timeout.
+     *
+     * <p>
+     * Note that this also applies to commands (such as "timeout") that execute other commands.
+     * Use {@link #getCommandTimeouts} to override the default for individual commands.
+     *
+     * @param defaultTimeout default timeout, or null for none
+     * @see #getTimeout
+     */
+    public void setDefaultTimeout(Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    /**
+     * Get the grace period allowed for a timed out command to respond to being interrupted.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_TIMEOUT_GRACE_PERIOD}.
+     *
+     * @return timeout grace period
+     * @see CommandTimeout
+     */
+    public Duration getTimeoutGracePeriod() {
+        return this.timeoutGracePeriod;
+    }
+
+    /**
+     * Configure the grace period allowed for a timed out command to respond to being interrupted.
+     *
+     * @param timeoutGracePeriod timeout grace period
+     * @throws IllegalArgumentException if {@code timeoutGracePeriod} is null, zero, or negative
+     * @see CommandTimeout
+     */
+    public void setTimeoutGracePeriod(Duration timeoutGracePeriod) {
+        if (timeoutGracePeriod == null)
+            throw new IllegalArgumentException("null timeoutGracePeriod");
+        if (timeoutGracePeriod.isNegative() || timeoutGracePeriod.isZero())
+            throw new IllegalArgumentException("invalid timeoutGracePeriod");
+        this.timeoutGracePeriod = timeoutGracePeriod;
+    }
+
+    /**
+     * Get the execution time at or above which commands are logged as slow.
+     *
+     * @return slow command threshold, or null if slow commands are not logged
+     * @see #logSlowCommand
+     */
+    public Duration getSlowCommandThreshold() {
+        return this.slowCommandThreshold;
+    }
+
+    /**
+     * Configure the execution time at or above which commands are logged as slow.
+     *
+     * <p>
+     * When configured, each command's executing thread is sampled while it runs by tasks on the
+     * {@linkplain #getScheduler scheduler}, and commands that turn out to be slow are passed to {@link #logSlowCommand
+     * logSlowCommand()}. Default is null.
+     *
+     * @param slowCommandThreshold slow command threshold, or null to disable
+     * @throws IllegalArgumentException if {@code slowCommandThreshold} is zero or negative
+     * @see SlowCommandWatch
+     */
+    public void setSlowCommandThreshold(Duration slowCommandThreshold) {
+        if (slowCommandThreshold != null && (slowCommandThreshold.isNegative() || slowCommandThreshold.isZero()))
+            throw new IllegalArgumentException("invalid slowCommandThreshold");
+        this.slowCommandThreshold = slowCommandThreshold;
+    }
+
+    /**
+     * Get the directory to which pipeline output may be redirected.
+     *
+     * @return redirection directory, or null if output redirection is disabled
+     * @see #findPipeline findPipeline()
+     */
+    public Path getRedirectDirectory() {
+        return this.redirectDirectory;
+    }
+
+    /**
+     * Configure the directory to which pipeline output may be redirected.
+     *
+     * <p>
+     * Redirection creates and overwrites files on the server, so it is disabled by default. When enabled, redirection
+     * filenames are resolved against this directory, and filenames that would escape it are rejected.
+     *
+     * @param redirectDirectory redirection directory, or null to disable output redirection
+     * @see ConsoleUtil#resolveWithin
+     */
+    public void setRedirectDirectory(Path redirectDirectory) {
+        this.redirectDirectory = redirectDirectory;
+    }
+
+    /**
+     * Get the directory from which the {@code source} command may execute scripts.
+     *
+     * @return script directory, or null if the {@code source} command is disabled
+     * @see org.dellroad.jct.core.simple.command.SourceCommand
+     */
+    public Path getScriptDirectory() {
+        return this.scriptDirectory;
+    }
+
+    /**
+     * Configure the directory from which the {@code source} command may execute scripts.
+     *
+     * <p>
+     * The {@code source} command reads server files named by the user, and its error messages can reveal their
+     * contents, so it is disabled by default. When enabled, script filenames are resolved against this directory,
+     * and filenames that would escape it are rejected. This does not affect scripts executed via
+     * {@link SimpleExec#newScriptSession SimpleExec.newScriptSession()}, whose paths come from the application.
+     *
+     * @param scriptDirectory script directory, or null to disable the {@code source} command
+     * @see ConsoleUtil#resolveWithin
+     */
+    public void setScriptDirectory(Path scriptDirectory) {
+        this.scriptDirectory = scriptDirectory;
+    }
+
+    /**
+     * Get the per-command execution timeouts, keyed by command name.
+     *
+     * <p>
+     * The returned map is mutable and thread safe. A zero duration disables any bundle or default timeout.
+     *
+     * @return per-command timeouts, never null
+     * @see #getTimeout
+     */
+    public Map<String, Duration> getCommandTimeouts() {
+        return this.commandTimeouts;
+    }
+
+    /**
+     * Determine the execution timeout that applies to the given command.
+     *
+     * <p>
+     * The timeout is taken from the first of the following that is not null: the {@linkplain #getCommandTimeouts
+     * per-command timeout}, the {@linkplain CommandBundle#getDefaultTimeout default timeout} of the bundle that
+     * provided the command, or this instance's {@linkplain #getDefaultTimeout default timeout}.
+     *
+     * @param command command to be executed
+     * @return command timeout, or null for none
+     * @throws IllegalArgumentException if {@code command} is null
+     */
+    public Duration getTimeout(FoundCommand command) {
+        if (command == null)
+            throw new IllegalArgumentException("null command");
+        Duration timeout = this.commandTimeouts.get(command.getName());
+        if (timeout == null) {
+            timeout = this.commandBundles.stream()
+              .filter(bundle -> bundle.get(command.getName()) == command.getCommand())
+              .findFirst()
+              .map(CommandBundle::getDefaultTimeout)
+              .orElse(null);
+        }
+        if (timeout == null)
+            timeout = this.defaultTimeout;
+        return timeout != null && !timeout.isNegative() && !timeout.isZero() ? timeout : null;
+    }
+
+    /**
+     * Get the cache used for the results of {@linkplain SimpleCommand#getCacheTimeToLive cacheable} commands.
+     *
+     * @return command result cache, or null if caching is disabled
+     */
+    public CommandCache getCommandCache() {
+        return this.commandCache;
+    }
+
+    /**
+     * Configure the cache used for the results of {@linkplain SimpleCommand#getCacheTimeToLive cacheable} commands.
+     *
+     * <p>
+     * By default, a {@link CommandCache} with default settings is used.
+     *
+     * @param commandCache command result cache, or null to disable caching
+     */
+    public void setCommandCache(CommandCache commandCache) {
+        this.commandCache = commandCache;
+    }
+
+    /**
+     * Get the dispatcher for session and command {@linkplain ConsoleEvent events}.
+     *
+     * @return event dispatcher, never null
+     */
+    public EventDispatcher getEventDispatcher() {
+        return this.eventDispatcher;
+    }
+
+    /**
+     * Configure the dispatcher for session and command {@linkplain ConsoleEvent events}.
+     *
+     * <p>
+     * This allows several instances, e.g., a {@link SimpleShell} and a {@link SimpleExec}, to share listeners.
+     * By default, each instance has its own {@link EventDispatcher} with default settings.
+     *
+     * @param eventDispatcher event dispatcher
+     * @throws IllegalArgumentException if {@code eventDispatcher} is null
+     */
+    public void setEventDispatcher(EventDispatcher eventDispatcher) {
+        if (eventDispatcher == null)
+            throw new IllegalArgumentException("null eventDispatcher");
+        this.eventDispatcher = eventDispatcher;
+    }
+
+    /**
+     * Register a listener for session and command {@linkplain ConsoleEvent events}.
+     *
+     * <p>
+     * Equivalent to {@code getEventDispatcher().addListener(listener)}.
+     *
+     * @param listener listener to add
+     * @throws IllegalArgumentException if {@code listener} is null
+     */
+    public void addListener(ConsoleListener listener) {
+        this.eventDispatcher.addListener(listener);
+    }
+
+    /**
+     * Unregister a listener for session and command {@linkplain ConsoleEvent events}.
+     *
+     * <p>
+     * Equivalent to {@code getEventDispatcher().removeListener(listener)}.
+     *
+     * @param listener listener to remove
+     * @return true if {@code listener} was found and removed
+     */
+    public boolean removeListener(ConsoleListener listener) {
+        return this.eventDispatcher.removeListener(listener);
+    }
+
+    /**
+     * Get the application metrics sources reported by the {@code metrics} command.
+     *
+     * <p>
+     * The returned list is mutable and thread safe. The {@code metrics} command reports these sources in addition to any
+     * {@linkplain #getEventDispatcher event listeners} that implement {@link MetricsSource}, such as {@link ConsoleMetrics}.
+     *
+     * @return application metrics sources, never null
+     * @see org.dellroad.jct.core.simple.command.MetricsCommand
+     */
+    public List<MetricsSource> getMetricsSources() {
+        return this.metricsSources;
+    }
+
+    /**
+     * Get the tracer that times sessions and commands.
+     *
+     * <p>
+     * By default, each instance has its own {@link Tracer} with no exporter, i.e., tracing is disabled.
+     *
+     * @return tracer, never null
+     */
+    public Tracer getTracer() {
+        return this.tracer;
+    }
+
+    /**
+     * Configure the tracer that times sessions and commands.
+     *
+     * <p>
+     * This allows several instances, e.g., a {@link SimpleShell} and a {@link SimpleExec}, to share an exporter.
+     *
+     * @param tracer tracer
+     * @throws IllegalArgumentException if {@code tracer} is null
+     */
+    public void setTracer(Tracer tracer) {
+        if (tracer == null)
+            throw new IllegalArgumentException("null tracer");
+        this.tracer = tracer;
+    }
+
+    /**
+     * Execute a session's main body, firing {@linkplain ConsoleEvent.SessionOpened session opened} and
+     * {@linkplain ConsoleEvent.SessionClosed session closed} events around it.
+     *
+     * <p>
+     * The sessions created by {@link SimpleShell} and {@link SimpleExec} use this method to execute.
+     * If {@linkplain #getTracer tracing} is enabled, the session executes within a {@code "session"} span.
+     *
+     * @param session the session
+     * @param action performs the session's execution
+     * @return the session's exit value
+     * @throws InterruptedException if {@code action} throws {@link InterruptedException}
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public int executeSession(ConsoleSession<?, ?> session, EventDispatcher.Action action) throws InterruptedException {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        return this.tracer.trace("session", span -> this.addSessionAttributes(span, session),
+          () -> this.eventDispatcher.executeSession(session, action));
+    }
+
+    /**
+     * Execute a command.
+     *
+     * <p>
+     * This is the common path through which {@link SimpleShell}, {@link SimpleExec}, {@link Pipeline}, and built-in
+     * commands that execute other commands all execute {@link SimpleCommand}s. Subclasses can override this method
+     * to intercept/wrap all command execution.
+     *
+     * <p>
+     * The implementation in {@link SimpleCommandSupport} serves {@linkplain SimpleCommand#getCacheTimeToLive cacheable}
+     * commands from the {@linkplain #getCommandCache command cache}, if any, and otherwise delegates to
+     * {@link #executeUncached executeUncached()}. Either way, {@linkplain ConsoleEvent.CommandStarted command started}
+     * and {@linkplain ConsoleEvent.CommandFinished command finished} events are fired, and if {@linkplain #getTracer tracing}
+     * is enabled, the command executes within a {@code "command"} span. Commands taking longer than the
+     * {@linkplain #getSlowCommandThreshold slow command threshold}, if any, are {@linkplain #logSlowCommand logged}.
+     *
+     * @param session current session
+     * @param command command to execute
+     * @return command exit value
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public int execute(ConsoleSession<?, ?> session, FoundCommand command) throws InterruptedException {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        if (command == null)
+            throw new IllegalArgumentException("null command");
+        return this.tracer.trace("command", span -> this.addCommandAttributes(span, command),
+          () -> this.eventDispatcher.executeCommand(session, command.getName(), command.getParameters(), () -> {
+            final Duration slowThreshold = this.slowCommandThreshold;
+            if (slowThreshold != null) {
+                return new SlowCommandWatch(slowThreshold, SlowCommandWatch.DEFAULT_MAX_SAMPLES, this.getScheduler())
+                  .execute(command, () -> this.executeCached(session, command), this::logSlowCommand);
+            }
+            return this.executeCached(session, command);
+        }));
+    }
+
+    private int executeCached(ConsoleSession<?, ?> session, FoundCommand command) throws InterruptedException {
+        final CommandCache cache = this.commandCache;
+        final Duration timeToLive = command.getCommand().getCacheTimeToLive();
+        if (cache != null && timeToLive != null && !timeToLive.isNegative() && !timeToLive.isZero())
+            return cache.execute(session, command, timeToLive, this::executeUncached);
+        return this.executeUncached(session, command);
+    }
+
+    /**
+     * Log a command that took longer than the {@linkplain #getSlowCommandThreshold slow command threshold}.
+     *
+     * <p>
+     * This method is invoked in the thread that executed the command, after it completes.
+     *
+     * <p>
+     * The implementation in {@link SimpleCommandSupport} logs the report, including its stack samples, as a warning.
+     * Subclasses can override this method to record slow commands elsewhere.
+     *
+     * @param report describes the slow command
+     */
+    protected void logSlowCommand(SlowCommandWatch.Report report) {
+        this.log.warn("{}", report);
+    }
+
+    /**
+     * Add attributes describing a session to its {@linkplain #getTracer trace} span.
+     *
+     * <p>
+     * The implementation in {@link SimpleCommandSupport} adds the session type and the {@code USER} environment
+     * variable, if any. Subclasses can override to add more.
+     *
+     * @param span the session's span
+     * @param session the session
+     */
+    protected void addSessionAttributes(Span span, ConsoleSession<?, ?> session) {
+        span.setAttribute("type", session instanceof ShellSession ? "shell" : "exec");
+        final Map<String, String> env = session.getRequest().getEnvironment();
+        if (env != null)
+            span.setAttribute("user", env.get(AuditLog.ENV_USER));
+    }
+
+    /**
+     * Add attributes describing a command to its {@linkplain #getTracer trace} span.
+     *
+     * <p>
+     * The implementation in {@link SimpleCommandSupport} adds the command name and parameters.
+     * Subclasses can override to add more.
+     *
+     * @param span the command's span
+     * @param command the command
+     */
+    protected void addCommandAttributes(Span span, FoundCommand command) {
+        span.setAttribute("command", command.getName());
+        span.setAttribute("args", String.join(" ", command.getParameters()));
+    }
+
+    /**
+     * Execute a command in the current thread without consulting the {@linkplain #getCommandCache command cache}.
+     *
+     * <p>
+     * The implementation in {@link SimpleCommandSupport} executes the command subject to any {@linkplain #getTimeout timeout}.
+     *
+     * @param session current session
+     * @param command command to execute
+     * @return command exit value
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    protected int executeUncached(ConsoleSession<?, ?> session, FoundCommand command) throws InterruptedException {
+        final Duration timeout = this.getTimeout(command);
+        if (timeout != null)
+            return this.executeWithTimeout(session, command, timeout);
+        return command.execute(session);
+    }
+
+    /**
+     * Execute a command in the current thread, subject to the given timeout.
+     *
+     * @param session current session
+     * @param command command to execute
+     * @param timeout time limit
+     * @return command exit value, or {@link CommandTimeout#EXIT_TIMEOUT} if the command timed out
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws IllegalArgumentException if any parameter is null
+     * @see CommandTimeout
+     */
+    public int executeWithTimeout(ConsoleSession<?, ?> session, FoundCommand command, Duration timeout)
+      throws InterruptedException {
+        return new CommandTimeout(timeout, this.timeoutGracePeriod, this.getScheduler(), this.getExecutor())
+          .execute(session, command);
+    }
+
 // Subclass Methods
 
     /**
@@ -122,6 +665,225 @@ public class SimpleCommandSupport {
         return this.findCommand(errout, null, commandList);
     }
 
+    /**
+     * Find the commands in the bundle corresponding to the given command list, which may contain a pipeline.
+     *
+     * <p>
+     * Pipeline stages are separated by {@link Pipeline#PIPE} words. If the command list does not contain
+     * any such separators, the returned pipeline will have only one stage. The command list may end with a
+     * {@link Pipeline#REDIRECT} or {@link Pipeline#REDIRECT_APPEND} word followed by a filename, in which
+     * case the output of the last stage is redirected to that file, which must be within the configured
+     * {@linkplain #getRedirectDirectory redirection directory}; if there is none, redirection is an error.
+     * These operators are only recognized if they were not quoted; see
+     * {@link CommandLineParser#isOperator CommandLineParser.isOperator()}.
+     *
+     * <p>
+     * If an error occurs, an error message is printed to {@code errout} and null is returned.
+     *
+     * @param errout error output
+     * @param commandList command list
+     * @return successful parse and lookup, otherwise null
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public Pipeline findPipeline(PrintStream errout, List<String> commandList) {
+
+        // Validation
+        if (errout == null)
+            throw new IllegalArgumentException("null errout");
+        if (commandList == null)
+            throw new IllegalArgumentException("null commandList");
+
+        // Check for output redirection
+        Pipeline.Redirect redirect = null;
+        final int numWords = commandList.size();
+        for (int i = 0; i < numWords; i++) {
+            final boolean append = CommandLineParser.isOperator(commandList, i, Pipeline.REDIRECT_APPEND);
+            if (!append && !CommandLineParser.isOperator(commandList, i, Pipeline.REDIRECT))
+                continue;
+            if (this.redirectDirectory == null) {
+                errout.println("Error: output redirection is not enabled");
+                return null;
+            }
+            if (i != numWords - 2) {
+                errout.println("Error: redirection must be followed by exactly one filename");
+                return null;
+            }
+            try {
+                final Path path = ConsoleUtil.resolveWithin(this.redirectDirectory, commandList.get(i + 1));
+                redirect = new Pipeline.Redirect(path, append);
+            } catch (IllegalArgumentException | IOException e) {
+                errout.println("Error: " + e.getMessage());
+                return null;
+            }
+            commandList = commandList.subList(0, i);
+            break;
+        }
+
+        // Split into stages and find each command
+        final ArrayList<FoundCommand> stages = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= commandList.size(); i++) {
+            if (i < commandList.size() && !CommandLineParser.isOperator(commandList, i, Pipeline.PIPE))
+                continue;
+            if (i == start && (i > 0 || i < commandList.size())) {
+                errout.println("Error: empty command in pipeline");
+                return null;
+            }
+            final FoundCommand stage = this.findCommand(errout, commandList.subList(start, i));
+            if (stage == null)
+                return null;
+            stages.add(stage);
+            start = i + 1;
+        }
+
+        // Done
+        return new Pipeline(stages, redirect);
+    }
+
+    /**
+     * Find the commands in the bundle corresponding to the given request, which may contain a pipeline.
+     *
+     * <p>
+     * If an error occurs, an error message is printed to {@code errout} and null is returned.
+     *
+     * @param errout error output
+     * @param request exec request
+     * @return successful parse and lookup, otherwise null
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public Pipeline findPipeline(PrintStream errout, ExecRequest request) {
+        if (errout == null)
+            throw new IllegalArgumentException("null errout");
+        if (request == null)
+            throw new IllegalArgumentException("null request");
+        List<String> commandList = request.getCommandList();
+        if (commandList == null) {
+            try {
+                commandList = this.commandLineParser.parseCommandLine(request.getCommandString());
+            } catch (CommandLineParser.SyntaxException e) {
+                errout.println(String.format("%s@%d: %s", "Error", e.getOffset(), e.getMessage()));
+                return null;
+            }
+            if (commandList == null) {
+                errout.println(String.format("%s: %s", "Error", "incomplete command"));
+                return null;
+            }
+        }
+        return this.findPipeline(errout, commandList);
+    }
+
+    /**
+     * Parse a script file containing console commands and resolve all of its commands.
+     *
+     * <p>
+     * Each command in the script is parsed with the configured {@linkplain #getCommandLineParser command line parser}
+     * and may span multiple lines. Blank lines, and lines starting with {@code #} that are not part of a multi-line
+     * command, are ignored. Every command is resolved up front, so a script containing an unknown command fails
+     * before any of it executes.
+     *
+     * <p>
+     * Compiled scripts are cached, keyed by the script's normalized absolute path; a cached script is reused
+     * as long as the file's modification time and size are unchanged. At most {@link #MAX_CACHED_SCRIPTS} scripts
+     * are cached; the least recently used is discarded first. Use {@link #clearScriptCache} to discard
+     * cached scripts, e.g., after changing the configured command bundles.
+     *
+     * <p>
+     * If an error occurs, an error message is printed to {@code errout} and null is returned.
+     *
+     * @param errout error output
+     * @param path script file
+     * @return compiled script, or null if an error occurred
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public Script compileScript(PrintStream errout, Path path) {
+
+        // Validation
+        if (errout == null)
+            throw new IllegalArgumentException("null errout");
+        if (path == null)
+            throw new IllegalArgumentException("null path");
+
+        // Check cache
+        final Path key = path.toAbsolutePath().normalize();
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        } catch (IOException e) {
+            errout.println(String.format("Error: can't read \"%s\": %s", path, e));
+            return null;
+        }
+        final Script cached = this.scriptCache.get(key);
+        if (cached != null
+          && cached.getLastModified().equals(attributes.lastModifiedTime())
+          && cached.getSize() == attributes.size())
+            return cached;
+
+        // Read and parse script
+        final List<String> lines;
+        try {
+            lines = Files.readAllLines(key, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            errout.println(String.format("Error: can't read \"%s\": %s", path, e));
+            return null;
+        }
+        final ArrayList<Script.Step> steps = new ArrayList<>();
+        final StringBuilder buf = new StringBuilder();
+        int startLine = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i);
+
+            // Skip blank lines and comments between commands
+            if (buf.length() == 0) {
+                final String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#"))
+                    continue;
+                startLine = i + 1;
+            } else
+                buf.append('\n');
+            buf.append(line);
+
+            // Parse (possibly multi-line) command
+            final List<String> commandList;
+            try {
+                commandList = this.commandLineParser.parseCommandLine(buf.toString());
+            } catch (CommandLineParser.SyntaxException e) {
+                errout.println(String.format("Error: %s, line %d: %s", path, startLine, e.getMessage()));
+                return null;
+            }
+            if (commandList == null)
+                continue;
+            buf.setLength(0);
+            if (commandList.isEmpty())
+                continue;
+
+            // Resolve command(s)
+            final Pipeline pipeline = this.findPipeline(errout, commandList);
+            if (pipeline == null) {
+                errout.println(String.format("Error: %s, line %d: invalid command", path, startLine));
+                return null;
+            }
+            steps.add(new Script.Step(startLine, pipeline));
+        }
+        if (buf.length() > 0) {
+            errout.println(String.format("Error: %s, line %d: incomplete command", path, startLine));
+            return null;
+        }
+
+        // Cache and return script
+        final Script script = new Script(key, attributes.lastModifiedTime(), attributes.size(), steps);
+        this.scriptCache.put(key, script);
+        return script;
+    }
+
+    /**
+     * Discard all cached scripts.
+     *
+     * @see #compileScript
+     */
+    public void clearScriptCache() {
+        this.scriptCache.clear();
+    }
+
     private FoundCommand findCommand(PrintStream errout, String commandString, List<String> commandList) {
 
         // Validation
@@ -167,6 +929,48 @@ public class SimpleCommandSupport {
         return new FoundCommand(command, name, params);
     }
 
+// DefaultExecutor
+
+    private static final class DefaultExecutor {
+
+        static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new WorkerThreadFactory());
+
+        private DefaultExecutor() {
+        }
+
+        private static final class WorkerThreadFactory implements ThreadFactory {
+
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable action) {
+                final Thread thread = new Thread(null, action, "JCT-Worker-" + this.counter.incrementAndGet(), 0, false);
+                thread.setDaemon(true);
+                return thread;
+            }
+        }
+    }
+
+// DefaultScheduler
+
+    private static final class DefaultScheduler {
+
+        static final ScheduledThreadPoolExecutor INSTANCE = DefaultScheduler.create();
+
+        private DefaultScheduler() {
+        }
+
+        private static ScheduledThreadPoolExecutor create() {
+            final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, action -> {
+                final Thread thread = new Thread(action, "JCT-Timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+
 // FoundCommand
 
     /**
@@ -5,18 +5,63 @@
 
 package org.dellroad.jct.core.simple;
 
+import java.io.BufferedReader;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.dellroad.jct.core.AbstractExecSession;
+import org.dellroad.jct.core.ConsoleSession;
 import org.dellroad.jct.core.Exec;
 import org.dellroad.jct.core.ExecRequest;
 import org.dellroad.jct.core.ExecSession;
+import org.dellroad.jct.core.util.ConsoleUtil;
+import org.dellroad.jct.core.util.RedirectedSession;
 
 /**
  * A simple implementation of the {@link Exec} interface using a library of {@link SimpleCommand}s.
+ *
+ * <p>
+ * If {@linkplain #setBatchMode batch mode} is enabled and the requested command line is empty, the session runs
+ * in {@linkplain #newBatchSession batch mode}, reading commands from its input and executing them one after another.
  */
 public class SimpleExec extends SimpleCommandSupport implements Exec {
 
+    protected boolean batchMode;
+
+    /**
+     * Determine whether exec requests with an empty command line run in {@linkplain #newBatchSession batch mode}.
+     *
+     * <p>
+     * Default is false.
+     *
+     * @return true if batch mode is enabled
+     */
+    public boolean isBatchMode() {
+        return this.batchMode;
+    }
+
+    /**
+     * Configure whether exec requests with an empty command line run in {@linkplain #newBatchSession batch mode}.
+     *
+     * <p>
+     * If disabled, an empty command line is an error.
+     *
+     * @param batchMode true to enable batch mode
+     */
+    public void setBatchMode(boolean batchMode) {
+        this.batchMode = batchMode;
+    }
+
 // Exec
 
     @Override
@@ -26,13 +71,19 @@ public class SimpleExec extends SimpleCommandSupport implements Exec {
         if (request == null)
             throw new IllegalArgumentException("null request");
 
-        // Parse command line
-        final FoundCommand command = this.findCommand(request.getErrorStream(), request);
-        if (command == null)
-            return null;
+        // Batch mode?
+        if (this.isBatchRequest(request))
+            return this.newBatchSession(request);
 
-        // Build session
-        return this.newExecSession(request, command);
+        // Parse command line and build session
+        try (Span span = this.tracer.startSpan("session.setup")) {
+            if (span != null)
+                span.setAttribute("type", "exec");
+            final Pipeline pipeline = this.findPipeline(request.getErrorStream(), request);
+            if (pipeline == null)
+                return null;
+            return this.newExecSession(request, pipeline);
+        }
     }
 
 // Public Methods
@@ -50,6 +101,88 @@ public class SimpleExec extends SimpleCommandSupport implements Exec {
         return new Session(this, request, command);
     }
 
+    /**
+     * Alternate ssession creator for when the command line is already parsed into a pipeline.
+     *
+     * @param request session request
+     * @param pipeline command(s) to execute
+     * @return new session
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public ExecSession newExecSession(ExecRequest request, Pipeline pipeline) throws IOException {
+        return new Session(this, request, pipeline);
+    }
+
+    /**
+     * Create a session that executes a script of console commands.
+     *
+     * <p>
+     * The script is compiled via {@link #compileScript compileScript()}, so all of its commands are resolved
+     * before any of them execute. Execution stops at the first command that returns a non-zero exit value,
+     * which becomes the session's exit value.
+     *
+     * <p>
+     * If the script can't be compiled, an error message is printed to the request's error stream and null is returned.
+     *
+     * @param request session request; its command line is ignored
+     * @param path script file
+     * @return new session, or null if the script could not be compiled
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public ExecSession newScriptSession(ExecRequest request, Path path) throws IOException {
+
+        // Validation
+        if (request == null)
+            throw new IllegalArgumentException("null request");
+        if (path == null)
+            throw new IllegalArgumentException("null path");
+
+        // Compile script
+        final Script script = this.compileScript(request.getErrorStream(), path);
+        if (script == null)
+            return null;
+
+        // Build session
+        return new ScriptSession(this, request, script);
+    }
+
+    /**
+     * Create a session that reads commands from its input and executes them one at a time.
+     *
+     * <p>
+     * This allows a single exec session to execute any number of commands, avoiding the overhead of creating
+     * a new process or connection for each one. See {@link BatchSession} for details.
+     *
+     * @param request session request; its command line is ignored
+     * @return new session
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if {@code request} is null
+     */
+    public ExecSession newBatchSession(ExecRequest request) throws IOException {
+        return new BatchSession(this, request);
+    }
+
+// Internal Methods
+
+    /**
+     * Determine whether the given request should be handled in {@linkplain #newBatchSession batch mode}.
+     *
+     * <p>
+     * The implementation in {@link SimpleExec} returns true if {@linkplain #isBatchMode batch mode} is enabled
+     * and the request's command line is empty.
+     *
+     * @param request session request
+     * @return true for batch mode
+     */
+    protected boolean isBatchRequest(ExecRequest request) {
+        if (!this.batchMode)
+            return false;
+        final List<String> commandList = request.getCommandList();
+        return commandList != null ? commandList.isEmpty() : request.getCommandString().trim().isEmpty();
+    }
+
 // Session
 
     /**
@@ -57,7 +190,7 @@ public class SimpleExec extends SimpleCommandSupport implements Exec {
      */
     public static class Session extends AbstractExecSession {
 
-        protected final FoundCommand command;
+        protected final Pipeline pipeline;
 
     // Constructor
 
@@ -71,10 +204,29 @@ public class SimpleExec extends SimpleCommandSupport implements Exec {
          * @throws IllegalArgumentException if any parameter is null
          */
         public Session(SimpleExec exec, ExecRequest request, FoundCommand command) throws IOException {
+            this(exec, request, new Pipeline(Collections.singletonList(Session.checkNull(command))));
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param exec session owner
+         * @param request command execution request
+         * @param pipeline the command(s) to execute
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalArgumentException if any parameter is null
+         */
+        public Session(SimpleExec exec, ExecRequest request, Pipeline pipeline) throws IOException {
             super(exec, request);
+            if (pipeline == null)
+                throw new IllegalArgumentException("null pipeline");
+            this.pipeline = pipeline;
+        }
+
+        private static FoundCommand checkNull(FoundCommand command) {
             if (command == null)
                 throw new IllegalArgumentException("null command");
-            this.command = command;
+            return command;
         }
 
     // AbstractConsoleSession
@@ -85,18 +237,285 @@ public class SimpleExec extends SimpleCommandSupport implements Exec {
         }
 
         /**
-         * Execute this instance's {@link #command} in the context of this session.
+         * Execute this instance's {@link #pipeline} in the context of this session.
          *
          * <p>
-         * The implementation in {@link Session} just invokes {@link FoundCommand#execute}.
-         * Subclasses can override this method to intercept/wrap individual command execution.
+         * The implementation in {@link Session} just invokes {@link Pipeline#execute Pipeline.execute()} using
+         * the owner's {@linkplain SimpleCommandSupport#getExecutor executor}, under an {@link InterruptEscalation}
+         * so that repeated interrupts escalate, and via {@link SimpleCommandSupport#executeSession executeSession()}
+         * so that session events are fired. Subclasses can override this method to intercept/wrap individual
+         * command execution.
          *
          * @return command return value
          * @throws InterruptedException if the current thread is interrupted
          */
         @Override
         protected int doExecute() throws InterruptedException {
-            return this.command.execute(this);
+            final Executor executor = this.getOwner().getExecutor();
+            return this.getOwner().executeSession(this,
+              () -> new InterruptEscalation(executor).execute(this, session -> this.pipeline.execute(session, executor)));
+        }
+    }
+
+// ScriptSession
+
+    /**
+     * {@link ExecSession} implementation used by {@link SimpleExec} to execute a {@link Script}.
+     */
+    public static class ScriptSession extends AbstractExecSession {
+
+        protected final Script script;
+
+    // Constructor
+
+        /**
+         * Constructor.
+         *
+         * @param exec session owner
+         * @param request command execution request
+         * @param script the script to execute
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalArgumentException if any parameter is null
+         */
+        public ScriptSession(SimpleExec exec, ExecRequest request, Script script) throws IOException {
+            super(exec, request);
+            if (script == null)
+                throw new IllegalArgumentException("null script");
+            this.script = script;
+        }
+
+    // AbstractConsoleSession
+
+        @Override
+        public SimpleExec getOwner() {
+            return (SimpleExec)super.getOwner();
+        }
+
+        /**
+         * Execute this instance's {@link #script} in the context of this session, stopping at the first error.
+         *
+         * <p>
+         * Execution happens under an {@link InterruptEscalation} so that repeated interrupts escalate.
+         *
+         * @return exit value of the last command executed
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        @Override
+        protected int doExecute() throws InterruptedException {
+            final Executor executor = this.getOwner().getExecutor();
+            return this.getOwner().executeSession(this,
+              () -> new InterruptEscalation(executor).execute(this, session -> this.script.execute(session, executor, true)));
+        }
+    }
+
+// BatchSession
+
+    /**
+     * {@link ExecSession} implementation used by {@link SimpleExec} in batch mode.
+     *
+     * <p>
+     * Commands are read from the session's input, one per line; a command may continue onto subsequent lines
+     * if the {@linkplain SimpleCommandSupport#getCommandLineParser command line parser} says it's incomplete.
+     * Blank lines and lines starting with {@code #} are ignored. Each command is executed in turn with empty input,
+     * its output streaming directly to the session's output.
+     *
+     * <p>
+     * Each session has a random {@linkplain #getNonce nonce}, so command output can't forge a delimiter.
+     * Before reading any commands, a header line formatted using {@link #HEADER_FORMAT} with the nonce is written
+     * to the session's output. After each command completes, a delimiter line is written to the session's output;
+     * it is formatted using {@link #DELIMITER_FORMAT} with the nonce, the command's sequence number (starting from one),
+     * and the exit value as parameters. If a command's output does not end with a newline, one is added before the
+     * delimiter so the delimiter always appears on a line by itself. Clients should read the nonce from the header
+     * and only accept delimiters that contain it.
+     *
+     * <p>
+     * A command that fails to parse or names an unknown command gets an error message and exit value one.
+     * The session's exit value is zero if every command returned zero, otherwise one.
+     */
+    public static class BatchSession extends AbstractExecSession {
+
+        /**
+         * Format for the header line that precedes all command output.
+         */
+        public static final String HEADER_FORMAT = "##JCT## %s";
+
+        /**
+         * Format for the delimiter line that follows each command's output.
+         */
+        public static final String DELIMITER_FORMAT = "##JCT## %s %d %d";
+
+        private static final SecureRandom RANDOM = new SecureRandom();
+
+        private final String nonce = String.format("%016x", RANDOM.nextLong());
+
+        private LineTracker tracker;
+
+    // Constructor
+
+        /**
+         * Constructor.
+         *
+         * @param exec session owner
+         * @param request command execution request
+         * @throws IOException if an I/O error occurs
+         * @throws IllegalArgumentException if any parameter is null
+         */
+        public BatchSession(SimpleExec exec, ExecRequest request) throws IOException {
+            super(exec, request);
+        }
+
+        /**
+         * Get the random nonce that appears in this session's header and delimiter lines.
+         *
+         * @return nonce as 16 hex digits
+         */
+        public String getNonce() {
+            return this.nonce;
+        }
+
+    // AbstractConsoleSession
+
+        @Override
+        public SimpleExec getOwner() {
+            return (SimpleExec)super.getOwner();
+        }
+
+        /**
+         * Read and execute commands until end of input.
+         *
+         * <p>
+         * Execution happens under an {@link InterruptEscalation} so that repeated interrupts escalate.
+         *
+         * @return zero if every command succeeded, otherwise one
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        @Override
+        protected int doExecute() throws InterruptedException {
+            return this.getOwner().executeSession(this,
+              () -> new InterruptEscalation(this.getOwner().getExecutor()).execute(this, this::executeBatch));
+        }
+
+        private int executeBatch(ConsoleSession<?, ?> session) throws InterruptedException {
+
+            // Set up streams
+            final PrintStream out = session.getOutputStream();
+            final PrintStream err = session.getErrorStream();
+            this.tracker = new LineTracker(out);
+            final PrintStream trackedOut = ConsoleUtil.printStreamLike(this.tracker, out);
+            final ConsoleSession<?, ?> commandSession = RedirectedSession.of(session,
+              InputStream.nullInputStream(), trackedOut, err == out ? trackedOut : err);
+            final BufferedReader reader = new BufferedReader(
+              new InputStreamReader(session.getInputStream(), StandardCharsets.UTF_8));
+            out.println(String.format(HEADER_FORMAT, this.nonce));
+            out.flush();
+
+            // Read and execute commands
+            final SimpleExec owner = this.getOwner();
+            final StringBuilder buf = new StringBuilder();
+            int sequence = 0;
+            boolean failed = false;
+            while (true) {
+
+                // Read next line
+                final String line;
+                try {
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    err.println("Error: error reading input: " + e);
+                    return 1;
+                }
+                if (line == null)
+                    break;
+
+                // Skip blank lines and comments between commands
+                if (buf.length() == 0) {
+                    final String trimmed = line.trim();
+                    if (trimmed.isEmpty() || trimmed.startsWith("#"))
+                        continue;
+                } else
+                    buf.append('\n');
+                buf.append(line);
+
+                // Parse (possibly multi-line) command
+                final List<String> commandList;
+                try {
+                    commandList = owner.getCommandLineParser().parseCommandLine(buf.toString());
+                } catch (CommandLineParser.SyntaxException e) {
+                    err.println(String.format("Error@%d: %s", e.getOffset(), e.getMessage()));
+                    buf.setLength(0);
+                    this.delimit(trackedOut, err, ++sequence, 1);
+                    failed = true;
+                    continue;
+                }
+                if (commandList == null)
+                    continue;
+                buf.setLength(0);
+
+                // Execute command
+                final int exitValue = this.executeCommand(commandSession, commandList);
+                failed |= exitValue != 0;
+                this.delimit(trackedOut, err, ++sequence, exitValue);
+            }
+            if (buf.length() > 0) {
+                err.println("Error: incomplete command");
+                this.delimit(trackedOut, err, ++sequence, 1);
+                failed = true;
+            }
+
+            // Done
+            return failed ? 1 : 0;
+        }
+
+        /**
+         * Execute a single command read from the input.
+         *
+         * @param session session for the command
+         * @param commandList parsed command line
+         * @return command exit value
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        protected int executeCommand(ConsoleSession<?, ?> session, List<String> commandList) throws InterruptedException {
+            final Pipeline pipeline = this.getOwner().findPipeline(session.getErrorStream(), commandList);
+            if (pipeline == null)
+                return 1;
+            return pipeline.execute(session, this.getOwner().getExecutor());
+        }
+
+        private void delimit(PrintStream out, PrintStream err, int sequence, int exitValue) {
+            err.flush();
+            out.flush();
+            if (!this.tracker.isAtLineStart())
+                out.println();
+            out.println(String.format(DELIMITER_FORMAT, this.nonce, sequence, exitValue));
+            out.flush();
+        }
+
+    // LineTracker
+
+        private static final class LineTracker extends FilterOutputStream {
+
+            private boolean atLineStart = true;
+
+            LineTracker(OutputStream out) {
+                super(out);
+            }
+
+            boolean isAtLineStart() {
+                return this.atLineStart;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                this.out.write(b);
+                this.atLineStart = b == '\n';
+            }
+
+            @Override
+            public void write(byte[] buf, int off, int len) throws IOException {
+                this.out.write(buf, off, len);
+                if (len > 0)
+                    this.atLineStart = buf[off + len - 1] == '\n';
+            }
         }
     }
 }
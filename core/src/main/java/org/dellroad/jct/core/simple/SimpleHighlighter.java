@@ -0,0 +1,371 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jline.reader.Highlighter;
+import org.jline.reader.LineReader;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+
+/**
+ * A JLine {@link Highlighter} for {@link SimpleShell} command lines.
+ *
+ * <p>
+ * Command names are shown differently depending on whether they are known, unknown, or (at the end of the line)
+ * still being typed. Pipeline operators, quoted strings, and backslash escapes are also highlighted, and invalid
+ * backslash escapes within quoted strings are flagged.
+ *
+ * <p>
+ * Instances remember where each word of the previous line started and the tokenizer state at that point, so each
+ * invocation only tokenizes the part of the line starting with the word containing the first changed character.
+ * Therefore, instances are stateful and should not be shared between {@link LineReader}s.
+ *
+ * <p>
+ * The tokenization follows {@link SimpleCommandLineParser}; if a different {@link CommandLineParser} is configured,
+ * highlighting may be inaccurate.
+ */
+public class SimpleHighlighter implements Highlighter {
+
+    private static final byte PLAIN = 0;
+    private static final byte QUOTED = 1;
+    private static final byte ESCAPE = 2;
+    private static final byte INVALID_ESCAPE = 3;
+
+    protected final SimpleCommandSupport owner;
+
+    private final ArrayList<Word> words = new ArrayList<>();
+    private String buffer = "";
+    private byte[] kinds = new byte[0];
+    private Pattern errorPattern;
+    private int errorIndex = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param owner the console whose commands are considered known
+     * @throws IllegalArgumentException if {@code owner} is null
+     */
+    public SimpleHighlighter(SimpleCommandSupport owner) {
+        if (owner == null)
+            throw new IllegalArgumentException("null owner");
+        this.owner = owner;
+    }
+
+// Highlighter
+
+    @Override
+    public synchronized AttributedString highlight(LineReader reader, String buffer) {
+        this.tokenize(buffer);
+        final int length = buffer.length();
+
+        // Determine the style of each character
+        final AttributedStyle[] styles = new AttributedStyle[length];
+        Arrays.fill(styles, AttributedStyle.DEFAULT);
+        SortedMap<String, SimpleCommand> commandMap = null;
+        for (Word word : this.words) {
+            final Element element;
+            switch (word.role) {
+            case COMMAND:
+                if (commandMap == null)
+                    commandMap = this.owner.buildCommandMap();
+                element = this.classifyCommand(commandMap, buffer.substring(word.start, word.end), word.end == length);
+                break;
+            case OPERATOR:
+                element = Element.OPERATOR;
+                break;
+            default:
+                element = null;
+                break;
+            }
+            if (element != null)
+                Arrays.fill(styles, word.start, word.end, this.getStyle(element));
+        }
+        for (int i = 0; i < length; i++) {
+            switch (this.kinds[i]) {
+            case QUOTED:
+                styles[i] = this.getStyle(Element.STRING);
+                break;
+            case ESCAPE:
+                styles[i] = this.getStyle(Element.ESCAPE);
+                break;
+            case INVALID_ESCAPE:
+                styles[i] = this.getStyle(Element.INVALID_ESCAPE);
+                break;
+            default:
+                break;
+            }
+        }
+
+        // Apply JLine's error highlighting
+        if (this.errorPattern != null) {
+            final Matcher matcher = this.errorPattern.matcher(buffer);
+            while (matcher.find()) {
+                for (int i = matcher.start(); i < matcher.end(); i++)
+                    styles[i] = styles[i].inverse();
+            }
+        }
+        if (this.errorIndex >= 0 && this.errorIndex < length)
+            styles[this.errorIndex] = styles[this.errorIndex].inverse();
+
+        // Build result
+        final AttributedStringBuilder builder = new AttributedStringBuilder(length);
+        int start = 0;
+        for (int i = 1; i <= length; i++) {
+            if (i == length || !styles[i].equals(styles[start])) {
+                builder.styled(styles[start], buffer.substring(start, i));
+                start = i;
+            }
+        }
+        return builder.toAttributedString();
+    }
+
+    @Override
+    public synchronized void setErrorPattern(Pattern errorPattern) {
+        this.errorPattern = errorPattern;
+    }
+
+    @Override
+    public synchronized void setErrorIndex(int errorIndex) {
+        this.errorIndex = errorIndex;
+    }
+
+// Styles
+
+    /**
+     * Highlighted command line elements.
+     */
+    public enum Element {
+
+        /**
+         * A command name that is known.
+         */
+        KNOWN_COMMAND,
+
+        /**
+         * A command name that is not known.
+         */
+        UNKNOWN_COMMAND,
+
+        /**
+         * A command name that is at the end of the line and is a prefix of some known command name.
+         */
+        PARTIAL_COMMAND,
+
+        /**
+         * A pipeline, redirection, or background operator.
+         */
+        OPERATOR,
+
+        /**
+         * A doubly-quoted string, including the quotes.
+         */
+        STRING,
+
+        /**
+         * A backslash escape.
+         */
+        ESCAPE,
+
+        /**
+         * An invalid backslash escape.
+         */
+        INVALID_ESCAPE;
+    }
+
+    /**
+     * Get the style to use for the given element.
+     *
+     * @param element command line element
+     * @return element style
+     */
+    protected AttributedStyle getStyle(Element element) {
+        switch (element) {
+        case KNOWN_COMMAND:
+            return AttributedStyle.BOLD.foreground(AttributedStyle.GREEN);
+        case UNKNOWN_COMMAND:
+            return AttributedStyle.BOLD.foreground(AttributedStyle.RED);
+        case OPERATOR:
+            return AttributedStyle.BOLD.foreground(AttributedStyle.MAGENTA);
+        case STRING:
+            return AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW);
+        case ESCAPE:
+            return AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN);
+        case INVALID_ESCAPE:
+            return AttributedStyle.DEFAULT.foreground(AttributedStyle.RED).underline();
+        default:
+            return AttributedStyle.DEFAULT;
+        }
+    }
+
+// Internal Methods
+
+    private Element classifyCommand(SortedMap<String, SimpleCommand> commandMap, String text, boolean atEnd) {
+
+        // Decode any quotes or escapes
+        String name = text;
+        if (text.indexOf('"') != -1 || text.indexOf('\\') != -1) {
+            try {
+                final List<String> parsed = this.owner.getCommandLineParser().parseCommandLine(text);
+                if (parsed == null || parsed.size() != 1)
+                    return atEnd ? Element.PARTIAL_COMMAND : Element.UNKNOWN_COMMAND;
+                name = parsed.get(0);
+            } catch (CommandLineParser.SyntaxException e) {
+                return Element.UNKNOWN_COMMAND;
+            }
+        }
+
+        // Check for the command
+        if (commandMap.containsKey(name))
+            return Element.KNOWN_COMMAND;
+        if (atEnd) {
+            final SortedMap<String, SimpleCommand> tail = commandMap.tailMap(name);
+            if (!tail.isEmpty() && tail.firstKey().startsWith(name))
+                return Element.PARTIAL_COMMAND;
+        }
+        return Element.UNKNOWN_COMMAND;
+    }
+
+    // Tokenize the buffer, resuming from the word containing the first character that differs from the previous buffer
+    private void tokenize(String buffer) {
+        final int length = buffer.length();
+
+        // Find where to resume
+        final int limit = Math.min(length, this.buffer.length());
+        int unchanged = 0;
+        while (unchanged < limit && buffer.charAt(unchanged) == this.buffer.charAt(unchanged))
+            unchanged++;
+        int numWords = this.words.size();
+        while (numWords > 0 && this.words.get(numWords - 1).start >= unchanged)
+            numWords--;
+        if (numWords > 0 && this.words.get(numWords - 1).end >= unchanged)
+            numWords--;                                                     // changed word, or the one it was appended to
+        int posn = numWords > 0 ? this.words.get(numWords - 1).end : 0;
+        boolean commandNext = numWords > 0 ? this.words.get(numWords - 1).nextIsCommand : true;
+        this.words.subList(numWords, this.words.size()).clear();
+        if (this.kinds.length < length)
+            this.kinds = Arrays.copyOf(this.kinds, Math.max(length, this.kinds.length * 2));
+        this.buffer = buffer;
+
+        // Tokenize the remainder
+        while (posn < length) {
+
+            // Skip whitespace
+            char ch = buffer.charAt(posn);
+            if (Character.isWhitespace(ch)) {
+                this.kinds[posn++] = PLAIN;
+                continue;
+            }
+
+            // Scan word
+            final int start = posn;
+            boolean inquote = false;
+            while (posn < length) {
+                ch = buffer.charAt(posn);
+                if (!inquote) {
+                    if (Character.isWhitespace(ch))
+                        break;
+                    if (ch == '"') {
+                        inquote = true;
+                        this.kinds[posn++] = QUOTED;
+                    } else if (ch == '\\') {
+                        this.kinds[posn++] = ESCAPE;
+                        if (posn < length)
+                            this.kinds[posn++] = ESCAPE;
+                    } else
+                        this.kinds[posn++] = PLAIN;
+                } else if (ch == '"') {
+                    inquote = false;
+                    this.kinds[posn++] = QUOTED;
+                } else if (ch == '\\')
+                    posn = this.scanQuotedEscape(buffer, posn);
+                else
+                    this.kinds[posn++] = QUOTED;
+            }
+
+            // Classify word
+            final String text = buffer.substring(start, posn);
+            final Role role;
+            if (text.equals(Pipeline.PIPE) || text.equals(Pipeline.REDIRECT)
+              || text.equals(Pipeline.REDIRECT_APPEND) || text.equals(SimpleShell.BACKGROUND))
+                role = Role.OPERATOR;
+            else
+                role = commandNext ? Role.COMMAND : Role.ARGUMENT;
+            commandNext = text.equals(Pipeline.PIPE);
+            this.words.add(new Word(start, posn, role, commandNext));
+        }
+    }
+
+    // Mirrors SimpleCommandLineParser.scanQuotedBackslashEscape(); escapes truncated by the end of the buffer are not invalid
+    private int scanQuotedEscape(String buffer, int posn) {
+        final int start = posn++;
+        final int length = buffer.length();
+        byte kind = ESCAPE;
+        if (posn < length) {
+            final char ch = buffer.charAt(posn++);
+            if (Character.digit(ch, 8) != -1) {
+                int charValue = Character.digit(ch, 8);
+                for (int i = 0; i < 2 && (charValue & ~0x3f) == 0 && posn < length; i++) {
+                    if (buffer.charAt(posn) == '"') {
+                        kind = INVALID_ESCAPE;                              // truncated octal escape
+                        break;
+                    }
+                    final int oct = Character.digit(buffer.charAt(posn), 8);
+                    if (oct == -1)
+                        break;
+                    charValue = (charValue << 3) | oct;
+                    posn++;
+                }
+            } else if (ch == 'u') {
+                while (posn < length && buffer.charAt(posn) == 'u')
+                    posn++;
+                for (int i = 0; i < 4 && posn < length; i++) {
+                    final char hex = buffer.charAt(posn);
+                    if (hex == '"' || Character.digit(hex, 16) == -1) {
+                        kind = INVALID_ESCAPE;                              // truncated or invalid Unicode escape
+                        if (hex != '"')
+                            posn++;
+                        break;
+                    }
+                    posn++;
+                }
+            } else if ("btnfr'\"\\".indexOf(ch) == -1)
+                kind = INVALID_ESCAPE;
+        }
+        Arrays.fill(this.kinds, start, posn, kind);
+        return posn;
+    }
+
+// Word
+
+    private enum Role {
+        COMMAND,
+        ARGUMENT,
+        OPERATOR;
+    }
+
+    private static final class Word {
+
+        final int start;
+        final int end;
+        final Role role;
+        final boolean nextIsCommand;
+
+        Word(int start, int end, Role role, boolean nextIsCommand) {
+            this.start = start;
+            this.end = end;
+            this.role = role;
+            this.nextIsCommand = nextIsCommand;
+        }
+    }
+}
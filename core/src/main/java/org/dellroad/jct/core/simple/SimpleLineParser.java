@@ -0,0 +1,131 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.util.List;
+
+import org.jline.reader.EOFError;
+import org.jline.reader.ParsedLine;
+import org.jline.reader.Parser;
+import org.jline.reader.SyntaxError;
+import org.jline.reader.impl.DefaultParser;
+
+/**
+ * A JLine {@link Parser} that adapts the {@linkplain SimpleCommandSupport#getCommandLineParser configured}
+ * {@link CommandLineParser}.
+ *
+ * <p>
+ * When a line is accepted, it is parsed by the {@link CommandLineParser}. If the parse is incomplete, an {@link EOFError}
+ * is thrown, which causes the {@link org.jline.reader.LineReader} to add a newline and keep reading within the same,
+ * editable buffer. Otherwise, the result of the parse, which may be a syntax error, is made available via an
+ * {@link AcceptedLine}, so the command line doesn't need to be parsed again.
+ *
+ * <p>
+ * For other purposes, e.g., completion, the line is parsed by a {@link DefaultParser} configured to approximate
+ * {@link SimpleCommandLineParser}, because completion requires word positions.
+ */
+public class SimpleLineParser implements Parser {
+
+    protected final SimpleCommandSupport owner;
+    protected final DefaultParser delegate = new DefaultParser()
+      .quoteChars(new char[] { '"' })
+      .escapeChars(new char[] { '\\' });
+
+    /**
+     * Constructor.
+     *
+     * @param owner the console whose command line parser to use
+     * @throws IllegalArgumentException if {@code owner} is null
+     */
+    public SimpleLineParser(SimpleCommandSupport owner) {
+        if (owner == null)
+            throw new IllegalArgumentException("null owner");
+        this.owner = owner;
+    }
+
+// Parser
+
+    @Override
+    public ParsedLine parse(String line, int cursor, ParseContext context) throws SyntaxError {
+        if (context != ParseContext.ACCEPT_LINE)
+            return this.delegate.parse(line, cursor, context);
+        final List<String> commandLine;
+        try {
+            commandLine = this.owner.getCommandLineParser().parseCommandLine(line);
+        } catch (CommandLineParser.SyntaxException e) {
+            return new AcceptedLine(line, cursor, null, e);
+        }
+        if (commandLine == null)
+            throw new EOFError(-1, -1, "incomplete command line");
+        return new AcceptedLine(line, cursor, commandLine, null);
+    }
+
+// AcceptedLine
+
+    /**
+     * The {@link ParsedLine} produced by a {@link SimpleLineParser} for an accepted line.
+     *
+     * <p>
+     * Because no word positions are available, {@link #wordIndex} returns -1.
+     */
+    public static class AcceptedLine implements ParsedLine {
+
+        private final String line;
+        private final int cursor;
+        private final List<String> commandLine;
+        private final CommandLineParser.SyntaxException syntaxException;
+
+        AcceptedLine(String line, int cursor, List<String> commandLine, CommandLineParser.SyntaxException syntaxException) {
+            this.line = line;
+            this.cursor = cursor;
+            this.commandLine = commandLine == null || commandLine instanceof CommandLineParser.Words ?
+              commandLine : List.copyOf(commandLine);           // Words is unmodifiable; keep it so quoting is preserved
+            this.syntaxException = syntaxException;
+        }
+
+        /**
+         * Get the parsed command line.
+         *
+         * @return command name and parameters
+         * @throws CommandLineParser.SyntaxException if the line contains a syntax error
+         */
+        public List<String> getCommandLine() throws CommandLineParser.SyntaxException {
+            if (this.syntaxException != null)
+                throw this.syntaxException;
+            return this.commandLine;
+        }
+
+        @Override
+        public String word() {
+            return "";
+        }
+
+        @Override
+        public int wordCursor() {
+            return 0;
+        }
+
+        @Override
+        public int wordIndex() {
+            return -1;
+        }
+
+        @Override
+        public List<String> words() {
+            return this.commandLine != null ? this.commandLine : List.of();
+        }
+
+        @Override
+        public String line() {
+            return this.line;
+        }
+
+        @Override
+        public int cursor() {
+            return this.cursor;
+        }
+    }
+}
@@ -6,8 +6,10 @@
 package org.dellroad.jct.core.simple;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.UUID;
 
 import org.dellroad.jct.core.AbstractShellSession;
@@ -21,12 +23,27 @@ import org.jline.reader.LineReader;
 import org.jline.reader.LineReaderBuilder;
 import org.jline.reader.ParsedLine;
 import org.jline.reader.UserInterruptException;
+import org.jline.terminal.Terminal;
 
 /**
  * A simple implementation of the {@link Shell} interface based on a library of {@link SimpleCommand}s.
  */
 public class SimpleShell extends SimpleCommandSupport implements Shell {
 
+    /**
+     * The command line word that, when it appears at the end of a command line, causes the command(s)
+     * to be executed in the background as a {@link Job}.
+     */
+    public static final String BACKGROUND = "&";
+
+    /**
+     * The environment variable containing the user name used to key {@linkplain #getHistoryStore persistent history}.
+     */
+    public static final String HISTORY_USER_VARIABLE = "USER";
+
+    protected HistoryStore historyStore;
+    protected CompletionEngine completionEngine = new CompletionEngine(task -> this.getExecutor().execute(task));
+
 // Shell
 
     @Override
@@ -37,7 +54,11 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
             throw new IllegalArgumentException("null request");
 
         // Return new shell session
-        return this.newShellSession(request, this.buildLineReader(request));
+        try (Span span = this.tracer.startSpan("session.setup")) {
+            if (span != null)
+                span.setAttribute("type", "shell");
+            return this.newShellSession(request, this.buildLineReader(request));
+        }
     }
 
 // Public Methods
@@ -82,6 +103,51 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
         return "...> ";
     }
 
+    /**
+     * Get the store used for persistent per-user command history.
+     *
+     * @return history store, or null if history is not persistent
+     */
+    public HistoryStore getHistoryStore() {
+        return this.historyStore;
+    }
+
+    /**
+     * Configure a store for persistent per-user command history.
+     *
+     * <p>
+     * When configured, sessions whose request has a {@value #HISTORY_USER_VARIABLE} environment variable (for SSH
+     * sessions, the authenticated user name) get a history that is loaded from, and saved to, the store.
+     * By default, history is not persistent.
+     *
+     * @param historyStore history store, or null for none
+     */
+    public void setHistoryStore(HistoryStore historyStore) {
+        this.historyStore = historyStore;
+    }
+
+    /**
+     * Get the engine used to compute {@linkplain SimpleCommand#complete command argument completions}.
+     *
+     * @return completion engine, or null if argument completion is disabled
+     */
+    public CompletionEngine getCompletionEngine() {
+        return this.completionEngine;
+    }
+
+    /**
+     * Configure the engine used to compute {@linkplain SimpleCommand#complete command argument completions}.
+     *
+     * <p>
+     * By default, a {@link CompletionEngine} with default settings that runs completers using this
+     * instance's {@linkplain #getExecutor executor} is used.
+     *
+     * @param completionEngine completion engine, or null to disable argument completion
+     */
+    public void setCompletionEngine(CompletionEngine completionEngine) {
+        this.completionEngine = completionEngine;
+    }
+
 // Internal Methods
 
     /**
@@ -89,50 +155,88 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
      *
      * <p>
      * The implementation in {@link SimpleShell} invokes {@link #createLineReaderBuilder}
-     * to create and configure the builder, then just returns {@link LineReaderBuilder#build}.
+     * to create and configure the builder, then returns {@link LineReaderBuilder#build}, after binding
+     * Control-R to an {@linkplain IndexedHistory#bindSearchWidget indexed history search} if possible.
      *
      * @param request associated shell request
      * @return new terminal line reader
      */
     protected LineReader buildLineReader(ShellRequest request) {
-        return this.createLineReaderBuilder(request).build();
+        final LineReader reader = this.createLineReaderBuilder(request).build();
+        if (reader.getHistory() instanceof IndexedHistory)
+            ((IndexedHistory)reader.getHistory()).bindSearchWidget(reader);
+        return reader;
     }
 
     /**
      * Create and configure a {@link LineReaderBuilder} for a new shell session.
      *
+     * <p>
+     * Command lines are parsed by a {@link SimpleLineParser}, so multi-line commands are edited in a single buffer,
+     * and highlighted by a {@link SimpleHighlighter}. The history is an {@link IndexedHistory}; if a
+     * {@linkplain #getHistoryStore history store} is configured and the user is known, it is loaded from and saved
+     * to the store.
+     *
      * @param request associated shell request
      * @return builder for terminal line reader
      */
     protected LineReaderBuilder createLineReaderBuilder(ShellRequest request) {
-        return LineReaderBuilder.builder()
+        final LineReaderBuilder builder = LineReaderBuilder.builder()
             .terminal(request.getTerminal())
             .completer(new SimpleCompleter())
-          //.parser(parser)
-          //.highlighter(highlighter)
-            .variable(LineReader.SECONDARY_PROMPT_PATTERN, "%M%P > ")
+            .parser(new SimpleLineParser(this))
+            .highlighter(new SimpleHighlighter(this))
             .variable(LineReader.INDENTATION, 2)
             .variable(LineReader.LIST_MAX, 100)
-          //.variable(LineReader.HISTORY_FILE, Paths.get(root, "history"))
             .option(LineReader.Option.INSERT_BRACKET, true)
             .option(LineReader.Option.EMPTY_WORD_OPTIONS, false)
             .option(LineReader.Option.USE_FORWARD_SLASH, true)
             .option(LineReader.Option.DISABLE_EVENT_EXPANSION, true);
+        final HistoryStore store = this.historyStore;
+        final String user = request.getEnvironment() != null ? request.getEnvironment().get(HISTORY_USER_VARIABLE) : null;
+        if (store != null && user != null) {
+            builder.history(store.newHistory(user))
+              .variable(LineReader.HISTORY_SIZE, store.getMaxEntries());
+        } else
+            builder.history(new IndexedHistory());
+        return builder;
     }
 
 // SimpleCompleter
 
     /**
-     * A simple {@link Completer} for command names.
+     * A simple {@link Completer} for command names and, via the {@linkplain #getCompletionEngine completion engine},
+     * command arguments.
      */
     protected class SimpleCompleter implements Completer {
 
         @Override
         public void complete(LineReader reader, ParsedLine line, List<Candidate> candidates) {
-            if (line.wordIndex() != 0)
+
+            // Find the start of the current pipeline stage
+            final List<String> words = line.words();
+            final int wordIndex = line.wordIndex();
+            int start = wordIndex;
+            while (start > 0 && !words.get(start - 1).equals(Pipeline.PIPE))
+                start--;
+
+            // Complete command name
+            if (wordIndex == start) {
+                SimpleShell.this.buildCommandMap().forEach(
+                  (name, command) -> candidates.add(this.toCandidate(name, command)));
+                return;
+            }
+
+            // Complete command argument
+            final CompletionEngine engine = SimpleShell.this.completionEngine;
+            if (engine == null)
+                return;
+            final String name = words.get(start);
+            final SimpleCommand command = SimpleShell.this.buildCommandMap().get(name);
+            if (command == null)
                 return;
-            SimpleShell.this.buildCommandMap().forEach(
-              (name, command) -> candidates.add(this.toCandidate(name, command)));
+            engine.complete(SimpleShell.this, command, name, words.subList(start + 1, wordIndex))
+              .forEach(value -> candidates.add(new Candidate(value)));
         }
 
         protected Candidate toCandidate(String name, SimpleCommand command) {
@@ -148,6 +252,7 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
     public static class Session extends AbstractShellSession {
 
         protected final LineReader reader;
+        protected final TreeMap<Integer, Job> jobs = new TreeMap<>();   // guarded by itself
 
     // Constructor
 
@@ -167,6 +272,17 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
             this.reader = reader;
         }
 
+    // Public Methods
+
+        /**
+         * Get the line reader for this session.
+         *
+         * @return console line reader
+         */
+        public LineReader getLineReader() {
+            return this.reader;
+        }
+
     // AbstractConsoleSession
 
         @Override
@@ -176,6 +292,10 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
 
         @Override
         protected int doExecute() throws InterruptedException {
+            return this.getOwner().executeSession(this, this::executeShell);
+        }
+
+        private int executeShell() {
 
             // Send greeting, if any
             Optional.ofNullable(this.getGreeting())
@@ -187,6 +307,8 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
             } catch (Throwable e) {
                 e.printStackTrace(out);
                 return 1;
+            } finally {
+                this.getJobs().forEach(Job::kill);
             }
 
             // Done
@@ -229,12 +351,138 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
             return this.getOwner().getContinuationPrompt();
         }
 
+    // Jobs
+
+        /**
+         * Get the background jobs associated with this session.
+         *
+         * @return jobs sorted by ID
+         */
+        public List<Job> getJobs() {
+            synchronized (this.jobs) {
+                return new ArrayList<>(this.jobs.values());
+            }
+        }
+
+        /**
+         * Find a job by job specification.
+         *
+         * <p>
+         * A job specification is either a job ID, optionally prefixed with {@code %}, or null for the
+         * most recently started job.
+         *
+         * @param spec job specification, or null for the current job
+         * @return matching job, or null if not found
+         */
+        public Job findJob(String spec) {
+            synchronized (this.jobs) {
+                if (spec == null)
+                    return !this.jobs.isEmpty() ? this.jobs.lastEntry().getValue() : null;
+                try {
+                    return this.jobs.get(Integer.parseInt(spec.startsWith("%") ? spec.substring(1) : spec, 10));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * Start executing the given pipeline as a background job.
+         *
+         * @param pipeline command(s) to execute
+         * @param description job description
+         * @return new job
+         * @throws IllegalArgumentException if either parameter is null
+         */
+        public Job startJob(Pipeline pipeline, String description) {
+            final Job job;
+            synchronized (this.jobs) {
+                final int id = !this.jobs.isEmpty() ? this.jobs.lastKey() + 1 : 1;
+                job = new Job(id, description, pipeline);
+                this.jobs.put(id, job);
+            }
+            job.start(this, this.getOwner().getExecutor());
+            return job;
+        }
+
+        /**
+         * Bring the given job into the foreground and wait for it to complete.
+         *
+         * <p>
+         * While the job is in the foreground its output is attached to this session's output and the
+         * {@link Terminal.Signal#TSTP} signal (normally generated by Control-Z) {@linkplain Job#stop stops} it,
+         * returning control to the shell. If the current thread is interrupted (normally via Control-C),
+         * the job is {@linkplain Job#kill killed}; it stays in the job table until it actually exits.
+         *
+         * @param job the job
+         * @return job exit value, or zero if the job was stopped
+         * @throws InterruptedException if the current thread is interrupted
+         * @throws IllegalArgumentException if {@code job} is null
+         */
+        public int foreground(Job job) throws InterruptedException {
+            if (job == null)
+                throw new IllegalArgumentException("null job");
+            final Terminal terminal = this.getRequest().getTerminal();
+            final Terminal.SignalHandler previousHandler = terminal.handle(Terminal.Signal.TSTP, signal -> job.stop());
+            try {
+                job.attach(this.out);
+                job.resume();
+                if (job.waitWhileRunning() == Job.State.STOPPED) {
+                    this.out.println();
+                    this.out.println(job);
+                    return 0;
+                }
+            } catch (InterruptedException e) {
+                job.kill();                                     // job remains listed until it actually exits
+                throw e;
+            } finally {
+                job.detach();
+                terminal.handle(Terminal.Signal.TSTP, previousHandler);
+            }
+            this.removeJob(job);
+            job.printFailure(this.getErrorStream());
+            return Optional.ofNullable(job.getExitValue()).orElse(1);
+        }
+
+        /**
+         * Remove the given job from this session's job table.
+         *
+         * @param job the job
+         * @return true if removed, false if not found
+         */
+        public boolean removeJob(Job job) {
+            synchronized (this.jobs) {
+                return this.jobs.remove(job.getId(), job);
+            }
+        }
+
+        /**
+         * Report on, and remove, any jobs that have completed.
+         *
+         * <p>
+         * Each completed job's remaining buffered output is displayed, followed by its final status.
+         */
+        protected void reportCompletedJobs() {
+            for (Job job : this.getJobs()) {
+                if (job.getState() != Job.State.DONE)
+                    continue;
+                job.flushBuffer(this.out);
+                job.printFailure(this.getErrorStream());
+                this.out.println(job);
+                this.removeJob(job);
+            }
+        }
+
     // Internal Methods
 
         protected void commandLoop() {
+            this.reader.setVariable(LineReader.SECONDARY_PROMPT_PATTERN, this.getContinuationPrompt().replace("%", "%%"));
         mainLoop:
             while (this.exitValue == null) {
 
+                // Report on any completed background jobs
+                this.reportCompletedJobs();
+
                 // Initialize new multi-line command line
                 StringBuilder buf = new StringBuilder();
                 List<String> commandLine;
@@ -244,7 +492,7 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
                     final boolean firstLine = buf.length() == 0;
                     final String prompt = firstLine ? this.getNormalPrompt() : this.getContinuationPrompt();
 
-                    // Read the next single line of input
+                    // Read the next line of input; with a SimpleLineParser, this is the entire (multi-line) command
                     String line;
                     try {
                         line = this.reader.readLine(prompt);
@@ -259,12 +507,16 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
                         buf.append('\n');
                     buf.append(line);
 
-                    // Parse entire (multi-line) command
+                    // Parse entire (multi-line) command, unless the reader's parser already did
+                    final ParsedLine parsedLine = firstLine ? this.reader.getParsedLine() : null;
                     try {
-                        commandLine = this.getOwner().commandLineParser.parseCommandLine(buf.toString());
+                        if (parsedLine instanceof SimpleLineParser.AcceptedLine && parsedLine.line().equals(line))
+                            commandLine = ((SimpleLineParser.AcceptedLine)parsedLine).getCommandLine();
+                        else
+                            commandLine = this.getOwner().commandLineParser.parseCommandLine(buf.toString());
                     } catch (CommandLineParser.SyntaxException e) {
                         this.getErrorStream().println(String.format("%s: %s", "Error", e.getMessage()));
-                        continue;
+                        continue mainLoop;
                     }
 
                     // Was that the last line?
@@ -276,14 +528,38 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
                 if (commandLine.isEmpty())
                     continue;
 
-                // Find command
-                final FoundCommand command = this.getOwner().findCommand(this.getErrorStream(), commandLine);
-                if (command == null)
+                // Background job?
+                final boolean background = CommandLineParser.isOperator(commandLine,
+                  commandLine.size() - 1, SimpleShell.BACKGROUND);
+                if (background && (commandLine = commandLine.subList(0, commandLine.size() - 1)).isEmpty()) {
+                    this.getErrorStream().println("Error: empty background command");
                     continue;
+                }
 
-                // Execute command
+                // Find command(s)
+                final Pipeline pipeline = this.getOwner().findPipeline(this.getErrorStream(), commandLine);
+                if (pipeline == null)
+                    continue;
+
+                // Start background job
+                if (background) {
+                    final FoundCommand interactive = pipeline.getStages().stream()
+                      .filter(stage -> stage.getCommand().requiresTerminal())
+                      .findFirst()
+                      .orElse(null);
+                    if (interactive != null) {
+                        this.getErrorStream().println(String.format(
+                          "Error: the \"%s\" command can't run in the background", interactive.getName()));
+                        continue;
+                    }
+                    final Job job = this.startJob(pipeline, String.join(" ", commandLine));
+                    this.out.println(String.format("[%d] %s", job.getId(), job.getDescription()));
+                    continue;
+                }
+
+                // Execute command(s)
                 try {
-                    this.execute(command);
+                    this.execute(pipeline);
                 } catch (InterruptedException e) {
                     this.reader.getTerminal().flush();          // push out the "^C" that the terminal inserts
                     this.getOutputStream().println();
@@ -297,8 +573,9 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
          * Execute the given command in the context of this session.
          *
          * <p>
-         * The implementation in {@link Session} just invokes {@link FoundCommand#execute}.
-         * Subclasses can override this method to intercept/wrap individual command execution.
+         * The implementation in {@link Session} invokes {@link SimpleCommandSupport#execute SimpleCommandSupport.execute()}
+         * via {@link #executeEscalated executeEscalated()}. Subclasses can override this method to intercept/wrap individual
+         * command execution.
          *
          * @param command command to execute
          * @return command return value
@@ -308,7 +585,44 @@ public class SimpleShell extends SimpleCommandSupport implements Shell {
         protected int execute(FoundCommand command) throws InterruptedException {
             if (command == null)
                 throw new IllegalArgumentException("null command");
-            return command.execute(this);
+            return this.executeEscalated(session -> this.getOwner().execute(session, command));
+        }
+
+        /**
+         * Execute the given pipeline in the context of this session.
+         *
+         * <p>
+         * The implementation in {@link Session} invokes {@link #execute(FoundCommand)} if the pipeline has
+         * only one stage and no output redirection, otherwise {@link Pipeline#execute Pipeline.execute()}
+         * using the owner's {@linkplain SimpleCommandSupport#getExecutor executor}, via {@link #executeEscalated
+         * executeEscalated()}.
+         *
+         * @param pipeline command(s) to execute
+         * @return pipeline return value
+         * @throws InterruptedException if the current thread is interrupted
+         * @throws IllegalArgumentException if {@code pipeline} is null
+         */
+        protected int execute(Pipeline pipeline) throws InterruptedException {
+            if (pipeline == null)
+                throw new IllegalArgumentException("null pipeline");
+            if (pipeline.getStages().size() == 1 && pipeline.getRedirect() == null)
+                return this.execute(pipeline.getStages().get(0));
+            return this.executeEscalated(session -> pipeline.execute(session, this.getOwner().getExecutor()));
+        }
+
+        /**
+         * Execute foreground work so that repeated interrupts (normally via Control-C) escalate.
+         *
+         * <p>
+         * The implementation in {@link Session} uses an {@link InterruptEscalation} with the owner's
+         * {@linkplain SimpleCommandSupport#getExecutor executor}.
+         *
+         * @param work the work to execute
+         * @return exit value
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        protected int executeEscalated(InterruptEscalation.Work work) throws InterruptedException {
+            return new InterruptEscalation(this.getOwner().getExecutor()).execute(this, work);
         }
     }
 }
@@ -0,0 +1,361 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.dellroad.jct.core.event.EventDispatcher;
+import org.dellroad.jct.core.util.ConsoleUtil;
+
+/**
+ * Executes commands in the current thread and reports those that take longer than a threshold, along with
+ * stack samples showing what the command was doing.
+ *
+ * <p>
+ * While a command runs, the executing thread's stack is sampled at regular intervals, starting at the threshold divided
+ * by the maximum number of samples. Once the maximum is reached, every other sample is discarded and the interval
+ * doubles, so the retained samples are always spread evenly over the command's entire execution. A command that
+ * finishes before the first interval costs only the scheduling and cancellation of one timer.
+ *
+ * <p>
+ * Samples are taken by tasks on a shared {@link ScheduledExecutorService}, so no thread is dedicated to any one command.
+ * The reported CPU time is that of the executing thread only, and is omitted if the JVM doesn't support measuring it.
+ *
+ * @see SimpleCommandSupport#getSlowCommandThreshold
+ */
+public class SlowCommandWatch {
+
+    /**
+     * Default maximum number of stack samples per command.
+     */
+    public static final int DEFAULT_MAX_SAMPLES = 5;
+
+    private final Duration threshold;
+    private final int maxSamples;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param threshold execution time at or above which a command is reported
+     * @param maxSamples maximum number of stack samples to retain
+     * @param scheduler scheduler for sampling tasks
+     * @throws IllegalArgumentException if {@code threshold} or {@code scheduler} is null
+     * @throws IllegalArgumentException if {@code threshold} is not positive
+     * @throws IllegalArgumentException if {@code maxSamples} is less than two
+     */
+    public SlowCommandWatch(Duration threshold, int maxSamples, ScheduledExecutorService scheduler) {
+        if (threshold == null)
+            throw new IllegalArgumentException("null threshold");
+        if (scheduler == null)
+            throw new IllegalArgumentException("null scheduler");
+        if (threshold.isNegative() || threshold.isZero())
+            throw new IllegalArgumentException("invalid threshold");
+        if (maxSamples < 2)
+            throw new IllegalArgumentException("invalid maxSamples");
+        this.threshold = threshold;
+        this.maxSamples = maxSamples;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Get the threshold at or above which commands are reported.
+     *
+     * @return slow command threshold
+     */
+    public Duration getThreshold() {
+        return this.threshold;
+    }
+
+    /**
+     * Get the maximum number of stack samples retained per command.
+     *
+     * @return maximum samples
+     */
+    public int getMaxSamples() {
+        return this.maxSamples;
+    }
+
+    /**
+     * Execute the given command in the current thread, reporting it if it's slow.
+     *
+     * <p>
+     * The report is delivered in the current thread after the command completes, whether normally or not.
+     *
+     * @param command the command being executed
+     * @param action performs the command's execution
+     * @param reporter receives the report if the command is slow
+     * @return the command's exit value
+     * @throws InterruptedException if {@code action} throws {@link InterruptedException}
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public int execute(SimpleCommandSupport.FoundCommand command, EventDispatcher.Action action,
+      Consumer<? super Report> reporter) throws InterruptedException {
+        if (command == null)
+            throw new IllegalArgumentException("null command");
+        if (action == null)
+            throw new IllegalArgumentException("null action");
+        if (reporter == null)
+            throw new IllegalArgumentException("null reporter");
+        return new Execution(command, reporter).execute(action);
+    }
+
+// Execution
+
+    private final class Execution {
+
+        private final Thread thread = Thread.currentThread();
+        private final SimpleCommandSupport.FoundCommand command;
+        private final Consumer<? super Report> reporter;
+        private final long startTime = System.nanoTime();
+        private final List<Sample> samples = new ArrayList<>();     // guarded by this
+
+        private long interval = Math.max(SlowCommandWatch.this.threshold.toNanos() / SlowCommandWatch.this.maxSamples, 1);
+        private long nextSampleTime = this.startTime;               // guarded by this
+        private boolean finished;                                   // guarded by this
+        private ScheduledFuture<?> timer;                           // guarded by this
+
+        Execution(SimpleCommandSupport.FoundCommand command, Consumer<? super Report> reporter) {
+            this.command = command;
+            this.reporter = reporter;
+        }
+
+        int execute(EventDispatcher.Action action) throws InterruptedException {
+            final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            final long startCpuTime = this.cpuTime(threadMXBean);
+            this.schedule();
+            Integer exitValue = null;
+            Throwable error = null;
+            try {
+                exitValue = action.execute();
+                return exitValue;
+            } catch (InterruptedException | RuntimeException | Error e) {
+                error = e;
+                throw e;
+            } finally {
+                final List<Sample> sampleList = this.finish();
+                final long duration = System.nanoTime() - this.startTime;
+                if (duration >= SlowCommandWatch.this.threshold.toNanos()) {
+                    final long endCpuTime = startCpuTime != -1 ? this.cpuTime(threadMXBean) : -1;
+                    this.reporter.accept(new Report(this.command, Duration.ofNanos(duration),
+                      endCpuTime != -1 ? Duration.ofNanos(endCpuTime - startCpuTime) : null, exitValue, error, sampleList));
+                }
+            }
+        }
+
+        private long cpuTime(ThreadMXBean threadMXBean) {
+            try {
+                return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : -1;
+            } catch (UnsupportedOperationException e) {
+                return -1;
+            }
+        }
+
+        private synchronized void schedule() {
+            this.nextSampleTime += this.interval;
+            this.timer = SlowCommandWatch.this.scheduler.schedule(this::sample,
+              this.nextSampleTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        private synchronized List<Sample> finish() {
+            this.finished = true;
+            if (this.timer != null)
+                this.timer.cancel(false);
+            return new ArrayList<>(this.samples);
+        }
+
+        private synchronized void sample() {
+            if (this.finished)
+                return;
+            final StackTraceElement[] stack = this.thread.getStackTrace();
+            this.samples.add(new Sample(Duration.ofNanos(System.nanoTime() - this.startTime), this.thread.getState(), stack));
+
+            // Thin out samples when full
+            if (this.samples.size() >= SlowCommandWatch.this.maxSamples) {
+                for (int i = 1; i < this.samples.size(); i++)
+                    this.samples.remove(i);
+                this.interval *= 2;
+            }
+            this.schedule();
+        }
+    }
+
+// Sample
+
+    /**
+     * A stack sample of a command's executing thread.
+     */
+    public static final class Sample {
+
+        private final Duration elapsed;
+        private final Thread.State state;
+        private final List<StackTraceElement> stack;
+
+        Sample(Duration elapsed, Thread.State state, StackTraceElement[] stack) {
+            this.elapsed = elapsed;
+            this.state = state;
+            this.stack = Collections.unmodifiableList(Arrays.asList(stack));
+        }
+
+        /**
+         * Get the time since the command started when this sample was taken.
+         *
+         * @return elapsed time
+         */
+        public Duration getElapsed() {
+            return this.elapsed;
+        }
+
+        /**
+         * Get the state of the thread when this sample was taken.
+         *
+         * @return thread state
+         */
+        public Thread.State getState() {
+            return this.state;
+        }
+
+        /**
+         * Get the stack of the thread when this sample was taken.
+         *
+         * @return stack trace, innermost frame first
+         */
+        public List<StackTraceElement> getStack() {
+            return this.stack;
+        }
+    }
+
+// Report
+
+    /**
+     * Describes a slow command execution.
+     */
+    public static final class Report {
+
+        /**
+         * The maximum number of stack frames per sample included in {@link #toString}.
+         */
+        public static final int MAX_FRAMES = 30;
+
+        private final SimpleCommandSupport.FoundCommand command;
+        private final Duration duration;
+        private final Duration cpuTime;
+        private final Integer exitValue;
+        private final Throwable error;
+        private final List<Sample> samples;
+
+        Report(SimpleCommandSupport.FoundCommand command, Duration duration, Duration cpuTime,
+          Integer exitValue, Throwable error, List<Sample> samples) {
+            this.command = command;
+            this.duration = duration;
+            this.cpuTime = cpuTime;
+            this.exitValue = exitValue;
+            this.error = error;
+            this.samples = Collections.unmodifiableList(samples);
+        }
+
+        /**
+         * Get the command name.
+         *
+         * @return command name
+         */
+        public String getName() {
+            return this.command.getName();
+        }
+
+        /**
+         * Get the command parameters.
+         *
+         * @return command parameters
+         */
+        public List<String> getParameters() {
+            return this.command.getParameters();
+        }
+
+        /**
+         * Get the command's execution time.
+         *
+         * @return wall clock duration
+         */
+        public Duration getDuration() {
+            return this.duration;
+        }
+
+        /**
+         * Get the CPU time used by the command's executing thread.
+         *
+         * @return CPU time, or null if not available
+         */
+        public Duration getCpuTime() {
+            return this.cpuTime;
+        }
+
+        /**
+         * Get the command's exit value.
+         *
+         * @return exit value, or null if the command threw an exception
+         */
+        public Integer getExitValue() {
+            return this.exitValue;
+        }
+
+        /**
+         * Get the exception thrown by the command.
+         *
+         * @return exception thrown, or null if the command returned normally
+         */
+        public Throwable getError() {
+            return this.error;
+        }
+
+        /**
+         * Get the stack samples taken while the command was running.
+         *
+         * @return stack samples in chronological order
+         */
+        public List<Sample> getSamples() {
+            return this.samples;
+        }
+
+        /**
+         * Format this report as a multi-line description including the stack samples.
+         */
+        @Override
+        public String toString() {
+            final StringBuilder buf = new StringBuilder();
+            buf.append("slow command \"").append(this.getName());
+            this.getParameters().forEach(param -> buf.append(' ').append(param));
+            buf.append("\" took ").append(ConsoleUtil.formatDuration(this.duration));
+            if (this.cpuTime != null)
+                buf.append(" (CPU ").append(ConsoleUtil.formatDuration(this.cpuTime)).append(')');
+            if (this.error != null)
+                buf.append(" and threw ").append(this.error);
+            else
+                buf.append(" and returned ").append(this.exitValue);
+            for (Sample sample : this.samples) {
+                buf.append("\n  sample at ").append(ConsoleUtil.formatDuration(sample.getElapsed()))
+                  .append(" (").append(sample.getState()).append("):");
+                final List<StackTraceElement> stack = sample.getStack();
+                final int numFrames = Math.min(stack.size(), MAX_FRAMES);
+                for (int i = 0; i < numFrames; i++)
+                    buf.append("\n    at ").append(stack.get(i));
+                if (numFrames < stack.size())
+                    buf.append("\n    ... ").append(stack.size() - numFrames).append(" more");
+            }
+            return buf.toString();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A timed operation within a trace, e.g., the execution of a command.
+ *
+ * <p>
+ * Spans are created by {@link Tracer#startSpan Tracer.startSpan()}, which makes the new span the current span
+ * for the thread; spans started while it is current become its children. Closing a span records its duration,
+ * restores the previous current span, and exports the span.
+ *
+ * <p>
+ * Spans are not thread safe: a span should only be modified and closed by the thread that started it.
+ * Once closed, a span is immutable.
+ */
+public final class Span implements AutoCloseable {
+
+    private final Tracer tracer;
+    private final Span parent;
+    private final String name;
+    private final long traceId;
+    private final long spanId;
+    private final long parentId;
+    private final Instant startTime;
+    private final long startNanos;
+    private final String threadName;
+
+    private Map<String, Object> attributes;
+    private Integer exitValue;
+    private Throwable error;
+    private long durationNanos = -1;
+
+    Span(Tracer tracer, Span parent, String name, long spanId) {
+        this.tracer = tracer;
+        this.parent = parent;
+        this.name = name;
+        this.spanId = spanId;
+        this.traceId = parent != null ? parent.traceId : spanId;
+        this.parentId = parent != null ? parent.spanId : 0;
+        this.startTime = Instant.now();
+        this.startNanos = System.nanoTime();
+        this.threadName = Thread.currentThread().getName();
+    }
+
+// Accessors
+
+    /**
+     * Get the name of the operation.
+     *
+     * @return span name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get the ID of the trace this span belongs to, which is the span ID of its root span.
+     *
+     * @return trace ID as 16 hex digits
+     */
+    public String getTraceId() {
+        return Span.hex(this.traceId);
+    }
+
+    /**
+     * Get the unique ID of this span.
+     *
+     * @return span ID as 16 hex digits
+     */
+    public String getSpanId() {
+        return Span.hex(this.spanId);
+    }
+
+    /**
+     * Get the ID of this span's parent.
+     *
+     * @return parent span ID as 16 hex digits, or null if this is a root span
+     */
+    public String getParentId() {
+        return this.parentId != 0 ? Span.hex(this.parentId) : null;
+    }
+
+    /**
+     * Get the time this span started.
+     *
+     * @return start time
+     */
+    public Instant getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * Get the duration of this span.
+     *
+     * @return span duration, or null if this span has not been closed
+     */
+    public Duration getDuration() {
+        return this.durationNanos >= 0 ? Duration.ofNanos(this.durationNanos) : null;
+    }
+
+    /**
+     * Get the name of the thread that started this span.
+     *
+     * @return thread name
+     */
+    public String getThreadName() {
+        return this.threadName;
+    }
+
+    /**
+     * Get this span's attributes.
+     *
+     * @return unmodifiable map of attributes, in the order added
+     */
+    public Map<String, Object> getAttributes() {
+        return this.attributes != null ? Collections.unmodifiableMap(this.attributes) : Collections.emptyMap();
+    }
+
+    /**
+     * Add an attribute to this span.
+     *
+     * <p>
+     * Values should be strings, numbers, or booleans; other values are exported as strings.
+     *
+     * @param key attribute name
+     * @param value attribute value, or null to remove
+     * @return this instance
+     * @throws IllegalArgumentException if {@code key} is null
+     * @throws IllegalStateException if this span is closed
+     */
+    public Span setAttribute(String key, Object value) {
+        if (key == null)
+            throw new IllegalArgumentException("null key");
+        this.checkNotClosed();
+        if (value == null) {
+            if (this.attributes != null)
+                this.attributes.remove(key);
+            return this;
+        }
+        if (this.attributes == null)
+            this.attributes = new LinkedHashMap<>(4);
+        this.attributes.put(key, value);
+        return this;
+    }
+
+    /**
+     * Get the exit value of the traced operation.
+     *
+     * @return exit value, or null if none was recorded
+     */
+    public Integer getExitValue() {
+        return this.exitValue;
+    }
+
+    /**
+     * Record the exit value of the traced operation.
+     *
+     * @param exitValue exit value
+     * @throws IllegalStateException if this span is closed
+     */
+    public void setExitValue(int exitValue) {
+        this.checkNotClosed();
+        this.exitValue = exitValue;
+    }
+
+    /**
+     * Get the exception thrown by the traced operation.
+     *
+     * @return exception thrown, or null if none was recorded
+     */
+    public Throwable getError() {
+        return this.error;
+    }
+
+    /**
+     * Record an exception thrown by the traced operation.
+     *
+     * @param error exception thrown
+     * @throws IllegalStateException if this span is closed
+     */
+    public void setError(Throwable error) {
+        this.checkNotClosed();
+        this.error = error;
+    }
+
+    /**
+     * Determine whether this span has been closed.
+     *
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return this.durationNanos >= 0;
+    }
+
+// AutoCloseable
+
+    /**
+     * End this span.
+     *
+     * <p>
+     * Does nothing if this span is already closed.
+     */
+    @Override
+    public void close() {
+        if (this.isClosed())
+            return;
+        this.durationNanos = System.nanoTime() - this.startNanos;
+        this.tracer.finish(this, this.parent);
+    }
+
+// Object
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()
+          + "[name=\"" + this.name + "\""
+          + ",trace=" + this.getTraceId()
+          + ",span=" + this.getSpanId()
+          + (this.parentId != 0 ? ",parent=" + this.getParentId() : "")
+          + "]";
+    }
+
+// Internal Methods
+
+    private void checkNotClosed() {
+        if (this.isClosed())
+            throw new IllegalStateException("span is closed");
+    }
+
+    private static String hex(long value) {
+        final String digits = Long.toHexString(value);
+        return "0000000000000000".substring(digits.length()) + digits;
+    }
+}
@@ -0,0 +1,27 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+/**
+ * Receives completed {@link Span}s from a {@link Tracer}.
+ *
+ * @see JsonLinesSpanExporter
+ */
+@FunctionalInterface
+public interface SpanExporter {
+
+    /**
+     * Export a completed span.
+     *
+     * <p>
+     * This method is invoked synchronously by the thread that ended the span, which is usually a thread executing
+     * a command, so implementations should be quick. The span is immutable at this point. Any exception thrown
+     * is logged and otherwise ignored.
+     *
+     * @param span completed span
+     */
+    void export(Span span);
+}
@@ -0,0 +1,226 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import org.dellroad.jct.core.event.EventDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates nested {@link Span}s that time sessions, commands, and subshells, and hands them to a {@link SpanExporter}.
+ *
+ * <p>
+ * Each thread has a current span; a new span becomes a child of the current span, and becomes the current span
+ * itself until it is closed. The current span is carried across thread hand-offs by {@link #propagate(Runnable)};
+ * the {@linkplain SimpleCommandSupport#getExecutor executor} used by {@link SimpleCommandSupport} does this
+ * automatically, so e.g. every stage of a pipeline is a child of the span that executed the pipeline.
+ *
+ * <p>
+ * A tracer with no {@linkplain #getExporter exporter} is disabled: {@link #startSpan startSpan()} returns null and
+ * {@link #trace trace()} just executes its action, so the cost of tracing when disabled is a single volatile read.
+ *
+ * <p>
+ * Instances are thread safe.
+ *
+ * @see SimpleCommandSupport#getTracer
+ */
+public class Tracer {
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private volatile SpanExporter exporter;
+
+    /**
+     * Constructor for a disabled tracer.
+     */
+    public Tracer() {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param exporter destination for completed spans, or null to disable tracing
+     */
+    public Tracer(SpanExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * Get the destination for completed spans.
+     *
+     * @return span exporter, or null if tracing is disabled
+     */
+    public SpanExporter getExporter() {
+        return this.exporter;
+    }
+
+    /**
+     * Configure the destination for completed spans.
+     *
+     * <p>
+     * Spans that are still open when tracing is disabled are discarded when closed.
+     *
+     * @param exporter span exporter, or null to disable tracing
+     */
+    public void setExporter(SpanExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * Determine whether tracing is enabled.
+     *
+     * @return true if this instance has an exporter
+     */
+    public boolean isEnabled() {
+        return this.exporter != null;
+    }
+
+// Spans
+
+    /**
+     * Start a new span in the current thread.
+     *
+     * <p>
+     * The new span is a child of the {@linkplain #currentSpan current span}, if any, and becomes the current span
+     * until it is {@linkplain Span#close closed}. Typical usage:
+     *
+     * <pre><code class="language-java">
+     *  try (Span span = tracer.startSpan("work")) {
+     *      if (span != null)
+     *          span.setAttribute("size", size);
+     *      ...
+     *  }
+     * </code></pre>
+     *
+     * @param name span name
+     * @return new span, or null if tracing is disabled
+     * @throws IllegalArgumentException if {@code name} is null
+     */
+    public Span startSpan(String name) {
+        if (name == null)
+            throw new IllegalArgumentException("null name");
+        if (this.exporter == null)
+            return null;
+        long spanId = ThreadLocalRandom.current().nextLong();
+        if (spanId == 0)
+            spanId = 1;                                                 // zero means "no parent"
+        final Span span = new Span(this, CURRENT.get(), name, spanId);
+        CURRENT.set(span);
+        return span;
+    }
+
+    /**
+     * Execute an action within a new span.
+     *
+     * <p>
+     * The action's exit value or exception is recorded in the span. If tracing is disabled, {@code action}
+     * is executed directly and {@code initializer} is not invoked.
+     *
+     * @param name span name
+     * @param initializer adds attributes to the new span, or null for none
+     * @param action the action to execute
+     * @return the action's exit value
+     * @throws InterruptedException if {@code action} throws {@link InterruptedException}
+     * @throws IllegalArgumentException if {@code name} or {@code action} is null
+     */
+    public int trace(String name, Consumer<? super Span> initializer, EventDispatcher.Action action)
+      throws InterruptedException {
+        if (action == null)
+            throw new IllegalArgumentException("null action");
+        try (Span span = this.startSpan(name)) {
+            if (span == null)
+                return action.execute();
+            if (initializer != null)
+                initializer.accept(span);
+            try {
+                final int exitValue = action.execute();
+                span.setExitValue(exitValue);
+                return exitValue;
+            } catch (InterruptedException | RuntimeException | Error e) {
+                span.setError(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Get the current span for the current thread.
+     *
+     * @return current span, or null if none
+     */
+    public static Span currentSpan() {
+        return CURRENT.get();
+    }
+
+// Propagation
+
+    /**
+     * Wrap a task so that it runs with the current thread's current span, if any, as its current span.
+     *
+     * @param task task to wrap
+     * @return wrapped task, or {@code task} itself if there is no current span
+     * @throws IllegalArgumentException if {@code task} is null
+     */
+    public static Runnable propagate(Runnable task) {
+        if (task == null)
+            throw new IllegalArgumentException("null task");
+        final Span span = CURRENT.get();
+        if (span == null)
+            return task;
+        return () -> {
+            final Span previous = CURRENT.get();
+            CURRENT.set(span);
+            try {
+                task.run();
+            } finally {
+                Tracer.restore(previous);
+            }
+        };
+    }
+
+    /**
+     * Wrap an executor so that the tasks it runs inherit the submitting thread's current span.
+     *
+     * @param executor executor to wrap
+     * @return wrapped executor
+     * @throws IllegalArgumentException if {@code executor} is null
+     * @see #propagate(Runnable)
+     */
+    public static Executor propagate(Executor executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("null executor");
+        return task -> executor.execute(Tracer.propagate(task));
+    }
+
+// Internal Methods
+
+    // Invoked by Span.close()
+    void finish(Span span, Span previous) {
+        if (CURRENT.get() == span)
+            Tracer.restore(previous);
+        final SpanExporter spanExporter = this.exporter;
+        if (spanExporter == null)
+            return;
+        try {
+            spanExporter.export(span);
+        } catch (RuntimeException e) {
+            this.log.warn("exception from span exporter {} (ignoring)", spanExporter, e);
+        }
+    }
+
+    private static void restore(Span previous) {
+        if (previous != null)
+            CURRENT.set(previous);
+        else
+            CURRENT.remove();
+    }
+}
@@ -5,6 +5,7 @@
 
 package org.dellroad.jct.core.simple;
 
+import java.time.Duration;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -16,6 +17,8 @@ public class TreeMapBundle extends TreeMap<String, SimpleCommand> implements Com
 
     private final String description;
 
+    private Duration defaultTimeout;
+
     /**
      * Default constructor.
      *
@@ -55,4 +58,18 @@ public class TreeMapBundle extends TreeMap<String, SimpleCommand> implements Com
     public String getDescription() {
         return this.description;
     }
+
+    @Override
+    public Duration getDefaultTimeout() {
+        return this.defaultTimeout;
+    }
+
+    /**
+     * Configure the default execution timeout for commands in this bundle.
+     *
+     * @param defaultTimeout default timeout, or null for none
+     */
+    public void setDefaultTimeout(Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
 }
@@ -0,0 +1,117 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.dellroad.jct.core.CancellationToken;
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.AbstractSimpleCommand;
+
+/**
+ * Support superclass for "filter" commands that read lines of text from the session's input.
+ *
+ * <p>
+ * Such commands are typically used as pipeline stages, e.g., {@code jfr-list | grep foo}. Input is read
+ * incrementally, so a filter that does not need to see all of its input (e.g., "head") can stop early,
+ * and the current thread's interrupt status is checked after each line.
+ */
+public abstract class AbstractFilterCommand extends AbstractSimpleCommand {
+
+    /**
+     * Constructor.
+     *
+     * @param usage usage string, or null if command takes no arguments
+     * @param summary help summary
+     * @param detail help detail
+     * @throws IllegalArgumentException if {@code summary} or {@code detail} is null
+     */
+    protected AbstractFilterCommand(String usage, String summary, String detail) {
+        super(usage, summary, detail);
+    }
+
+// Internal Methods
+
+    /**
+     * Read lines of UTF-8 text from the session's input stream until end of file or the handler returns false.
+     *
+     * <p>
+     * Reading stops with {@link InterruptedException} if the current thread is interrupted or the session's
+     * {@link CancellationToken} is cancelled.
+     *
+     * <p>
+     * If an I/O error occurs, an error message is printed.
+     *
+     * @param session associated session
+     * @param handler receives each line, without its line terminator
+     * @return true if successful, false if an I/O error occurred
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    protected boolean readLines(ConsoleSession<?, ?> session, LineHandler handler) throws InterruptedException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(session.getInputStream(), StandardCharsets.UTF_8));
+        final CancellationToken token = session.getCancellationToken();
+        try {
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                token.throwIfCancelled();
+                if (!handler.handleLine(line))
+                    break;
+            }
+        } catch (InterruptedIOException e) {
+            Thread.interrupted();
+            throw new InterruptedException();
+        } catch (IOException e) {
+            session.getErrorStream().println(String.format("Error: %s", e));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parse a non-negative line count.
+     *
+     * <p>
+     * If the value is invalid, an error message is printed.
+     *
+     * @param session associated session
+     * @param value string value
+     * @return parsed value, or -1 if invalid
+     */
+    protected int parseCount(ConsoleSession<?, ?> session, String value) {
+        try {
+            final int count = Integer.parseInt(value, 10);
+            if (count >= 0)
+                return count;
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        session.getErrorStream().println(String.format("Error: invalid count \"%s\"", value));
+        return -1;
+    }
+
+// LineHandler
+
+    /**
+     * Callback interface for {@link #readLines readLines()}.
+     */
+    @FunctionalInterface
+    protected interface LineHandler {
+
+        /**
+         * Handle one line of input.
+         *
+         * @param line input line, without its line terminator
+         * @return true to continue reading, false to stop
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        boolean handleLine(String line) throws InterruptedException;
+    }
+}
@@ -0,0 +1,131 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.AbstractSimpleCommand;
+
+/**
+ * Support superclass for commands that operate on Java Flight Recorder {@link Recording}s.
+ */
+public abstract class AbstractJfrCommand extends AbstractSimpleCommand {
+
+    /**
+     * Constructor.
+     *
+     * @param usage usage string, or null if command takes no arguments
+     * @param summary help summary
+     * @param detail help detail
+     * @throws IllegalArgumentException if {@code summary} or {@code detail} is null
+     */
+    protected AbstractJfrCommand(String usage, String summary, String detail) {
+        super(usage, summary, detail);
+    }
+
+// Internal Methods
+
+    /**
+     * Verify that Java Flight Recorder is available in this JVM.
+     *
+     * <p>
+     * If not, an error message is printed.
+     *
+     * @param session associated session
+     * @return true if available, otherwise false
+     */
+    protected boolean checkAvailable(ConsoleSession<?, ?> session) {
+        if (!FlightRecorder.isAvailable()) {
+            session.getErrorStream().println("Error: Java Flight Recorder is not available in this JVM");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get all recordings known to the platform {@link FlightRecorder}.
+     *
+     * @return recordings
+     */
+    protected List<Recording> getRecordings() {
+        return FlightRecorder.getFlightRecorder().getRecordings();
+    }
+
+    /**
+     * Find a recording by ID or name.
+     *
+     * <p>
+     * If no such recording exists, an error message is printed.
+     *
+     * @param session associated session
+     * @param idOrName recording ID or name
+     * @return matching recording, if found
+     */
+    protected Optional<Recording> findRecording(ConsoleSession<?, ?> session, String idOrName) {
+        final Optional<Recording> recording = this.getRecordings().stream()
+          .filter(r -> String.valueOf(r.getId()).equals(idOrName) || idOrName.equals(r.getName()))
+          .findFirst();
+        if (recording.isEmpty())
+            session.getErrorStream().println(String.format("Error: recording \"%s\" not found", idOrName));
+        return recording;
+    }
+
+    /**
+     * Parse a non-negative number of bytes, with optional {@code k}, {@code m}, or {@code g} suffix.
+     *
+     * @param value string value
+     * @return number of bytes
+     * @throws IllegalArgumentException if {@code value} is invalid
+     */
+    protected static long parseBytes(String value) {
+        long multiplier = 1;
+        String digits = value;
+        if (!value.isEmpty()) {
+            switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+            case 'k':
+                multiplier = 1L << 10;
+                break;
+            case 'm':
+                multiplier = 1L << 20;
+                break;
+            case 'g':
+                multiplier = 1L << 30;
+                break;
+            default:
+                break;
+            }
+            if (multiplier != 1)
+                digits = value.substring(0, value.length() - 1);
+        }
+        final long bytes = Long.parseLong(digits, 10);
+        if (bytes < 0)
+            throw new IllegalArgumentException("negative value");
+        return Math.multiplyExact(bytes, multiplier);
+    }
+
+    /**
+     * Parse a positive, possibly fractional, number of seconds.
+     *
+     * @param value string value
+     * @return duration
+     * @throws IllegalArgumentException if {@code value} is invalid, not positive, or too large
+     */
+    protected static Duration parseSeconds(String value) {
+        final double seconds = Double.parseDouble(value);
+        if (!Double.isFinite(seconds) || seconds <= 0)
+            throw new IllegalArgumentException("invalid seconds");
+        final double nanos = seconds * 1e9;
+        if (nanos < 1 || nanos >= Long.MAX_VALUE)
+            throw new IllegalArgumentException("out of range");
+        return Duration.ofNanos((long)nanos);
+    }
+}
@@ -0,0 +1,73 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.AbstractSimpleCommand;
+import org.dellroad.jct.core.simple.Job;
+import org.dellroad.jct.core.simple.SimpleShell;
+import org.dellroad.jct.core.util.RedirectedSession;
+
+/**
+ * Support superclass for commands that manage the background {@link Job}s of a {@link SimpleShell.Session}.
+ */
+public abstract class AbstractJobCommand extends AbstractSimpleCommand {
+
+    /**
+     * Constructor.
+     *
+     * @param usage usage string, or null if command takes no arguments
+     * @param summary help summary
+     * @param detail help detail
+     * @throws IllegalArgumentException if {@code summary} or {@code detail} is null
+     */
+    protected AbstractJobCommand(String usage, String summary, String detail) {
+        super(usage, summary, detail);
+    }
+
+// Internal Methods
+
+    /**
+     * Find the {@link SimpleShell.Session} associated with the given session.
+     *
+     * <p>
+     * If there is none, an error message is printed.
+     *
+     * @param session current session, possibly {@linkplain RedirectedSession redirected}
+     * @param name command name
+     * @return shell session, or null if not found
+     */
+    protected SimpleShell.Session getShellSession(ConsoleSession<?, ?> session, String name) {
+        final ConsoleSession<?, ?> original = RedirectedSession.unwrap(session);
+        if (!(original instanceof SimpleShell.Session)) {
+            session.getErrorStream().println(String.format(
+              "Error: the \"%s\" command only works within %s sessions", name, SimpleShell.class.getSimpleName()));
+            return null;
+        }
+        return (SimpleShell.Session)original;
+    }
+
+    /**
+     * Find a job by job specification.
+     *
+     * <p>
+     * If not found, an error message is printed.
+     *
+     * @param session current session
+     * @param shellSession shell session
+     * @param spec job specification, or null for the current job
+     * @return matching job, or null if not found
+     * @see SimpleShell.Session#findJob
+     */
+    protected Job findJob(ConsoleSession<?, ?> session, SimpleShell.Session shellSession, String spec) {
+        final Job job = shellSession.findJob(spec);
+        if (job == null) {
+            session.getErrorStream().println(spec != null ?
+              String.format("Error: job \"%s\" not found", spec) : "Error: no current job");
+        }
+        return job;
+    }
+}
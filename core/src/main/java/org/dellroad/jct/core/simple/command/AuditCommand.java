@@ -0,0 +1,90 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Optional;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.AbstractSimpleCommand;
+import org.dellroad.jct.core.simple.AuditLog;
+import org.dellroad.jct.core.simple.SimpleCommandSupport;
+
+/**
+ * An "audit" command that searches the {@link AuditLog} registered with the console, if any.
+ */
+public class AuditCommand extends AbstractSimpleCommand {
+
+    /**
+     * Default number of records.
+     */
+    public static final int DEFAULT_RECORDS = 20;
+
+    public AuditCommand() {
+        super("[-n count] [text]",
+          "Search the command audit log.",
+          "Prints the most recent " + DEFAULT_RECORDS + " (or the specified number of) audit log records, oldest first."
+          + "\nIf text is given, only records containing that text are printed. Each record is a line of JSON"
+          + "\ncontaining the time, user, source address, command, arguments, exit value, and duration.");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse options
+        int limit = DEFAULT_RECORDS;
+        if (args.size() >= 2 && args.get(0).equals("-n")) {
+            try {
+                limit = Integer.parseInt(args.get(1), 10);
+                if (limit < 0)
+                    throw new NumberFormatException();
+            } catch (NumberFormatException e) {
+                session.getErrorStream().println(String.format("Error: invalid count \"%s\"", args.get(1)));
+                return 1;
+            }
+            args = args.subList(2, args.size());
+        }
+        if (args.size() > 1 || (args.size() == 1 && args.get(0).startsWith("-"))) {
+            this.printUsage(session, name);
+            return 1;
+        }
+        final String text = !args.isEmpty() ? args.get(0) : null;
+
+        // Get console
+        final SimpleCommandSupport owner;
+        try {
+            owner = (SimpleCommandSupport)session.getOwner();
+        } catch (ClassCastException e) {
+            session.getErrorStream().println(String.format(
+              "Error: the \"%s\" command requires a %s", name, SimpleCommandSupport.class.getName()));
+            return 1;
+        }
+
+        // Find audit log
+        final Optional<AuditLog> auditLog = owner.getEventDispatcher().getListeners().stream()
+          .filter(AuditLog.class::isInstance)
+          .map(AuditLog.class::cast)
+          .findFirst();
+        if (!auditLog.isPresent()) {
+            session.getErrorStream().println("Error: no audit log is configured");
+            return 1;
+        }
+
+        // Search it
+        final List<String> records;
+        try {
+            records = auditLog.get().search(limit, text != null ? record -> record.contains(text) : null);
+        } catch (IOException e) {
+            session.getErrorStream().println(String.format("Error: %s", e.getMessage()));
+            return 1;
+        }
+        final PrintStream out = session.getOutputStream();
+        records.forEach(out::println);
+        return 0;
+    }
+}
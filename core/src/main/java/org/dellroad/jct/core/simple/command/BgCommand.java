@@ -0,0 +1,51 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.util.List;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.Job;
+import org.dellroad.jct.core.simple.SimpleShell;
+
+/**
+ * A "bg" command that resumes a stopped job in the background.
+ */
+public class BgCommand extends AbstractJobCommand {
+
+    public BgCommand() {
+        super("[%job]", "Resume a stopped job in the background.",
+          "Resumes the specified (or the most recent) stopped job, allowing it to continue running in the"
+          + "\nbackground. Its output is buffered until it is brought into the foreground with \"fg\".");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse parameters
+        if (args.size() > 1) {
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Find job
+        final SimpleShell.Session shellSession = this.getShellSession(session, name);
+        if (shellSession == null)
+            return 1;
+        final Job job = this.findJob(session, shellSession, !args.isEmpty() ? args.get(0) : null);
+        if (job == null)
+            return 1;
+
+        // Resume it
+        if (job.getState() != Job.State.STOPPED) {
+            session.getErrorStream().println(String.format("Error: job %d is not stopped", job.getId()));
+            return 1;
+        }
+        job.resume();
+        session.getOutputStream().println(String.format("[%d] %s %s", job.getId(), job.getDescription(), SimpleShell.BACKGROUND));
+        return 0;
+    }
+}
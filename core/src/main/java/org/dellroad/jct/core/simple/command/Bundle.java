@@ -12,11 +12,32 @@ public class Bundle extends TreeMapBundle {
 
     public Bundle() {
         super("Java Console Toolkit built-in simple commands");
+        this.put("audit", new AuditCommand());
+        this.put("bg", new BgCommand());
         this.put("date", new DateCommand());
         this.put("echo", new EchoCommand());
         this.put("exit", new ExitCommand());
+        this.put("fg", new FgCommand());
+        this.put("grep", new GrepCommand());
+        this.put("head", new HeadCommand());
         this.put("help", new HelpCommand());
+        this.put("history", new HistoryCommand());
+        this.put("jfr-dump", new JfrDumpCommand());
+        this.put("jfr-list", new JfrListCommand());
+        this.put("jfr-start", new JfrStartCommand());
+        this.put("jfr-stop", new JfrStopCommand());
+        this.put("jfr-watch", new JfrWatchCommand());
+        this.put("jobs", new JobsCommand());
+        this.put("kill", new KillCommand());
+        this.put("metrics", new MetricsCommand());
+        this.put("parallel", new ParallelCommand());
         this.put("quit", new ExitCommand());
         this.put("sleep", new SleepCommand());
+        this.put("sort", new SortCommand());
+        this.put("source", new SourceCommand());
+        this.put("tail", new TailCommand());
+        this.put("timeout", new TimeoutCommand());
+        this.put("watch", new WatchCommand());
+        this.put("wc", new WcCommand());
     }
 }
@@ -0,0 +1,47 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.util.List;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.Job;
+import org.dellroad.jct.core.simple.SimpleShell;
+
+/**
+ * An "fg" command that brings a background job into the foreground.
+ */
+public class FgCommand extends AbstractJobCommand {
+
+    public FgCommand() {
+        super("[%job]", "Bring a background job into the foreground.",
+          "Displays any buffered output from the specified (or the most recent) background job, then waits"
+          + "\nfor it to complete while displaying its output. Press Control-C to kill the job, or Control-Z"
+          + "\nto stop it and return to the shell. Only works in shell mode, not execute mode.");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse parameters
+        if (args.size() > 1) {
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Find job
+        final SimpleShell.Session shellSession = this.getShellSession(session, name);
+        if (shellSession == null)
+            return 1;
+        final Job job = this.findJob(session, shellSession, !args.isEmpty() ? args.get(0) : null);
+        if (job == null)
+            return 1;
+
+        // Bring it into the foreground
+        session.getOutputStream().println(job.getDescription());
+        return shellSession.foreground(job);
+    }
+}
@@ -0,0 +1,107 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * A simple "grep" command.
+ */
+public class GrepCommand extends AbstractFilterCommand {
+
+    public GrepCommand() {
+        super("[-i] [-v] [-c] [-n] [-F] pattern",
+          "Print input lines matching a pattern.",
+          "Reads lines from standard input and prints those that contain a match for the given regular expression."
+          + "\nThe exit value is zero if any lines were selected, one if none were, or two if an error occurred."
+          + "\n"
+          + "\nOptions:"
+          + "\n    -i    Ignore case"
+          + "\n    -v    Select non-matching lines instead"
+          + "\n    -c    Only print a count of the selected lines"
+          + "\n    -n    Prefix each selected line with its line number"
+          + "\n    -F    Interpret the pattern as a fixed string, not a regular expression");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse options
+        boolean ignoreCase = false;
+        boolean invert = false;
+        boolean countOnly = false;
+        boolean lineNumbers = false;
+        boolean fixed = false;
+        final ArrayDeque<String> params = new ArrayDeque<>(args);
+        while (!params.isEmpty() && params.peekFirst().startsWith("-") && params.peekFirst().length() > 1) {
+            final String option = params.removeFirst();
+            if (option.equals("--"))
+                break;
+            switch (option) {
+            case "-i":
+                ignoreCase = true;
+                break;
+            case "-v":
+                invert = true;
+                break;
+            case "-c":
+                countOnly = true;
+                break;
+            case "-n":
+                lineNumbers = true;
+                break;
+            case "-F":
+                fixed = true;
+                break;
+            default:
+                this.printUsage(session, name);
+                return 2;
+            }
+        }
+        if (params.size() != 1) {
+            this.printUsage(session, name);
+            return 2;
+        }
+
+        // Compile pattern
+        final Pattern pattern;
+        try {
+            pattern = Pattern.compile(params.removeFirst(),
+              (fixed ? Pattern.LITERAL : 0) | (ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0));
+        } catch (PatternSyntaxException e) {
+            session.getErrorStream().println(String.format("Error: invalid regular expression: %s", e.getMessage()));
+            return 2;
+        }
+
+        // Filter input
+        final PrintStream out = session.getOutputStream();
+        final boolean select = !invert;
+        final boolean printLines = !countOnly;
+        final boolean printNumbers = lineNumbers;
+        final long[] counts = new long[2];                          // [0] = lines read, [1] = lines selected
+        if (!this.readLines(session, line -> {
+            counts[0]++;
+            if (pattern.matcher(line).find() != select)
+                return true;
+            counts[1]++;
+            if (printLines)
+                out.println(printNumbers ? counts[0] + ":" + line : line);
+            return true;
+        }))
+            return 2;
+        if (countOnly)
+            out.println(counts[1]);
+
+        // Done
+        return counts[1] > 0 ? 0 : 1;
+    }
+}
@@ -0,0 +1,54 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.PrintStream;
+import java.util.List;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * A simple "head" command.
+ */
+public class HeadCommand extends AbstractFilterCommand {
+
+    /**
+     * Default number of lines.
+     */
+    public static final int DEFAULT_LINES = 10;
+
+    public HeadCommand() {
+        super("[-n lines]",
+          "Print the first lines of input.",
+          "Copies the first " + DEFAULT_LINES + " (or the specified number of) lines of standard input to standard output."
+          + "\nWhen used in a pipeline, the preceding command is stopped once enough lines have been read.");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse options
+        int limit = DEFAULT_LINES;
+        if (args.size() == 2 && args.get(0).equals("-n")) {
+            if ((limit = this.parseCount(session, args.get(1))) < 0)
+                return 1;
+        } else if (!args.isEmpty()) {
+            this.printUsage(session, name);
+            return 1;
+        }
+        if (limit == 0)
+            return 0;
+
+        // Copy lines
+        final PrintStream out = session.getOutputStream();
+        final int maxLines = limit;
+        final int[] count = new int[1];
+        return this.readLines(session, line -> {
+            out.println(line);
+            return ++count[0] < maxLines;
+        }) ? 0 : 1;
+    }
+}
@@ -6,20 +6,23 @@
 package org.dellroad.jct.core.simple.command;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 
 import org.dellroad.jct.core.ConsoleSession;
-import org.dellroad.jct.core.simple.AbstractSimpleCommand;
+import org.dellroad.jct.core.simple.AbstractRecordCommand;
 import org.dellroad.jct.core.simple.CommandBundle;
+import org.dellroad.jct.core.simple.OutputFormat;
+import org.dellroad.jct.core.simple.RecordWriter;
 import org.dellroad.jct.core.simple.SimpleCommand;
 import org.dellroad.jct.core.simple.SimpleCommandSupport;
 
 /**
  * A simple "help" command that can be used with a console component extending {@link SimpleCommandSupport}.
  */
-public class HelpCommand extends AbstractSimpleCommand {
+public class HelpCommand extends AbstractRecordCommand {
 
     private static final String INDENT = "    ";
 
@@ -28,7 +31,8 @@ public class HelpCommand extends AbstractSimpleCommand {
           "[command]",
           "Displays information about available commands.",
           "When used with no arguments, lists all of the available console commands along with short descriptions."
-            + "\nWhen used with a specific command, displays detailed information about that command.");
+            + "\nWhen used with a specific command, displays detailed information about that command."
+            + "\nIn JSON and CSV formats, each command is a record.");
     }
 
     /**
@@ -70,8 +74,25 @@ public class HelpCommand extends AbstractSimpleCommand {
         });
     }
 
+    /**
+     * Output command names and descriptions as records with columns {@code bundle}, {@code command}, and {@code summary}.
+     *
+     * @param writer record writer
+     * @param bundles command bundles
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public static void listCommands(RecordWriter writer, Collection<? extends CommandBundle> bundles) {
+        if (writer == null)
+            throw new IllegalArgumentException("null writer");
+        if (bundles == null)
+            throw new IllegalArgumentException("null bundles");
+        bundles.forEach(bundle -> bundle.forEach((name, command) ->
+          writer.write(bundle.getDescription(), name, command.getHelpSummary(name))));
+    }
+
     @Override
-    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+    protected int execute(ConsoleSession<?, ?> session, String name, List<String> args, OutputFormat format)
+      throws InterruptedException {
 
         // Get console
         final SimpleCommandSupport owner;
@@ -88,6 +109,12 @@ public class HelpCommand extends AbstractSimpleCommand {
         final List<CommandBundle> commandBundles = owner.getCommandBundles();
         switch (args.size()) {
         case 0:
+            if (format != OutputFormat.TEXT) {
+                try (RecordWriter writer = format.newWriter(out, "bundle", "command", "summary")) {
+                    HelpCommand.listCommands(writer, commandBundles);
+                }
+                break;
+            }
             out.println();
             HelpCommand.listCommands(out, commandBundles);
             break;
@@ -106,6 +133,13 @@ public class HelpCommand extends AbstractSimpleCommand {
             }
 
             // Show detailed help
+            if (format != OutputFormat.TEXT) {
+                try (RecordWriter writer = format.newWriter(out, "command", "usage", "summary", "description")) {
+                    writer.write(commandName, command.getUsage(commandName),
+                      command.getHelpSummary(commandName), command.getHelpDetail(commandName));
+                }
+                break;
+            }
             out.println("Summary:");
             out.println(this.indent(command.getHelpSummary(commandName)));
             out.println("Usage:");
@@ -128,6 +162,16 @@ public class HelpCommand extends AbstractSimpleCommand {
         return 0;
     }
 
+    @Override
+    public List<String> complete(SimpleCommandSupport owner, String name, List<String> args) {
+        int numFlagArgs = 0;
+        if (!args.isEmpty() && args.get(0).startsWith(FORMAT_FLAG))
+            numFlagArgs = args.get(0).equals(FORMAT_FLAG) ? 2 : 1;
+        if (args.size() != numFlagArgs)
+            return List.of();
+        return new ArrayList<>(owner.buildCommandMap().keySet());
+    }
+
     private String indent(String s) {
         return s.trim().replaceAll("(?m)^", INDENT);
     }
@@ -0,0 +1,99 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.util.List;
+import java.util.ListIterator;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.AbstractRecordCommand;
+import org.dellroad.jct.core.simple.HistoryIndex;
+import org.dellroad.jct.core.simple.IndexedHistory;
+import org.dellroad.jct.core.simple.OutputFormat;
+import org.dellroad.jct.core.simple.RecordWriter;
+import org.dellroad.jct.core.simple.SimpleShell;
+import org.dellroad.jct.core.util.RedirectedSession;
+import org.jline.reader.History;
+
+/**
+ * A "history" command that lists or searches the command history of a {@link SimpleShell.Session}.
+ */
+public class HistoryCommand extends AbstractRecordCommand {
+
+    /**
+     * Default number of lines.
+     */
+    public static final int DEFAULT_LINES = 20;
+
+    private static final String SEARCH = "search";
+
+    public HistoryCommand() {
+        super("[-n count] [search text ...]",
+          "List or search command history.",
+          "Without \"search\", lists the last " + DEFAULT_LINES + " (or the specified number of) history lines."
+          + "\n"
+          + "\nWith \"search\", lists history lines containing all of the given words, ignoring case, ranked by how"
+          + "\nrecently and frequently they were used. Pressing Control-R at the prompt performs the same search using"
+          + "\nthe words already typed; press it again to see the next match.");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args, OutputFormat format)
+      throws InterruptedException {
+
+        // Parse options
+        int limit = DEFAULT_LINES;
+        if (args.size() >= 2 && args.get(0).equals("-n")) {
+            try {
+                limit = Integer.parseInt(args.get(1), 10);
+                if (limit < 0)
+                    throw new NumberFormatException();
+            } catch (NumberFormatException e) {
+                session.getErrorStream().println(String.format("Error: invalid count \"%s\"", args.get(1)));
+                return 1;
+            }
+            args = args.subList(2, args.size());
+        }
+        final boolean search = !args.isEmpty() && args.get(0).equals(SEARCH);
+        if (search ? args.size() < 2 : !args.isEmpty()) {
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Get history
+        final ConsoleSession<?, ?> original = RedirectedSession.unwrap(session);
+        if (!(original instanceof SimpleShell.Session)) {
+            session.getErrorStream().println(String.format(
+              "Error: the \"%s\" command only works within %s sessions", name, SimpleShell.class.getSimpleName()));
+            return 1;
+        }
+        final History history = ((SimpleShell.Session)original).getLineReader().getHistory();
+
+        // Search history
+        if (search) {
+            if (!(history instanceof IndexedHistory)) {
+                session.getErrorStream().println("Error: this session's history does not support searching");
+                return 1;
+            }
+            final String query = String.join(" ", args.subList(1, args.size()));
+            try (RecordWriter writer = format.newWriter(session.getOutputStream(), "line", "count", "score")) {
+                for (HistoryIndex.Match match : ((IndexedHistory)history).search(query, limit))
+                    writer.write(match.getLine(), match.getCount(), Math.round(match.getScore() * 1000) / 1000.0);
+            }
+            return 0;
+        }
+
+        // List history
+        try (RecordWriter writer = format.newWriter(session.getOutputStream(), "index", "line")) {
+            final int start = Math.max(history.first(), history.last() + 1 - limit);
+            for (ListIterator<History.Entry> i = history.iterator(start); i.hasNext() && limit > 0; ) {
+                final History.Entry entry = i.next();
+                writer.write(entry.index() + 1, entry.line());
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,156 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.ShellSession;
+
+/**
+ * A "jfr-dump" command that streams the data from a Java Flight Recorder recording to standard output.
+ *
+ * <p>
+ * The data is copied in fixed size chunks, so recordings of any size can be retrieved without loading them
+ * into memory. Because the output is binary, this command refuses to run in an interactive shell session;
+ * instead, it is intended to be used via direct execution, e.g., {@code ssh host jfr-dump 1 > rec.jfr}.
+ */
+public class JfrDumpCommand extends AbstractJfrCommand {
+
+    /**
+     * Default buffer size used when copying recording data.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    public JfrDumpCommand() {
+        super("[-c] recording",
+          "Write a Java Flight Recorder recording to standard output.",
+          "Streams the binary data of the specified Java Flight Recorder recording, given by ID or name,"
+          + "\nto standard output. If the recording is still running, a snapshot of the data so far is written"
+          + "\nand the recording continues. This command only works in execute mode, not shell mode, e.g.:"
+          + "\n"
+          + "\n    ssh -p 9191 localhost jfr-dump 1 > rec.jfr"
+          + "\n"
+          + "\nOptions:"
+          + "\n    -c    Close the recording after it has been successfully written");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse parameters
+        final boolean close;
+        final String idOrName;
+        switch (args.size()) {
+        case 1:
+            close = false;
+            idOrName = args.get(0);
+            break;
+        case 2:
+            if (!args.get(0).equals("-c")) {
+                this.printUsage(session, name);
+                return 1;
+            }
+            close = true;
+            idOrName = args.get(1);
+            break;
+        default:
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Binary data can't go to a terminal
+        if (session instanceof ShellSession) {
+            session.getErrorStream().println(String.format(
+              "Error: the \"%s\" command writes binary data and only works in execute mode", name));
+            return 1;
+        }
+
+        // Find recording
+        if (!this.checkAvailable(session))
+            return 1;
+        final Recording recording = this.findRecording(session, idOrName).orElse(null);
+        if (recording == null)
+            return 1;
+
+        // Snapshot recording if still running; otherwise read it directly
+        final Recording source;
+        switch (recording.getState()) {
+        case RUNNING:
+            source = recording.copy(true);
+            break;
+        case STOPPED:
+            source = recording;
+            break;
+        default:
+            session.getErrorStream().println(String.format(
+              "Error: recording %d has no data (state %s)", recording.getId(), recording.getState()));
+            return 1;
+        }
+
+        // Stream the data
+        final long length;
+        try {
+            length = this.copyData(session, source);
+        } catch (IOException e) {
+            session.getErrorStream().println(String.format("Error: can't read recording %d: %s", recording.getId(), e));
+            return 1;
+        } finally {
+            if (source != recording)
+                source.close();
+        }
+        if (length < 0) {
+            session.getErrorStream().println(String.format("Error: output closed while writing recording %d", recording.getId()));
+            return 1;
+        }
+
+        // Close the recording if requested
+        if (close) {
+            if (recording.getState() == RecordingState.RUNNING)
+                recording.stop();
+            recording.close();
+        }
+
+        // Done
+        return 0;
+    }
+
+    /**
+     * Copy the data from the given recording to the session's output stream.
+     *
+     * @param session associated session
+     * @param recording stopped recording
+     * @return number of bytes written, or -1 if the output stream failed
+     * @throws IOException if an error occurs reading the recording
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    protected long copyData(ConsoleSession<?, ?> session, Recording recording) throws IOException, InterruptedException {
+        final PrintStream out = session.getOutputStream();
+        long total = 0;
+        try (InputStream input = recording.getStream(null, null)) {
+            if (input == null)
+                return 0;
+            final byte[] buf = new byte[DEFAULT_BUFFER_SIZE];
+            int r;
+            while ((r = input.read(buf)) != -1) {
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                out.write(buf, 0, r);
+                if (out.checkError())
+                    return -1;
+                total += r;
+            }
+        }
+        out.flush();
+        return out.checkError() ? -1 : total;
+    }
+}
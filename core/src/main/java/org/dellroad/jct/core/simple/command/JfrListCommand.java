@@ -0,0 +1,70 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import jdk.jfr.Recording;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * A "jfr-list" command that lists Java Flight Recorder recordings.
+ */
+public class JfrListCommand extends AbstractJfrCommand {
+
+    public JfrListCommand() {
+        super(null, "List Java Flight Recorder recordings.",
+          "Lists all Java Flight Recorder recordings in this JVM, including their ID, name, state, start time,"
+          + "\nduration, and current size.");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Check usage
+        if (!args.isEmpty()) {
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Get recordings
+        if (!this.checkAvailable(session))
+            return 1;
+        final List<Recording> recordings = this.getRecordings();
+        final PrintStream out = session.getOutputStream();
+        if (recordings.isEmpty()) {
+            out.println("No recordings");
+            return 0;
+        }
+
+        // List recordings
+        final int maxNameLen = recordings.stream()
+          .map(Recording::getName)
+          .mapToInt(String::length)
+          .max()
+          .orElse(0);
+        final String format = String.format("%%6s  %%-%ds  %%-8s  %%-24s  %%10s  %%10s", Math.max(maxNameLen, 4));
+        out.println(String.format(format, "ID", "NAME", "STATE", "START", "DURATION", "SIZE"));
+        for (Recording recording : recordings) {
+            final Instant startTime = recording.getStartTime();
+            final Duration duration = recording.getDuration();
+            out.println(String.format(format,
+              recording.getId(),
+              recording.getName(),
+              recording.getState(),
+              startTime != null ? startTime.toString() : "-",
+              duration != null ? duration.getSeconds() + "s" : "-",
+              recording.getSize()));
+        }
+
+        // Done
+        return 0;
+    }
+}
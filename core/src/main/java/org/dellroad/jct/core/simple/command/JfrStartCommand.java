@@ -0,0 +1,124 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * A "jfr-start" command that starts a new Java Flight Recorder recording.
+ */
+public class JfrStartCommand extends AbstractJfrCommand {
+
+    public JfrStartCommand() {
+        super("[-n name] [-s settings] [-d seconds] [-m maxsize] [-a maxage]",
+          "Start a Java Flight Recorder recording.",
+          "Starts a new Java Flight Recorder recording and prints its ID."
+          + "\n"
+          + "\nOptions:"
+          + "\n    -n name      Recording name"
+          + "\n    -s settings  Predefined configuration name (\"default\" or \"profile\"; default \"default\")"
+          + "\n    -d seconds   Stop the recording automatically after the given number of seconds"
+          + "\n    -m maxsize   Maximum size of retained data, e.g., \"250m\" (bytes unless k, m, or g suffix)"
+          + "\n    -a maxage    Maximum age in seconds of retained data"
+          + "\n"
+          + "\nThe recording data is kept in memory/disk buffers managed by the JVM until the recording is"
+          + "\nretrieved with \"jfr-dump\".");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse options
+        String recordingName = null;
+        String settings = "default";
+        Duration duration = null;
+        Long maxSize = null;
+        Duration maxAge = null;
+        final ArrayDeque<String> params = new ArrayDeque<>(args);
+        while (!params.isEmpty() && params.peekFirst().startsWith("-")) {
+            final String option = params.removeFirst();
+            if (params.isEmpty()) {
+                this.printUsage(session, name);
+                return 1;
+            }
+            final String value = params.removeFirst();
+            try {
+                switch (option) {
+                case "-n":
+                    recordingName = value;
+                    break;
+                case "-s":
+                    settings = value;
+                    break;
+                case "-d":
+                    duration = AbstractJfrCommand.parseSeconds(value);
+                    break;
+                case "-m":
+                    maxSize = AbstractJfrCommand.parseBytes(value);
+                    break;
+                case "-a":
+                    maxAge = AbstractJfrCommand.parseSeconds(value);
+                    break;
+                default:
+                    this.printUsage(session, name);
+                    return 1;
+                }
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                session.getErrorStream().println(String.format("Error: invalid value \"%s\" for option %s", value, option));
+                return 1;
+            }
+        }
+        if (!params.isEmpty()) {
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Check availability
+        if (!this.checkAvailable(session))
+            return 1;
+
+        // Load configuration
+        final Configuration config;
+        try {
+            config = Configuration.getConfiguration(settings);
+        } catch (IOException | ParseException e) {
+            session.getErrorStream().println(String.format("Error: can't load settings \"%s\": %s", settings, e.getMessage()));
+            return 1;
+        }
+
+        // Create and start recording
+        final Recording recording = new Recording(config);
+        try {
+            if (recordingName != null)
+                recording.setName(recordingName);
+            if (duration != null)
+                recording.setDuration(duration);
+            if (maxSize != null)
+                recording.setMaxSize(maxSize);
+            if (maxAge != null)
+                recording.setMaxAge(maxAge);
+            recording.setToDisk(true);
+            recording.start();
+        } catch (IllegalArgumentException | IllegalStateException | SecurityException e) {
+            recording.close();
+            session.getErrorStream().println(String.format("Error: can't start recording: %s", e.getMessage()));
+            return 1;
+        }
+
+        // Done
+        session.getOutputStream().println(String.format("Started recording %d (\"%s\")", recording.getId(), recording.getName()));
+        return 0;
+    }
+}
@@ -0,0 +1,72 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * A "jfr-stop" command that stops or discards a Java Flight Recorder recording.
+ */
+public class JfrStopCommand extends AbstractJfrCommand {
+
+    public JfrStopCommand() {
+        super("[-c] recording",
+          "Stop a Java Flight Recorder recording.",
+          "Stops the specified Java Flight Recorder recording, given by ID or name."
+          + "\nA stopped recording's data remains available for \"jfr-dump\" until the recording is closed."
+          + "\n"
+          + "\nOptions:"
+          + "\n    -c    Also close the recording, discarding its data");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse parameters
+        final boolean close;
+        final String idOrName;
+        switch (args.size()) {
+        case 1:
+            close = false;
+            idOrName = args.get(0);
+            break;
+        case 2:
+            if (!args.get(0).equals("-c")) {
+                this.printUsage(session, name);
+                return 1;
+            }
+            close = true;
+            idOrName = args.get(1);
+            break;
+        default:
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Find recording
+        if (!this.checkAvailable(session))
+            return 1;
+        final Recording recording = this.findRecording(session, idOrName).orElse(null);
+        if (recording == null)
+            return 1;
+
+        // Stop it
+        if (recording.getState() == RecordingState.RUNNING || recording.getState() == RecordingState.DELAYED)
+            recording.stop();
+        if (close)
+            recording.close();
+
+        // Done
+        session.getOutputStream().println(String.format("%s recording %d (\"%s\")",
+          close ? "Closed" : "Stopped", recording.getId(), recording.getName()));
+        return 0;
+    }
+}
@@ -0,0 +1,267 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import jdk.jfr.EventSettings;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * A "jfr-watch" command that prints selected Java Flight Recorder events live as they occur.
+ *
+ * <p>
+ * Events are consumed via a {@link RecordingStream}, so the overhead is that of the JFR event machinery
+ * rather than periodic polling. Output is rate limited so a burst of events can't flood the session.
+ */
+public class JfrWatchCommand extends AbstractJfrCommand {
+
+    /**
+     * Default threshold for duration-based events in milliseconds.
+     */
+    public static final long DEFAULT_THRESHOLD_MILLIS = 20;
+
+    /**
+     * Default maximum number of events displayed per second.
+     */
+    public static final int DEFAULT_MAX_RATE = 20;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    public JfrWatchCommand() {
+        super("[-e events] [-t millis] [-r rate] [-f regex] [-d seconds]",
+          "Display Java Flight Recorder events live.",
+          "Streams selected Java Flight Recorder events from this JVM and displays them as they occur,"
+          + "\nuntil interrupted (Control-C) or the specified duration elapses."
+          + "\n"
+          + "\nOptions:"
+          + "\n    -e events    Comma-separated event groups to watch (default all):"
+          + "\n                   gc        Garbage collections and their pause times"
+          + "\n                   monitor   Monitor contention exceeding the threshold"
+          + "\n                   socket    Socket reads and writes exceeding the threshold"
+          + "\n                   alloc     Object allocations outside of a TLAB"
+          + "\n    -t millis    Threshold for duration-based events (default " + DEFAULT_THRESHOLD_MILLIS + ")"
+          + "\n    -r rate      Maximum number of events displayed per second (default " + DEFAULT_MAX_RATE + ")"
+          + "\n    -f regex     Only display events whose output matches the regular expression"
+          + "\n    -d seconds   Stop after the specified number of seconds");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse options
+        final Set<EventGroup> groups = new LinkedHashSet<>();
+        Duration threshold = Duration.ofMillis(DEFAULT_THRESHOLD_MILLIS);
+        int maxRate = DEFAULT_MAX_RATE;
+        Pattern filter = null;
+        Duration duration = null;
+        final ArrayDeque<String> params = new ArrayDeque<>(args);
+        while (!params.isEmpty()) {
+            final String option = params.removeFirst();
+            if (params.isEmpty()) {
+                this.printUsage(session, name);
+                return 1;
+            }
+            final String value = params.removeFirst();
+            try {
+                switch (option) {
+                case "-e":
+                    for (String groupName : value.split(","))
+                        groups.add(EventGroup.valueOf(groupName.trim().toUpperCase()));
+                    break;
+                case "-t":
+                    threshold = Duration.ofMillis(Long.parseLong(value, 10));
+                    break;
+                case "-r":
+                    if ((maxRate = Integer.parseInt(value, 10)) <= 0)
+                        throw new IllegalArgumentException();
+                    break;
+                case "-f":
+                    filter = Pattern.compile(value);
+                    break;
+                case "-d":
+                    duration = Duration.ofMillis((long)(Double.parseDouble(value) * 1000.0));
+                    break;
+                default:
+                    this.printUsage(session, name);
+                    return 1;
+                }
+            } catch (PatternSyntaxException e) {
+                session.getErrorStream().println(String.format("Error: invalid regular expression: %s", e.getMessage()));
+                return 1;
+            } catch (IllegalArgumentException e) {
+                session.getErrorStream().println(String.format("Error: invalid value \"%s\" for option %s", value, option));
+                return 1;
+            }
+        }
+        if (groups.isEmpty())
+            groups.addAll(Arrays.asList(EventGroup.values()));
+
+        // Check availability
+        if (!this.checkAvailable(session))
+            return 1;
+
+        // Set up event stream
+        final PrintStream out = session.getOutputStream();
+        final RateLimitedPrinter printer = new RateLimitedPrinter(out, maxRate, filter);
+        try (RecordingStream stream = new RecordingStream()) {
+            for (EventGroup group : groups) {
+                for (String eventName : group.getEventNames()) {
+                    final EventSettings settings = stream.enable(eventName).withoutStackTrace();
+                    if (group.isThresholded())
+                        settings.withThreshold(threshold);
+                    stream.onEvent(eventName, event -> printer.print(group.format(event)));
+                }
+            }
+            stream.startAsync();
+            out.println(String.format("Watching %s events (press Control-C to stop)...", groups.stream()
+              .map(group -> group.name().toLowerCase())
+              .reduce((a, b) -> a + ", " + b)
+              .orElse("no")));
+
+            // Wait for duration or interrupt
+            if (duration != null)
+                Thread.sleep(duration.toMillis());
+            else
+                Thread.sleep(Long.MAX_VALUE);
+        } finally {
+            printer.finish();
+        }
+
+        // Done
+        return 0;
+    }
+
+// EventGroup
+
+    private enum EventGroup {
+        GC(false, event -> String.format("GC       %s (%s) pause=%s longest=%s",
+          event.getString("name"), event.getString("cause"),
+          JfrWatchCommand.millis(event.getDuration("sumOfPauses")), JfrWatchCommand.millis(event.getDuration("longestPause"))),
+          "jdk.GarbageCollection"),
+        MONITOR(true, event -> String.format("MONITOR  %s blocked %s on %s (owner %s)",
+          JfrWatchCommand.thread(event.getThread()), JfrWatchCommand.millis(event.getDuration()),
+          JfrWatchCommand.className(event.getClass("monitorClass")), JfrWatchCommand.thread(event.getThread("previousOwner"))),
+          "jdk.JavaMonitorEnter"),
+        SOCKET(true, event -> String.format("SOCKET   %s %s %s:%d %d bytes in %s",
+          JfrWatchCommand.thread(event.getThread()), event.getEventType().getName().equals("jdk.SocketRead") ? "read" : "write",
+          JfrWatchCommand.host(event), event.getInt("port"),
+          event.getLong(event.getEventType().getName().equals("jdk.SocketRead") ? "bytesRead" : "bytesWritten"),
+          JfrWatchCommand.millis(event.getDuration())),
+          "jdk.SocketRead", "jdk.SocketWrite"),
+        ALLOC(false, event -> String.format("ALLOC    %s allocated %d bytes of %s outside TLAB",
+          JfrWatchCommand.thread(event.getThread()), event.getLong("allocationSize"),
+          JfrWatchCommand.className(event.getClass("objectClass"))),
+          "jdk.ObjectAllocationOutsideTLAB");
+
+        private final boolean thresholded;
+        private final Function<RecordedEvent, String> formatter;
+        private final List<String> eventNames;
+
+        EventGroup(boolean thresholded, Function<RecordedEvent, String> formatter, String... eventNames) {
+            this.thresholded = thresholded;
+            this.formatter = formatter;
+            this.eventNames = Arrays.asList(eventNames);
+        }
+
+        public boolean isThresholded() {
+            return this.thresholded;
+        }
+
+        public List<String> getEventNames() {
+            return this.eventNames;
+        }
+
+        public String format(RecordedEvent event) {
+            final LocalTime time = LocalTime.ofInstant(event.getStartTime(), ZoneId.systemDefault());
+            return String.format("%s %s", TIME_FORMAT.format(time), this.formatter.apply(event));
+        }
+    }
+
+    private static String millis(Duration duration) {
+        return duration != null ? String.format("%.3fms", duration.toNanos() / 1e6) : "?";
+    }
+
+    private static String host(RecordedEvent event) {
+        final String host = event.getString("host");
+        return host != null && !host.isEmpty() ? host : event.getString("address");
+    }
+
+    private static String thread(RecordedThread thread) {
+        if (thread == null)
+            return "?";
+        final String javaName = thread.getJavaName();
+        return String.format("\"%s\"", javaName != null ? javaName : thread.getOSName());
+    }
+
+    private static String className(RecordedClass type) {
+        return type != null ? type.getName() : "?";
+    }
+
+// RateLimitedPrinter
+
+    private static final class RateLimitedPrinter {
+
+        private final PrintStream out;
+        private final int maxRate;
+        private final Pattern filter;
+
+        private long windowStart;
+        private int windowCount;
+        private long suppressed;
+
+        RateLimitedPrinter(PrintStream out, int maxRate, Pattern filter) {
+            this.out = out;
+            this.maxRate = maxRate;
+            this.filter = filter;
+        }
+
+        public synchronized void print(String line) {
+            if (this.filter != null && !this.filter.matcher(line).find())
+                return;
+            final long now = System.nanoTime();
+            if (now - this.windowStart >= 1_000_000_000L) {
+                this.reportSuppressed();
+                this.windowStart = now;
+                this.windowCount = 0;
+            }
+            if (this.windowCount >= this.maxRate) {
+                this.suppressed++;
+                return;
+            }
+            this.windowCount++;
+            this.out.println(line);
+        }
+
+        public synchronized void finish() {
+            this.reportSuppressed();
+        }
+
+        private void reportSuppressed() {
+            if (this.suppressed == 0)
+                return;
+            this.out.println(String.format("(%d event(s) suppressed by rate limit)", this.suppressed));
+            this.suppressed = 0;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.PrintStream;
+import java.util.List;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.Job;
+import org.dellroad.jct.core.simple.SimpleShell;
+
+/**
+ * A "jobs" command that lists the background jobs in a {@link SimpleShell.Session}.
+ */
+public class JobsCommand extends AbstractJobCommand {
+
+    public JobsCommand() {
+        super(null, "List background jobs.",
+          "Lists the background jobs in the current shell session along with their status and the amount"
+          + "\nof buffered output. Completed jobs are removed from the list after being displayed."
+          + "\nStart a background job by ending its command line with \"" + SimpleShell.BACKGROUND + "\".");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse parameters
+        if (!args.isEmpty()) {
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Get shell session
+        final SimpleShell.Session shellSession = this.getShellSession(session, name);
+        if (shellSession == null)
+            return 1;
+
+        // List jobs
+        final PrintStream out = session.getOutputStream();
+        for (Job job : shellSession.getJobs()) {
+            final int buffered = job.getBufferedBytes();
+            out.println(buffered > 0 ? String.format("%s (%d bytes buffered)", job, buffered) : job.toString());
+            if (job.getState() == Job.State.DONE && buffered == 0)
+                shellSession.removeJob(job);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,51 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.Job;
+import org.dellroad.jct.core.simple.SimpleShell;
+
+/**
+ * A "kill" command that kills background jobs.
+ */
+public class KillCommand extends AbstractJobCommand {
+
+    public KillCommand() {
+        super("%job ...", "Kill background jobs.",
+          "Kills the specified background jobs by interrupting them. A job that ignores interrupts may"
+          + "\ncontinue running until its next blocking operation.");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse parameters
+        if (args.isEmpty()) {
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Find jobs
+        final SimpleShell.Session shellSession = this.getShellSession(session, name);
+        if (shellSession == null)
+            return 1;
+        final ArrayList<Job> jobs = new ArrayList<>(args.size());
+        for (String spec : args) {
+            final Job job = this.findJob(session, shellSession, spec);
+            if (job == null)
+                return 1;
+            jobs.add(job);
+        }
+
+        // Kill them
+        jobs.forEach(Job::kill);
+        return 0;
+    }
+}
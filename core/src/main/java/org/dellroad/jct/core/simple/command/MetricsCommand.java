@@ -0,0 +1,83 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.BufferedOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.AbstractSimpleCommand;
+import org.dellroad.jct.core.simple.ConsoleMetrics;
+import org.dellroad.jct.core.simple.MetricsSource;
+import org.dellroad.jct.core.simple.PrometheusWriter;
+import org.dellroad.jct.core.simple.SimpleCommandSupport;
+import org.dellroad.jct.core.util.ConsoleUtil;
+
+/**
+ * A "metrics" command that reports console and application metrics in Prometheus text format.
+ *
+ * <p>
+ * Metrics are taken from the console's {@linkplain SimpleCommandSupport#getEventDispatcher event listeners} that implement
+ * {@link MetricsSource}, such as {@link ConsoleMetrics}, followed by its {@linkplain SimpleCommandSupport#getMetricsSources
+ * application metrics sources}.
+ */
+public class MetricsCommand extends AbstractSimpleCommand {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public MetricsCommand() {
+        super(null,
+          "Report metrics in Prometheus text format.",
+          "Reports console metrics (e.g., sessions, commands, and command latencies) and any registered application"
+          + "\nmetrics in Prometheus text exposition format, suitable for scraping via \"ssh host metrics\".");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse arguments
+        if (!args.isEmpty()) {
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Get console
+        final SimpleCommandSupport owner;
+        try {
+            owner = (SimpleCommandSupport)session.getOwner();
+        } catch (ClassCastException e) {
+            session.getErrorStream().println(String.format(
+              "Error: the \"%s\" command requires a %s", name, SimpleCommandSupport.class.getName()));
+            return 1;
+        }
+
+        // Gather sources, omitting duplicates
+        final Set<MetricsSource> sources = Collections.newSetFromMap(new IdentityHashMap<>());
+        final ArrayList<MetricsSource> ordered = new ArrayList<>();
+        owner.getEventDispatcher().getListeners().stream()
+          .filter(MetricsSource.class::isInstance)
+          .map(MetricsSource.class::cast)
+          .filter(sources::add)
+          .forEach(ordered::add);
+        owner.getMetricsSources().stream()
+          .filter(sources::add)
+          .forEach(ordered::add);
+
+        // Write metrics; buffer output so it's not flushed line by line
+        final PrintStream out = new PrintStream(new BufferedOutputStream(session.getOutputStream(), BUFFER_SIZE),
+          false, ConsoleUtil.charsetOf(session.getOutputStream()));
+        final PrometheusWriter writer = new PrometheusWriter(out);
+        for (MetricsSource source : ordered)
+            source.writeMetrics(writer);
+        writer.flush();
+        return 0;
+    }
+}
@@ -0,0 +1,185 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.AbstractSimpleCommand;
+import org.dellroad.jct.core.simple.SimpleCommandSupport;
+import org.dellroad.jct.core.util.ConsoleUtil;
+import org.dellroad.jct.core.util.RedirectedSession;
+
+/**
+ * A "parallel" command that executes another command once for each of several arguments, concurrently.
+ *
+ * <p>
+ * Invocations run on the console's {@linkplain SimpleCommandSupport#getExecutor executor}, with at most
+ * a fixed number running at any one time. The output of each invocation is captured and then displayed
+ * as a unit, in argument order, so output from different invocations is never interleaved.
+ */
+public class ParallelCommand extends AbstractSimpleCommand {
+
+    /**
+     * The command line word that separates the command from the arguments.
+     */
+    public static final String SEPARATOR = ":::";
+
+    public ParallelCommand() {
+        super("[-j jobs] command [arg ...] " + SEPARATOR + " param ...",
+          "Execute a command for each of several parameters concurrently.",
+          "Executes the given command once for each parameter following \"" + SEPARATOR + "\", with the parameter appended"
+          + "\nto the command's arguments. Up to \"jobs\" invocations run at the same time (default is the number"
+          + "\nof available processors). The output from each invocation is displayed all together, in parameter"
+          + "\norder, followed by a summary of any failures and the total elapsed time."
+          + "\n"
+          + "\nThe exit value is zero if every invocation succeeded, otherwise one.");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse options
+        int maxJobs = Runtime.getRuntime().availableProcessors();
+        if (args.size() >= 2 && args.get(0).equals("-j")) {
+            try {
+                maxJobs = Integer.parseInt(args.get(1), 10);
+            } catch (NumberFormatException e) {
+                maxJobs = 0;
+            }
+            if (maxJobs <= 0) {
+                session.getErrorStream().println(String.format("Error: invalid number of jobs \"%s\"", args.get(1)));
+                return 1;
+            }
+            args = args.subList(2, args.size());
+        }
+        final int separator = args.indexOf(SEPARATOR);
+        if (separator <= 0) {
+            this.printUsage(session, name);
+            return 1;
+        }
+        final List<String> commandPrefix = args.subList(0, separator);
+        final List<String> params = args.subList(separator + 1, args.size());
+
+        // Get console
+        final SimpleCommandSupport owner;
+        try {
+            owner = (SimpleCommandSupport)session.getOwner();
+        } catch (ClassCastException e) {
+            session.getErrorStream().println(String.format(
+              "Error: the \"%s\" command requires a %s", name, SimpleCommandSupport.class.getName()));
+            return 1;
+        }
+
+        // Find commands up front, so we fail fast
+        final ArrayList<SimpleCommandSupport.FoundCommand> commands = new ArrayList<>(params.size());
+        for (String param : params) {
+            final ArrayList<String> commandList = new ArrayList<>(commandPrefix);
+            commandList.add(param);
+            final SimpleCommandSupport.FoundCommand command = owner.findCommand(session.getErrorStream(), commandList);
+            if (command == null)
+                return 1;
+            commands.add(command);
+        }
+
+        // Dispatch invocations, displaying output in order as it becomes available
+        final long startTime = System.nanoTime();
+        final Executor executor = owner.getExecutor();
+        final Semaphore semaphore = new Semaphore(maxJobs);
+        final ArrayList<Invocation> invocations = new ArrayList<>(commands.size());
+        final ArrayList<String> failures = new ArrayList<>();
+        int nextToDisplay = 0;
+        try {
+            for (int i = 0; i < commands.size(); i++) {
+                semaphore.acquire();
+                final Invocation invocation = new Invocation(owner, session, commands.get(i), semaphore);
+                invocations.add(invocation);
+                try {
+                    executor.execute(invocation.getTask());
+                } catch (RuntimeException e) {
+                    semaphore.release();
+                    throw e;
+                }
+                while (nextToDisplay < invocations.size() && invocations.get(nextToDisplay).getTask().isDone())
+                    this.display(session, params.get(nextToDisplay), invocations.get(nextToDisplay++), failures);
+            }
+            while (nextToDisplay < invocations.size())
+                this.display(session, params.get(nextToDisplay), invocations.get(nextToDisplay++), failures);
+        } finally {
+            invocations.forEach(invocation -> invocation.getTask().cancel(true));
+        }
+
+        // Display summary
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+        session.getErrorStream().println(failures.isEmpty() ?
+          String.format("%d invocation(s) succeeded in %.3f seconds", params.size(), seconds) :
+          String.format("%d of %d invocation(s) failed in %.3f seconds: %s",
+            failures.size(), params.size(), seconds, String.join(", ", failures)));
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    private void display(ConsoleSession<?, ?> session, String param, Invocation invocation, List<String> failures)
+      throws InterruptedException {
+        final FutureTask<Integer> task = invocation.getTask();
+        Integer exitValue = null;
+        try {
+            exitValue = task.get();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace(invocation.getOutput());
+        }
+        final byte[] output = invocation.getBytes();
+        session.getOutputStream().write(output, 0, output.length);
+        session.getOutputStream().flush();
+        if (exitValue == null)
+            failures.add(String.format("%s (exception)", param));
+        else if (exitValue != 0)
+            failures.add(String.format("%s (exit %d)", param, exitValue));
+    }
+
+// Invocation
+
+    private static final class Invocation {
+
+        private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        private final PrintStream output;
+        private final FutureTask<Integer> task;
+
+        Invocation(SimpleCommandSupport owner, ConsoleSession<?, ?> session,
+          SimpleCommandSupport.FoundCommand command, Semaphore semaphore) {
+            this.output = ConsoleUtil.printStreamLike(this.buf, session.getOutputStream());
+            final ConsoleSession<?, ?> invocationSession = RedirectedSession.of(session,
+              InputStream.nullInputStream(), this.output, this.output);
+            this.task = new FutureTask<>(() -> {
+                try {
+                    return owner.execute(invocationSession, command);
+                } finally {
+                    semaphore.release();
+                }
+            });
+        }
+
+        public FutureTask<Integer> getTask() {
+            return this.task;
+        }
+
+        public PrintStream getOutput() {
+            return this.output;
+        }
+
+        public byte[] getBytes() {
+            this.output.flush();
+            return this.buf.toByteArray();
+        }
+    }
+}
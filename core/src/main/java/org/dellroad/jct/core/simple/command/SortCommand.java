@@ -0,0 +1,93 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * A simple "sort" command.
+ */
+public class SortCommand extends AbstractFilterCommand {
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("^\\s*([-+]?([0-9]+(\\.[0-9]*)?|\\.[0-9]+)([eE][-+]?[0-9]+)?)");
+
+    public SortCommand() {
+        super("[-r] [-n] [-u] [-f]",
+          "Sort lines of input.",
+          "Reads all of standard input and prints its lines in sorted order."
+          + "\n"
+          + "\nOptions:"
+          + "\n    -r    Reverse the sort order"
+          + "\n    -n    Compare lines by their leading numeric value"
+          + "\n    -u    Omit lines that compare equal to the previous line"
+          + "\n    -f    Ignore case");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse options
+        boolean reverse = false;
+        boolean numeric = false;
+        boolean unique = false;
+        boolean ignoreCase = false;
+        for (String arg : args) {
+            switch (arg) {
+            case "-r":
+                reverse = true;
+                break;
+            case "-n":
+                numeric = true;
+                break;
+            case "-u":
+                unique = true;
+                break;
+            case "-f":
+                ignoreCase = true;
+                break;
+            default:
+                this.printUsage(session, name);
+                return 1;
+            }
+        }
+
+        // Build comparator
+        Comparator<String> comparator = ignoreCase ? String.CASE_INSENSITIVE_ORDER : Comparator.naturalOrder();
+        if (numeric)
+            comparator = Comparator.comparingDouble(SortCommand::leadingNumber).thenComparing(comparator);
+        if (reverse)
+            comparator = comparator.reversed();
+
+        // Read lines
+        final ArrayList<String> lines = new ArrayList<>();
+        if (!this.readLines(session, lines::add))
+            return 1;
+
+        // Sort and print
+        lines.sort(comparator);
+        final PrintStream out = session.getOutputStream();
+        String previous = null;
+        for (String line : lines) {
+            if (unique && previous != null && comparator.compare(previous, line) == 0)
+                continue;
+            out.println(line);
+            previous = line;
+        }
+        return 0;
+    }
+
+    private static double leadingNumber(String line) {
+        final Matcher matcher = NUMBER_PATTERN.matcher(line);
+        return matcher.find() ? Double.parseDouble(matcher.group(1)) : 0.0;
+    }
+}
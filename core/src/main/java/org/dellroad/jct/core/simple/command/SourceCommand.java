@@ -0,0 +1,153 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.AbstractSimpleCommand;
+import org.dellroad.jct.core.simple.Script;
+import org.dellroad.jct.core.simple.SimpleCommandSupport;
+import org.dellroad.jct.core.util.ConsoleUtil;
+import org.dellroad.jct.core.util.RedirectedSession;
+
+/**
+ * A "source" command that executes a script of console commands.
+ *
+ * <p>
+ * Scripts must reside within the owner's {@linkplain SimpleCommandSupport#getScriptDirectory script directory};
+ * if none is configured, this command is disabled. Relative filenames are resolved against that directory.
+ *
+ * <p>
+ * Scripts may source other scripts, up to a maximum nesting depth, so that a script that (directly or indirectly)
+ * sources itself fails with an error instead of recursing forever. Nesting is tracked through the chain of
+ * {@link RedirectedSession}s, so it is also detected when the nested command runs in a pipeline stage or job.
+ *
+ * @see SimpleCommandSupport#compileScript
+ */
+public class SourceCommand extends AbstractSimpleCommand {
+
+    /**
+     * Default maximum script nesting depth.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 16;
+
+    // The sessions in which scripts are currently executing
+    private static final Set<ConsoleSession<?, ?>> SCRIPT_SESSIONS = ConcurrentHashMap.newKeySet();
+
+    private final int maxDepth;
+
+    /**
+     * Default constructor.
+     *
+     * <p>
+     * Allows scripts to nest up to {@link #DEFAULT_MAX_DEPTH} deep.
+     */
+    public SourceCommand() {
+        this(DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxDepth maximum script nesting depth
+     * @throws IllegalArgumentException if {@code maxDepth} is not positive
+     */
+    public SourceCommand(int maxDepth) {
+        super("[-e] file",
+          "Execute the console commands in a script file.",
+          "Reads console commands from the given file and executes them in order. Commands may span multiple"
+          + "\nlines; blank lines and lines starting with \"#\" are ignored. Every command in the script is checked"
+          + "\nbefore any of them are executed, and the parsed script is cached until the file changes."
+          + "\n"
+          + "\nThe file must be within the configured script directory; relative names are resolved against it."
+          + "\n"
+          + "\nIf \"-e\" is given, execution stops at the first command that returns a non-zero exit value."
+          + "\nThe exit value is that of the last command executed.");
+        if (maxDepth <= 0)
+            throw new IllegalArgumentException("invalid maxDepth");
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Get the maximum script nesting depth.
+     *
+     * @return maximum depth
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse parameters
+        boolean stopOnError = false;
+        if (!args.isEmpty() && args.get(0).equals("-e")) {
+            stopOnError = true;
+            args = args.subList(1, args.size());
+        }
+        if (args.size() != 1) {
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Get console
+        final SimpleCommandSupport owner;
+        try {
+            owner = (SimpleCommandSupport)session.getOwner();
+        } catch (ClassCastException e) {
+            session.getErrorStream().println(String.format(
+              "Error: the \"%s\" command requires a %s", name, SimpleCommandSupport.class.getName()));
+            return 1;
+        }
+
+        // Resolve script file within the script directory
+        final Path scriptDirectory = owner.getScriptDirectory();
+        if (scriptDirectory == null) {
+            session.getErrorStream().println(String.format("Error: the \"%s\" command is not enabled", name));
+            return 1;
+        }
+        final Path path;
+        try {
+            path = ConsoleUtil.resolveWithin(scriptDirectory, args.get(0));
+        } catch (IllegalArgumentException | IOException e) {
+            session.getErrorStream().println("Error: " + e.getMessage());
+            return 1;
+        }
+
+        // Compile script
+        final Script script = owner.compileScript(session.getErrorStream(), path);
+        if (script == null)
+            return 1;
+
+        // Check nesting depth
+        int depth = 0;
+        for (ConsoleSession<?, ?> ancestor = session; ancestor != null; ) {
+            if (SCRIPT_SESSIONS.contains(ancestor))
+                depth++;
+            ancestor = ancestor instanceof RedirectedSession ? ((RedirectedSession<?, ?>)ancestor).getSession() : null;
+        }
+        if (depth >= this.maxDepth) {
+            session.getErrorStream().println(String.format(
+              "Error: %s: scripts nested more than %d deep", script.getPath(), this.maxDepth));
+            return 1;
+        }
+
+        // Execute script
+        final ConsoleSession<?, ?> scriptSession = RedirectedSession.of(session, null, null, null);
+        SCRIPT_SESSIONS.add(scriptSession);
+        try {
+            return script.execute(scriptSession, owner.getExecutor(), stopOnError);
+        } finally {
+            SCRIPT_SESSIONS.remove(scriptSession);
+        }
+    }
+}
@@ -13,13 +13,15 @@ import org.dellroad.jct.core.Shell;
 import org.dellroad.jct.core.ShellRequest;
 import org.dellroad.jct.core.ShellSession;
 import org.dellroad.jct.core.simple.AbstractSimpleCommand;
+import org.dellroad.jct.core.simple.SimpleCommandSupport;
 import org.dellroad.jct.core.simple.SimpleShellRequest;
 
 /**
  * A command that fires up subshell sessions.
  *
  * <p>
- * This command only works within shell sessions.
+ * This command only works within shell sessions. If the outer shell is a {@link SimpleCommandSupport} with
+ * {@linkplain SimpleCommandSupport#getTracer tracing} enabled, the subshell executes within a {@code "subshell"} span.
  */
 public class SubshellCommand extends AbstractSimpleCommand {
 
@@ -43,6 +45,11 @@ public class SubshellCommand extends AbstractSimpleCommand {
 
 // AbstractSimpleCommand
 
+    @Override
+    public boolean requiresTerminal() {
+        return true;
+    }
+
     @Override
     public int execute(ConsoleSession<?, ?> session0, String name, List<String> params) throws InterruptedException {
 
@@ -53,6 +60,16 @@ public class SubshellCommand extends AbstractSimpleCommand {
         }
         final ShellSession session = (ShellSession)session0;
 
+        // Trace the subshell if possible
+        if (session.getOwner() instanceof SimpleCommandSupport) {
+            return ((SimpleCommandSupport)session.getOwner()).getTracer().trace("subshell",
+              span -> span.setAttribute("command", name), () -> this.createAndExecute(session, name, params));
+        }
+        return this.createAndExecute(session, name, params);
+    }
+
+    private int createAndExecute(ShellSession session, String name, List<String> params) throws InterruptedException {
+
         // Create request
         final ShellRequest request = this.buildShellRequest(session, name, params);
 
@@ -0,0 +1,62 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.List;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * A simple "tail" command.
+ */
+public class TailCommand extends AbstractFilterCommand {
+
+    /**
+     * Default number of lines.
+     */
+    public static final int DEFAULT_LINES = 10;
+
+    public TailCommand() {
+        super("[-n lines]",
+          "Print the last lines of input.",
+          "Copies the last " + DEFAULT_LINES + " (or the specified number of) lines of standard input to standard output."
+          + "\nOnly that many lines are retained in memory while reading.");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse options
+        int limit = DEFAULT_LINES;
+        if (args.size() == 2 && args.get(0).equals("-n")) {
+            if ((limit = this.parseCount(session, args.get(1))) < 0)
+                return 1;
+        } else if (!args.isEmpty()) {
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Read lines, keeping only the last "limit" of them
+        final int maxLines = limit;
+        final ArrayDeque<String> lines = new ArrayDeque<>(Math.min(maxLines, 1024));
+        if (!this.readLines(session, line -> {
+            if (maxLines > 0) {
+                if (lines.size() == maxLines)
+                    lines.removeFirst();
+                lines.addLast(line);
+            }
+            return true;
+        }))
+            return 1;
+
+        // Print them
+        final PrintStream out = session.getOutputStream();
+        lines.forEach(out::println);
+        return 0;
+    }
+}
@@ -0,0 +1,70 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.simple.AbstractSimpleCommand;
+import org.dellroad.jct.core.simple.CommandTimeout;
+import org.dellroad.jct.core.simple.SimpleCommandSupport;
+import org.dellroad.jct.core.util.ConsoleUtil;
+
+/**
+ * A "timeout" command that executes another command subject to a time limit.
+ *
+ * @see CommandTimeout
+ */
+public class TimeoutCommand extends AbstractSimpleCommand {
+
+    public TimeoutCommand() {
+        super("duration command [arg ...]",
+          "Execute a command with a time limit.",
+          "Executes the given command, interrupting it if it runs longer than the given duration. The duration"
+          + "\nis a number optionally followed by a unit: \"ms\", \"s\" (the default), \"m\", \"h\", or \"d\"."
+          + "\nIf the command does not respond to the interrupt within a grace period, its I/O is disabled."
+          + "\nThe exit value is " + CommandTimeout.EXIT_TIMEOUT + " if the command timed out, otherwise the command's"
+          + "\nexit value.");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse parameters
+        if (args.size() < 2) {
+            this.printUsage(session, name);
+            return 1;
+        }
+        final Duration timeout;
+        try {
+            timeout = ConsoleUtil.parseDuration(args.get(0));
+            if (timeout.isZero())
+                throw new IllegalArgumentException("duration must be positive");
+        } catch (IllegalArgumentException e) {
+            session.getErrorStream().println(String.format("Error: %s", e.getMessage()));
+            return 1;
+        }
+
+        // Get console
+        final SimpleCommandSupport owner;
+        try {
+            owner = (SimpleCommandSupport)session.getOwner();
+        } catch (ClassCastException e) {
+            session.getErrorStream().println(String.format(
+              "Error: the \"%s\" command requires a %s", name, SimpleCommandSupport.class.getName()));
+            return 1;
+        }
+
+        // Find command
+        final SimpleCommandSupport.FoundCommand command = owner.findCommand(session.getErrorStream(), args.subList(1, args.size()));
+        if (command == null)
+            return 1;
+
+        // Execute command
+        return owner.executeWithTimeout(session, command, timeout);
+    }
+}
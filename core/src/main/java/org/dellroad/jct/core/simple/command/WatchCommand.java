@@ -0,0 +1,207 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.ShellSession;
+import org.dellroad.jct.core.simple.AbstractSimpleCommand;
+import org.dellroad.jct.core.simple.SimpleCommandSupport;
+import org.dellroad.jct.core.util.RedirectedSession;
+import org.jline.terminal.Attributes;
+import org.jline.terminal.Size;
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.jline.utils.Display;
+import org.jline.utils.InfoCmp.Capability;
+import org.jline.utils.NonBlockingReader;
+
+/**
+ * A "watch" command that repeatedly executes another command and displays its output full screen.
+ *
+ * <p>
+ * The screen is updated using a JLine {@link Display}, which compares the new output to what is already
+ * on the screen and only transmits the differences. This keeps the number of bytes sent per refresh
+ * small, which matters over slow or high latency connections.
+ *
+ * <p>
+ * This command only works within shell sessions.
+ */
+public class WatchCommand extends AbstractSimpleCommand {
+
+    /**
+     * Default refresh interval in seconds.
+     */
+    public static final double DEFAULT_INTERVAL = 2.0;
+
+    /**
+     * Minimum refresh interval in seconds.
+     */
+    public static final double MIN_INTERVAL = 0.1;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    public WatchCommand() {
+        super("[-n seconds] command [arg ...]",
+          "Execute a command periodically, showing its output full screen.",
+          "Repeatedly executes the given command and displays its output full screen, refreshing every"
+          + "\ntwo seconds or at the specified interval. Only the parts of the screen that change are redrawn."
+          + "\nPress \"q\" or Control-C to exit; press any other key to refresh immediately."
+          + "\nOnly works in shell mode, not execute mode.");
+    }
+
+    @Override
+    public boolean requiresTerminal() {
+        return true;
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse options
+        double interval = DEFAULT_INTERVAL;
+        if (args.size() >= 2 && args.get(0).equals("-n")) {
+            try {
+                interval = Double.parseDouble(args.get(1));
+            } catch (NumberFormatException e) {
+                interval = Double.NaN;
+            }
+            if (!(interval >= MIN_INTERVAL)) {
+                session.getErrorStream().println(String.format("Error: invalid interval \"%s\"", args.get(1)));
+                return 1;
+            }
+            args = args.subList(2, args.size());
+        }
+        if (args.isEmpty()) {
+            this.printUsage(session, name);
+            return 1;
+        }
+
+        // Sanity check
+        if (!(session instanceof ShellSession)) {
+            session.getErrorStream().println(String.format("Error: the \"%s\" command only works within shell sessions", name));
+            return 1;
+        }
+        final Terminal terminal = ((ShellSession)session).getRequest().getTerminal();
+
+        // Get console
+        final SimpleCommandSupport owner;
+        try {
+            owner = (SimpleCommandSupport)session.getOwner();
+        } catch (ClassCastException e) {
+            session.getErrorStream().println(String.format(
+              "Error: the \"%s\" command requires a %s", name, SimpleCommandSupport.class.getName()));
+            return 1;
+        }
+
+        // Find command
+        final SimpleCommandSupport.FoundCommand command = owner.findCommand(session.getErrorStream(), args);
+        if (command == null)
+            return 1;
+        final String title = String.format("Every %.1fs: %s", interval, String.join(" ", args));
+
+        // Run display loop
+        final Attributes attributes = terminal.enterRawMode();
+        terminal.puts(Capability.enter_ca_mode);
+        terminal.puts(Capability.cursor_invisible);
+        try {
+            final Display display = new Display(terminal, true);
+            final NonBlockingReader reader = terminal.reader();
+            Size size = null;
+            while (true) {
+
+                // Execute command and capture its output
+                final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                final PrintStream capture = new PrintStream(buf, true, StandardCharsets.UTF_8);
+                final int exitValue = owner.execute(
+                  RedirectedSession.of(session, InputStream.nullInputStream(), capture, capture), command);
+                capture.flush();
+
+                // Handle screen size changes
+                final Size newSize = terminal.getSize();
+                if (!newSize.equals(size)) {
+                    size = newSize;
+                    display.resize(size.getRows(), size.getColumns());
+                    display.clear();
+                }
+
+                // Update the screen
+                display.update(this.buildScreen(size, title, exitValue, buf.toString(StandardCharsets.UTF_8)), 0);
+                terminal.flush();
+
+                // Wait for the next refresh or a keypress
+                final int ch = reader.read((long)(interval * 1000.0));
+                if (ch == 'q' || ch == 'Q' || ch == NonBlockingReader.EOF)
+                    break;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+            }
+        } catch (InterruptedIOException e) {
+            throw new InterruptedException();
+        } catch (IOException e) {
+            session.getErrorStream().println(String.format("Error: %s", e));
+            return 1;
+        } finally {
+            terminal.puts(Capability.cursor_visible);
+            terminal.puts(Capability.exit_ca_mode);
+            terminal.setAttributes(attributes);
+            terminal.flush();
+        }
+
+        // Done
+        return 0;
+    }
+
+    /**
+     * Build the screen contents.
+     *
+     * @param size terminal size
+     * @param title title to display at the top of the screen
+     * @param exitValue command exit value
+     * @param output captured command output
+     * @return screen lines
+     */
+    protected List<AttributedString> buildScreen(Size size, String title, int exitValue, String output) {
+        final int rows = Math.max(size.getRows() - 1, 1);
+        final int columns = Math.max(size.getColumns(), 1);
+        final List<AttributedString> lines = new ArrayList<>(rows);
+
+        // Add header
+        final String status = (exitValue != 0 ? "[exit " + exitValue + "] " : "") + TIME_FORMAT.format(LocalTime.now());
+        final AttributedStringBuilder header = new AttributedStringBuilder()
+          .style(AttributedStyle.BOLD)
+          .append(title);
+        final int padding = columns - header.columnLength() - status.length();
+        if (padding > 0) {
+            header.append(" ".repeat(padding))
+              .append(status);
+        }
+        lines.add(header.toAttributedString().columnSubSequence(0, columns));
+        lines.add(AttributedString.EMPTY);
+
+        // Add output lines
+        for (String line : output.split("\n", -1)) {
+            if (lines.size() >= rows)
+                break;
+            if (line.endsWith("\r"))
+                line = line.substring(0, line.length() - 1);
+            lines.add(AttributedString.fromAnsi(line, 8).columnSubSequence(0, columns));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,90 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dellroad.jct.core.ConsoleSession;
+
+/**
+ * A simple "wc" command.
+ */
+public class WcCommand extends AbstractFilterCommand {
+
+    public WcCommand() {
+        super("[-l] [-w] [-m]",
+          "Count input lines, words, and characters.",
+          "Reads standard input and prints the number of lines, words, and characters it contains."
+          + "\n"
+          + "\nOptions:"
+          + "\n    -l    Print the number of lines"
+          + "\n    -w    Print the number of words"
+          + "\n    -m    Print the number of characters"
+          + "\n"
+          + "\nIf no options are given, all three counts are printed.");
+    }
+
+    @Override
+    public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+
+        // Parse options
+        boolean showLines = false;
+        boolean showWords = false;
+        boolean showChars = false;
+        for (String arg : args) {
+            switch (arg) {
+            case "-l":
+                showLines = true;
+                break;
+            case "-w":
+                showWords = true;
+                break;
+            case "-m":
+                showChars = true;
+                break;
+            default:
+                this.printUsage(session, name);
+                return 1;
+            }
+        }
+        if (!showLines && !showWords && !showChars)
+            showLines = showWords = showChars = true;
+
+        // Count
+        final long[] counts = new long[3];                          // lines, words, chars
+        if (!this.readLines(session, line -> {
+            counts[0]++;
+            counts[1] += WcCommand.countWords(line);
+            counts[2] += line.codePointCount(0, line.length()) + 1;
+            return true;
+        }))
+            return 1;
+
+        // Print result
+        final List<String> fields = new ArrayList<>(3);
+        if (showLines)
+            fields.add(String.format("%7d", counts[0]));
+        if (showWords)
+            fields.add(String.format("%7d", counts[1]));
+        if (showChars)
+            fields.add(String.format("%7d", counts[2]));
+        session.getOutputStream().println(String.join(" ", fields));
+        return 0;
+    }
+
+    private static int countWords(String line) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < line.length(); i++) {
+            final boolean space = Character.isWhitespace(line.charAt(i));
+            if (!space && !inWord)
+                words++;
+            inWord = !space;
+        }
+        return words;
+    }
+}
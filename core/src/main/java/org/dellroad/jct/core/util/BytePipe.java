@@ -0,0 +1,218 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, in-memory byte pipe connecting a writer thread to a reader thread.
+ *
+ * <p>
+ * Unlike {@link java.io.PipedInputStream}, instances do not track the identity of the reader and writer threads,
+ * so either side may be used from any thread (e.g., pooled threads). Writers block while the buffer is full and
+ * readers block while it is empty.
+ *
+ * <p>
+ * Closing the {@linkplain #getOutputStream output stream} causes the reader to see end of file once the buffer
+ * has drained. Closing the {@linkplain #getInputStream input stream} discards any buffered data and causes
+ * any subsequent (or currently blocked) write to throw an {@link IOException}, similar to a "broken pipe".
+ *
+ * <p>
+ * A thread blocked on either side that is interrupted will throw an {@link InterruptedIOException}.
+ */
+public class BytePipe {
+
+    /**
+     * Default buffer size.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+    private final byte[] buf;
+    private final Input input = new Input();
+    private final Output output = new Output();
+
+    private int readPos;
+    private int count;
+    private boolean readerClosed;
+    private boolean writerClosed;
+
+    /**
+     * Default constructor.
+     *
+     * <p>
+     * Uses a buffer of {@link #DEFAULT_BUFFER_SIZE} bytes.
+     */
+    public BytePipe() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bufferSize buffer size in bytes
+     * @throws IllegalArgumentException if {@code bufferSize} is not positive
+     */
+    public BytePipe(int bufferSize) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("invalid bufferSize");
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Get the read end of this pipe.
+     *
+     * @return pipe input
+     */
+    public InputStream getInputStream() {
+        return this.input;
+    }
+
+    /**
+     * Get the write end of this pipe.
+     *
+     * @return pipe output
+     */
+    public OutputStream getOutputStream() {
+        return this.output;
+    }
+
+// Input
+
+    private class Input extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return this.read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] data, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || off + len > data.length)
+                throw new IndexOutOfBoundsException();
+            if (len == 0)
+                return 0;
+            final BytePipe pipe = BytePipe.this;
+            pipe.lock.lock();
+            try {
+                while (true) {
+                    if (pipe.readerClosed)
+                        throw new IOException("pipe closed");
+                    if (pipe.count > 0)
+                        break;
+                    if (pipe.writerClosed)
+                        return -1;
+                    pipe.await(pipe.notEmpty);
+                }
+                final int total = Math.min(len, pipe.count);
+                final int first = Math.min(total, pipe.buf.length - pipe.readPos);
+                System.arraycopy(pipe.buf, pipe.readPos, data, off, first);
+                System.arraycopy(pipe.buf, 0, data, off + first, total - first);
+                pipe.readPos = (pipe.readPos + total) % pipe.buf.length;
+                pipe.count -= total;
+                pipe.notFull.signalAll();
+                return total;
+            } finally {
+                pipe.lock.unlock();
+            }
+        }
+
+        @Override
+        public int available() {
+            final BytePipe pipe = BytePipe.this;
+            pipe.lock.lock();
+            try {
+                return pipe.count;
+            } finally {
+                pipe.lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            final BytePipe pipe = BytePipe.this;
+            pipe.lock.lock();
+            try {
+                pipe.readerClosed = true;
+                pipe.count = 0;
+                pipe.notFull.signalAll();
+                pipe.notEmpty.signalAll();
+            } finally {
+                pipe.lock.unlock();
+            }
+        }
+    }
+
+// Output
+
+    private class Output extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            this.write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || off + len > data.length)
+                throw new IndexOutOfBoundsException();
+            final BytePipe pipe = BytePipe.this;
+            pipe.lock.lock();
+            try {
+                while (len > 0) {
+                    if (pipe.writerClosed)
+                        throw new IOException("pipe closed");
+                    if (pipe.readerClosed)
+                        throw new IOException("broken pipe");
+                    if (pipe.count == pipe.buf.length) {
+                        pipe.await(pipe.notFull);
+                        continue;
+                    }
+                    final int writePos = (pipe.readPos + pipe.count) % pipe.buf.length;
+                    final int chunk = Math.min(len, Math.min(pipe.buf.length - pipe.count, pipe.buf.length - writePos));
+                    System.arraycopy(data, off, pipe.buf, writePos, chunk);
+                    pipe.count += chunk;
+                    off += chunk;
+                    len -= chunk;
+                    pipe.notEmpty.signalAll();
+                }
+            } finally {
+                pipe.lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            final BytePipe pipe = BytePipe.this;
+            pipe.lock.lock();
+            try {
+                pipe.writerClosed = true;
+                pipe.notEmpty.signalAll();
+                pipe.notFull.signalAll();
+            } finally {
+                pipe.lock.unlock();
+            }
+        }
+    }
+
+// Internal Methods
+
+    private void await(Condition condition) throws InterruptedIOException {
+        try {
+            condition.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("interrupted");
+        }
+    }
+}
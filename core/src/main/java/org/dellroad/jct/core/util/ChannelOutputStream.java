@@ -0,0 +1,139 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An {@link OutputStream} that writes to a {@link WritableByteChannel} through a direct {@link ByteBuffer}.
+ *
+ * <p>
+ * Data is accumulated in the (off-heap) buffer and written to the channel only when the buffer fills up or
+ * the stream is flushed or closed. With a large buffer, this means few system calls and no intermediate
+ * copying by the channel, which is useful when streaming large amounts of data to a file.
+ *
+ * <p>
+ * Instances are not thread safe.
+ */
+public class ChannelOutputStream extends OutputStream {
+
+    /**
+     * Default buffer size.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buf;
+
+    private long bytesWritten;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * Uses a buffer of {@link #DEFAULT_BUFFER_SIZE} bytes.
+     *
+     * @param channel underlying channel
+     * @throws IllegalArgumentException if {@code channel} is null
+     */
+    public ChannelOutputStream(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param channel underlying channel
+     * @param bufferSize buffer size in bytes
+     * @throws IllegalArgumentException if {@code channel} is null
+     * @throws IllegalArgumentException if {@code bufferSize} is not positive
+     */
+    public ChannelOutputStream(WritableByteChannel channel, int bufferSize) {
+        if (channel == null)
+            throw new IllegalArgumentException("null channel");
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("invalid bufferSize");
+        this.channel = channel;
+        this.buf = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Get the total number of bytes written to the underlying channel so far.
+     *
+     * <p>
+     * This does not include bytes that are still buffered, or bytes that were lost because the channel
+     * threw an exception.
+     *
+     * @return number of bytes written to the channel
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+// OutputStream
+
+    @Override
+    public void write(int b) throws IOException {
+        this.checkClosed();
+        if (!this.buf.hasRemaining())
+            this.drain();
+        this.buf.put((byte)b);
+    }
+
+    @Override
+    public void write(byte[] data, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > data.length)
+            throw new IndexOutOfBoundsException();
+        this.checkClosed();
+        while (len > 0) {
+            if (!this.buf.hasRemaining())
+                this.drain();
+            final int chunk = Math.min(len, this.buf.remaining());
+            this.buf.put(data, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.checkClosed();
+        this.drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+        try {
+            this.drain();
+        } finally {
+            this.closed = true;
+            this.channel.close();
+        }
+    }
+
+// Internal Methods
+
+    private void drain() throws IOException {
+        this.buf.flip();
+        try {
+            while (this.buf.hasRemaining())
+                this.bytesWritten += this.channel.write(this.buf);
+        } finally {
+            this.buf.clear();
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if (this.closed)
+            throw new IOException("stream closed");
+    }
+}
@@ -6,8 +6,19 @@
 package org.dellroad.jct.core.util;
 
 import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Locale;
+import java.util.Optional;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -21,6 +32,8 @@ import org.jline.terminal.TerminalBuilder;
  */
 public final class ConsoleUtil {
 
+    private static final Method PRINT_STREAM_CHARSET = ConsoleUtil.findPrintStreamCharset();
+
     private ConsoleUtil() {
     }
 
@@ -82,6 +95,158 @@ public final class ConsoleUtil {
         };
     }
 
+    /**
+     * Parse a duration string.
+     *
+     * <p>
+     * The string must be a non-negative decimal number, optionally followed by a unit suffix:
+     * {@code ms}, {@code s}, {@code m}, {@code h}, or {@code d}. The default unit is seconds.
+     *
+     * @param value duration string, e.g., {@code "30"}, {@code "1.5s"}, {@code "500ms"}, or {@code "5m"}
+     * @return parsed duration
+     * @throws IllegalArgumentException if {@code value} is null or invalid
+     */
+    public static Duration parseDuration(String value) {
+        if (value == null)
+            throw new IllegalArgumentException("null value");
+        final Matcher matcher = Pattern.compile("([0-9]+(\\.[0-9]*)?|\\.[0-9]+)(ms|s|m|h|d)?").matcher(value.trim());
+        if (!matcher.matches())
+            throw new IllegalArgumentException("invalid duration \"" + value + "\"");
+        final double number = Double.parseDouble(matcher.group(1));
+        final String unit = Optional.ofNullable(matcher.group(3)).orElse("s");
+        final double millis;
+        switch (unit) {
+        case "ms":
+            millis = number;
+            break;
+        case "m":
+            millis = number * 60_000.0;
+            break;
+        case "h":
+            millis = number * 3_600_000.0;
+            break;
+        case "d":
+            millis = number * 86_400_000.0;
+            break;
+        default:
+            millis = number * 1000.0;
+            break;
+        }
+        if (millis > Long.MAX_VALUE / 2)
+            throw new IllegalArgumentException("duration \"" + value + "\" is too large");
+        return Duration.ofNanos((long)(millis * 1e6));
+    }
+
+    /**
+     * Format a duration in a concise, human readable way, e.g., {@code "1.5s"} or {@code "500ms"}.
+     *
+     * @param duration duration
+     * @return formatted duration
+     * @throws IllegalArgumentException if {@code duration} is null
+     */
+    public static String formatDuration(Duration duration) {
+        if (duration == null)
+            throw new IllegalArgumentException("null duration");
+        final long millis = duration.toMillis();
+        if (millis < 1000)
+            return millis + "ms";
+        return millis % 1000 == 0 ? millis / 1000 + "s" : String.format("%.3fs", millis / 1000.0);
+    }
+
+    /**
+     * Resolve a user-supplied filename against a directory, ensuring the result is contained in that directory.
+     *
+     * <p>
+     * Relative names are resolved against {@code directory}; absolute names are allowed only if they are within it.
+     * The result is rejected if, after normalization, it is not strictly inside {@code directory}, or if following
+     * symbolic links from it (or from its nearest existing ancestor, if it doesn't exist yet) leads outside of
+     * {@code directory}. Callers should still open the file with {@link LinkOption#NOFOLLOW_LINKS} where possible,
+     * in case a link is created after this check.
+     *
+     * @param directory containing directory
+     * @param name filename
+     * @return resolved path
+     * @throws IllegalArgumentException if {@code name} is invalid or not within {@code directory}, with a message
+     *  suitable for display to the user
+     * @throws IOException if an I/O error occurs, e.g., {@code directory} does not exist
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public static Path resolveWithin(Path directory, String name) throws IOException {
+        if (directory == null)
+            throw new IllegalArgumentException("null directory");
+        if (name == null)
+            throw new IllegalArgumentException("null name");
+        final Path dir = directory.toRealPath();
+        final Path path;
+        try {
+            path = dir.resolve(name).normalize();
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException(String.format("invalid filename \"%s\": %s", name, e.getMessage()), e);
+        }
+        boolean inside = path.startsWith(dir) && !path.equals(dir);
+        for (Path ancestor = path; inside && ancestor != null; ancestor = ancestor.getParent()) {
+            if (Files.exists(ancestor, LinkOption.NOFOLLOW_LINKS)) {
+                inside = ancestor.toRealPath().startsWith(dir);
+                break;
+            }
+        }
+        if (!inside)
+            throw new IllegalArgumentException(String.format("\"%s\" is not within %s", name, dir));
+        return path;
+    }
+
+    /**
+     * Create a new {@link PrintStream} that encodes characters and ends lines the same way as an existing one.
+     *
+     * <p>
+     * This is useful when capturing output that will later be copied to {@code like}: the returned stream uses
+     * {@code like}'s {@linkplain #charsetOf character encoding}, and if {@code like} is a {@link CrNlPrintStream},
+     * then so is the returned stream; otherwise, it's a normal {@link PrintStream}.
+     *
+     * @param out underlying output stream
+     * @param like the stream whose line endings should be matched
+     * @return new auto-flushing print stream
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public static PrintStream printStreamLike(OutputStream out, PrintStream like) {
+        if (out == null)
+            throw new IllegalArgumentException("null out");
+        if (like == null)
+            throw new IllegalArgumentException("null like");
+        final Charset charset = ConsoleUtil.charsetOf(like);
+        if (like instanceof CrNlPrintStream)
+            return CrNlPrintStream.of(out, charset);
+        return new PrintStream(out, true, charset);
+    }
+
+    /**
+     * Determine the character encoding used by a {@link PrintStream}.
+     *
+     * <p>
+     * JDK 17 has no way to ask an arbitrary {@link PrintStream} for its encoding. This method returns
+     * {@link CrNlPrintStream#getCharset} for {@link CrNlPrintStream}s, which include all terminal and SSH
+     * session streams, and uses {@code PrintStream.charset()} when running on JDK 18 or later. Otherwise,
+     * it returns UTF-8, which is the encoding this library uses for every other {@link PrintStream} it creates.
+     *
+     * @param stream print stream
+     * @return {@code stream}'s character encoding
+     * @throws IllegalArgumentException if {@code stream} is null
+     */
+    public static Charset charsetOf(PrintStream stream) {
+        if (stream == null)
+            throw new IllegalArgumentException("null stream");
+        if (stream instanceof CrNlPrintStream)
+            return ((CrNlPrintStream)stream).getCharset();
+        if (PRINT_STREAM_CHARSET != null) {
+            try {
+                return (Charset)PRINT_STREAM_CHARSET.invoke(stream);
+            } catch (ReflectiveOperationException e) {
+                // fall through
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
     /**
      * Wrap an {@link PrintStream} in a new one that ignores {@link PrintStream#close close()}.
      *
@@ -257,4 +422,13 @@ public final class ConsoleUtil {
             }
         };
     }
+
+    // PrintStream.charset() was added in JDK 18
+    private static Method findPrintStreamCharset() {
+        try {
+            return PrintStream.class.getMethod("charset");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
 }
@@ -20,8 +20,24 @@ public class CrNlPrintStream extends PrintStream {
 
     private static final char[] CRNL = new char[] { '\r', '\n' };
 
+    private final Charset charset;
+
     public CrNlPrintStream(OutputStream out, boolean autoFlush, String charset) throws UnsupportedEncodingException {
         super(out, autoFlush, charset);
+        try {
+            this.charset = Charset.forName(charset);
+        } catch (IllegalArgumentException e) {
+            throw (UnsupportedEncodingException)new UnsupportedEncodingException(charset).initCause(e);
+        }
+    }
+
+    /**
+     * Get the character encoding used by this instance.
+     *
+     * @return character encoding
+     */
+    public Charset getCharset() {
+        return this.charset;
     }
 
     @Override
@@ -0,0 +1,209 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.util;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+
+import org.dellroad.jct.core.CancellationToken;
+import org.dellroad.jct.core.ConsoleRequest;
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.ShellSession;
+
+/**
+ * A view of an executing {@link ConsoleSession} that has different I/O streams.
+ *
+ * <p>
+ * Instances are useful for running a command against an existing session while capturing or
+ * redirecting its input and/or output, and optionally substituting its {@link CancellationToken}.
+ * All other methods delegate to the original session,
+ * except {@link #execute}, which always throws {@link IllegalStateException}, because instances
+ * represent a session that is already executing.
+ *
+ * <p>
+ * Use {@link #of of()} to create instances; if the original session is a {@link ShellSession}, then
+ * the returned instance will be a {@link RedirectedShellSession}.
+ *
+ * @param <O> associated owner type
+ * @param <R> associated request type
+ */
+public class RedirectedSession<O, R extends ConsoleRequest<R>> implements ConsoleSession<O, R> {
+
+    private final ConsoleSession<O, R> session;
+    private final InputStream in;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final CancellationToken cancellationToken;
+
+    /**
+     * Constructor.
+     *
+     * @param session original session
+     * @param in input stream
+     * @param out output stream
+     * @param err error output stream
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    protected RedirectedSession(ConsoleSession<O, R> session, InputStream in, PrintStream out, PrintStream err) {
+        this(session, in, out, err, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param session original session
+     * @param in input stream
+     * @param out output stream
+     * @param err error output stream
+     * @param cancellationToken cancellation token, or null to inherit from {@code session}
+     * @throws IllegalArgumentException if any parameter other than {@code cancellationToken} is null
+     */
+    protected RedirectedSession(ConsoleSession<O, R> session, InputStream in, PrintStream out, PrintStream err,
+      CancellationToken cancellationToken) {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        if (in == null)
+            throw new IllegalArgumentException("null in");
+        if (out == null)
+            throw new IllegalArgumentException("null out");
+        if (err == null)
+            throw new IllegalArgumentException("null err");
+        this.session = session;
+        this.in = in;
+        this.out = out;
+        this.err = err;
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Create an instance.
+     *
+     * <p>
+     * If {@code session} is a {@link ShellSession}, the returned instance will be a {@link RedirectedShellSession}.
+     *
+     * @param session original session
+     * @param in input stream, or null to inherit from {@code session}
+     * @param out output stream, or null to inherit from {@code session}
+     * @param err error output stream, or null to inherit from {@code session}
+     * @param <O> associated owner type
+     * @param <R> associated request type
+     * @return redirected session
+     * @throws IllegalArgumentException if {@code session} is null
+     */
+    public static <O, R extends ConsoleRequest<R>> RedirectedSession<O, R> of(ConsoleSession<O, R> session,
+      InputStream in, PrintStream out, PrintStream err) {
+        return RedirectedSession.of(session, in, out, err, null);
+    }
+
+    /**
+     * Create an instance with its own {@link CancellationToken}.
+     *
+     * <p>
+     * If {@code session} is a {@link ShellSession}, the returned instance will be a {@link RedirectedShellSession}.
+     *
+     * @param session original session
+     * @param in input stream, or null to inherit from {@code session}
+     * @param out output stream, or null to inherit from {@code session}
+     * @param err error output stream, or null to inherit from {@code session}
+     * @param cancellationToken cancellation token, or null to inherit from {@code session}
+     * @param <O> associated owner type
+     * @param <R> associated request type
+     * @return redirected session
+     * @throws IllegalArgumentException if {@code session} is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <O, R extends ConsoleRequest<R>> RedirectedSession<O, R> of(ConsoleSession<O, R> session,
+      InputStream in, PrintStream out, PrintStream err, CancellationToken cancellationToken) {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        if (in == null)
+            in = session.getInputStream();
+        if (out == null)
+            out = session.getOutputStream();
+        if (err == null)
+            err = session.getErrorStream();
+        if (session instanceof ShellSession)
+            return (RedirectedSession<O, R>)new RedirectedShellSession((ShellSession)session, in, out, err, cancellationToken);
+        return new RedirectedSession<>(session, in, out, err, cancellationToken);
+    }
+
+    /**
+     * Get the original session.
+     *
+     * @return the session from which this instance was created
+     */
+    public ConsoleSession<O, R> getSession() {
+        return this.session;
+    }
+
+    /**
+     * Find the original, non-redirected session underlying the given session.
+     *
+     * <p>
+     * This "unwraps" any number of nested {@link RedirectedSession}s.
+     *
+     * @param session session, possibly redirected
+     * @return original session
+     * @throws IllegalArgumentException if {@code session} is null
+     */
+    public static ConsoleSession<?, ?> unwrap(ConsoleSession<?, ?> session) {
+        if (session == null)
+            throw new IllegalArgumentException("null session");
+        while (session instanceof RedirectedSession)
+            session = ((RedirectedSession<?, ?>)session).getSession();
+        return session;
+    }
+
+// ConsoleSession
+
+    @Override
+    public O getOwner() {
+        return this.session.getOwner();
+    }
+
+    @Override
+    public R getRequest() {
+        return this.session.getRequest();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return this.in;
+    }
+
+    @Override
+    public PrintStream getOutputStream() {
+        return this.out;
+    }
+
+    @Override
+    public PrintStream getErrorStream() {
+        return this.err;
+    }
+
+    @Override
+    public CancellationToken getCancellationToken() {
+        return this.cancellationToken != null ? this.cancellationToken : this.session.getCancellationToken();
+    }
+
+    /**
+     * Execute this session.
+     *
+     * <p>
+     * The implementation in {@link RedirectedSession} always throws {@link IllegalStateException}.
+     *
+     * @throws IllegalStateException always
+     */
+    @Override
+    public int execute() throws InterruptedException {
+        throw new IllegalStateException("already executed");
+    }
+
+    @Override
+    public boolean interrupt() {
+        return this.session.interrupt();
+    }
+}
@@ -0,0 +1,71 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.util;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+
+import org.dellroad.jct.core.CancellationToken;
+import org.dellroad.jct.core.Shell;
+import org.dellroad.jct.core.ShellRequest;
+import org.dellroad.jct.core.ShellSession;
+
+/**
+ * {@link RedirectedSession} variant for {@link ShellSession}s.
+ *
+ * <p>
+ * Unlike normal {@link ShellSession}s, instances may have a distinct error output stream.
+ */
+public class RedirectedShellSession extends RedirectedSession<Shell, ShellRequest> implements ShellSession {
+
+    /**
+     * Constructor.
+     *
+     * @param session original session
+     * @param in input stream
+     * @param out output stream
+     * @param err error output stream
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    protected RedirectedShellSession(ShellSession session, InputStream in, PrintStream out, PrintStream err) {
+        this(session, in, out, err, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param session original session
+     * @param in input stream
+     * @param out output stream
+     * @param err error output stream
+     * @param cancellationToken cancellation token, or null to inherit from {@code session}
+     * @throws IllegalArgumentException if any parameter other than {@code cancellationToken} is null
+     */
+    protected RedirectedShellSession(ShellSession session, InputStream in, PrintStream out, PrintStream err,
+      CancellationToken cancellationToken) {
+        super(session, in, out, err, cancellationToken);
+    }
+
+    @Override
+    public ShellSession getSession() {
+        return (ShellSession)super.getSession();
+    }
+
+    @Override
+    public PrintStream getErrorStream() {
+        return super.getErrorStream();
+    }
+
+    @Override
+    public boolean setExitValue(int exitValue) {
+        return this.getSession().setExitValue(exitValue);
+    }
+
+    @Override
+    public int getExitValue() {
+        return this.getSession().getExitValue();
+    }
+}
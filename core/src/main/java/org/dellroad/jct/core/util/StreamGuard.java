@@ -0,0 +1,121 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.util;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Wraps streams so they can all be cut off at once, e.g., from a command that won't stop.
+ *
+ * <p>
+ * Once {@link #disable} is invoked, guarded input streams return end-of-file and guarded output streams throw
+ * {@link InterruptedIOException}. The underlying streams are not closed, so they remain usable by their owner.
+ */
+public class StreamGuard {
+
+    private final String reason;
+
+    private volatile boolean disabled;
+
+    /**
+     * Constructor.
+     *
+     * @param reason exception message for guarded output streams once disabled
+     * @throws IllegalArgumentException if {@code reason} is null
+     */
+    public StreamGuard(String reason) {
+        if (reason == null)
+            throw new IllegalArgumentException("null reason");
+        this.reason = reason;
+    }
+
+    /**
+     * Disable all guarded streams.
+     */
+    public void disable() {
+        this.disabled = true;
+    }
+
+    /**
+     * Determine whether guarded streams have been disabled.
+     *
+     * @return true if disabled
+     */
+    public boolean isDisabled() {
+        return this.disabled;
+    }
+
+    /**
+     * Guard an input stream.
+     *
+     * @param in underlying input
+     * @return guarded input
+     * @throws IllegalArgumentException if {@code in} is null
+     */
+    public InputStream guard(InputStream in) {
+        if (in == null)
+            throw new IllegalArgumentException("null in");
+        return new FilterInputStream(in) {
+
+            @Override
+            public int read() throws IOException {
+                return StreamGuard.this.disabled ? -1 : super.read();
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len) throws IOException {
+                return StreamGuard.this.disabled ? -1 : super.read(buf, off, len);
+            }
+
+            @Override
+            public int available() throws IOException {
+                return StreamGuard.this.disabled ? 0 : super.available();
+            }
+        };
+    }
+
+    /**
+     * Guard an output stream.
+     *
+     * @param out underlying output
+     * @return guarded output
+     * @throws IllegalArgumentException if {@code out} is null
+     */
+    public OutputStream guard(OutputStream out) {
+        if (out == null)
+            throw new IllegalArgumentException("null out");
+        return new FilterOutputStream(out) {
+
+            @Override
+            public void write(int b) throws IOException {
+                this.check();
+                this.out.write(b);
+            }
+
+            @Override
+            public void write(byte[] buf, int off, int len) throws IOException {
+                this.check();
+                this.out.write(buf, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                this.check();
+                this.out.flush();
+            }
+
+            private void check() throws InterruptedIOException {
+                if (StreamGuard.this.disabled)
+                    throw new InterruptedIOException(StreamGuard.this.reason);
+            }
+        };
+    }
+}
@@ -0,0 +1,159 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.dellroad.jct.core.ExecSession;
+import org.dellroad.jct.core.event.ConsoleEvent;
+import org.dellroad.jct.core.event.EventDispatcher;
+import org.dellroad.jct.core.simple.command.Bundle;
+import org.testng.annotations.Test;
+
+public class AuditLogTest {
+
+    @Test
+    public void testAuditLog() throws Exception {
+        final Path dir = Files.createTempDirectory("AuditLogTest");
+        final PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        final SimpleExec exec = new SimpleExec();
+        exec.getCommandBundles().add(new Bundle());
+        final ExecSession session = exec.newExecSession(new SimpleExecRequest(InputStream.nullInputStream(),
+          out, out, Map.of("USER", "fred", "SSH_CLIENT", "10.1.2.3 45678 22"), "echo"));
+
+        // Write enough records to force several rotations
+        final AuditLog auditLog = new AuditLog(dir, 512, Duration.ofDays(1), 3);
+        for (int i = 0; i < 50; i++) {
+            auditLog.append(new ConsoleEvent.CommandFinished(session, "echo", List.of("arg" + i, "a \"quoted\" arg"),
+              Duration.ofMillis(i), i % 2, null));
+        }
+
+        // Search before and after closing
+        for (int pass = 0; pass < 2; pass++) {
+            final List<String> records = auditLog.search(3, null);
+            assert records.size() == 3 : "records: " + records;
+            assert records.get(0).contains("\"arg47\"");
+            assert records.get(2).contains("\"arg49\"");
+            assert records.get(2).matches("\\{\"time\":\"[^\"]+\",\"user\":\"fred\",\"source\":\"10\\.1\\.2\\.3:45678\","
+              + "\"command\":\"echo\",\"args\":\\[\"arg49\",\"a \\\\\"quoted\\\\\" arg\"\\],\"exit\":1,\"error\":null,"
+              + "\"millis\":49\\}") : "record: " + records.get(2);
+            final List<String> matches = auditLog.search(10, record -> record.contains("\"exit\":0"));
+            assert !matches.isEmpty() && matches.stream().noneMatch(record -> record.contains("\"exit\":1"));
+            auditLog.close();
+        }
+
+        // Check old segments were deleted and the last one truncated
+        final List<Path> segments;
+        try (Stream<Path> files = Files.list(dir)) {
+            segments = files.sorted().collect(Collectors.toList());
+        }
+        assert segments.size() == 3 : "segments: " + segments;
+        final byte[] last = Files.readAllBytes(segments.get(2));
+        assert last.length > 0 && last[last.length - 1] == '\n';
+
+        // Clean up
+        for (Path segment : segments)
+            Files.delete(segment);
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testSearchLargeSegment() throws Exception {
+        final Path dir = Files.createTempDirectory("AuditLogTest");
+        final PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        final SimpleExec exec = new SimpleExec();
+        exec.getCommandBundles().add(new Bundle());
+        final ExecSession session = exec.newExecSession(new SimpleExecRequest(InputStream.nullInputStream(),
+          out, out, Map.of(), "echo"));
+
+        // Deliver records through the dispatcher and a small audit log buffer; none should be lost
+        final AuditLog auditLog = new AuditLog(dir, AuditLog.DEFAULT_SEGMENT_SIZE, AuditLog.DEFAULT_ROTATION_INTERVAL,
+          AuditLog.DEFAULT_MAX_SEGMENTS, 10, AuditLog.OverflowPolicy.SPILL);
+        final EventDispatcher dispatcher = new EventDispatcher(command -> new Thread(command).start(),
+          EventDispatcher.DEFAULT_MAX_QUEUE_SIZE);
+        dispatcher.addListener(auditLog);
+        final int numRecords = 3000;
+        for (int i = 0; i < numRecords; i++) {
+            dispatcher.fire(new ConsoleEvent.CommandFinished(session, "echo", List.of("arg" + i, "x".repeat(i % 100)),
+              Duration.ofMillis(i), 0, null));
+        }
+        assert dispatcher.flush(Duration.ofSeconds(10));
+        assert dispatcher.getNumDropped() == 0;
+        assert auditLog.getNumLost() == 0;
+
+        // Search across read chunk boundaries, in the open (not truncated) segment
+        final List<String> records = auditLog.search(numRecords + 1, null);
+        assert records.size() == numRecords : "found " + records.size() + " records";
+        final List<String> expected = new ArrayList<>();
+        final List<String> actual = new ArrayList<>();
+        for (int i = 0; i < numRecords; i++) {
+            expected.add("arg" + i);
+            actual.add(records.get(i).replaceAll(".*\"args\":\\[\"([^\"]*)\".*", "$1"));
+        }
+        assert actual.equals(expected) : "wrong records";
+        assert auditLog.search(1, record -> record.contains("\"arg1234\"")).size() == 1;
+        auditLog.close();
+
+        // Clean up
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path segment : files.collect(Collectors.toList()))
+                Files.delete(segment);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testOverflowPolicy() throws Exception {
+        final PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+        final SimpleExec exec = new SimpleExec();
+        exec.getCommandBundles().add(new Bundle());
+        final ExecSession session = exec.newExecSession(new SimpleExecRequest(InputStream.nullInputStream(),
+          out, out, Map.of(), "echo"));
+        for (AuditLog.OverflowPolicy policy : AuditLog.OverflowPolicy.values()) {
+            final Path dir = Files.createTempDirectory("AuditLogTest");
+            final AuditLog auditLog = new AuditLog(dir, AuditLog.DEFAULT_SEGMENT_SIZE, AuditLog.DEFAULT_ROTATION_INTERVAL,
+              AuditLog.DEFAULT_MAX_SEGMENTS, 1, policy);
+
+            // Holding the lock stalls the writer thread, so the buffer fills up after one record
+            synchronized (auditLog) {
+                for (int i = 0; i < 10; i++)
+                    auditLog.onEvent(new ConsoleEvent.CommandFinished(session, "echo", List.of("arg" + i), Duration.ZERO, 0, null));
+            }
+            final List<String> records = auditLog.search(100, null);
+            auditLog.close();
+            switch (policy) {
+            case DROP:
+                assert records.size() == 1 && records.get(0).contains("\"arg0\"") : "records: " + records;
+                assert auditLog.getNumLost() == 9 : "lost " + auditLog.getNumLost();
+                break;
+            case SPILL:
+                assert records.size() == 10 && records.get(9).contains("\"arg9\"") : "records: " + records;
+                assert auditLog.getNumLost() == 0 : "lost " + auditLog.getNumLost();
+                break;
+            default:
+                assert false;
+                break;
+            }
+
+            // Clean up
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path segment : files.collect(Collectors.toList()))
+                    Files.delete(segment);
+            }
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.ExecSession;
+import org.dellroad.jct.core.util.CrNlPrintStream;
+import org.testng.annotations.Test;
+
+public class CommandCacheTest {
+
+    private final AtomicInteger executions = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    public void testCoalesceAndExpire() throws Exception {
+
+        // Set up exec with a slow cacheable command
+        final SimpleExec exec = new SimpleExec();
+        exec.getCommandBundles().add(new TreeMapBundle("Test commands",
+          Collections.singletonMap("slow", new AbstractSimpleCommand("arg", "Slow.", "Slow but idempotent.") {
+            @Override
+            public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+                CommandCacheTest.this.executions.incrementAndGet();
+                CommandCacheTest.this.release.await();
+                session.getOutputStream().println("result " + args.get(0));
+                return 3;
+            }
+
+            @Override
+            public Duration getCacheTimeToLive() {
+                return Duration.ofMillis(500);
+            }
+          })));
+
+        // Execute concurrently; all should wait for the single execution
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final ArrayList<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                futures.add(executor.submit(() -> this.execute(exec, "slow foo")));
+            Thread.sleep(200);
+            this.release.countDown();
+            for (Future<String> future : futures)
+                assert future.get(5, TimeUnit.SECONDS).equals("3:result foo\n");
+        } finally {
+            executor.shutdown();
+        }
+        assert this.executions.get() == 1 : "expected one execution but got " + this.executions.get();
+
+        // Cached result should be reused, but different parameters are not
+        assert this.execute(exec, "slow foo").equals("3:result foo\n");
+        assert this.executions.get() == 1;
+        assert this.execute(exec, "slow bar").equals("3:result bar\n");
+        assert this.executions.get() == 2;
+
+        // Cached result should expire
+        Thread.sleep(600);
+        assert this.execute(exec, "slow foo").equals("3:result foo\n");
+        assert this.executions.get() == 3;
+    }
+
+    @Test
+    public void testSessionStateInKey() throws Exception {
+
+        // Set up exec with a cacheable command whose output depends on the session
+        final AtomicInteger count = new AtomicInteger();
+        final SimpleExec exec = new SimpleExec();
+        exec.getCommandBundles().add(new TreeMapBundle("Test commands",
+          Collections.singletonMap("fmt", new AbstractSimpleCommand(null, "Format.", "Prints the output format.") {
+            @Override
+            public int execute(ConsoleSession<?, ?> session, String name, List<String> args) {
+                count.incrementAndGet();
+                session.getOutputStream().println(OutputFormat.of(session));
+                return 0;
+            }
+
+            @Override
+            public Duration getCacheTimeToLive() {
+                return Duration.ofMinutes(1);
+            }
+          })));
+
+        // Different output formats and line endings must not share results
+        final Map<String, String> json = Collections.singletonMap(OutputFormat.ENVIRONMENT_VARIABLE, "json");
+        assert this.execute(exec, "fmt", Collections.emptyMap(), false).equals("0:TEXT\n");
+        assert this.execute(exec, "fmt", json, false).equals("0:JSON\n");
+        assert this.execute(exec, "fmt", Collections.emptyMap(), true).equals("0:TEXT\r\n");
+        assert count.get() == 3 : "expected three executions but got " + count.get();
+        assert this.execute(exec, "fmt", json, false).equals("0:JSON\n");
+        assert count.get() == 3;
+
+        // Different character encodings must not share results
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final PrintStream latin1 = CrNlPrintStream.of(buf, StandardCharsets.ISO_8859_1);
+        assert exec.newExecSession(new SimpleExecRequest(InputStream.nullInputStream(),
+          latin1, latin1, Collections.emptyMap(), "fmt")).execute() == 0;
+        assert count.get() == 4 : "expected four executions but got " + count.get();
+    }
+
+    @Test
+    public void testInFlightNotEvicted() throws Exception {
+        final CommandCache cache = new CommandCache(1);
+        final SimpleExec exec = new SimpleExec();
+        exec.setCommandCache(cache);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final AtomicInteger count = new AtomicInteger();
+        exec.getCommandBundles().add(new TreeMapBundle("Test commands",
+          Collections.singletonMap("wait", new AbstractSimpleCommand("arg", "Wait.", "Waits if told to.") {
+            @Override
+            public int execute(ConsoleSession<?, ?> session, String name, List<String> args) throws InterruptedException {
+                count.incrementAndGet();
+                if (args.get(0).equals("block")) {
+                    started.countDown();
+                    finish.await();
+                }
+                return 0;
+            }
+
+            @Override
+            public Duration getCacheTimeToLive() {
+                return Duration.ofMinutes(1);
+            }
+          })));
+
+        // Start a long-running invocation, then overflow the cache while it's in flight
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final Future<String> first = executor.submit(() -> this.execute(exec, "wait block"));
+            assert started.await(5, TimeUnit.SECONDS);
+            this.execute(exec, "wait a");
+            this.execute(exec, "wait b");
+
+            // A concurrent identical invocation should still coalesce with the in-flight one
+            final Future<String> second = executor.submit(() -> this.execute(exec, "wait block"));
+            Thread.sleep(100);
+            finish.countDown();
+            assert first.get(5, TimeUnit.SECONDS).equals("0:");
+            assert second.get(5, TimeUnit.SECONDS).equals("0:");
+        } finally {
+            executor.shutdown();
+        }
+        assert count.get() == 3 : "expected three executions but got " + count.get();
+    }
+
+    private String execute(SimpleExec exec, String commandString) throws Exception {
+        return this.execute(exec, commandString, Collections.emptyMap(), false);
+    }
+
+    private String execute(SimpleExec exec, String commandString, Map<String, String> env, boolean crnl) throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final PrintStream out = crnl ? CrNlPrintStream.of(buf) : new PrintStream(buf, true, StandardCharsets.UTF_8);
+        final ExecSession session = exec.newExecSession(new SimpleExecRequest(InputStream.nullInputStream(),
+          out, out, env, commandString));
+        final int exitValue = session.execute();
+        return exitValue + ":" + buf.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,83 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CompletionEngineTest {
+
+    private final AtomicInteger computations = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean fail;
+
+    @Test
+    public void testDeadlineAndCache() throws Exception {
+        final SimpleExec owner = new SimpleExec();
+        final SimpleCommand command = new AbstractSimpleCommand("arg", "Test.", "Slow completer.") {
+            @Override
+            public int execute(ConsoleSession<?, ?> session, String name, List<String> args) {
+                return 0;
+            }
+
+            @Override
+            public List<String> complete(SimpleCommandSupport owner, String name, List<String> args)
+              throws InterruptedException {
+                final int count = CompletionEngineTest.this.computations.incrementAndGet();
+                CompletionEngineTest.this.release.await();
+                if (CompletionEngineTest.this.fail)
+                    throw new RuntimeException("completer failure");
+                return List.of(args.get(0) + count);
+            }
+        };
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            final CompletionEngine engine = new CompletionEngine(executor,
+              Duration.ofMillis(100), Duration.ofMillis(300), CompletionEngine.DEFAULT_MAX_ENTRIES);
+
+            // A slow completer doesn't block the caller beyond the deadline
+            long start = System.nanoTime();
+            Assert.assertEquals(engine.complete(owner, command, "cmd", List.of("a")), List.of());
+            Assert.assertTrue(System.nanoTime() - start < Duration.ofMillis(1000).toNanos());
+
+            // Repeated requests share the computation in progress
+            Assert.assertEquals(engine.complete(owner, command, "cmd", List.of("a")), List.of());
+            Assert.assertEquals(this.computations.get(), 1);
+
+            // Once it finishes, the result is cached
+            this.release.countDown();
+            Thread.sleep(50);
+            Assert.assertEquals(engine.complete(owner, command, "cmd", List.of("a")), List.of("a1"));
+            Assert.assertEquals(engine.complete(owner, command, "cmd", List.of("a")), List.of("a1"));
+            Assert.assertEquals(this.computations.get(), 1);
+
+            // After expiration, the stale result is returned while a slow refresh is in progress
+            this.release = new CountDownLatch(1);
+            Thread.sleep(400);
+            Assert.assertEquals(engine.complete(owner, command, "cmd", List.of("a")), List.of("a1"));
+            Assert.assertEquals(this.computations.get(), 2);
+            this.release.countDown();
+            Thread.sleep(50);
+            Assert.assertEquals(engine.complete(owner, command, "cmd", List.of("a")), List.of("a2"));
+
+            // Failures produce nothing and are not cached
+            this.fail = true;
+            Assert.assertEquals(engine.complete(owner, command, "cmd", List.of("b")), List.of());
+            this.fail = false;
+            Assert.assertEquals(engine.complete(owner, command, "cmd", List.of("b")), List.of("b4"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.dellroad.jct.core.event.ConsoleEvent;
+import org.dellroad.jct.core.simple.command.Bundle;
+import org.testng.annotations.Test;
+
+public class ConsoleEventTest {
+
+    @Test
+    public void testConsoleEvents() throws Exception {
+        final SimpleExec exec = new SimpleExec();
+        exec.getCommandBundles().add(new Bundle());
+
+        // Add a slow listener
+        final List<ConsoleEvent> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(4);
+        exec.addListener(event -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+            latch.countDown();
+        });
+
+        // Execute a command; the slow listener should not delay it
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(buf, true, StandardCharsets.UTF_8);
+        final long startTime = System.nanoTime();
+        final int exitValue = exec.newExecSession(new SimpleExecRequest(InputStream.nullInputStream(),
+          out, out, Collections.emptyMap(), "echo foo")).execute();
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        assert exitValue == 0;
+        assert elapsedMillis < 300 : "command took " + elapsedMillis + "ms";
+
+        // Check events
+        assert latch.await(5, TimeUnit.SECONDS) : "events not delivered: " + events;
+        final List<Class<?>> types = events.stream().map(Object::getClass).collect(Collectors.toList());
+        assert types.equals(List.of(ConsoleEvent.SessionOpened.class, ConsoleEvent.CommandStarted.class,
+          ConsoleEvent.CommandFinished.class, ConsoleEvent.SessionClosed.class)) : "wrong events: " + events;
+        final ConsoleEvent.CommandFinished finished = (ConsoleEvent.CommandFinished)events.get(2);
+        assert finished.getName().equals("echo");
+        assert finished.getParameters().equals(List.of("foo"));
+        assert finished.getExitValue() == 0;
+        assert finished.getError() == null;
+        assert events.get(0).getSession() == events.get(3).getSession();
+    }
+}
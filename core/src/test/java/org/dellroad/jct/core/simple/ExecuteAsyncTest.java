@@ -0,0 +1,63 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.dellroad.jct.core.ExecSession;
+import org.dellroad.jct.core.simple.command.Bundle;
+import org.dellroad.jct.core.util.CrNlPrintStream;
+import org.testng.annotations.Test;
+
+public class ExecuteAsyncTest {
+
+    @Test
+    public void testExecuteAsync() throws Exception {
+        final SimpleExec exec = new SimpleExec();
+        exec.getCommandBundles().add(new Bundle());
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+
+            // Normal completion
+            final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            final CompletableFuture<Integer> future1 = this.newSession(exec, buf, "echo foo").executeAsync(executor);
+            assert future1.get(5, TimeUnit.SECONDS) == 0;
+            assert buf.toString(StandardCharsets.UTF_8).equals("foo\n");
+
+            // Output keeps the session's character encoding
+            final ByteArrayOutputStream latin1 = new ByteArrayOutputStream();
+            final PrintStream latin1Out = CrNlPrintStream.of(latin1, StandardCharsets.ISO_8859_1);
+            assert exec.newExecSession(new SimpleExecRequest(InputStream.nullInputStream(),
+              latin1Out, latin1Out, Collections.emptyMap(), "echo \u00e9")).execute() == 0;
+            assert latin1.toString(StandardCharsets.ISO_8859_1).equals("\u00e9\r\n") : latin1;
+
+            // Cancellation should interrupt the session
+            final ExecSession session = this.newSession(exec, new ByteArrayOutputStream(), "sleep 30");
+            final CompletableFuture<Integer> future2 = session.executeAsync(executor);
+            Thread.sleep(200);
+            assert future2.cancel(true);
+            assert future2.isCancelled();
+            executor.shutdown();
+            assert executor.awaitTermination(5, TimeUnit.SECONDS) : "session was not interrupted";
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ExecSession newSession(SimpleExec exec, ByteArrayOutputStream buf, String commandString) throws Exception {
+        final PrintStream out = new PrintStream(buf, true, StandardCharsets.UTF_8);
+        return exec.newExecSession(new SimpleExecRequest(InputStream.nullInputStream(),
+          out, out, Collections.emptyMap(), commandString));
+    }
+}
@@ -0,0 +1,94 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.jline.reader.impl.history.DefaultHistory;
+import org.testng.annotations.Test;
+
+public class HistoryIndexTest {
+
+    @Test
+    public void testHistoryIndex() throws Exception {
+        final HistoryIndex index = new HistoryIndex();
+        index.add("grep foo bar.txt");
+        index.add("echo hello");
+        index.add("grep FOO baz.txt");
+        index.add("echo hello");
+        for (int i = 0; i < 100000; i++)
+            index.add("echo line " + i);
+        index.add("sleep 10");
+        assert index.size() == 100004;
+
+        // Terms match in any order, ignoring case
+        assert this.lines(index.search("foo grep", 10)).equals(List.of("grep FOO baz.txt", "grep foo bar.txt"));
+        assert this.lines(index.search("BAR", 10)).equals(List.of("grep foo bar.txt"));
+        assert this.lines(index.search("nothing", 10)).isEmpty();
+
+        // Recency ranking
+        assert this.lines(index.search("", 2)).equals(List.of("sleep 10", "echo line 99999"));
+
+        // Frequency outweighs a small difference in recency
+        index.add("cat a");
+        index.add("cat b");
+        index.add("cat b");
+        index.add("cat c");
+        assert this.lines(index.search("cat", 10)).equals(List.of("cat b", "cat c", "cat a"));
+
+        // Indexed search should be fast
+        final long start = System.nanoTime();
+        for (int i = 0; i < 100; i++)
+            assert index.search("line 12345", 10).size() == 1;
+        final long millis = (System.nanoTime() - start) / 1000000;
+        assert millis < 1000 : "100 searches took " + millis + "ms";
+    }
+
+    @Test
+    public void testMaxLines() throws Exception {
+        final HistoryIndex index = new HistoryIndex(3);
+        index.add("cat alpha");
+        index.add("cat bravo");
+        index.add("cat alpha");
+        index.add("cat charlie");
+        assert index.size() == 3;
+        final List<HistoryIndex.Match> matches = index.search("alpha", 10);
+        assert matches.size() == 1 && matches.get(0).getCount() == 1 : "matches: " + matches;
+        index.add("cat delta");
+        assert this.lines(index.search("cat", 10)).equals(List.of("cat delta", "cat charlie", "cat alpha"));
+        assert index.search("bravo", 10).isEmpty();
+
+        // Removed lines don't accumulate
+        for (int i = 0; i < 10000; i++)
+            index.add("echo line " + i);
+        assert index.size() == 3;
+        assert this.lines(index.search("line", 10)).equals(List.of("echo line 9999", "echo line 9998", "echo line 9997"));
+        assert index.search("line 1234", 10).isEmpty();
+        index.setMaxLines(1);
+        assert this.lines(index.search("", 10)).equals(List.of("echo line 9999"));
+    }
+
+    @Test
+    public void testIndexedHistory() throws Exception {
+        final IndexedHistory history = new IndexedHistory();
+        final int numLines = DefaultHistory.DEFAULT_HISTORY_SIZE + 100;
+        for (int i = 0; i < numLines; i++)
+            history.add(Instant.now(), String.format("cmd-%04d", i));
+        assert history.size() == DefaultHistory.DEFAULT_HISTORY_SIZE;
+        assert history.getIndex().size() == DefaultHistory.DEFAULT_HISTORY_SIZE;
+        assert history.search("cmd-0050", 10).isEmpty();
+        assert this.lines(history.search(String.format("cmd-%04d", numLines - 1), 10))
+          .equals(List.of(String.format("cmd-%04d", numLines - 1)));
+        history.purge();
+        assert history.getIndex().size() == 0;
+    }
+
+    private List<String> lines(List<HistoryIndex.Match> matches) {
+        return matches.stream().map(HistoryIndex.Match::getLine).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,67 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jline.reader.History;
+import org.testng.annotations.Test;
+
+public class HistoryStoreTest {
+
+    @Test
+    public void testHistoryStore() throws Exception {
+        final Path file = Files.createTempFile("HistoryStoreTest", null);
+        try {
+
+            // Add history for two users, including lines that need escaping
+            HistoryStore store = new HistoryStore(file, 3);
+            final History history = store.newHistory("fred");
+            assert history.isEmpty();
+            for (String line : new String[] { "echo 1", "echo 2", "echo 3", "echo\t4\\n" })
+                history.add(Instant.now(), line);
+            store.append("barney", "date");
+            store.close();
+
+            // Reload
+            store = new HistoryStore(file, 3);
+            assert store.load("fred").equals(List.of("echo 2", "echo 3", "echo\t4\\n")) : store.load("fred");
+            assert store.load("barney").equals(List.of("date"));
+            assert store.load("wilma").isEmpty();
+
+            // Check lazily loaded JLine history
+            final History history2 = store.newHistory("barney");
+            history2.add(Instant.now(), "sleep 1");
+            final List<String> lines = new ArrayList<>();
+            history2.forEach(entry -> lines.add(entry.line()));
+            assert lines.equals(List.of("date", "sleep 1")) : lines;
+
+            // Force compaction
+            for (int i = 0; i < 2000; i++)
+                store.append("dino", "echo " + i);
+            store.close();
+            assert Files.readAllLines(file).size() < 1000 : "file was not compacted";
+            store = new HistoryStore(file, 3);
+            assert store.load("dino").equals(List.of("echo 1997", "echo 1998", "echo 1999")) : store.load("dino");
+            assert store.load("barney").equals(List.of("date", "sleep 1")) : store.load("barney");
+
+            // Non-ASCII user names and lines
+            store.append("bob", "echo \u00e9\u00e9");
+            store.append("b\u00f6b", "echo \u4e16\tx");
+            store.close();
+            store = new HistoryStore(file, 3);
+            assert store.load("bob").equals(List.of("echo \u00e9\u00e9")) : store.load("bob");
+            assert store.load("b\u00f6b").equals(List.of("echo \u4e16\tx")) : store.load("b\u00f6b");
+            store.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class OutputFormatTest {
+
+    @Test(dataProvider = "data")
+    public void testOutputFormat(OutputFormat format, String expectedOutput) throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(buf, true, StandardCharsets.UTF_8);
+        try (RecordWriter writer = format.newWriter(out, "name", "count", "note")) {
+            writer.write("foo", 12, "a \"quoted\", note");
+            writer.write("barbaz", 3L, null);
+            writer.write("x", true);
+        }
+        final String actualOutput = buf.toString(StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+        assert actualOutput.equals(expectedOutput) : "expected output \"" + expectedOutput + "\" but got \"" + actualOutput + "\"";
+    }
+
+    @DataProvider(name = "data")
+    public Object[][] genOutputFormatCases() {
+        return new Object[][] {
+            { OutputFormat.TEXT,
+                "name    count  note\n"
+              + "foo     12     a \"quoted\", note\n"
+              + "barbaz  3      null\n"
+              + "x       true   null\n" },
+            { OutputFormat.JSON,
+                "{\"name\":\"foo\",\"count\":12,\"note\":\"a \\\"quoted\\\", note\"}\n"
+              + "{\"name\":\"barbaz\",\"count\":3,\"note\":null}\n"
+              + "{\"name\":\"x\",\"count\":true,\"note\":null}\n" },
+            { OutputFormat.CSV,
+                "name,count,note\n"
+              + "foo,12,\"a \"\"quoted\"\", note\"\n"
+              + "barbaz,3,\n"
+              + "x,true,\n" },
+        };
+    }
+}
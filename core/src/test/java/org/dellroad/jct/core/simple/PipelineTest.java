@@ -0,0 +1,145 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.ExecSession;
+import org.dellroad.jct.core.simple.command.Bundle;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class PipelineTest {
+
+    @Test(dataProvider = "data")
+    public void testPipeline(String commandString, String expectedOutput, int expectedExitValue) throws Exception {
+
+        // Set up exec with an additional infinite "yes" command
+        final CountDownLatch yesFinished = new CountDownLatch(1);
+        final SimpleExec exec = new SimpleExec();
+        exec.getCommandBundles().add(new Bundle());
+        exec.getCommandBundles().add(new TreeMapBundle("Test commands",
+          Collections.singletonMap("yes", new AbstractSimpleCommand(null, "Yes.", "Yes forever.") {
+            @Override
+            public int execute(ConsoleSession<?, ?> session, String name, List<String> args) {
+                try {
+                    final PrintStream out = session.getOutputStream();
+                    while (!Thread.currentThread().isInterrupted() && !out.checkError())
+                        out.println("y");
+                    return 0;
+                } finally {
+                    yesFinished.countDown();
+                }
+            }
+          })));
+
+        // Execute pipeline
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(buf, true, StandardCharsets.UTF_8);
+        final ExecSession session = exec.newExecSession(new SimpleExecRequest(InputStream.nullInputStream(),
+          out, out, Collections.emptyMap(), commandString));
+        assert session != null : "parse failed: " + buf.toString(StandardCharsets.UTF_8);
+        final int exitValue = session.execute();
+
+        // Check result
+        final String actualOutput = buf.toString(StandardCharsets.UTF_8);
+        assert actualOutput.equals(expectedOutput) : "expected output \"" + expectedOutput + "\" but got \"" + actualOutput + "\"";
+        assert exitValue == expectedExitValue : "expected exit value " + expectedExitValue + " but got " + exitValue;
+
+        // Verify any infinite upstream producer was stopped before the pipeline returned
+        if (commandString.startsWith("yes"))
+            assert yesFinished.getCount() == 0 : "upstream command was not joined";
+    }
+
+    @Test
+    public void testCancelledStageFailure() throws Exception {
+        final SimpleExec exec = new SimpleExec();
+        exec.getCommandBundles().add(new Bundle());
+        exec.getCommandBundles().add(new TreeMapBundle("Test commands",
+          Collections.singletonMap("fail", new AbstractSimpleCommand(null, "Fail.", "Fail when cancelled.") {
+            @Override
+            public int execute(ConsoleSession<?, ?> session, String name, List<String> args) {
+                final PrintStream out = session.getOutputStream();
+                while (!Thread.currentThread().isInterrupted())
+                    out.println("x");
+                throw new IllegalStateException("failed after cancel");
+            }
+          })));
+        final String output = this.execute(exec, "fail | head -n 1");
+        assert output.startsWith("x\n") && output.contains("failed after cancel") : output;
+    }
+
+    @Test
+    public void testRedirect() throws Exception {
+        final Path dir = Files.createTempDirectory("PipelineTest");
+        final Path outside = Files.createTempDirectory("PipelineTest");
+        try {
+            final SimpleExec exec = new SimpleExec();
+            exec.getCommandBundles().add(new Bundle());
+
+            // Disabled by default
+            assert this.execute(exec, "echo foo > out.txt").equals("Error: output redirection is not enabled\n");
+            assert !Files.exists(dir.resolve("out.txt"));
+
+            // Write and append within the directory
+            exec.setRedirectDirectory(dir);
+            assert this.execute(exec, "echo foo > out.txt").startsWith("Wrote 4 bytes");
+            assert this.execute(exec, "echo bar >> out.txt").startsWith("Wrote 4 bytes");
+            assert Files.readAllLines(dir.resolve("out.txt")).equals(List.of("foo", "bar"));
+
+            // Escaping the directory is not allowed
+            Files.createSymbolicLink(dir.resolve("link"), outside);
+            for (String target : new String[] { "../escape.txt", outside.resolve("escape.txt").toString(), "link/escape.txt" }) {
+                final String output = this.execute(exec, "echo foo > " + target);
+                assert output.startsWith("Error: ") && output.contains("is not within") : output;
+            }
+            try (Stream<Path> files = Files.list(outside)) {
+                assert files.count() == 0;
+            }
+        } finally {
+            for (Path root : new Path[] { dir, outside }) {
+                try (Stream<Path> files = Files.walk(root)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+                }
+            }
+        }
+    }
+
+    private String execute(SimpleExec exec, String commandString) throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(buf, true, StandardCharsets.UTF_8);
+        final ExecSession session = exec.newExecSession(new SimpleExecRequest(InputStream.nullInputStream(),
+          out, out, Collections.emptyMap(), commandString));
+        if (session != null)
+            session.execute();
+        return buf.toString(StandardCharsets.UTF_8);
+    }
+
+    @DataProvider(name = "data")
+    public Object[][] genPipelineCases() {
+        return new Object[][] {
+            { "echo foo bar",                               "foo bar\n",            0 },
+            { "echo foo bar | wc -w",                       "      2\n",            0 },
+            { "echo foo bar | grep -c o",                   "1\n",                  0 },
+            { "echo foo bar | grep xyz",                    "",                     1 },
+            { "echo foo bar | grep -v xyz | grep -F \"o b\"", "foo bar\n",          0 },
+            { "yes | head -n 3",                            "y\ny\ny\n",            0 },
+            { "yes | head -n 1000 | tail -n 2 | wc -l",     "      2\n",            0 },
+            { "yes | grep -n y | head -n 2 | sort -r",      "2:y\n1:y\n",           0 },
+        };
+    }
+}
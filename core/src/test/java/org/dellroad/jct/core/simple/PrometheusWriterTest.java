@@ -0,0 +1,60 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PrometheusWriterTest {
+
+    @Test
+    public void testFormat() throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        final PrometheusWriter writer = new PrometheusWriter(new PrintStream(buf, false, StandardCharsets.UTF_8));
+        writer.family("foo_total", PrometheusWriter.Type.COUNTER, "Foo \\ count\nhere \"quoted\".");
+        writer.sample("foo_total").value(12);
+        writer.sample("foo_total").label("a", "x\"y\\z\n").label("b", "plain").value(1.5);
+        writer.family("bar", PrometheusWriter.Type.HISTOGRAM, null);
+        writer.sample("bar_bucket").label("le", 0.25).value(3);
+        writer.sample("bar_bucket").label("le", 1).value(4);
+        writer.sample("bar_bucket").label("le", Double.POSITIVE_INFINITY).value(5);
+        writer.sample("bar_sum").value(Double.NaN);
+        writer.flush();
+        Assert.assertEquals(buf.toString(StandardCharsets.UTF_8),
+            "# HELP foo_total Foo \\\\ count\\nhere \"quoted\".\n"
+          + "# TYPE foo_total counter\n"
+          + "foo_total 12\n"
+          + "foo_total{a=\"x\\\"y\\\\z\\n\",b=\"plain\"} 1.5\n"
+          + "# TYPE bar histogram\n"
+          + "bar_bucket{le=\"0.25\"} 3\n"
+          + "bar_bucket{le=\"1\"} 4\n"
+          + "bar_bucket{le=\"+Inf\"} 5\n"
+          + "bar_sum NaN\n");
+    }
+
+    @Test
+    public void testMisuse() throws Exception {
+        final PrometheusWriter writer = new PrometheusWriter(
+          new PrintStream(new ByteArrayOutputStream(), false, StandardCharsets.UTF_8));
+        try {
+            writer.value(1);
+            assert false;
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        writer.sample("foo");
+        try {
+            writer.sample("bar");
+            assert false;
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
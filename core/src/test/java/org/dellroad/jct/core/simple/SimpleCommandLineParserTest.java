@@ -49,6 +49,22 @@ public class SimpleCommandLineParserTest {
             + "\nActual:\n  " + actual.stream().collect(Collectors.joining("\n  "));
     }
 
+    @Test
+    public void testQuotedOperators() throws Exception {
+        final List<String> words = new SimpleCommandLineParser().parseCommandLine("grep \"|\" | echo \\> > \"&\" &");
+        assert words.equals(Arrays.asList("grep", "|", "|", "echo", ">", ">", "&", "&")) : words;
+        assert !CommandLineParser.isOperator(words, 1, "|");
+        assert CommandLineParser.isOperator(words, 2, "|");
+        assert !CommandLineParser.isOperator(words, 4, ">");
+        assert CommandLineParser.isOperator(words, 5, ">");
+        assert !CommandLineParser.isOperator(words, 6, "&");
+        assert CommandLineParser.isOperator(words, 7, "&");
+        final List<String> tail = words.subList(4, 8);
+        assert !CommandLineParser.isOperator(tail, 0, ">");
+        assert CommandLineParser.isOperator(tail, 1, ">");
+        assert !CommandLineParser.isOperator(tail, 2, "&");
+    }
+
     @DataProvider(name = "data")
     public Object[][] genTruncationCases() {
         return new Object[][] {
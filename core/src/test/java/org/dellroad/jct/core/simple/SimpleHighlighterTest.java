@@ -0,0 +1,68 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.util.Random;
+
+import org.dellroad.jct.core.simple.command.Bundle;
+import org.jline.utils.AttributedString;
+import org.jline.utils.AttributedStyle;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleHighlighterTest {
+
+    @Test
+    public void testElements() {
+        final SimpleShell shell = new SimpleShell();
+        shell.getCommandBundles().add(new Bundle());
+        final SimpleHighlighter highlighter = new SimpleHighlighter(shell);
+
+        final AttributedString line = highlighter.highlight(null, "echo \"a\\tb\\qc\" | bogus x > out | hel");
+        this.check(line, 0, 4, highlighter.getStyle(SimpleHighlighter.Element.KNOWN_COMMAND));
+        this.check(line, 5, 7, highlighter.getStyle(SimpleHighlighter.Element.STRING));
+        this.check(line, 7, 9, highlighter.getStyle(SimpleHighlighter.Element.ESCAPE));
+        this.check(line, 9, 10, highlighter.getStyle(SimpleHighlighter.Element.STRING));
+        this.check(line, 10, 12, highlighter.getStyle(SimpleHighlighter.Element.INVALID_ESCAPE));
+        this.check(line, 12, 14, highlighter.getStyle(SimpleHighlighter.Element.STRING));
+        this.check(line, 15, 16, highlighter.getStyle(SimpleHighlighter.Element.OPERATOR));
+        this.check(line, 17, 22, highlighter.getStyle(SimpleHighlighter.Element.UNKNOWN_COMMAND));
+        this.check(line, 23, 24, AttributedStyle.DEFAULT);
+        this.check(line, 25, 26, highlighter.getStyle(SimpleHighlighter.Element.OPERATOR));
+        this.check(line, 27, 30, AttributedStyle.DEFAULT);
+        this.check(line, 33, 36, highlighter.getStyle(SimpleHighlighter.Element.PARTIAL_COMMAND));
+    }
+
+    @Test
+    public void testIncremental() {
+        final SimpleShell shell = new SimpleShell();
+        shell.getCommandBundles().add(new Bundle());
+        final SimpleHighlighter incremental = new SimpleHighlighter(shell);
+        final String alphabet = "ehlo |>&\"\\tu0x ";
+        final Random random = new Random(123);
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+
+            // Randomly edit the line
+            final int posn = random.nextInt(buf.length() + 1);
+            if (buf.length() > 0 && random.nextInt(4) == 0)
+                buf.deleteCharAt(Math.min(posn, buf.length() - 1));
+            else if (buf.length() > 40)
+                buf = new StringBuilder();
+            else
+                buf.insert(posn, alphabet.charAt(random.nextInt(alphabet.length())));
+
+            // Incremental result should match from-scratch result
+            final String text = buf.toString();
+            Assert.assertEquals(incremental.highlight(null, text), new SimpleHighlighter(shell).highlight(null, text), text);
+        }
+    }
+
+    private void check(AttributedString line, int start, int end, AttributedStyle style) {
+        for (int i = start; i < end; i++)
+            Assert.assertEquals(line.styleAt(i), style, "style at " + i + " in \"" + line + "\"");
+    }
+}
@@ -0,0 +1,62 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.util.List;
+
+import org.jline.reader.EOFError;
+import org.jline.reader.ParsedLine;
+import org.jline.reader.Parser;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleLineParserTest {
+
+    @Test
+    public void testAccept() throws Exception {
+        final SimpleLineParser parser = new SimpleLineParser(new SimpleShell());
+
+        // Complete line
+        final String line = "echo \"foo\nbar\" x";
+        final ParsedLine parsed = parser.parse(line, line.length(), Parser.ParseContext.ACCEPT_LINE);
+        Assert.assertTrue(parsed instanceof SimpleLineParser.AcceptedLine);
+        Assert.assertEquals(((SimpleLineParser.AcceptedLine)parsed).getCommandLine(), List.of("echo", "foo\nbar", "x"));
+        Assert.assertEquals(parsed.line(), line);
+
+        // Quoted operators are not operators
+        final String pipe = "grep \"|\" x | wc";
+        final List<String> words = ((SimpleLineParser.AcceptedLine)parser.parse(pipe, pipe.length(),
+          Parser.ParseContext.ACCEPT_LINE)).getCommandLine();
+        Assert.assertFalse(CommandLineParser.isOperator(words, 1, "|"));
+        Assert.assertTrue(CommandLineParser.isOperator(words, 3, "|"));
+
+        // Incomplete line
+        try {
+            parser.parse("echo \"foo", 9, Parser.ParseContext.ACCEPT_LINE);
+            assert false;
+        } catch (EOFError e) {
+            // expected
+        }
+
+        // Syntax error
+        final SimpleLineParser.AcceptedLine bad = (SimpleLineParser.AcceptedLine)parser.parse(
+          "echo \"\\q\"", 9, Parser.ParseContext.ACCEPT_LINE);
+        try {
+            bad.getCommandLine();
+            assert false;
+        } catch (CommandLineParser.SyntaxException e) {
+            Assert.assertEquals(e.getOffset(), 6);
+        }
+    }
+
+    @Test
+    public void testComplete() {
+        final SimpleLineParser parser = new SimpleLineParser(new SimpleShell());
+        final ParsedLine parsed = parser.parse("help \"fo", 8, Parser.ParseContext.COMPLETE);
+        Assert.assertEquals(parsed.wordIndex(), 1);
+        Assert.assertEquals(parsed.word(), "fo");
+    }
+}
@@ -0,0 +1,60 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.dellroad.jct.core.simple.command.SleepCommand;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SlowCommandWatchTest {
+
+    @Test
+    public void testSlowCommand() throws Exception {
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final SlowCommandWatch watch = new SlowCommandWatch(Duration.ofMillis(100), 4, scheduler);
+            final SimpleCommandSupport.FoundCommand command
+              = new SimpleCommandSupport.FoundCommand(new SleepCommand(), "sleep", List.of("0.5"));
+            final List<SlowCommandWatch.Report> reports = new CopyOnWriteArrayList<>();
+
+            // Fast command
+            Assert.assertEquals(watch.execute(command, () -> 3, reports::add), 3);
+            Assert.assertTrue(reports.isEmpty());
+
+            // Slow command
+            Assert.assertEquals(watch.execute(command, () -> {
+                Thread.sleep(500);
+                return 7;
+            }, reports::add), 7);
+            Assert.assertEquals(reports.size(), 1);
+            final SlowCommandWatch.Report report = reports.get(0);
+            Assert.assertEquals(report.getName(), "sleep");
+            Assert.assertEquals(report.getParameters(), List.of("0.5"));
+            Assert.assertEquals(report.getExitValue(), (Integer)7);
+            Assert.assertNull(report.getError());
+            Assert.assertTrue(report.getDuration().toMillis() >= 500, "duration " + report.getDuration());
+
+            // Samples should be thinned out but still span the execution
+            final List<SlowCommandWatch.Sample> samples = report.getSamples();
+            Assert.assertTrue(samples.size() >= 2 && samples.size() < 4, "samples " + samples.size());
+            Assert.assertTrue(samples.get(samples.size() - 1).getElapsed().toMillis() >= 200);
+            for (SlowCommandWatch.Sample sample : samples) {
+                Assert.assertTrue(sample.getStack().stream()
+                  .anyMatch(frame -> frame.getClassName().equals(Thread.class.getName())
+                    && frame.getMethodName().startsWith("sleep")), "stack " + sample.getStack());
+            }
+            Assert.assertTrue(report.toString().startsWith("slow command \"sleep 0.5\" took "), report.toString());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
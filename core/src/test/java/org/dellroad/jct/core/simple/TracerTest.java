@@ -0,0 +1,136 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.core.simple;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TracerTest {
+
+    @Test
+    public void testDisabled() throws Exception {
+        final Tracer tracer = new Tracer();
+        Assert.assertFalse(tracer.isEnabled());
+        Assert.assertNull(tracer.startSpan("foo"));
+        Assert.assertEquals(tracer.trace("foo", span -> {
+            throw new AssertionError("initializer invoked");
+        }, () -> 123), 123);
+        Assert.assertNull(Tracer.currentSpan());
+    }
+
+    @Test
+    public void testNesting() throws Exception {
+        final List<Span> spans = new CopyOnWriteArrayList<>();
+        final Tracer tracer = new Tracer(spans::add);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final int exitValue = tracer.trace("outer", span -> span.setAttribute("size", 7), () -> {
+                final Span outer = Tracer.currentSpan();
+                Assert.assertNotNull(outer);
+
+                // Same thread
+                try (Span inner = tracer.startSpan("inner")) {
+                    Assert.assertSame(Tracer.currentSpan(), inner);
+                }
+                Assert.assertSame(Tracer.currentSpan(), outer);
+
+                // Other thread
+                Tracer.propagate(executor).execute(() -> {
+                    try (Span other = tracer.startSpan("other")) {
+                        Assert.assertNotNull(other);
+                    }
+                });
+                executor.shutdown();
+                Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+                return 3;
+            });
+            Assert.assertEquals(exitValue, 3);
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertNull(Tracer.currentSpan());
+
+        // Check spans
+        Assert.assertEquals(spans.size(), 3);
+        final Span inner = spans.get(0);
+        final Span other = spans.get(1);
+        final Span outer = spans.get(2);
+        Assert.assertEquals(outer.getName(), "outer");
+        Assert.assertNull(outer.getParentId());
+        Assert.assertEquals(outer.getTraceId(), outer.getSpanId());
+        Assert.assertEquals(outer.getExitValue(), (Integer)3);
+        Assert.assertEquals(outer.getAttributes().get("size"), 7);
+        for (Span child : List.of(inner, other)) {
+            Assert.assertEquals(child.getParentId(), outer.getSpanId());
+            Assert.assertEquals(child.getTraceId(), outer.getTraceId());
+            Assert.assertTrue(child.isClosed());
+        }
+        Assert.assertNotEquals(other.getThreadName(), outer.getThreadName());
+    }
+
+    @Test
+    public void testError() throws Exception {
+        final List<Span> spans = new CopyOnWriteArrayList<>();
+        final Tracer tracer = new Tracer(spans::add);
+        final IllegalStateException error = new IllegalStateException("oops");
+        try {
+            tracer.trace("fail", null, () -> {
+                throw error;
+            });
+            assert false;
+        } catch (IllegalStateException e) {
+            Assert.assertSame(e, error);
+        }
+        Assert.assertEquals(spans.size(), 1);
+        Assert.assertSame(spans.get(0).getError(), error);
+        Assert.assertNull(spans.get(0).getExitValue());
+        Assert.assertNull(Tracer.currentSpan());
+    }
+
+    @Test
+    public void testJsonLines() throws Exception {
+        final Path file = Files.createTempFile("TracerTest", ".jsonl");
+        try {
+            try (JsonLinesSpanExporter exporter = new JsonLinesSpanExporter(file)) {
+                final Tracer tracer = new Tracer(exporter);
+                tracer.trace("cmd", span -> span.setAttribute("command", "echo \"hi\"").setAttribute("ok", true), () -> 0);
+            }
+            final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            Assert.assertEquals(lines.size(), 1);
+            final String line = lines.get(0);
+            Assert.assertTrue(line.matches("\\{\"trace\":\"[0-9a-f]{16}\",\"span\":\"[0-9a-f]{16}\",\"parent\":null,"
+              + "\"name\":\"cmd\",.*,\"exit\":0,\"error\":null,"
+              + "\"attributes\":\\{\"command\":\"echo \\\\\"hi\\\\\"\",\"ok\":true\\}\\}"), line);
+
+            // Spans from many threads are written asynchronously, and either written or counted as dropped
+            Files.write(file, new byte[0]);
+            final long dropped;
+            try (JsonLinesSpanExporter exporter = new JsonLinesSpanExporter(file, 100)) {
+                final Tracer tracer = new Tracer(exporter);
+                final ExecutorService executor = Executors.newFixedThreadPool(4);
+                for (int i = 0; i < 2000; i++)
+                    executor.submit(() -> tracer.trace("cmd", span -> { }, () -> 0));
+                executor.shutdown();
+                Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+                dropped = exporter.getNumDropped();
+            }
+            final List<String> lines2 = Files.readAllLines(file, StandardCharsets.UTF_8);
+            Assert.assertEquals(lines2.size() + dropped, 2000);
+            lines2.forEach(line2 -> Assert.assertTrue(line2.startsWith("{\"trace\":") && line2.endsWith("}}"), line2));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -8,12 +8,15 @@ package org.dellroad.jct.demo;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.time.Duration;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
@@ -21,12 +24,19 @@ import org.dellroad.jct.core.ConsoleSession;
 import org.dellroad.jct.core.ExecSession;
 import org.dellroad.jct.core.ShellRequest;
 import org.dellroad.jct.core.ShellSession;
+import org.dellroad.jct.core.event.EventDispatcher;
+import org.dellroad.jct.core.simple.AuditLog;
 import org.dellroad.jct.core.simple.CommandBundle;
+import org.dellroad.jct.core.simple.ConsoleMetrics;
+import org.dellroad.jct.core.simple.HistoryStore;
+import org.dellroad.jct.core.simple.JsonLinesSpanExporter;
+import org.dellroad.jct.core.simple.OutputFormat;
 import org.dellroad.jct.core.simple.SimpleCommandSupport;
 import org.dellroad.jct.core.simple.SimpleExec;
 import org.dellroad.jct.core.simple.SimpleExecRequest;
 import org.dellroad.jct.core.simple.SimpleShell;
 import org.dellroad.jct.core.simple.SimpleShellRequest;
+import org.dellroad.jct.core.simple.Tracer;
 import org.dellroad.jct.core.simple.command.HelpCommand;
 import org.dellroad.jct.core.util.ConsoleUtil;
 import org.dellroad.jct.jshell.JShellShell;
@@ -46,6 +56,7 @@ public class DemoMain {
     private static DemoMain instance;
 
     private final List<CommandBundle> commandBundles = CommandBundle.scanAndGenerate().collect(Collectors.toList());
+    private final Map<String, String> environment = new HashMap<>(System.getenv());
 
     public DemoMain() {
         // Replace standard "jshell" command (if present) with our custom version
@@ -68,14 +79,91 @@ public class DemoMain {
         int sshListenPort = this.getDefaultListenPort();
         final ArrayDeque<String> params = new ArrayDeque<>(Arrays.asList(args));
         boolean ssh = false;
+        boolean sshBatch = false;
         boolean console = true;
+        File script = null;
+        File auditDir = null;
+        File historyFile = null;
+        File redirectDir = null;
+        File scriptDir = null;
+        File traceFile = null;
+        Duration slowThreshold = null;
+        boolean batch = false;
     argLoop:
         while (!params.isEmpty() && params.peekFirst().startsWith("-")) {
             String option = params.removeFirst();
             switch (option) {
+            case "--audit-dir":
+                if (params.isEmpty()) {
+                    this.usage(System.err);
+                    return 1;
+                }
+                auditDir = new File(params.removeFirst());
+                break;
+            case "--batch":
+                batch = true;
+                break;
+            case "--format":
+                if (params.isEmpty()) {
+                    this.usage(System.err);
+                    return 1;
+                }
+                final String formatName = params.removeFirst();
+                try {
+                    this.environment.put(OutputFormat.ENVIRONMENT_VARIABLE, OutputFormat.parse(formatName).name());
+                } catch (IllegalArgumentException e) {
+                    System.err.println(String.format("%s: %s", this.getName(), e.getMessage()));
+                    this.usage(System.err);
+                    return 1;
+                }
+                break;
+            case "--history-file":
+                if (params.isEmpty()) {
+                    this.usage(System.err);
+                    return 1;
+                }
+                historyFile = new File(params.removeFirst());
+                break;
             case "--no-console":
                 console = false;
                 break;
+            case "--redirect-dir":
+                if (params.isEmpty()) {
+                    this.usage(System.err);
+                    return 1;
+                }
+                redirectDir = new File(params.removeFirst());
+                break;
+            case "--script":
+                if (params.isEmpty()) {
+                    this.usage(System.err);
+                    return 1;
+                }
+                script = new File(params.removeFirst());
+                break;
+            case "--script-dir":
+                if (params.isEmpty()) {
+                    this.usage(System.err);
+                    return 1;
+                }
+                scriptDir = new File(params.removeFirst());
+                break;
+            case "--slow-command-threshold":
+                if (params.isEmpty()) {
+                    this.usage(System.err);
+                    return 1;
+                }
+                final String thresholdString = params.removeFirst();
+                try {
+                    slowThreshold = ConsoleUtil.parseDuration(thresholdString);
+                    if (slowThreshold.isNegative() || slowThreshold.isZero())
+                        throw new IllegalArgumentException();
+                } catch (IllegalArgumentException e) {
+                    System.err.println(String.format("%s: invalid slow command threshold \"%s\"", this.getName(), thresholdString));
+                    this.usage(System.err);
+                    return 1;
+                }
+                break;
             case "--ssh":
                 ssh = true;
                 break;
@@ -86,6 +174,9 @@ public class DemoMain {
                 }
                 sshAuthKeysFile = new File(params.removeFirst());
                 break;
+            case "--ssh-batch":
+                sshBatch = true;
+                break;
             case "--ssh-host-key-file":
                 if (params.isEmpty()) {
                     this.usage(System.err);
@@ -109,6 +200,13 @@ public class DemoMain {
                     return 1;
                 }
                 break;
+            case "--trace-file":
+                if (params.isEmpty()) {
+                    this.usage(System.err);
+                    return 1;
+                }
+                traceFile = new File(params.removeFirst());
+                break;
             case "--help":
                 this.usage(System.err);
                 return 0;
@@ -125,11 +223,91 @@ public class DemoMain {
         final SimpleExec exec = new SimpleExec();
         final SimpleShell shell = new SimpleShell();
         exec.getCommandBundles().addAll(this.commandBundles);
+        exec.setBatchMode(sshBatch);
         shell.getCommandBundles().addAll(this.commandBundles);
 
+        // Enable persistent history
+        if (historyFile != null) {
+            final HistoryStore historyStore = new HistoryStore(historyFile.toPath());
+            Runtime.getRuntime().addShutdownHook(new Thread(historyStore::close));
+            shell.setHistoryStore(historyStore);
+        }
+
+        // Share one event dispatcher so metrics cover both consoles
+        final EventDispatcher eventDispatcher = new EventDispatcher();
+        eventDispatcher.addListener(new ConsoleMetrics());
+        exec.setEventDispatcher(eventDispatcher);
+        shell.setEventDispatcher(eventDispatcher);
+
+        // Enable audit log
+        final AuditLog auditLog = auditDir != null ? new AuditLog(auditDir.toPath()) : null;
+        if (auditLog != null) {
+            eventDispatcher.addListener(auditLog);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    eventDispatcher.flush(Duration.ofSeconds(5));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                try {
+                    auditLog.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }));
+        }
+
+        // Enable output redirection
+        if (redirectDir != null) {
+            exec.setRedirectDirectory(redirectDir.toPath());
+            shell.setRedirectDirectory(redirectDir.toPath());
+        }
+
+        // Enable the "source" command
+        if (scriptDir != null) {
+            exec.setScriptDirectory(scriptDir.toPath());
+            shell.setScriptDirectory(scriptDir.toPath());
+        }
+
+        // Enable slow command log
+        exec.setSlowCommandThreshold(slowThreshold);
+        shell.setSlowCommandThreshold(slowThreshold);
+
+        // Enable tracing
+        if (traceFile != null) {
+            final JsonLinesSpanExporter exporter;
+            try {
+                exporter = new JsonLinesSpanExporter(traceFile.toPath());
+            } catch (IOException e) {
+                System.err.println(String.format("%s: error opening trace file: %s", this.getName(), e));
+                return 1;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    exporter.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }));
+            final Tracer tracer = new Tracer(exporter);
+            exec.setTracer(tracer);
+            shell.setTracer(tracer);
+        }
+
         // Interactive shell or execute command directly?
         final ConsoleSession<?, ?> session;
-        if (!params.isEmpty()) {
+        if (script != null || batch) {
+
+            // Sanity check
+            if (ssh || !params.isEmpty() || (script != null && batch)) {
+                System.err.println(String.format("%s: script and batch execution are not compatible with each other,"
+                  + " SSH server, or direct command execution", "Error"));
+                return 1;
+            }
+
+            // Create script or batch session
+            session = this.createScriptSession(exec, script);
+        } else if (!params.isEmpty()) {
 
             // Sanity check
             if (ssh) {
@@ -185,7 +363,7 @@ public class DemoMain {
 
         // Create request
         final SimpleExecRequest request = new SimpleExecRequest(System.in,
-          System.out, System.err, System.getenv(), new ArrayList<>(params));
+          System.out, System.err, this.environment, new ArrayList<>(params));
 
         // Find command
         final SimpleCommandSupport.FoundCommand foundCommand = exec.findCommand(System.err, request);
@@ -201,6 +379,22 @@ public class DemoMain {
         }
     }
 
+    private ExecSession createScriptSession(SimpleExec exec, File script) {
+
+        // Create request
+        final SimpleExecRequest request = new SimpleExecRequest(System.in,
+          System.out, System.err, this.environment, Collections.emptyList());
+
+        // Create script or batch session
+        try {
+            return script != null ? exec.newScriptSession(request, script.toPath()) : exec.newBatchSession(request);
+        } catch (IOException e) {
+            System.err.println(String.format("%s: error creating %s session: %s",
+              this.getName(), script != null ? "script" : "batch", e));
+            return null;
+        }
+    }
+
     private ShellSession createShellSession(SimpleShell shell) {
 
         // Create system terminal
@@ -222,7 +416,7 @@ public class DemoMain {
         final ShellSession shellSession;
         try {
             shellSession = shell.newShellSession(
-              new SimpleShellRequest(terminal, Collections.emptyList(), System.getenv()));
+              new SimpleShellRequest(terminal, Collections.emptyList(), this.environment));
         } catch (IOException e) {
             System.err.println(String.format("%s: error creating %s session: %s", this.getName(), "shell", e));
             return null;
@@ -236,16 +430,36 @@ public class DemoMain {
         out.println(String.format("    %s [options] [command ...]", this.getName()));
         out.println();
         out.println(String.format("Options:"));
+        out.println(String.format(
+          "    --audit-dir dir              Record executed commands in an audit log in dir"));
+        out.println(String.format(
+          "    --batch                      Execute console commands read from standard input"));
+        out.println(String.format(
+          "    --format format              Default output format for structured commands (text, json, or csv)"));
+        out.println(String.format(
+          "    --history-file path          Save per-user command history in file"));
         out.println(String.format(
           "    --no-console                 Don't start command line console"));
+        out.println(String.format(
+          "    --redirect-dir dir           Allow redirecting command output (\">\", \">>\") to files in dir"));
+        out.println(String.format(
+          "    --script file                Execute console commands from file"));
+        out.println(String.format(
+          "    --script-dir dir             Allow the \"source\" command to execute scripts in dir"));
+        out.println(String.format(
+          "    --slow-command-threshold t   Log commands taking longer than t (e.g., 5s) with stack samples"));
         out.println(String.format(
           "    --ssh                        Enable SSH server"));
         out.println(String.format(
           "    --ssh-auth-keys-file path    Specify SSH authorized users file (default %s)", this.defaultAuthKeys().display()));
+        out.println(String.format(
+          "    --ssh-batch                  Run SSH exec requests with an empty command in batch mode"));
         out.println(String.format(
           "    --ssh-host-key-file path     Specify SSH host key file (default %s)", this.getDefaultHostKeyFile()));
         out.println(String.format(
           "    --ssh-listen-port port       Specify SSH server TCP port (default %d)", this.getDefaultListenPort()));
+        out.println(String.format(
+          "    --trace-file path            Append trace spans for sessions and commands to file"));
         out.println(String.format(
           "    --help                       Display this usage message"));
         out.println();
@@ -13,7 +13,9 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import org.apache.sshd.common.channel.Channel;
 import org.apache.sshd.server.Environment;
@@ -22,6 +24,7 @@ import org.apache.sshd.server.Signal;
 import org.apache.sshd.server.channel.ChannelSession;
 import org.apache.sshd.server.command.Command;
 import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.event.EventDispatcher;
 import org.dellroad.jct.core.util.CrNlPrintStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +34,8 @@ abstract class AbstractCommand<F, S extends ConsoleSession<?, ?>> implements Com
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
     protected final F factory;
     protected final ChannelSession channel;
+    protected final EventDispatcher eventDispatcher;
+    protected final SshServerMetrics metrics;
 
     protected InputStream in;
     protected OutputStream out;
@@ -42,32 +47,40 @@ abstract class AbstractCommand<F, S extends ConsoleSession<?, ?>> implements Com
     protected Locale locale;
     protected S session;
 
+    long metricsId;                                                 // used by SshServerMetrics
+
 // Constructors
 
-    protected AbstractCommand(F factory, ChannelSession channel) {
+    protected AbstractCommand(F factory, ChannelSession channel, EventDispatcher eventDispatcher) {
+        this(factory, channel, eventDispatcher, null);
+    }
+
+    protected AbstractCommand(F factory, ChannelSession channel, EventDispatcher eventDispatcher, SshServerMetrics metrics) {
         if (factory == null)
             throw new IllegalArgumentException("null factory");
         if (channel == null)
             throw new IllegalArgumentException("null channel");
         this.factory = factory;
         this.channel = channel;
+        this.eventDispatcher = eventDispatcher;
+        this.metrics = metrics;
     }
 
 // Command
 
     @Override
     public void setInputStream(InputStream in) {
-        this.in = in;
+        this.in = this.metrics != null ? this.metrics.countInput(in) : in;
     }
 
     @Override
     public void setOutputStream(OutputStream out) {
-        this.out = out;
+        this.out = this.metrics != null ? this.metrics.countOutput(out) : out;
     }
 
     @Override
     public void setErrorStream(OutputStream err) {
-        this.err = err;
+        this.err = this.metrics != null ? this.metrics.countOutput(err) : err;
     }
 
     @Override
@@ -91,6 +104,8 @@ abstract class AbstractCommand<F, S extends ConsoleSession<?, ?>> implements Com
         // Create the command session
         if ((this.session = this.createSession()) == null)
             throw new IOException("null session returned from " + this.getClass().getName() + ".start()");
+        if (this.metrics != null)
+            this.metrics.sessionStarted(this);
 
         // Spawn a new thread to execute session
         final Thread sessionThread = this.createSessionThread(this::executeSessionWrapper);
@@ -102,8 +117,8 @@ abstract class AbstractCommand<F, S extends ConsoleSession<?, ?>> implements Com
 
     @Override
     public void destroy(ChannelSession channel) throws Exception {
-        if (this.session != null)
-            this.session.interrupt();
+        if (this.session != null && !this.session.interrupt())
+            this.log.debug("could not interrupt session {} on channel destroy", this.session);
         for (Closeable c : new Closeable[] { this.err, this.out, this.in }) {
             try {
                 if (c != null)
@@ -127,15 +142,40 @@ abstract class AbstractCommand<F, S extends ConsoleSession<?, ?>> implements Com
         } catch (Throwable t) {
             t.printStackTrace(CrNlPrintStream.of(this.err, this.charset));
         } finally {
+            if (this.metrics != null)
+                this.metrics.sessionFinished(this);
             if (this.exitCallback != null)
                 this.exitCallback.onExit(exitValue, false);
         }
     }
 
     protected int executeSession() throws InterruptedException {
+        if (this.eventDispatcher != null)
+            return this.eventDispatcher.executeSession(this.session, this.session::execute);
         return this.session.execute();
     }
 
+    /**
+     * Build the environment for the new console session.
+     *
+     * <p>
+     * The implementation in {@link AbstractCommand} copies the SSH client's environment and, like OpenSSH,
+     * adds {@value SshUtil#ENV_SSH_CLIENT} describing the client's address.
+     *
+     * @return session environment
+     */
+    protected Map<String, String> buildEnvironment() {
+        final HashMap<String, String> map = new HashMap<>(this.env.getEnv());
+        final SocketAddress clientAddress = this.channel.getSession().getClientAddress();
+        final SocketAddress localAddress = this.channel.getSession().getLocalAddress();
+        if (clientAddress instanceof InetSocketAddress && localAddress instanceof InetSocketAddress) {
+            map.put(SshUtil.ENV_SSH_CLIENT, String.format("%s %d %d",
+              ((InetSocketAddress)clientAddress).getHostString(), ((InetSocketAddress)clientAddress).getPort(),
+              ((InetSocketAddress)localAddress).getPort()));
+        }
+        return map;
+    }
+
     protected Thread createSessionThread(Runnable action) {
         return new Thread(action);
     }
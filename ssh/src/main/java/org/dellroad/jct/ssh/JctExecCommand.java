@@ -13,6 +13,7 @@ import org.apache.sshd.server.Signal;
 import org.apache.sshd.server.channel.ChannelSession;
 import org.dellroad.jct.core.Exec;
 import org.dellroad.jct.core.ExecSession;
+import org.dellroad.jct.core.event.EventDispatcher;
 import org.dellroad.jct.core.simple.SimpleExecRequest;
 import org.dellroad.jct.core.util.CrNlPrintStream;
 
@@ -21,7 +22,16 @@ public class JctExecCommand extends AbstractCommand<Exec, ExecSession> {
     private final String command;
 
     public JctExecCommand(Exec exec, ChannelSession channel, String command) {
-        super(exec, channel);
+        this(exec, channel, command, null);
+    }
+
+    public JctExecCommand(Exec exec, ChannelSession channel, String command, EventDispatcher eventDispatcher) {
+        this(exec, channel, command, eventDispatcher, null);
+    }
+
+    public JctExecCommand(Exec exec, ChannelSession channel, String command,
+      EventDispatcher eventDispatcher, SshServerMetrics metrics) {
+        super(exec, channel, eventDispatcher, metrics);
         if (command == null)
             throw new IllegalArgumentException("null command");
         this.command = command;
@@ -37,7 +47,7 @@ public class JctExecCommand extends AbstractCommand<Exec, ExecSession> {
         final PrintStream perr = CrNlPrintStream.of(this.err, this.charset);
 
         // Execute command
-        return this.factory.newExecSession(new SimpleExecRequest(this.in, pout, perr, this.env.getEnv(), this.command));
+        return this.factory.newExecSession(new SimpleExecRequest(this.in, pout, perr, this.buildEnvironment(), this.command));
     }
 
     @Override
@@ -10,6 +10,7 @@ import java.io.IOException;
 import org.apache.sshd.server.channel.ChannelSession;
 import org.apache.sshd.server.command.CommandFactory;
 import org.dellroad.jct.core.Exec;
+import org.dellroad.jct.core.event.EventDispatcher;
 
 /**
  * An Apache MINA SSHD {@link CommandFactory} that connects to a Java Console Toolkit {@link Exec} instance.
@@ -17,6 +18,8 @@ import org.dellroad.jct.core.Exec;
 public class JctExecFactory implements CommandFactory {
 
     protected final Exec exec;
+    protected final EventDispatcher eventDispatcher;
+    protected final SshServerMetrics metrics;
 
     /**
      * Constructor.
@@ -25,15 +28,40 @@ public class JctExecFactory implements CommandFactory {
      * @throws IllegalArgumentException if {@code exec} is null
      */
     public JctExecFactory(Exec exec) {
+        this(exec, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param exec the underlying {@link Exec} instance
+     * @param eventDispatcher dispatcher for session events, or null for none
+     * @throws IllegalArgumentException if {@code exec} is null
+     */
+    public JctExecFactory(Exec exec, EventDispatcher eventDispatcher) {
+        this(exec, eventDispatcher, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param exec the underlying {@link Exec} instance
+     * @param eventDispatcher dispatcher for session events, or null for none
+     * @param metrics metrics collector, or null for none
+     * @throws IllegalArgumentException if {@code exec} is null
+     */
+    public JctExecFactory(Exec exec, EventDispatcher eventDispatcher, SshServerMetrics metrics) {
         if (exec == null)
             throw new IllegalArgumentException("null exec");
         this.exec = exec;
+        this.eventDispatcher = eventDispatcher;
+        this.metrics = metrics;
     }
 
 // CommandFactory
 
     @Override
     public JctExecCommand createCommand(ChannelSession channel, String command) throws IOException {
-        return new JctExecCommand(this.exec, channel, command);
+        return new JctExecCommand(this.exec, channel, command, this.eventDispatcher, this.metrics);
     }
 }
@@ -14,6 +14,7 @@ import org.apache.sshd.server.Signal;
 import org.apache.sshd.server.channel.ChannelSession;
 import org.dellroad.jct.core.Shell;
 import org.dellroad.jct.core.ShellSession;
+import org.dellroad.jct.core.event.EventDispatcher;
 import org.dellroad.jct.core.simple.SimpleShellRequest;
 import org.dellroad.jct.core.util.ConsoleUtil;
 import org.jline.terminal.Attributes;
@@ -26,7 +27,15 @@ public class JctShellCommand extends AbstractCommand<Shell, ShellSession> {
     private volatile ShellSession session;
 
     public JctShellCommand(Shell shell, ChannelSession channel) {
-        super(shell, channel);
+        this(shell, channel, null);
+    }
+
+    public JctShellCommand(Shell shell, ChannelSession channel, EventDispatcher eventDispatcher) {
+        this(shell, channel, eventDispatcher, null);
+    }
+
+    public JctShellCommand(Shell shell, ChannelSession channel, EventDispatcher eventDispatcher, SshServerMetrics metrics) {
+        super(shell, channel, eventDispatcher, metrics);
     }
 
 // AbstractCommand
@@ -58,7 +67,7 @@ public class JctShellCommand extends AbstractCommand<Shell, ShellSession> {
         this.terminal.echo(false);
 
         // Create shell session
-        final SimpleShellRequest request = new SimpleShellRequest(this.terminal, Collections.emptyList(), this.env.getEnv());
+        final SimpleShellRequest request = new SimpleShellRequest(this.terminal, Collections.emptyList(), this.buildEnvironment());
         this.session = this.factory.newShellSession(request);
 
         // Return shell session
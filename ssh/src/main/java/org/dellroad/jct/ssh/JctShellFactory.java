@@ -8,6 +8,7 @@ package org.dellroad.jct.ssh;
 import org.apache.sshd.server.channel.ChannelSession;
 import org.apache.sshd.server.shell.ShellFactory;
 import org.dellroad.jct.core.Shell;
+import org.dellroad.jct.core.event.EventDispatcher;
 
 /**
  * An Apache MINA SSHD {@link ShellFactory} that connects to a Java Console Toolkit {@link Shell} instance.
@@ -15,6 +16,8 @@ import org.dellroad.jct.core.Shell;
 public class JctShellFactory implements ShellFactory {
 
     protected final Shell shell;
+    protected final EventDispatcher eventDispatcher;
+    protected final SshServerMetrics metrics;
 
     /**
      * Constructor.
@@ -23,15 +26,40 @@ public class JctShellFactory implements ShellFactory {
      * @throws IllegalArgumentException if {@code shell} is null
      */
     public JctShellFactory(Shell shell) {
+        this(shell, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param shell the underlying shell
+     * @param eventDispatcher dispatcher for session events, or null for none
+     * @throws IllegalArgumentException if {@code shell} is null
+     */
+    public JctShellFactory(Shell shell, EventDispatcher eventDispatcher) {
+        this(shell, eventDispatcher, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param shell the underlying shell
+     * @param eventDispatcher dispatcher for session events, or null for none
+     * @param metrics metrics collector, or null for none
+     * @throws IllegalArgumentException if {@code shell} is null
+     */
+    public JctShellFactory(Shell shell, EventDispatcher eventDispatcher, SshServerMetrics metrics) {
         if (shell == null)
             throw new IllegalArgumentException("null shell");
         this.shell = shell;
+        this.eventDispatcher = eventDispatcher;
+        this.metrics = metrics;
     }
 
 // ShellFactory
 
     @Override
     public JctShellCommand createShell(ChannelSession channel) {
-        return new JctShellCommand(this.shell, channel);
+        return new JctShellCommand(this.shell, channel, this.eventDispatcher, this.metrics);
     }
 }
@@ -0,0 +1,427 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.ssh;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.sshd.common.AttributeRepository;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+import org.apache.sshd.server.auth.pubkey.PublickeyAuthenticator;
+import org.dellroad.jct.core.ConsoleSession;
+import org.dellroad.jct.core.event.ConsoleEvent;
+import org.dellroad.jct.core.event.ConsoleListener;
+import org.dellroad.jct.core.simple.MetricsSource;
+import org.dellroad.jct.core.simple.PrometheusWriter;
+import org.dellroad.jct.core.util.RedirectedSession;
+
+/**
+ * Collects operational metrics for an SSH server connected to the Java Console Toolkit.
+ *
+ * <p>
+ * To collect everything, pass an instance to the {@link JctShellFactory} and {@link JctExecFactory} constructors,
+ * add it to the SSH server as a {@link SessionListener}, wrap the server's authenticator using {@link #wrap wrap()},
+ * and add it as a {@link ConsoleListener} to the {@linkplain org.dellroad.jct.core.simple.SimpleCommandSupport#addListener
+ * command event dispatcher} of the shell and/or exec.
+ *
+ * <p>
+ * Byte counts reflect the data flowing through console session channel streams (i.e., before SSH encryption and framing).
+ * Session setup time is the time from when the SSH connection is accepted until the console session is created.
+ *
+ * <p>
+ * Instances also implement {@link MetricsSource}, so when registered as a listener as described above, the {@code metrics}
+ * command includes them in its output.
+ *
+ * <p>
+ * All counters are lock-free and striped, so they can be safely updated on every read and write.
+ */
+public class SshServerMetrics implements SessionListener, ConsoleListener, MetricsSource {
+
+    private static final AttributeRepository.AttributeKey<Long> CREATE_TIME = new AttributeRepository.AttributeKey<>();
+
+    private final LongAdder activeShellSessions = new LongAdder();
+    private final LongAdder activeExecSessions = new LongAdder();
+    private final LongAdder totalSessions = new LongAdder();
+    private final LongAdder authSuccesses = new LongAdder();
+    private final LongAdder authFailures = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+    private final Histogram setupTimes = new Histogram();
+    private final AtomicLong nextSessionId = new AtomicLong();
+    private final Map<Long, ActiveSession> sessions = new ConcurrentHashMap<>();
+
+    // Events are delivered asynchronously, so a session's CommandStarted events can arrive after sessionFinished().
+    // We therefore forget a session when its SessionClosed event arrives, or when it's garbage collected.
+    private final Map<ConsoleSession<?, ?>, Boolean> consoleSessions = Collections.synchronizedMap(new WeakHashMap<>());
+
+// Counters
+
+    /**
+     * Get the number of currently active shell sessions.
+     *
+     * @return active shell sessions
+     */
+    public long getActiveShellSessions() {
+        return this.activeShellSessions.sum();
+    }
+
+    /**
+     * Get the number of currently active exec sessions.
+     *
+     * @return active exec sessions
+     */
+    public long getActiveExecSessions() {
+        return this.activeExecSessions.sum();
+    }
+
+    /**
+     * Get the total number of shell and exec sessions created.
+     *
+     * @return total sessions
+     */
+    public long getTotalSessions() {
+        return this.totalSessions.sum();
+    }
+
+    /**
+     * Get the number of SSH connections successfully authenticated.
+     *
+     * @return authentication successes
+     */
+    public long getAuthSuccesses() {
+        return this.authSuccesses.sum();
+    }
+
+    /**
+     * Get the number of public keys rejected during authentication.
+     *
+     * <p>
+     * Note that a client that offers several keys may have some rejected before one succeeds.
+     *
+     * @return authentication failures
+     */
+    public long getAuthFailures() {
+        return this.authFailures.sum();
+    }
+
+    /**
+     * Get the number of bytes received from SSH clients by console sessions.
+     *
+     * @return bytes in
+     */
+    public long getBytesIn() {
+        return this.bytesIn.sum();
+    }
+
+    /**
+     * Get the number of bytes sent to SSH clients by console sessions.
+     *
+     * @return bytes out
+     */
+    public long getBytesOut() {
+        return this.bytesOut.sum();
+    }
+
+    /**
+     * Get the number of commands started by console sessions.
+     *
+     * @return command count
+     */
+    public long getCommands() {
+        return this.commands.sum();
+    }
+
+    /**
+     * Get a percentile of session setup times.
+     *
+     * <p>
+     * The result is accurate to within about 25%.
+     *
+     * @param percentile percentile from 0.0 to 1.0
+     * @return session setup time in milliseconds, or zero if there have been no sessions
+     * @throws IllegalArgumentException if {@code percentile} is out of range
+     */
+    public double getSetupTimePercentile(double percentile) {
+        if (!(percentile >= 0.0 && percentile <= 1.0))
+            throw new IllegalArgumentException("invalid percentile");
+        return this.setupTimes.percentile(percentile) / 1e6;
+    }
+
+// Sessions
+
+    /**
+     * Describe the currently active sessions.
+     *
+     * @return active sessions, keyed by session ID
+     */
+    public Map<Long, String> getSessions() {
+        final ConcurrentHashMap<Long, String> map = new ConcurrentHashMap<>();
+        this.sessions.forEach((id, session) -> map.put(id, session.toString()));
+        return map;
+    }
+
+    /**
+     * Close the channel associated with the specified session.
+     *
+     * @param id session ID
+     * @return true if the session was found, otherwise false
+     */
+    public boolean closeSession(long id) {
+        final ActiveSession session = this.sessions.get(id);
+        if (session == null)
+            return false;
+        session.command.channel.close(false);
+        return true;
+    }
+
+// Authentication
+
+    /**
+     * Wrap the given authenticator so that rejected keys are counted.
+     *
+     * @param authenticator public key authenticator
+     * @return wrapped authenticator
+     * @throws IllegalArgumentException if {@code authenticator} is null
+     */
+    public PublickeyAuthenticator wrap(PublickeyAuthenticator authenticator) {
+        if (authenticator == null)
+            throw new IllegalArgumentException("null authenticator");
+        return (username, key, session) -> {
+            final boolean result = authenticator.authenticate(username, key, session);
+            if (!result)
+                this.authFailures.increment();
+            return result;
+        };
+    }
+
+// SessionListener
+
+    @Override
+    public void sessionCreated(Session session) {
+        session.setAttribute(CREATE_TIME, System.nanoTime());
+    }
+
+    @Override
+    public void sessionEvent(Session session, SessionListener.Event event) {
+        if (event == SessionListener.Event.Authenticated)
+            this.authSuccesses.increment();
+    }
+
+// ConsoleListener
+
+    @Override
+    public void onEvent(ConsoleEvent event) {
+        if (event instanceof ConsoleEvent.CommandStarted
+          && this.consoleSessions.containsKey(RedirectedSession.unwrap(event.getSession())))
+            this.commands.increment();
+        else if (event instanceof ConsoleEvent.SessionClosed)
+            this.consoleSessions.remove(event.getSession());
+    }
+
+// MetricsSource
+
+    @Override
+    public void writeMetrics(PrometheusWriter writer) {
+        if (writer == null)
+            throw new IllegalArgumentException("null writer");
+        writer.family("jct_ssh_sessions_active", PrometheusWriter.Type.GAUGE, "SSH console sessions currently open.");
+        writer.sample("jct_ssh_sessions_active").label("type", "shell").value(this.getActiveShellSessions());
+        writer.sample("jct_ssh_sessions_active").label("type", "exec").value(this.getActiveExecSessions());
+        writer.family("jct_ssh_sessions_total", PrometheusWriter.Type.COUNTER, "SSH console sessions created.")
+          .sample("jct_ssh_sessions_total").value(this.getTotalSessions());
+        writer.family("jct_ssh_auth_successes_total", PrometheusWriter.Type.COUNTER, "SSH connections authenticated.")
+          .sample("jct_ssh_auth_successes_total").value(this.getAuthSuccesses());
+        writer.family("jct_ssh_auth_failures_total", PrometheusWriter.Type.COUNTER, "SSH public keys rejected.")
+          .sample("jct_ssh_auth_failures_total").value(this.getAuthFailures());
+        writer.family("jct_ssh_received_bytes_total", PrometheusWriter.Type.COUNTER, "Bytes received by SSH console sessions.")
+          .sample("jct_ssh_received_bytes_total").value(this.getBytesIn());
+        writer.family("jct_ssh_sent_bytes_total", PrometheusWriter.Type.COUNTER, "Bytes sent by SSH console sessions.")
+          .sample("jct_ssh_sent_bytes_total").value(this.getBytesOut());
+        writer.family("jct_ssh_commands_total", PrometheusWriter.Type.COUNTER, "Commands started by SSH console sessions.")
+          .sample("jct_ssh_commands_total").value(this.getCommands());
+        writer.family("jct_ssh_session_setup_seconds", PrometheusWriter.Type.SUMMARY, "SSH console session setup time.");
+        writer.sample("jct_ssh_session_setup_seconds").label("quantile", 0.5).value(this.setupTimes.percentile(0.5) / 1e9);
+        writer.sample("jct_ssh_session_setup_seconds").label("quantile", 0.99).value(this.setupTimes.percentile(0.99) / 1e9);
+        writer.sample("jct_ssh_session_setup_seconds_count").value(this.setupTimes.count());
+    }
+
+// Hooks for AbstractCommand
+
+    InputStream countInput(InputStream in) {
+        return in != null ? new CountingInputStream(in) : null;
+    }
+
+    OutputStream countOutput(OutputStream out) {
+        return out != null ? new CountingOutputStream(out) : null;
+    }
+
+    void sessionStarted(AbstractCommand<?, ?> command) {
+        final boolean shell = command instanceof JctShellCommand;
+        (shell ? this.activeShellSessions : this.activeExecSessions).increment();
+        this.totalSessions.increment();
+        final Long createTime = command.channel.getSession().getAttribute(CREATE_TIME);
+        if (createTime != null)
+            this.setupTimes.record(System.nanoTime() - createTime);
+        command.metricsId = this.nextSessionId.incrementAndGet();
+        this.sessions.put(command.metricsId, new ActiveSession(command, shell));
+        this.consoleSessions.put(command.session, Boolean.TRUE);
+    }
+
+    void sessionFinished(AbstractCommand<?, ?> command) {
+        final ActiveSession session = this.sessions.remove(command.metricsId);
+        if (session == null)
+            return;
+        (session.shell ? this.activeShellSessions : this.activeExecSessions).decrement();
+    }
+
+// ActiveSession
+
+    private static final class ActiveSession {
+
+        final AbstractCommand<?, ?> command;
+        final boolean shell;
+        final Instant startTime = Instant.now();
+
+        ActiveSession(AbstractCommand<?, ?> command, boolean shell) {
+            this.command = command;
+            this.shell = shell;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder buf = new StringBuilder();
+            buf.append(this.shell ? "shell" : "exec");
+            final String user = this.command.channel.getSession().getUsername();
+            if (user != null)
+                buf.append(' ').append(user);
+            final SocketAddress address = this.command.channel.getSession().getClientAddress();
+            if (address instanceof InetSocketAddress) {
+                buf.append(' ')
+                  .append(((InetSocketAddress)address).getHostString())
+                  .append(':')
+                  .append(((InetSocketAddress)address).getPort());
+            }
+            buf.append(" since ").append(this.startTime);
+            return buf.toString();
+        }
+    }
+
+// Histogram
+
+    // Log-linear histogram with four sub-buckets per power of two
+    private static final class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final LongAdder[] buckets = new LongAdder[Long.SIZE * SUB_BUCKETS];
+
+        Histogram() {
+            for (int i = 0; i < this.buckets.length; i++)
+                this.buckets[i] = new LongAdder();
+        }
+
+        void record(long value) {
+            this.buckets[Histogram.index(Math.max(value, 1))].increment();
+        }
+
+        long count() {
+            long total = 0;
+            for (LongAdder bucket : this.buckets)
+                total += bucket.sum();
+            return total;
+        }
+
+        long percentile(double percentile) {
+            final long[] counts = new long[this.buckets.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++)
+                total += counts[i] = this.buckets[i].sum();
+            if (total == 0)
+                return 0;
+            final long target = Math.max(1, (long)Math.ceil(percentile * total));
+            long sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if ((sum += counts[i]) >= target)
+                    return Histogram.upperBound(i);
+            }
+            return Histogram.upperBound(counts.length - 1);
+        }
+
+        private static int index(long value) {
+            final int exp = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+            if (exp < SUB_BUCKET_BITS)
+                return (int)value;
+            return exp * SUB_BUCKETS + (int)((value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        }
+
+        private static long upperBound(int index) {
+            final int exp = index / SUB_BUCKETS;
+            if (exp < SUB_BUCKET_BITS)
+                return index;
+            final int sub = index % SUB_BUCKETS;
+            return (long)(SUB_BUCKETS + sub + 1) << (exp - SUB_BUCKET_BITS);
+        }
+    }
+
+// Counting streams
+
+    private final class CountingInputStream extends FilterInputStream {
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int r = super.read();
+            if (r != -1)
+                SshServerMetrics.this.bytesIn.increment();
+            return r;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            final int r = super.read(buf, off, len);
+            if (r > 0)
+                SshServerMetrics.this.bytesIn.add(r);
+            return r;
+        }
+    }
+
+    private final class CountingOutputStream extends FilterOutputStream {
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            SshServerMetrics.this.bytesOut.increment();
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) throws IOException {
+            this.out.write(buf, off, len);
+            SshServerMetrics.this.bytesOut.add(len);
+        }
+    }
+}
@@ -27,6 +27,11 @@ import org.jline.terminal.Terminal;
  */
 public final class SshUtil {
 
+    /**
+     * Environment variable describing the client connection, in the OpenSSH format {@code "address port localport"}.
+     */
+    public static final String ENV_SSH_CLIENT = "SSH_CLIENT";
+
     private static final String ENV_LC_ALL = "LC_ALL";
     private static final String ENV_LC_CTYPE = "LC_CTYPE";
     private static final String ENV_LANG = "LANG";
@@ -9,8 +9,19 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Path;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.sshd.common.SshConstants;
 import org.apache.sshd.common.config.keys.AuthorizedKeyEntry;
@@ -22,8 +33,12 @@ import org.apache.sshd.server.auth.pubkey.PublickeyAuthenticator;
 import org.apache.sshd.server.config.keys.AuthorizedKeysAuthenticator;
 import org.dellroad.jct.core.Exec;
 import org.dellroad.jct.core.Shell;
+import org.dellroad.jct.core.event.ConsoleListener;
+import org.dellroad.jct.core.event.EventDispatcher;
+import org.dellroad.jct.core.simple.SimpleCommandSupport;
 import org.dellroad.jct.ssh.JctExecFactory;
 import org.dellroad.jct.ssh.JctShellFactory;
+import org.dellroad.jct.ssh.SshServerMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,8 +50,18 @@ import org.slf4j.LoggerFactory;
  *
  * <p>
  * Instances must be {@link #start start()}'ed before use and should be {@link #stop stop()}'ed when no longer needed.
+ *
+ * <p>
+ * Unless {@linkplain Builder#registerMBean disabled}, the first time an instance is started it registers itself with the
+ * platform {@link MBeanServer} as a {@link SimpleConsoleSshServerMXBean} exposing operational {@linkplain #getMetrics
+ * metrics}; it is unregistered when {@link #close}'d.
  */
-public class SimpleConsoleSshServer implements Closeable {
+public class SimpleConsoleSshServer implements Closeable, SimpleConsoleSshServerMXBean {
+
+    /**
+     * The JMX domain used for registered MBeans.
+     */
+    public static final String JMX_DOMAIN = "org.dellroad.jct";
 
     private static final String LOOPBACK_HOST_ADDRESS = "127.0.0.1";
 
@@ -48,8 +73,12 @@ public class SimpleConsoleSshServer implements Closeable {
     protected final boolean loopbackOnly;
     protected final PublickeyAuthenticator authenticator;
     protected final KeyPairProvider hostKeyProvider;
+    protected final EventDispatcher eventDispatcher = new EventDispatcher();
+    protected final SshServerMetrics metrics = new SshServerMetrics();
+    protected final boolean registerMBean;
 
     protected SshServer sshd;
+    protected ObjectName objectName;
 
     /**
      * Constructor.
@@ -63,6 +92,8 @@ public class SimpleConsoleSshServer implements Closeable {
         this.loopbackOnly = builder.loopbackOnly;
         this.authenticator = builder.authenticator;
         this.hostKeyProvider = builder.hostKeyProvider;
+        this.registerMBean = builder.registerMBean;
+        builder.listeners.forEach(this.eventDispatcher::addListener);
         if (this.exec == null && this.shell == null)
             throw new IllegalArgumentException("no exec or shell configured");
         if (this.authenticator == null)
@@ -82,6 +113,59 @@ public class SimpleConsoleSshServer implements Closeable {
         return new Builder();
     }
 
+    /**
+     * Get the dispatcher for SSH session {@linkplain org.dellroad.jct.core.event.ConsoleEvent events}.
+     *
+     * <p>
+     * Listeners registered here are notified when SSH shell and exec sessions open and close.
+     *
+     * @return event dispatcher, never null
+     */
+    public EventDispatcher getEventDispatcher() {
+        return this.eventDispatcher;
+    }
+
+    /**
+     * Register a listener for SSH session {@linkplain org.dellroad.jct.core.event.ConsoleEvent events}.
+     *
+     * @param listener listener to add
+     * @throws IllegalArgumentException if {@code listener} is null
+     */
+    public void addListener(ConsoleListener listener) {
+        this.eventDispatcher.addListener(listener);
+    }
+
+    /**
+     * Unregister a listener for SSH session {@linkplain org.dellroad.jct.core.event.ConsoleEvent events}.
+     *
+     * @param listener listener to remove
+     * @return true if {@code listener} was found and removed
+     */
+    public boolean removeListener(ConsoleListener listener) {
+        return this.eventDispatcher.removeListener(listener);
+    }
+
+    /**
+     * Get the operational metrics for this instance.
+     *
+     * <p>
+     * Metrics accumulate across restarts.
+     *
+     * @return metrics, never null
+     */
+    public SshServerMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Get the name under which this instance is registered with JMX.
+     *
+     * @return JMX object name, or null if not registered
+     */
+    public synchronized ObjectName getObjectName() {
+        return this.objectName;
+    }
+
 // Lifecycle
 
     /**
@@ -92,6 +176,7 @@ public class SimpleConsoleSshServer implements Closeable {
      *
      * @throws IOException if an I/O error occurs setting up the listen socket
      */
+    @Override
     public synchronized void start() throws IOException {
 
         // Already running?
@@ -111,18 +196,26 @@ public class SimpleConsoleSshServer implements Closeable {
                 this.sshd.setHost(LOOPBACK_HOST_ADDRESS);
 
             // Configure security stuff
-            this.sshd.setPublickeyAuthenticator(this.authenticator);
+            this.sshd.setPublickeyAuthenticator(this.metrics.wrap(this.authenticator));
             this.sshd.setKeyPairProvider(this.hostKeyProvider);
 
             // Connect to console
             if (this.shell != null)
-                this.sshd.setShellFactory(new JctShellFactory(this.shell));
+                this.sshd.setShellFactory(new JctShellFactory(this.shell, this.eventDispatcher, this.metrics));
             if (this.exec != null)
-                this.sshd.setCommandFactory(new JctExecFactory(this.exec));
+                this.sshd.setCommandFactory(new JctExecFactory(this.exec, this.eventDispatcher, this.metrics));
+
+            // Collect metrics
+            this.sshd.addSessionListener(this.metrics);
+            this.eventDispatchers().forEach(dispatcher -> dispatcher.addListener(this.metrics));
 
             // Start server
             this.sshd.start();
 
+            // Register with JMX, now that we know the actual port
+            if (this.registerMBean && this.objectName == null)
+                this.registerMBean();
+
             // Done
             success = true;
         } finally {
@@ -134,9 +227,11 @@ public class SimpleConsoleSshServer implements Closeable {
     /**
      * Stop this instance.
      */
+    @Override
     public synchronized void stop() {
         if (this.sshd == null)
             return;
+        this.eventDispatchers().forEach(dispatcher -> dispatcher.removeListener(this.metrics));
         try {
             this.sshd.stop();
         } catch (IOException e) {
@@ -152,11 +247,129 @@ public class SimpleConsoleSshServer implements Closeable {
      * Close this instance.
      *
      * <p>
-     * Delegates to {@link #stop}.
+     * Invokes {@link #stop} and unregisters this instance from JMX.
      */
     @Override
-    public void close() {
+    public synchronized void close() {
         this.stop();
+        if (this.objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+            } catch (JMException e) {
+                this.log.warn("error unregistering {} from JMX", this.objectName, e);
+            }
+            this.objectName = null;
+        }
+    }
+
+// SimpleConsoleSshServerMXBean
+
+    @Override
+    public synchronized boolean isRunning() {
+        return this.sshd != null;
+    }
+
+    @Override
+    public int getListenPort() {
+        return this.listenPort;
+    }
+
+    @Override
+    public long getActiveShellSessions() {
+        return this.metrics.getActiveShellSessions();
+    }
+
+    @Override
+    public long getActiveExecSessions() {
+        return this.metrics.getActiveExecSessions();
+    }
+
+    @Override
+    public long getTotalSessions() {
+        return this.metrics.getTotalSessions();
+    }
+
+    @Override
+    public long getAuthSuccesses() {
+        return this.metrics.getAuthSuccesses();
+    }
+
+    @Override
+    public long getAuthFailures() {
+        return this.metrics.getAuthFailures();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return this.metrics.getBytesIn();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return this.metrics.getBytesOut();
+    }
+
+    @Override
+    public long getCommands() {
+        return this.metrics.getCommands();
+    }
+
+    @Override
+    public double getSessionSetupMillisP50() {
+        return this.metrics.getSetupTimePercentile(0.50);
+    }
+
+    @Override
+    public double getSessionSetupMillisP99() {
+        return this.metrics.getSetupTimePercentile(0.99);
+    }
+
+    @Override
+    public Map<Long, String> getSessions() {
+        return this.metrics.getSessions();
+    }
+
+    @Override
+    public boolean closeSession(long id) {
+        return this.metrics.closeSession(id);
+    }
+
+// Internal Methods
+
+    /**
+     * Build the name under which to register this instance with JMX.
+     *
+     * <p>
+     * This method is invoked after the server has started listening. The implementation in {@link SimpleConsoleSshServer}
+     * returns <code>{@value #JMX_DOMAIN}:type=SimpleConsoleSshServer,port=<i>port</i></code>, where <i>port</i> is the
+     * port actually bound, which differs from the {@linkplain #getListenPort configured port} when that is zero.
+     *
+     * @return JMX object name
+     * @throws JMException if the name is invalid
+     */
+    protected ObjectName buildObjectName() throws JMException {
+        return new ObjectName(String.format("%s:type=%s,port=%d",
+          JMX_DOMAIN, SimpleConsoleSshServer.class.getSimpleName(), this.sshd.getPort()));
+    }
+
+    private void registerMBean() {
+        try {
+            final ObjectName name = this.buildObjectName();
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            this.objectName = name;
+        } catch (JMException e) {
+            this.log.warn("error registering {} with JMX", this, e);
+        }
+    }
+
+    // Get the distinct event dispatchers of the consoles whose command events we can monitor
+    private Set<EventDispatcher> eventDispatchers() {
+        final Set<EventDispatcher> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object console : new Object[] { this.shell, this.exec }) {
+            if (console instanceof SimpleCommandSupport)
+                set.add(((SimpleCommandSupport)console).getEventDispatcher());
+        }
+        return set;
     }
 
 // Builder
@@ -175,6 +388,8 @@ public class SimpleConsoleSshServer implements Closeable {
         private boolean loopbackOnly = true;
         private PublickeyAuthenticator authenticator;
         private KeyPairProvider hostKeyProvider;
+        private final List<ConsoleListener> listeners = new ArrayList<>();
+        private boolean registerMBean = true;
 
         private Builder() {
         }
@@ -238,6 +453,38 @@ public class SimpleConsoleSshServer implements Closeable {
             return this;
         }
 
+        /**
+         * Add a listener for SSH session {@linkplain org.dellroad.jct.core.event.ConsoleEvent events}.
+         *
+         * <p>
+         * The listener is notified asynchronously when SSH shell and exec sessions open and close.
+         * This method may be invoked more than once to add multiple listeners.
+         *
+         * @param listener session event listener
+         * @return this instance
+         * @throws IllegalArgumentException if {@code listener} is null
+         */
+        public Builder listener(ConsoleListener listener) {
+            if (listener == null)
+                throw new IllegalArgumentException("null listener");
+            this.listeners.add(listener);
+            return this;
+        }
+
+        /**
+         * Configure whether to register the server with JMX as a {@link SimpleConsoleSshServerMXBean}.
+         *
+         * <p>
+         * Default is true.
+         *
+         * @param registerMBean true to register with JMX
+         * @return this instance
+         */
+        public Builder registerMBean(boolean registerMBean) {
+            this.registerMBean = registerMBean;
+            return this;
+        }
+
     // PublickeyAuthenticator
 
         /**
@@ -0,0 +1,137 @@
+
+/*
+ * Copyright (C) 2023 Archie L. Cobbs. All rights reserved.
+ */
+
+package org.dellroad.jct.ssh.simple;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.dellroad.jct.ssh.SshServerMetrics;
+
+/**
+ * JMX management interface for {@link SimpleConsoleSshServer}.
+ *
+ * @see SshServerMetrics
+ */
+public interface SimpleConsoleSshServerMXBean {
+
+// Attributes
+
+    /**
+     * Determine whether the server is running.
+     *
+     * @return true if started and not stopped
+     */
+    boolean isRunning();
+
+    /**
+     * Get the TCP port on which the server listens.
+     *
+     * @return listen port
+     */
+    int getListenPort();
+
+    /**
+     * Get the number of currently active shell sessions.
+     *
+     * @return active shell sessions
+     */
+    long getActiveShellSessions();
+
+    /**
+     * Get the number of currently active exec sessions.
+     *
+     * @return active exec sessions
+     */
+    long getActiveExecSessions();
+
+    /**
+     * Get the total number of shell and exec sessions created.
+     *
+     * @return total sessions
+     */
+    long getTotalSessions();
+
+    /**
+     * Get the number of SSH connections successfully authenticated.
+     *
+     * @return authentication successes
+     */
+    long getAuthSuccesses();
+
+    /**
+     * Get the number of public keys rejected during authentication.
+     *
+     * @return authentication failures
+     */
+    long getAuthFailures();
+
+    /**
+     * Get the number of bytes received from SSH clients by console sessions.
+     *
+     * @return bytes in
+     */
+    long getBytesIn();
+
+    /**
+     * Get the number of bytes sent to SSH clients by console sessions.
+     *
+     * @return bytes out
+     */
+    long getBytesOut();
+
+    /**
+     * Get the number of commands started by console sessions.
+     *
+     * @return command count
+     */
+    long getCommands();
+
+    /**
+     * Get the median session setup time.
+     *
+     * @return 50th percentile session setup time in milliseconds
+     */
+    double getSessionSetupMillisP50();
+
+    /**
+     * Get the 99th percentile session setup time.
+     *
+     * @return 99th percentile session setup time in milliseconds
+     */
+    double getSessionSetupMillisP99();
+
+    /**
+     * Describe the currently active sessions.
+     *
+     * @return active sessions, keyed by session ID
+     */
+    Map<Long, String> getSessions();
+
+// Operations
+
+    /**
+     * Start the server.
+     *
+     * @throws IOException if an I/O error occurs setting up the listen socket
+     */
+    void start() throws IOException;
+
+    /**
+     * Stop the server.
+     *
+     * <p>
+     * Existing sessions are closed. The server remains registered with JMX, so it can be restarted.
+     */
+    void stop();
+
+    /**
+     * Close an active session.
+     *
+     * @param id session ID from {@link #getSessions}
+     * @return true if the session was found, otherwise false
+     */
+    boolean closeSession(long id);
+}